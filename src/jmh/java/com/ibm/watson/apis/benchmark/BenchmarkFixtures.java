@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Inputs shared by the benchmarks. The documents come from the manual bundled with the application
+ * (<code>manual_0.json</code> and the <code>manualdocs.zip</code> corpus) and the conversation response from
+ * <code>conversation.json</code> in the test resources, so the numbers are reproducible from the repository alone.
+ */
+public final class BenchmarkFixtures {
+
+  private static final Type DOCUMENT_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+  private BenchmarkFixtures() {
+
+  }
+
+  /**
+   * Loads <code>manual_0.json</code>.
+   *
+   * @return the document
+   * @throws IOException if the document cannot be read
+   */
+  public static Map<String, Object> loadManual() throws IOException {
+    Reader reader = new InputStreamReader(open("/manual_0.json"), "UTF-8");
+    try {
+      return new Gson().fromJson(reader, DOCUMENT_TYPE);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Loads the documents of the <code>manualdocs.zip</code> corpus, in the order they appear in the archive.
+   *
+   * @param max the maximum number of documents to load
+   * @return the documents
+   * @throws IOException if the corpus cannot be read
+   */
+  public static List<Map<String, Object>> loadCorpus(int max) throws IOException {
+    List<Map<String, Object>> documents = new ArrayList<Map<String, Object>>();
+    Gson gson = new Gson();
+    ZipInputStream zip = new ZipInputStream(open("/manualdocs.zip"));
+    try {
+      ZipEntry entry = zip.getNextEntry();
+      while ((entry != null) && (documents.size() < max)) {
+        String name = entry.getName();
+        if (!entry.isDirectory() && name.endsWith(".json") && !name.startsWith("__MACOSX")) {
+          documents.add(gson.<Map<String, Object>>fromJson(IOUtils.toString(zip, "UTF-8"), DOCUMENT_TYPE));
+        }
+        entry = zip.getNextEntry();
+      }
+    } finally {
+      zip.close();
+    }
+    return documents;
+  }
+
+  /**
+   * Loads the conversation service response in <code>conversation.json</code>.
+   *
+   * @return the response JSON
+   * @throws IOException if the response cannot be read
+   */
+  public static String loadConversation() throws IOException {
+    InputStream in = open("/conversation.json");
+    try {
+      return IOUtils.toString(in, "UTF-8");
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Builds the JSON body the UI posts for a chat turn: the user's text and a context like the one the conversation
+   * service returns after a few turns.
+   *
+   * @param text the user's text
+   * @return the request JSON
+   */
+  public static String buildMessageRequest(String text) {
+    JsonObject input = new JsonObject();
+    input.addProperty("text", text);
+
+    JsonArray dialogStack = new JsonArray();
+    JsonObject node = new JsonObject();
+    node.addProperty("dialog_node", "root");
+    dialogStack.add(node);
+    JsonObject system = new JsonObject();
+    system.add("dialog_stack", dialogStack);
+    system.addProperty("dialog_turn_counter", 3);
+    system.addProperty("dialog_request_counter", 3);
+    system.addProperty("_node_output_map", "{}");
+    JsonObject context = new JsonObject();
+    context.addProperty("conversation_id", "6a1e8a5d-0a2c-4e5b-9c5e-3f1d2b7c9e10");
+    context.add("system", system);
+
+    JsonObject request = new JsonObject();
+    request.add("input", input);
+    request.add("context", context);
+    return request.toString();
+  }
+
+  private static InputStream open(String resource) throws IOException {
+    InputStream in = BenchmarkFixtures.class.getResourceAsStream(resource);
+    if (in == null) {
+      throw new IOException("Missing benchmark fixture " + resource);
+    }
+    return in;
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.discovery;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.watson.apis.benchmark.BenchmarkFixtures;
+import com.ibm.watson.apis.payload.DocumentPayload;
+
+/**
+ * Benchmarks of the Discovery payload mapping and snippet helpers, using documents of the bundled manual as
+ * Discovery results.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscoveryClientBenchmark {
+
+  private DiscoveryClient client;
+  private List<Map<String, Object>> results;
+  private String body;
+  private String contentHtml;
+
+  /**
+   * Loads the fixtures.
+   *
+   * @throws IOException if a fixture cannot be read
+   */
+  @Setup
+  public void setUp() throws IOException {
+    client = new DiscoveryClient();
+    // Discovery returns 10 results by default
+    results = BenchmarkFixtures.loadCorpus(10);
+    Map<String, Object> manual = BenchmarkFixtures.loadManual();
+    body = (String) manual.get("body");
+    contentHtml = (String) manual.get("contentHtml");
+  }
+
+  /**
+   * Maps a page of Discovery results to the payload sent to the UI.
+   *
+   * @return the payload
+   */
+  @Benchmark
+  public List<DocumentPayload> createPayload() {
+    return client.createPayload(results);
+  }
+
+  /**
+   * Cuts a document body to the snippet length.
+   *
+   * @return the snippet
+   */
+  @Benchmark
+  public String getSniplet() {
+    return client.getSniplet(body);
+  }
+
+  /**
+   * Limits an HTML document to its first two paragraphs.
+   *
+   * @return the paragraphs
+   */
+  @Benchmark
+  public String limitParagraph() {
+    return client.limitParagraph(contentHtml);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.ibm.watson.apis.benchmark.BenchmarkFixtures;
+import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.apis.utils.Constants;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Benchmarks of the request parsing and response serialization done by {@link ProxyResource} on every chat turn.
+ * The response is the one in <code>conversation.json</code> with a <code>CEPayload</code> of three manual documents,
+ * as returned for a lookup turn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyResourceBenchmark {
+
+  private ProxyResource proxy;
+  private byte[] requestBody;
+  private MessageResponse response;
+  private ByteArrayOutputStream output;
+
+  /**
+   * Loads the fixtures.
+   *
+   * @throws IOException if a fixture cannot be read
+   */
+  @Setup
+  public void setUp() throws IOException {
+    proxy = new ProxyResource();
+    output = new ByteArrayOutputStream(64 * 1024);
+    List<Map<String, Object>> documents = BenchmarkFixtures.loadCorpus(Constants.DISCOVERY_MAX_SEARCH_RESULTS_TO_SHOW);
+    requestBody = BenchmarkFixtures.buildMessageRequest(String.valueOf(documents.get(0).get("title")))
+        .getBytes("UTF-8");
+
+    response = GsonSingleton.getGson().fromJson(BenchmarkFixtures.loadConversation(), MessageResponse.class);
+    List<DocumentPayload> payload = new ArrayList<DocumentPayload>();
+    for (Map<String, Object> document : documents) {
+      DocumentPayload documentPayload = new DocumentPayload();
+      documentPayload.setId(String.valueOf(document.get("id")));
+      documentPayload.setTitle(String.valueOf(document.get("title")));
+      documentPayload.setBody(String.valueOf(document.get("body")));
+      documentPayload.setSourceUrl(String.valueOf(document.get("sourceUrl")));
+      documentPayload.setConfidence("0.5");
+      payload.add(documentPayload);
+    }
+    response.getOutput().put("CEPayload", payload);
+  }
+
+  /**
+   * Parses the JSON body posted by the UI.
+   *
+   * @return the message request
+   */
+  @Benchmark
+  public MessageRequest buildMessageFromPayload() {
+    return proxy.buildMessageFromPayload(new ByteArrayInputStream(requestBody));
+  }
+
+  /**
+   * Serializes the response to a String with a new reflective Gson, the way responses were written before
+   * {@link JsonStreamingOutput}.
+   *
+   * @return the response JSON
+   */
+  @Benchmark
+  public String toJson() {
+    return new Gson().toJson(response, MessageResponse.class);
+  }
+
+  /**
+   * Streams the response sent back to the UI.
+   *
+   * @return the number of bytes written
+   * @throws IOException never, the output is in memory
+   */
+  @Benchmark
+  public int writeJson() throws IOException {
+    output.reset();
+    new JsonStreamingOutput(response, MessageResponse.class, false).write(output);
+    return output.size();
+  }
+}
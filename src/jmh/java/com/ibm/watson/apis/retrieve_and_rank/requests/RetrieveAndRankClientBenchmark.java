@@ -0,0 +1,123 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.requests;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ibm.watson.apis.benchmark.BenchmarkFixtures;
+import com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload;
+import com.ibm.watson.apis.utils.Constants;
+
+/**
+ * Benchmarks of the Retrieve and Rank payload mapping and snippet helpers, using documents of the
+ * bundled manual as SOLR results with highlighting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetrieveAndRankClientBenchmark {
+
+	private RetrieveAndRankClient client;
+	private SolrDocumentList results;
+	private Map<String, Map<String, List<String>>> highlights;
+	private String query;
+	private String body;
+
+	/**
+	 * Loads the fixtures.
+	 *
+	 * @throws IOException
+	 *             if a fixture cannot be read
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		client = new RetrieveAndRankClient();
+		results = new SolrDocumentList();
+		highlights = new HashMap<String, Map<String, List<String>>>();
+		double confidence = 1.0;
+		// The ranker returns 10 documents by default
+		for (Map<String, Object> document : BenchmarkFixtures.loadCorpus(10)) {
+			SolrDocument solrDocument = new SolrDocument();
+			String id = String.valueOf(document.get(Constants.SCHEMA_FIELD_ID));
+			String documentBody = String.valueOf(document.get(Constants.SCHEMA_FIELD_BODY));
+			solrDocument.addField(Constants.SCHEMA_FIELD_ID, id);
+			solrDocument.addField(Constants.SCHEMA_FIELD_TITLE, document.get(Constants.SCHEMA_FIELD_TITLE));
+			solrDocument.addField(Constants.SCHEMA_FIELD_BODY, documentBody);
+			solrDocument.addField(Constants.SCHEMA_FIELD_SOURCE_URL, document.get(Constants.SCHEMA_FIELD_SOURCE_URL));
+			solrDocument.addField(Constants.SCHEMA_FIELD_CONFIDENCE, confidence);
+			confidence /= 2;
+			results.add(solrDocument);
+
+			String highlighted = "<em>" + documentBody.substring(0, Math.min(100, documentBody.length())) + "</em>";
+			highlights.put(id, Collections.singletonMap(Constants.SCHEMA_FIELD_BODY,
+					Collections.singletonList(highlighted)));
+		}
+		results.setNumFound(results.size());
+		Map<String, Object> manual = BenchmarkFixtures.loadManual();
+		query = String.valueOf(manual.get(Constants.SCHEMA_FIELD_TITLE));
+		body = String.valueOf(manual.get(Constants.SCHEMA_FIELD_BODY));
+	}
+
+	/**
+	 * Maps a page of SOLR results and their highlighting to the payload sent to
+	 * the UI.
+	 *
+	 * @return the payload
+	 */
+	@Benchmark
+	public List<DocumentPayload> createPayload() {
+		return client.createPayload(query, results, highlights);
+	}
+
+	/**
+	 * Cuts a document body to the snippet length.
+	 *
+	 * @return the snippet
+	 */
+	@Benchmark
+	public String getSniplet() {
+		return client.getSniplet(body);
+	}
+
+	/**
+	 * Limits a document body to its first two paragraphs.
+	 *
+	 * @return the paragraphs
+	 */
+	@Benchmark
+	public String limitParagraph() {
+		return RetrieveAndRankClient.limitParagraph(body);
+	}
+}
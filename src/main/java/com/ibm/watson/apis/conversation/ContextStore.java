@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+
+/**
+ * A bounded store of conversation contexts keyed by <code>conversation_id</code>, so that clients can send a small
+ * reference to the context instead of the whole context on every turn. Each saved context gets a new version, and a
+ * context is only handed out for its latest version. The least recently used context is evicted when the store holds
+ * more than <code>CONTEXT_STORE_SIZE</code> contexts or more than <code>CONTEXT_STORE_MAX_BYTES</code>, contexts
+ * expire <code>CONTEXT_STORE_TTL_SECONDS</code> after their last use, and a context larger than
+ * <code>CONTEXT_STORE_MAX_CONTEXT_SIZE</code> JSON characters is not stored at all. A size of 0 (the default)
+ * disables the store.
+ * <p>
+ * The memory used by a context is estimated as two bytes per character of its JSON form.
+ */
+public class ContextStore {
+
+  private static final ContextStore INSTANCE = new ContextStore(EnvironmentUtils.getInt("CONTEXT_STORE_SIZE", 0),
+      EnvironmentUtils.getLong("CONTEXT_STORE_MAX_BYTES", 64 * 1024 * 1024),
+      EnvironmentUtils.getLong("CONTEXT_STORE_MAX_CONTEXT_SIZE", 64 * 1024),
+      TimeUnit.SECONDS.toMillis(EnvironmentUtils.getLong("CONTEXT_STORE_TTL_SECONDS", 1800)));
+
+  private static final int BYTES_PER_CHAR = 2;
+
+  private final int maxSize;
+  private final long maxBytes;
+  private final long maxContextSize;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Stats stats = new Stats();
+  private long bytes;
+
+  /**
+   * Instantiates a new context store.
+   *
+   * @param maxSize the maximum number of contexts
+   * @param maxBytes the maximum estimated memory of the contexts
+   * @param maxContextSize the maximum size of a context in JSON characters
+   * @param ttlMillis how long an unused context is kept, in milliseconds
+   */
+  public ContextStore(int maxSize, long maxBytes, long maxContextSize, long ttlMillis) {
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.maxContextSize = maxContextSize;
+    this.ttlMillis = ttlMillis;
+  }
+
+  /**
+   * Gets the application wide context store.
+   *
+   * @return the context store
+   */
+  public static ContextStore getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns true if the store keeps anything.
+   *
+   * @return true if enabled
+   */
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Gets a copy of a stored context.
+   *
+   * @param conversationId the conversation id
+   * @param version the version the client was given
+   * @return the context, or null if the context is unknown, has expired or has a newer version
+   */
+  public Map<String, Object> load(String conversationId, long version) {
+    synchronized (entries) {
+      Entry entry = entries.get(conversationId);
+      if ((entry != null) && (entry.expires < System.currentTimeMillis())) {
+        remove(conversationId);
+        stats.expirations.incrementAndGet();
+        entry = null;
+      }
+      if ((entry == null) || (entry.version != version)) {
+        stats.misses.incrementAndGet();
+        return null;
+      }
+      entry.expires = System.currentTimeMillis() + ttlMillis;
+      stats.hits.incrementAndGet();
+      return new LinkedHashMap<String, Object>(entry.context);
+    }
+  }
+
+  /**
+   * Stores the context of a conversation, replacing its previous version. The store keeps the map, so the caller
+   * must not change it afterwards.
+   *
+   * @param conversationId the conversation id
+   * @param context the context
+   * @return the version of the stored context, or -1 if the context is too large to be stored
+   */
+  public long save(String conversationId, Map<String, Object> context) {
+    if (!isEnabled()) {
+      return -1;
+    }
+    long size = estimateSize(context);
+    if ((size > maxContextSize) || (size * BYTES_PER_CHAR > maxBytes)) {
+      stats.rejected.incrementAndGet();
+      synchronized (entries) {
+        remove(conversationId);
+      }
+      return -1;
+    }
+    synchronized (entries) {
+      Entry previous = remove(conversationId);
+      Entry entry = new Entry(context, size * BYTES_PER_CHAR, previous == null ? 1 : previous.version + 1,
+          System.currentTimeMillis() + ttlMillis);
+      entries.put(conversationId, entry);
+      bytes += entry.bytes;
+      evict();
+      return entry.version;
+    }
+  }
+
+  /**
+   * Drops the expired contexts, then the least recently used ones while the store is over its limits.
+   */
+  private void evict() {
+    long now = System.currentTimeMillis();
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      boolean expired = entry.expires < now;
+      if (!expired && (entries.size() <= maxSize) && (bytes <= maxBytes)) {
+        break;
+      }
+      iterator.remove();
+      bytes -= entry.bytes;
+      (expired ? stats.expirations : stats.evictions).incrementAndGet();
+    }
+  }
+
+  private Entry remove(String conversationId) {
+    Entry entry = entries.remove(conversationId);
+    if (entry != null) {
+      bytes -= entry.bytes;
+    }
+    return entry;
+  }
+
+  /**
+   * Gets the number of stored contexts.
+   *
+   * @return the size
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Gets the estimated memory of the stored contexts.
+   *
+   * @return the size in bytes
+   */
+  public long getBytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  /**
+   * Gets the counters.
+   *
+   * @return the counters
+   */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /**
+   * Estimates the size of a value in JSON characters, counting the same way as the limit on the contexts posted by
+   * the UI.
+   *
+   * @param value a value read from JSON: a map, a collection, a string, a number, a boolean or null
+   * @return the size
+   */
+  static long estimateSize(Object value) {
+    if (value instanceof Map) {
+      long size = 2;
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+        size += String.valueOf(entry.getKey()).length() + 4 + estimateSize(entry.getValue());
+      }
+      return size;
+    } else if (value instanceof Collection) {
+      long size = 2;
+      for (Object item : (Collection<?>) value) {
+        size += estimateSize(item) + 1;
+      }
+      return size;
+    } else if (value instanceof String) {
+      return ((String) value).length() + 2;
+    } else if (value == null) {
+      return 4;
+    }
+    return String.valueOf(value).length();
+  }
+
+  /**
+   * A stored context.
+   */
+  private static class Entry {
+    private final Map<String, Object> context;
+    private final long bytes;
+    private final long version;
+    private long expires;
+
+    Entry(Map<String, Object> context, long bytes, long version, long expires) {
+      this.context = context;
+      this.bytes = bytes;
+      this.version = version;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * The counters of the store.
+   */
+  public static class Stats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Gets the number of contexts handed out.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+      return hits.get();
+    }
+
+    /**
+     * Gets the number of contexts asked for which were unknown, expired or of an older version.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /**
+     * Gets the number of contexts dropped because the store was full.
+     *
+     * @return the evictions
+     */
+    public long getEvictions() {
+      return evictions.get();
+    }
+
+    /**
+     * Gets the number of contexts dropped because they were not used in time.
+     *
+     * @return the expirations
+     */
+    public long getExpirations() {
+      return expirations.get();
+    }
+
+    /**
+     * Gets the number of contexts not stored because they were too large.
+     *
+     * @return the rejected contexts
+     */
+    public long getRejected() {
+      return rejected.get();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.Constants;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.WatsonServiceUtils;
+import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+
+/**
+ * Application scoped registry of {@link ConversationService} objects. A service object is created once for every
+ * combination of endpoint, version and credentials and reused by all requests, so a chat turn no longer pays for a
+ * new HTTP client and TLS handshake. All service objects share one keep-alive connection pool which is sized with the
+ * <code>CONVERSATION_MAX_IDLE_CONNECTIONS</code> and <code>CONVERSATION_KEEP_ALIVE_SECONDS</code> settings, and
+ * one dispatcher for asynchronous calls limited by <code>CONVERSATION_MAX_ASYNC_REQUESTS</code>.
+ */
+public class ConversationClientRegistry {
+  private static final Logger logger = LogManager.getLogger(ConversationClientRegistry.class.getName());
+
+  private static final ConversationClientRegistry INSTANCE = new ConversationClientRegistry();
+
+  private final ConcurrentMap<String, ConversationService> services =
+      new ConcurrentHashMap<String, ConversationService>();
+
+  private volatile ConnectionPool connectionPool;
+
+  private volatile Dispatcher dispatcher;
+
+  private ConversationClientRegistry() {
+
+  }
+
+  /**
+   * Gets the registry.
+   *
+   * @return the registry
+   */
+  public static ConversationClientRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Creates the shared connection pool and the service object for the credentials found in the environment. This is
+   * called once by the servlet context listener when the application starts.
+   */
+  public void initialize() {
+    getConnectionPool();
+    String username = System.getenv("CONVERSATION_USERNAME");
+    String password = System.getenv("CONVERSATION_PASSWORD");
+    if ((username != null) || (password != null)) {
+      getService(null, null, username, password);
+    }
+    logger.info(Messages.getString("ConversationClientRegistry.INITIALIZED"));
+  }
+
+  /**
+   * Gets the service object for the given configuration, creating it the first time it is asked for.
+   *
+   * @param version the conversation API version, or null for the default version
+   * @param url the conversation endpoint, or null for the default endpoint
+   * @param username the username
+   * @param password the password
+   * @return the service object
+   */
+  public ConversationService getService(String version, String url, String username, String password) {
+    String apiVersion = version != null ? version : ConversationService.VERSION_DATE_2016_09_20;
+    String endPoint = url == null ? Constants.CONVERSATION_URL : url;
+    String key = endPoint + '|' + apiVersion + '|' + username + '|' + password;
+
+    ConversationService service = services.get(key);
+    if (service == null) {
+      service = new ConversationService(apiVersion);
+      if ((username != null) || (password != null)) {
+        service.setUsernameAndPassword(username, password);
+      }
+      service.setEndPoint(endPoint);
+      WatsonServiceUtils.useConnectionPool(service, getConnectionPool(), getDispatcher());
+
+      ConversationService existing = services.putIfAbsent(key, service);
+      if (existing != null) {
+        service = existing;
+      } else {
+        logger.info(Messages.getString("ConversationClientRegistry.CREATED_SERVICE") + endPoint);
+      }
+    }
+    return service;
+  }
+
+  /**
+   * Gets the connection pool shared by the conversation service objects.
+   *
+   * @return the connection pool
+   */
+  public ConnectionPool getConnectionPool() {
+    ConnectionPool pool = connectionPool;
+    if (pool == null) {
+      synchronized (this) {
+        if (connectionPool == null) {
+          connectionPool = new ConnectionPool(EnvironmentUtils.getInt("CONVERSATION_MAX_IDLE_CONNECTIONS", 20),
+              EnvironmentUtils.getLong("CONVERSATION_KEEP_ALIVE_SECONDS", 300), TimeUnit.SECONDS);
+        }
+        pool = connectionPool;
+      }
+    }
+    return pool;
+  }
+
+  /**
+   * Gets the dispatcher shared by the conversation service objects for asynchronous calls. The OkHttp default of five
+   * concurrent calls per host is too low when every chat turn is sent with <code>enqueue</code>.
+   *
+   * @return the dispatcher
+   */
+  public Dispatcher getDispatcher() {
+    Dispatcher current = dispatcher;
+    if (current == null) {
+      synchronized (this) {
+        if (dispatcher == null) {
+          Dispatcher created = new Dispatcher();
+          int maxRequests = EnvironmentUtils.getInt("CONVERSATION_MAX_ASYNC_REQUESTS", 64);
+          created.setMaxRequests(maxRequests);
+          created.setMaxRequestsPerHost(maxRequests);
+          dispatcher = created;
+        }
+        current = dispatcher;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Drops the cached service objects and closes the idle connections. Called when the application is stopped.
+   */
+  public void shutdown() {
+    services.clear();
+    synchronized (this) {
+      if (connectionPool != null) {
+        connectionPool.evictAll();
+        connectionPool = null;
+      }
+      if (dispatcher != null) {
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        dispatcher = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.conversation.local.LocalDialogRuntime;
+import com.ibm.watson.apis.resilience.Dependency;
+import com.ibm.watson.apis.resilience.DependencyUnavailableException;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+
+/**
+ * Sends a chat turn to the Conversation service or to the {@link LocalDialogRuntime}, as chosen by the
+ * <code>CONVERSATION_MODE</code> setting:
+ * <ul>
+ * <li><code>remote</code> (the default): the Conversation service only.</li>
+ * <li><code>local</code>: the local runtime only, no Conversation round trip.</li>
+ * <li><code>fallback</code>: the Conversation service, and the local runtime when the call fails.</li>
+ * <li><code>shadow</code>: the Conversation service answers, and the same turn is replayed on the local runtime in
+ * the background to count how often the top intent or the text differ.</li>
+ * </ul>
+ * The calls to the Conversation service go through the circuit breaker and bulkhead of the
+ * <code>CONVERSATION</code> {@link Dependency}; while it is unavailable the calls fail at once, or are answered
+ * locally in fallback mode.
+ */
+public class ConversationRouter {
+  private static final Logger logger = LogManager.getLogger(ConversationRouter.class.getName());
+
+  /** Where chat turns are answered. */
+  public enum Mode {
+    REMOTE, LOCAL, FALLBACK, SHADOW
+  }
+
+  private static final int SHADOW_QUEUE_SIZE = 100;
+
+  private static final ConversationRouter INSTANCE = new ConversationRouter(getConfiguredMode());
+
+  private final Mode mode;
+  private final Dependency conversation = Dependency.get("CONVERSATION");
+  private final AtomicLong fallbacks = new AtomicLong();
+  private final AtomicLong shadowRuns = new AtomicLong();
+  private final AtomicLong shadowMismatches = new AtomicLong();
+
+  private volatile ThreadPoolExecutor shadowExecutor;
+
+  ConversationRouter(Mode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * Gets the router.
+   *
+   * @return the router
+   */
+  public static ConversationRouter getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the mode named by the <code>CONVERSATION_MODE</code> setting.
+   *
+   * @return the mode, {@link Mode#REMOTE} if the setting is missing or unknown
+   */
+  public static Mode getConfiguredMode() {
+    String name = EnvironmentUtils.getString("CONVERSATION_MODE", "remote");
+    try {
+      return Mode.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      logger.warn(Messages.getString("ConversationRouter.UNKNOWN_MODE") + name);
+      return Mode.REMOTE;
+    }
+  }
+
+  /**
+   * Gets the mode of this router.
+   *
+   * @return the mode
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Answers a chat turn.
+   *
+   * @param service the Conversation service
+   * @param workspaceId the workspace id
+   * @param request the message request
+   * @return the message response
+   * @throws Exception if the turn cannot be answered
+   */
+  public MessageResponse message(ConversationService service, String workspaceId, MessageRequest request)
+      throws Exception {
+    switch (mode) {
+      case LOCAL:
+        return LocalDialogRuntime.getInstance().message(request);
+      case FALLBACK:
+        try {
+          return remote(service, workspaceId, request);
+        } catch (RuntimeException e) {
+          return fallback(request, e);
+        }
+      case SHADOW:
+        MessageResponse response = remote(service, workspaceId, request);
+        shadow(request, response);
+        return response;
+      default:
+        return remote(service, workspaceId, request);
+    }
+  }
+
+  private MessageResponse remote(ConversationService service, String workspaceId, MessageRequest request) {
+    long start = conversation.acquire();
+    try {
+      MessageResponse response = service.message(workspaceId, request).execute();
+      conversation.release(start, null);
+      return response;
+    } catch (RuntimeException e) {
+      conversation.release(start, e);
+      throw e;
+    }
+  }
+
+  private void remoteAsync(ConversationService service, String workspaceId, MessageRequest request,
+      final ServiceCallback<MessageResponse> callback) {
+    final long start;
+    try {
+      start = conversation.acquire();
+    } catch (DependencyUnavailableException e) {
+      callback.onFailure(e);
+      return;
+    }
+    try {
+      service.message(workspaceId, request).enqueue(new ServiceCallback<MessageResponse>() {
+        @Override
+        public void onResponse(MessageResponse response) {
+          conversation.release(start, null);
+          callback.onResponse(response);
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+          conversation.release(start, e);
+          callback.onFailure(e);
+        }
+      });
+    } catch (RuntimeException e) {
+      conversation.release(start, e);
+      callback.onFailure(e);
+    }
+  }
+
+  /**
+   * Answers a chat turn without blocking the calling thread on the Conversation service.
+   *
+   * @param service the Conversation service
+   * @param workspaceId the workspace id
+   * @param request the message request
+   * @param callback receives the message response or the failure
+   */
+  public void messageAsync(ConversationService service, String workspaceId, final MessageRequest request,
+      final ServiceCallback<MessageResponse> callback) {
+    if (mode == Mode.LOCAL) {
+      MessageResponse response;
+      try {
+        response = LocalDialogRuntime.getInstance().message(request);
+      } catch (Exception e) {
+        callback.onFailure(e);
+        return;
+      }
+      callback.onResponse(response);
+      return;
+    }
+    if (mode == Mode.REMOTE) {
+      remoteAsync(service, workspaceId, request, callback);
+      return;
+    }
+    remoteAsync(service, workspaceId, request, new ServiceCallback<MessageResponse>() {
+      @Override
+      public void onResponse(MessageResponse response) {
+        if (mode == Mode.SHADOW) {
+          shadow(request, response);
+        }
+        callback.onResponse(response);
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        if (mode != Mode.FALLBACK) {
+          callback.onFailure(e);
+          return;
+        }
+        MessageResponse response;
+        try {
+          response = fallback(request, e);
+        } catch (Exception local) {
+          callback.onFailure(e);
+          return;
+        }
+        callback.onResponse(response);
+      }
+    });
+  }
+
+  private MessageResponse fallback(MessageRequest request, Exception e) throws Exception {
+    fallbacks.incrementAndGet();
+    logger.warn(Messages.getString("ConversationRouter.FALLBACK") + e.getMessage());
+    return LocalDialogRuntime.getInstance().message(request);
+  }
+
+  /**
+   * Replays a turn on the local runtime in the background. The remote answer is summarized right away because the
+   * caller goes on to add the retrieval results to its output.
+   */
+  private void shadow(final MessageRequest request, MessageResponse remote) {
+    final String remoteIntent = getTopIntent(remote);
+    final List<String> remoteText = getText(remote);
+    try {
+      getShadowExecutor().execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            MessageResponse local = LocalDialogRuntime.getInstance().message(request);
+            shadowRuns.incrementAndGet();
+            String localIntent = getTopIntent(local);
+            List<String> localText = getText(local);
+            boolean sameIntent = remoteIntent == null ? localIntent == null : remoteIntent.equals(localIntent);
+            if (!sameIntent || !remoteText.equals(localText)) {
+              shadowMismatches.incrementAndGet();
+              logger.info(Messages.getString("ConversationRouter.SHADOW_MISMATCH") + remoteIntent + " / "
+                  + localIntent + ": " + request.inputText());
+            }
+          } catch (Exception e) {
+            logger.warn(Messages.getString("ConversationRouter.SHADOW_FAILED") + e.getMessage());
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      // the shadow queue is full or shutting down; the turn is simply not compared
+      logger.debug(e.getMessage());
+    }
+  }
+
+  private ThreadPoolExecutor getShadowExecutor() {
+    ThreadPoolExecutor executor = shadowExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        if (shadowExecutor == null) {
+          shadowExecutor = ThreadPools.newFixedThreadPool(1, new ArrayBlockingQueue<Runnable>(SHADOW_QUEUE_SIZE),
+              ThreadPools.daemonThreadFactory("dialog-shadow"));
+          shadowExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        }
+        executor = shadowExecutor;
+      }
+    }
+    return executor;
+  }
+
+  private static String getTopIntent(MessageResponse response) {
+    List<Intent> intents = response.getIntents();
+    return (intents == null) || intents.isEmpty() ? null : intents.get(0).getIntent();
+  }
+
+  private static List<String> getText(MessageResponse response) {
+    List<String> text = new ArrayList<String>();
+    if ((response.getOutput() != null) && (response.getOutput().get("text") instanceof List)) {
+      for (Object line : (List<?>) response.getOutput().get("text")) {
+        text.add(String.valueOf(line));
+      }
+    }
+    return text;
+  }
+
+  /**
+   * Gets the number of turns answered by the local runtime because the Conversation service failed.
+   *
+   * @return the number of fallbacks
+   */
+  public long getFallbacks() {
+    return fallbacks.get();
+  }
+
+  /**
+   * Gets the number of turns replayed on the local runtime in shadow mode.
+   *
+   * @return the number of shadow runs
+   */
+  public long getShadowRuns() {
+    return shadowRuns.get();
+  }
+
+  /**
+   * Gets the number of shadow runs whose top intent or text differed from the Conversation service's.
+   *
+   * @return the number of mismatches
+   */
+  public long getShadowMismatches() {
+    return shadowMismatches.get();
+  }
+
+  /**
+   * Stops the shadow thread. Called when the application is stopped.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      if (shadowExecutor != null) {
+        shadowExecutor.shutdownNow();
+        shadowExecutor = null;
+      }
+    }
+  }
+}
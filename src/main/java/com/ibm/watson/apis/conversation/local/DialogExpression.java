@@ -0,0 +1,703 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A compiled dialog condition or <code>&lt;? ... ?&gt;</code> expression. The supported language is the subset used
+ * by dialog nodes: <code>#intent</code>, <code>@entity</code>, <code>@entity:value</code>, <code>$variable</code>,
+ * string, number and boolean literals, <code>conversation_start</code>, <code>anything_else</code>,
+ * <code>intents[0].confidence</code>, <code>entities.size()</code>, <code>now()</code>,
+ * <code>reformatDateTime('pattern')</code>, <code>!</code>, <code>&amp;&amp;</code>, <code>||</code>, comparisons,
+ * <code>+</code> and <code>-</code>. Expressions are parsed once, when the workspace is loaded.
+ */
+public abstract class DialogExpression {
+
+  private static final String DATE_TIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+  private static final String DATE_FORMAT = "yyyy-MM-dd";
+  private static final String TIME_FORMAT = "HH:mm:ss";
+
+  /**
+   * Evaluates the expression.
+   *
+   * @param turn the turn
+   * @return the value: a Boolean, Double, String, List, Map or null
+   */
+  public abstract Object evaluate(DialogTurn turn);
+
+  /**
+   * Evaluates the expression as a condition. An expression which cannot be evaluated, for example
+   * <code>intents[0]</code> when there is no intent, is false.
+   *
+   * @param turn the turn
+   * @return true if the condition holds
+   */
+  public boolean test(DialogTurn turn) {
+    try {
+      return isTrue(evaluate(turn));
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Parses an expression.
+   *
+   * @param text the expression
+   * @return the compiled expression
+   * @throws IllegalArgumentException if the expression is not supported
+   */
+  public static DialogExpression parse(String text) {
+    return new Parser(text).parseAll();
+  }
+
+  /**
+   * Returns true if a value counts as true in a condition.
+   *
+   * @param value the value
+   * @return true unless the value is null, false, zero or an empty string
+   */
+  static boolean isTrue(Object value) {
+    if (value == null) {
+      return false;
+    } else if (value instanceof Boolean) {
+      return (Boolean) value;
+    } else if (value instanceof Number) {
+      return ((Number) value).doubleValue() != 0;
+    } else if (value instanceof String) {
+      return !((String) value).isEmpty() && !"false".equals(value);
+    }
+    return true;
+  }
+
+  /**
+   * Converts a value to a number.
+   *
+   * @param value the value
+   * @return the number, or null if the value is not a number
+   */
+  static Double toNumber(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    } else if (value instanceof String) {
+      try {
+        return Double.valueOf(((String) value).trim());
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts a value to the text shown to the user. Whole numbers are shown without a decimal point.
+   *
+   * @param value the value
+   * @return the text
+   */
+  static String toText(Object value) {
+    Object normalized = normalize(value);
+    return normalized == null ? "" : normalized.toString();
+  }
+
+  /**
+   * Converts whole numbers to longs, so that a counter stored in the context stays <code>1</code> rather than
+   * <code>1.0</code>.
+   *
+   * @param value the value
+   * @return the normalized value
+   */
+  static Object normalize(Object value) {
+    if ((value instanceof Double) || (value instanceof Float)) {
+      double number = ((Number) value).doubleValue();
+      if ((number == Math.rint(number)) && !Double.isInfinite(number) && (Math.abs(number) < Long.MAX_VALUE)) {
+        return (long) number;
+      }
+    }
+    return value;
+  }
+
+  private static boolean equalValues(Object left, Object right) {
+    if ((left == null) || (right == null)) {
+      return left == right;
+    }
+    if ((left instanceof Number) || (right instanceof Number)) {
+      Double l = toNumber(left);
+      Double r = toNumber(right);
+      if ((l != null) && (r != null)) {
+        return l.doubleValue() == r.doubleValue();
+      }
+    }
+    if ((left instanceof Boolean) || (right instanceof Boolean)) {
+      return isTrue(left) == isTrue(right);
+    }
+    return toText(left).equals(toText(right));
+  }
+
+  private static Object reformatDateTime(Object value, String pattern) {
+    if (value == null) {
+      return null;
+    }
+    String text = value.toString();
+    String[] formats = { DATE_TIME_FORMAT, DATE_FORMAT, TIME_FORMAT };
+    for (String format : formats) {
+      try {
+        SimpleDateFormat parser = new SimpleDateFormat(format, Locale.ENGLISH);
+        parser.setLenient(false);
+        Date date = parser.parse(text);
+        return new SimpleDateFormat(pattern, Locale.ENGLISH).format(date);
+      } catch (ParseException e) {
+        // try the next format
+      }
+    }
+    return text;
+  }
+
+  private static Object callMethod(Object target, String method, List<Object> args) {
+    if ("size".equals(method) || "length".equals(method)) {
+      if (target instanceof Collection) {
+        return (double) ((Collection<?>) target).size();
+      } else if (target instanceof Map) {
+        return (double) ((Map<?, ?>) target).size();
+      } else if (target instanceof String) {
+        return (double) ((String) target).length();
+      }
+    } else if ("reformatDateTime".equals(method) && (args.size() == 1)) {
+      return reformatDateTime(target, toText(args.get(0)));
+    } else if ("contains".equals(method) && (args.size() == 1)) {
+      if (target instanceof Collection) {
+        return ((Collection<?>) target).contains(args.get(0));
+      } else if (target != null) {
+        return target.toString().contains(toText(args.get(0)));
+      }
+    } else if ("toLowerCase".equals(method) && (target != null)) {
+      return target.toString().toLowerCase(Locale.ENGLISH);
+    } else if ("toUpperCase".equals(method) && (target != null)) {
+      return target.toString().toUpperCase(Locale.ENGLISH);
+    }
+    return null;
+  }
+
+  /** A literal value. */
+  private static class Literal extends DialogExpression {
+    private final Object value;
+
+    Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return value;
+    }
+  }
+
+  /** <code>#intent</code>. */
+  private static class IntentReference extends DialogExpression {
+    private final String intent;
+
+    IntentReference(String intent) {
+      this.intent = intent;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return turn.isIntent(intent);
+    }
+  }
+
+  /** <code>@entity</code>, the value of the first entity of that type. */
+  static class EntityReference extends DialogExpression {
+    private final String entity;
+
+    EntityReference(String entity) {
+      this.entity = entity;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return turn.getEntityValue(entity);
+    }
+  }
+
+  /** <code>@entity:value</code>. */
+  private static class EntityValue extends DialogExpression {
+    private final String entity;
+    private final String value;
+
+    EntityValue(String entity, String value) {
+      this.entity = entity;
+      this.value = value;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return turn.hasEntity(entity, value);
+    }
+  }
+
+  /** <code>$variable</code>, a context variable. */
+  static class Variable extends DialogExpression {
+    private final String name;
+
+    Variable(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return turn.getContext().get(name);
+    }
+  }
+
+  /** A global name such as <code>intents</code> or <code>conversation_start</code>. */
+  private static class Global extends DialogExpression {
+    private final String name;
+
+    Global(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      if ("conversation_start".equals(name)) {
+        return turn.isFirstTurn();
+      } else if ("anything_else".equals(name)) {
+        return Boolean.TRUE;
+      } else if ("intents".equals(name)) {
+        return turn.getIntentMaps();
+      } else if ("entities".equals(name)) {
+        return turn.getEntityMaps();
+      } else if ("context".equals(name)) {
+        return turn.getContext();
+      } else if ("input".equals(name)) {
+        return Collections.singletonMap("text", turn.getInputText());
+      } else if ("now".equals(name)) {
+        return new SimpleDateFormat(DATE_TIME_FORMAT, Locale.ENGLISH).format(turn.getNow());
+      }
+      return null;
+    }
+  }
+
+  /** <code>!expression</code>. */
+  private static class Not extends DialogExpression {
+    private final DialogExpression operand;
+
+    Not(DialogExpression operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      return !operand.test(turn);
+    }
+  }
+
+  /** <code>&amp;&amp;</code> and <code>||</code>. */
+  private static class Logical extends DialogExpression {
+    private final boolean and;
+    private final DialogExpression left;
+    private final DialogExpression right;
+
+    Logical(boolean and, DialogExpression left, DialogExpression right) {
+      this.and = and;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      boolean first = left.test(turn);
+      if (and) {
+        return first && right.test(turn);
+      }
+      return first || right.test(turn);
+    }
+  }
+
+  /** Comparisons. */
+  private static class Comparison extends DialogExpression {
+    private final String operator;
+    private final DialogExpression left;
+    private final DialogExpression right;
+
+    Comparison(String operator, DialogExpression left, DialogExpression right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      Object l = left.evaluate(turn);
+      Object r = right.evaluate(turn);
+      if ("==".equals(operator)) {
+        return equalValues(l, r);
+      } else if ("!=".equals(operator)) {
+        return !equalValues(l, r);
+      }
+      Double ln = toNumber(l);
+      Double rn = toNumber(r);
+      if ((ln == null) || (rn == null)) {
+        return Boolean.FALSE;
+      }
+      int compared = ln.compareTo(rn);
+      if ("<".equals(operator)) {
+        return compared < 0;
+      } else if (">".equals(operator)) {
+        return compared > 0;
+      } else if ("<=".equals(operator)) {
+        return compared <= 0;
+      }
+      return compared >= 0;
+    }
+  }
+
+  /** <code>+</code> and <code>-</code>. Adding a value which is not a number concatenates text. */
+  private static class Arithmetic extends DialogExpression {
+    private final boolean add;
+    private final DialogExpression left;
+    private final DialogExpression right;
+
+    Arithmetic(boolean add, DialogExpression left, DialogExpression right) {
+      this.add = add;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      Object l = left.evaluate(turn);
+      Object r = right.evaluate(turn);
+      Double ln = l == null ? Double.valueOf(0) : toNumber(l);
+      Double rn = toNumber(r);
+      if ((ln != null) && (rn != null)) {
+        return add ? ln + rn : ln - rn;
+      }
+      if (add) {
+        return toText(l) + toText(r);
+      }
+      return null;
+    }
+  }
+
+  /** <code>target.method(arguments)</code>. */
+  private static class MethodCall extends DialogExpression {
+    private final DialogExpression target;
+    private final String method;
+    private final List<DialogExpression> arguments;
+
+    MethodCall(DialogExpression target, String method, List<DialogExpression> arguments) {
+      this.target = target;
+      this.method = method;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      List<Object> values = new ArrayList<Object>(arguments.size());
+      for (DialogExpression argument : arguments) {
+        values.add(argument.evaluate(turn));
+      }
+      return callMethod(target.evaluate(turn), method, values);
+    }
+  }
+
+  /** <code>target.property</code>. */
+  private static class Property extends DialogExpression {
+    private final DialogExpression target;
+    private final String name;
+
+    Property(DialogExpression target, String name) {
+      this.target = target;
+      this.name = name;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      Object value = target.evaluate(turn);
+      return value instanceof Map ? ((Map<?, ?>) value).get(name) : null;
+    }
+  }
+
+  /** <code>target[index]</code>. */
+  private static class Index extends DialogExpression {
+    private final DialogExpression target;
+    private final DialogExpression index;
+
+    Index(DialogExpression target, DialogExpression index) {
+      this.target = target;
+      this.index = index;
+    }
+
+    @Override
+    public Object evaluate(DialogTurn turn) {
+      Object value = target.evaluate(turn);
+      Object key = index.evaluate(turn);
+      if (value instanceof List) {
+        Double position = toNumber(key);
+        List<?> list = (List<?>) value;
+        if ((position != null) && (position >= 0) && (position < list.size())) {
+          return list.get(position.intValue());
+        }
+      } else if (value instanceof Map) {
+        return ((Map<?, ?>) value).get(toText(key));
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Recursive descent parser of the expression language.
+   */
+  private static class Parser {
+    private static final String[] COMPARISONS = { "==", "!=", "<=", ">=", "<", ">" };
+    private static final Map<String, Object> KEYWORDS = new HashMap<String, Object>();
+
+    static {
+      KEYWORDS.put("true", Boolean.TRUE);
+      KEYWORDS.put("false", Boolean.FALSE);
+      KEYWORDS.put("null", null);
+    }
+
+    private final String text;
+    private int pos;
+
+    Parser(String text) {
+      this.text = text;
+    }
+
+    DialogExpression parseAll() {
+      DialogExpression expression = parseOr();
+      skipWhitespace();
+      if (pos < text.length()) {
+        throw error();
+      }
+      return expression;
+    }
+
+    private DialogExpression parseOr() {
+      DialogExpression left = parseAnd();
+      while (consume("||")) {
+        left = new Logical(false, left, parseAnd());
+      }
+      return left;
+    }
+
+    private DialogExpression parseAnd() {
+      DialogExpression left = parseUnary();
+      while (consume("&&")) {
+        left = new Logical(true, left, parseUnary());
+      }
+      return left;
+    }
+
+    private DialogExpression parseUnary() {
+      skipWhitespace();
+      if ((pos < text.length()) && (text.charAt(pos) == '!') && !text.startsWith("!=", pos)) {
+        pos++;
+        return new Not(parseUnary());
+      }
+      return parseComparison();
+    }
+
+    private DialogExpression parseComparison() {
+      DialogExpression left = parseAdditive();
+      for (String operator : COMPARISONS) {
+        if (consume(operator)) {
+          return new Comparison(operator, left, parseAdditive());
+        }
+      }
+      return left;
+    }
+
+    private DialogExpression parseAdditive() {
+      DialogExpression left = parsePostfix();
+      while (true) {
+        if (consume("+")) {
+          left = new Arithmetic(true, left, parsePostfix());
+        } else if (consume("-")) {
+          left = new Arithmetic(false, left, parsePostfix());
+        } else {
+          return left;
+        }
+      }
+    }
+
+    private DialogExpression parsePostfix() {
+      DialogExpression expression = parsePrimary();
+      while (true) {
+        if (consume(".")) {
+          String name = readName(false);
+          if (consume("(")) {
+            expression = new MethodCall(expression, name, parseArguments());
+          } else {
+            expression = new Property(expression, name);
+          }
+        } else if (consume("[")) {
+          DialogExpression index = parseOr();
+          expect("]");
+          expression = new Index(expression, index);
+        } else {
+          return expression;
+        }
+      }
+    }
+
+    private List<DialogExpression> parseArguments() {
+      List<DialogExpression> arguments = new ArrayList<DialogExpression>();
+      if (consume(")")) {
+        return arguments;
+      }
+      do {
+        arguments.add(parseOr());
+      } while (consume(","));
+      expect(")");
+      return arguments;
+    }
+
+    private DialogExpression parsePrimary() {
+      skipWhitespace();
+      if (pos >= text.length()) {
+        throw error();
+      }
+      char c = text.charAt(pos);
+      if (c == '(') {
+        pos++;
+        DialogExpression expression = parseOr();
+        expect(")");
+        return expression;
+      } else if (c == '#') {
+        pos++;
+        return new IntentReference(readName(true));
+      } else if (c == '@') {
+        pos++;
+        String entity = readName(true);
+        if ((pos < text.length()) && (text.charAt(pos) == ':')) {
+          pos++;
+          return new EntityValue(entity, readEntityValue());
+        }
+        return new EntityReference(entity);
+      } else if (c == '$') {
+        pos++;
+        return new Variable(readName(false));
+      } else if ((c == '"') || (c == '\'')) {
+        return new Literal(readString(c));
+      } else if (Character.isDigit(c)) {
+        return new Literal(readNumber());
+      } else if (Character.isLetter(c)) {
+        String name = readName(false);
+        if (KEYWORDS.containsKey(name)) {
+          return new Literal(KEYWORDS.get(name));
+        }
+        if ("now".equals(name)) {
+          expect("(");
+          expect(")");
+        } else if (!"conversation_start".equals(name) && !"anything_else".equals(name) && !"intents".equals(name)
+            && !"entities".equals(name) && !"context".equals(name) && !"input".equals(name)) {
+          throw error();
+        }
+        return new Global(name);
+      }
+      throw error();
+    }
+
+    private String readName(boolean allowDash) {
+      int start = pos;
+      while ((pos < text.length()) && (Character.isLetterOrDigit(text.charAt(pos)) || (text.charAt(pos) == '_')
+          || (allowDash && (text.charAt(pos) == '-')))) {
+        pos++;
+      }
+      if (start == pos) {
+        throw error();
+      }
+      return text.substring(start, pos);
+    }
+
+    private String readEntityValue() {
+      if ((pos < text.length()) && (text.charAt(pos) == '(')) {
+        int end = text.indexOf(')', pos);
+        if (end < 0) {
+          throw error();
+        }
+        String value = text.substring(pos + 1, end);
+        pos = end + 1;
+        return value;
+      }
+      return readName(true);
+    }
+
+    private String readString(char quote) {
+      StringBuilder value = new StringBuilder();
+      pos++;
+      while (pos < text.length()) {
+        char c = text.charAt(pos++);
+        if (c == quote) {
+          return value.toString();
+        } else if ((c == '\\') && (pos < text.length())) {
+          value.append(text.charAt(pos++));
+        } else {
+          value.append(c);
+        }
+      }
+      throw error();
+    }
+
+    private Double readNumber() {
+      int start = pos;
+      while ((pos < text.length()) && (Character.isDigit(text.charAt(pos)) || (text.charAt(pos) == '.'))) {
+        pos++;
+      }
+      try {
+        return Double.valueOf(text.substring(start, pos));
+      } catch (NumberFormatException e) {
+        throw error();
+      }
+    }
+
+    private boolean consume(String token) {
+      skipWhitespace();
+      if (text.startsWith(token, pos)) {
+        pos += token.length();
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      if (!consume(token)) {
+        throw error();
+      }
+    }
+
+    private void skipWhitespace() {
+      while ((pos < text.length()) && Character.isWhitespace(text.charAt(pos))) {
+        pos++;
+      }
+    }
+
+    private IllegalArgumentException error() {
+      return new IllegalArgumentException("Unsupported expression at " + pos + ": " + text);
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled dialog node of a workspace.
+ */
+public class DialogNode {
+
+  /** How a <code>go_to</code> continues at its target. */
+  public enum Selector {
+    /** Evaluate the condition of the target, then of its next siblings. */
+    CONDITION,
+    /** Run the target without evaluating its condition. */
+    BODY,
+    /** Wait for the user, then evaluate the condition of the target and of its next siblings. */
+    USER_INPUT
+  }
+
+  private final String id;
+  private final String parent;
+  private final String previousSibling;
+  private final boolean responseCondition;
+  private final DialogExpression condition;
+  private final List<DialogTemplate> texts;
+  private final boolean randomText;
+  private final Map<String, Object> action;
+  private final Map<String, Object> context;
+  private final String goTo;
+  private final Selector goToSelector;
+
+  private final List<DialogNode> children = new ArrayList<DialogNode>();
+  private final List<DialogNode> responses = new ArrayList<DialogNode>();
+  private DialogNode nextSibling;
+
+  /**
+   * Instantiates a new dialog node.
+   *
+   * @param id the node id
+   * @param parent the parent id, or null for root nodes
+   * @param previousSibling the id of the previous sibling, or null for the first child
+   * @param responseCondition true if the node is a conditional response of its parent
+   * @param condition the condition, or null if the node never matches
+   * @param texts the output texts, or null if the node has no text
+   * @param randomText true to pick a random text, false to cycle through the texts
+   * @param action the output action: templates and other values by name, or null if the node has no action
+   * @param context the context assignments: templates and other values by name
+   * @param goTo the id of the node to continue at, or null
+   * @param goToSelector how to continue at that node
+   */
+  public DialogNode(String id, String parent, String previousSibling, boolean responseCondition,
+      DialogExpression condition, List<DialogTemplate> texts, boolean randomText, Map<String, Object> action,
+      Map<String, Object> context, String goTo, Selector goToSelector) {
+    this.id = id;
+    this.parent = parent;
+    this.previousSibling = previousSibling;
+    this.responseCondition = responseCondition;
+    this.condition = condition;
+    this.texts = texts;
+    this.randomText = randomText;
+    this.action = action;
+    this.context = context == null ? new LinkedHashMap<String, Object>() : context;
+    this.goTo = goTo;
+    this.goToSelector = goToSelector;
+  }
+
+  /**
+   * Tests the node's condition.
+   *
+   * @param turn the turn
+   * @return true if the node matches
+   */
+  public boolean matches(DialogTurn turn) {
+    return (condition != null) && condition.test(turn);
+  }
+
+  /**
+   * Gets the node id.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  String getParent() {
+    return parent;
+  }
+
+  String getPreviousSibling() {
+    return previousSibling;
+  }
+
+  boolean isResponseCondition() {
+    return responseCondition;
+  }
+
+  List<DialogTemplate> getTexts() {
+    return texts;
+  }
+
+  boolean isRandomText() {
+    return randomText;
+  }
+
+  Map<String, Object> getAction() {
+    return action;
+  }
+
+  Map<String, Object> getContext() {
+    return context;
+  }
+
+  String getGoTo() {
+    return goTo;
+  }
+
+  Selector getGoToSelector() {
+    return goToSelector;
+  }
+
+  List<DialogNode> getChildren() {
+    return children;
+  }
+
+  List<DialogNode> getResponses() {
+    return responses;
+  }
+
+  DialogNode getNextSibling() {
+    return nextSibling;
+  }
+
+  void setNextSibling(DialogNode nextSibling) {
+    this.nextSibling = nextSibling;
+  }
+}
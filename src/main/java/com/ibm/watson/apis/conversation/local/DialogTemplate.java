@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled output text or context value. <code>&lt;? expression ?&gt;</code> is replaced with the value of the
+ * expression, and the shorthands <code>@entity</code> and <code>$variable</code> with the entity value and the
+ * context variable.
+ */
+public class DialogTemplate {
+
+  private static final String EXPRESSION_START = "<?";
+  private static final String EXPRESSION_END = "?>";
+  private static final Pattern SHORTHAND =
+      Pattern.compile("(?<![\\p{L}\\p{N}])(?:@([\\p{L}][\\p{L}\\p{N}_-]*)|\\$([\\p{L}][\\p{L}\\p{N}_]*))");
+
+  /** Literal text parts are Strings, the other parts are expressions. */
+  private final List<Object> parts;
+
+  private DialogTemplate(List<Object> parts) {
+    this.parts = parts;
+  }
+
+  /**
+   * Compiles a template.
+   *
+   * @param text the template text
+   * @return the template
+   * @throws IllegalArgumentException if an expression is not supported
+   */
+  public static DialogTemplate parse(String text) {
+    List<Object> parts = new ArrayList<Object>();
+    int pos = 0;
+    while (pos < text.length()) {
+      int start = text.indexOf(EXPRESSION_START, pos);
+      int end = start < 0 ? -1 : text.indexOf(EXPRESSION_END, start + EXPRESSION_START.length());
+      if (end < 0) {
+        addLiteral(parts, text.substring(pos));
+        break;
+      }
+      addLiteral(parts, text.substring(pos, start));
+      parts.add(DialogExpression.parse(text.substring(start + EXPRESSION_START.length(), end)));
+      pos = end + EXPRESSION_END.length();
+    }
+    return new DialogTemplate(parts);
+  }
+
+  private static void addLiteral(List<Object> parts, String literal) {
+    Matcher matcher = SHORTHAND.matcher(literal);
+    int last = 0;
+    while (matcher.find()) {
+      if (matcher.start() > last) {
+        parts.add(literal.substring(last, matcher.start()));
+      }
+      parts.add(matcher.group(1) != null ? new DialogExpression.EntityReference(matcher.group(1))
+          : new DialogExpression.Variable(matcher.group(2)));
+      last = matcher.end();
+    }
+    if (last < literal.length()) {
+      parts.add(literal.substring(last));
+    }
+  }
+
+  /**
+   * Renders the template as text.
+   *
+   * @param turn the turn
+   * @return the text
+   */
+  public String render(DialogTurn turn) {
+    StringBuilder text = new StringBuilder();
+    for (Object part : parts) {
+      text.append(part instanceof String ? (String) part : DialogExpression.toText(evaluate((DialogExpression) part,
+          turn)));
+    }
+    return text.toString();
+  }
+
+  /**
+   * Gets the value of the template. A template which is a single expression keeps the type of the expression, so
+   * <code>"&lt;?$counter+1?&gt;"</code> stores a number in the context; any other template is rendered as text.
+   *
+   * @param turn the turn
+   * @return the value
+   */
+  public Object getValue(DialogTurn turn) {
+    if ((parts.size() == 1) && (parts.get(0) instanceof DialogExpression)) {
+      return DialogExpression.normalize(evaluate((DialogExpression) parts.get(0), turn));
+    }
+    return render(turn);
+  }
+
+  private static Object evaluate(DialogExpression expression, DialogTurn turn) {
+    try {
+      return expression.evaluate(turn);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+}
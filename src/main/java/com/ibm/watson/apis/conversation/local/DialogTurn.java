@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+
+/**
+ * The state a {@link DialogExpression} is evaluated against: the user's input, the recognized intents and entities,
+ * and the context of the conversation.
+ */
+public class DialogTurn {
+
+  /** Intents below this confidence do not match <code>#intent</code> conditions. */
+  static final double INTENT_THRESHOLD = 0.2;
+
+  private final String inputText;
+  private final List<Intent> intents;
+  private final List<Entity> entities;
+  private final Map<String, Object> context;
+  private final boolean firstTurn;
+  private final Date now;
+
+  /**
+   * Instantiates a new turn.
+   *
+   * @param inputText the user's input
+   * @param intents the recognized intents, best first
+   * @param entities the recognized entities, in input order
+   * @param context the conversation context, updated by the turn
+   * @param firstTurn true if this is the first turn of the conversation
+   * @param now the time of the turn
+   */
+  public DialogTurn(String inputText, List<Intent> intents, List<Entity> entities, Map<String, Object> context,
+      boolean firstTurn, Date now) {
+    this.inputText = inputText;
+    this.intents = intents;
+    this.entities = entities;
+    this.context = context;
+    this.firstTurn = firstTurn;
+    this.now = now;
+  }
+
+  /**
+   * Gets the user's input.
+   *
+   * @return the input text
+   */
+  public String getInputText() {
+    return inputText;
+  }
+
+  /**
+   * Gets the recognized intents.
+   *
+   * @return the intents, best first
+   */
+  public List<Intent> getIntents() {
+    return intents;
+  }
+
+  /**
+   * Gets the recognized entities.
+   *
+   * @return the entities
+   */
+  public List<Entity> getEntities() {
+    return entities;
+  }
+
+  /**
+   * Gets the conversation context.
+   *
+   * @return the context
+   */
+  public Map<String, Object> getContext() {
+    return context;
+  }
+
+  /**
+   * Returns true if this is the first turn of the conversation.
+   *
+   * @return true on the first turn
+   */
+  public boolean isFirstTurn() {
+    return firstTurn;
+  }
+
+  /**
+   * Gets the time of the turn.
+   *
+   * @return the time
+   */
+  public Date getNow() {
+    return now;
+  }
+
+  /**
+   * Returns true if the given intent is the best intent and it is confident enough.
+   *
+   * @param intent the intent name
+   * @return true if the intent was recognized
+   */
+  boolean isIntent(String intent) {
+    return !intents.isEmpty() && intents.get(0).getIntent().equals(intent)
+        && (intents.get(0).getConfidence() >= INTENT_THRESHOLD);
+  }
+
+  /**
+   * Gets the value of the first recognized entity of the given type.
+   *
+   * @param entity the entity name
+   * @return the value, or null if the entity was not recognized
+   */
+  String getEntityValue(String entity) {
+    for (Entity recognized : entities) {
+      if (recognized.getEntity().equals(entity)) {
+        return recognized.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns true if an entity of the given type and value was recognized.
+   *
+   * @param entity the entity name
+   * @param value the entity value
+   * @return true if recognized
+   */
+  boolean hasEntity(String entity, String value) {
+    for (Entity recognized : entities) {
+      if (recognized.getEntity().equals(entity) && recognized.getValue().equalsIgnoreCase(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the intents as they appear in the <code>intents</code> array of a response.
+   *
+   * @return the intents as maps
+   */
+  List<Map<String, Object>> getIntentMaps() {
+    List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(intents.size());
+    for (Intent intent : intents) {
+      Map<String, Object> map = new HashMap<String, Object>();
+      map.put("intent", intent.getIntent());
+      map.put("confidence", intent.getConfidence());
+      maps.add(map);
+    }
+    return maps;
+  }
+
+  /**
+   * Gets the entities as they appear in the <code>entities</code> array of a response.
+   *
+   * @return the entities as maps
+   */
+  List<Map<String, Object>> getEntityMaps() {
+    List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(entities.size());
+    for (Entity entity : entities) {
+      Map<String, Object> map = new HashMap<String, Object>();
+      map.put("entity", entity.getEntity());
+      map.put("value", entity.getValue());
+      map.put("location", Arrays.asList(entity.getLocation()));
+      maps.add(map);
+    }
+    return maps;
+  }
+}
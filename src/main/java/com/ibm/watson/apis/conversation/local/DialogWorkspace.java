@@ -0,0 +1,492 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * A workspace compiled for the {@link LocalDialogRuntime}: an {@link IntentClassifier} trained on the intent
+ * examples, an {@link EntityExtractor} for the entity values and the dialog nodes with their conditions parsed. A
+ * turn is answered the way the Conversation service does: the children of the node the conversation is waiting on
+ * are evaluated first, then the root nodes; the first node whose condition holds runs, applies its context, adds its
+ * text and action to the output and follows its <code>go_to</code>. The position in the dialog is kept in
+ * <code>context.system.dialog_stack</code>.
+ */
+public class DialogWorkspace {
+  private static final Logger logger = LogManager.getLogger(DialogWorkspace.class.getName());
+
+  private static final String ROOT = "root";
+  private static final String SYSTEM = "system";
+  private static final String DIALOG_NODE = "dialog_node";
+  private static final String DIALOG_STACK = "dialog_stack";
+  private static final String NODE_OUTPUT_MAP = "_node_output_map";
+  private static final String SELECTOR = "selector";
+  private static final String USER_INPUT = "user_input";
+  private static final int MAX_INTENTS = 10;
+  private static final int MAX_JUMPS = 20;
+
+  private final IntentClassifier classifier;
+  private final EntityExtractor extractor;
+  private final Map<String, DialogNode> nodes;
+  private final DialogNode firstRoot;
+  private final int invalidConditions;
+  private final Random random = new Random();
+
+  private DialogWorkspace(IntentClassifier classifier, EntityExtractor extractor, Map<String, DialogNode> nodes,
+      DialogNode firstRoot, int invalidConditions) {
+    this.classifier = classifier;
+    this.extractor = extractor;
+    this.nodes = nodes;
+    this.firstRoot = firstRoot;
+    this.invalidConditions = invalidConditions;
+  }
+
+  /**
+   * Compiles a workspace from its JSON export.
+   *
+   * @param reader the workspace JSON
+   * @return the compiled workspace
+   */
+  public static DialogWorkspace load(Reader reader) {
+    JsonObject workspace = new JsonParser().parse(reader).getAsJsonObject();
+
+    Map<String, List<String>> examples = new LinkedHashMap<String, List<String>>();
+    for (JsonElement intent : getArray(workspace, "intents")) {
+      List<String> texts = new ArrayList<String>();
+      for (JsonElement example : getArray(intent.getAsJsonObject(), "examples")) {
+        texts.add(getString(example.getAsJsonObject(), "text"));
+      }
+      examples.put(getString(intent.getAsJsonObject(), "intent"), texts);
+    }
+    List<String> counterexamples = new ArrayList<String>();
+    for (JsonElement counterexample : getArray(workspace, "counterexamples")) {
+      counterexamples.add(getString(counterexample.getAsJsonObject(), "text"));
+    }
+
+    Map<String, Map<String, List<String>>> entities = new LinkedHashMap<String, Map<String, List<String>>>();
+    Set<String> systemEntities = new HashSet<String>();
+    for (JsonElement element : getArray(workspace, "entities")) {
+      JsonObject entity = element.getAsJsonObject();
+      String name = getString(entity, "entity");
+      if (name.startsWith("sys-")) {
+        systemEntities.add(name);
+        continue;
+      }
+      Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+      for (JsonElement value : getArray(entity, "values")) {
+        List<String> synonyms = new ArrayList<String>();
+        for (JsonElement synonym : getArray(value.getAsJsonObject(), "synonyms")) {
+          synonyms.add(synonym.getAsString());
+        }
+        values.put(getString(value.getAsJsonObject(), "value"), synonyms);
+      }
+      entities.put(name, values);
+    }
+
+    Map<String, DialogNode> nodes = new LinkedHashMap<String, DialogNode>();
+    int invalid = 0;
+    for (JsonElement element : getArray(workspace, "dialog_nodes")) {
+      JsonObject json = element.getAsJsonObject();
+      String id = getString(json, DIALOG_NODE);
+      boolean responseCondition = "response_condition".equals(getString(json, "type"));
+      String conditions = getString(json, "conditions");
+      DialogExpression condition = null;
+      if ((conditions == null) || conditions.trim().isEmpty()) {
+        // a conditional response without a condition is the default response
+        condition = responseCondition ? DialogExpression.parse("true") : null;
+      } else {
+        try {
+          condition = DialogExpression.parse(conditions);
+        } catch (IllegalArgumentException e) {
+          invalid++;
+          logger.warn(Messages.getString("DialogWorkspace.INVALID_CONDITION") + id + ": " + e.getMessage());
+        }
+      }
+
+      List<DialogTemplate> texts = null;
+      boolean randomText = false;
+      Map<String, Object> action = null;
+      Map<String, Object> context = null;
+      try {
+        JsonObject output = getObject(json, "output");
+        if (output != null) {
+          JsonElement text = output.get("text");
+          if ((text != null) && text.isJsonPrimitive()) {
+            texts = Collections.singletonList(DialogTemplate.parse(text.getAsString()));
+          } else if ((text != null) && text.isJsonObject()) {
+            texts = new ArrayList<DialogTemplate>();
+            for (JsonElement value : getArray(text.getAsJsonObject(), "values")) {
+              texts.add(DialogTemplate.parse(value.getAsString()));
+            }
+            randomText = "random".equals(getString(text.getAsJsonObject(), "selection_policy"));
+          }
+          action = compileValues(getObject(output, "action"));
+        }
+        context = compileValues(getObject(json, "context"));
+      } catch (IllegalArgumentException e) {
+        invalid++;
+        logger.warn(Messages.getString("DialogWorkspace.INVALID_OUTPUT") + id + ": " + e.getMessage());
+        texts = null;
+        action = null;
+        context = null;
+      }
+
+      String goTo = null;
+      DialogNode.Selector selector = null;
+      JsonObject goToJson = getObject(json, "go_to");
+      if (goToJson != null) {
+        goTo = getString(goToJson, DIALOG_NODE);
+        String selectorName = getString(goToJson, SELECTOR);
+        selector = selectorName == null ? DialogNode.Selector.CONDITION
+            : DialogNode.Selector.valueOf(selectorName.toUpperCase());
+      }
+
+      nodes.put(id, new DialogNode(id, getString(json, "parent"), getString(json, "previous_sibling"),
+          responseCondition, condition, texts, randomText, action, context, goTo, selector));
+    }
+
+    DialogNode firstRoot = linkSiblings(nodes);
+    return new DialogWorkspace(new IntentClassifier(examples, counterexamples),
+        new EntityExtractor(entities, systemEntities), nodes, firstRoot, invalid);
+  }
+
+  /**
+   * Orders the children of every node by their <code>previous_sibling</code> and links them.
+   *
+   * @return the first root node
+   */
+  private static DialogNode linkSiblings(Map<String, DialogNode> nodes) {
+    Map<String, List<DialogNode>> byParent = new LinkedHashMap<String, List<DialogNode>>();
+    for (DialogNode node : nodes.values()) {
+      String parent = node.getParent() == null ? ROOT : node.getParent();
+      List<DialogNode> siblings = byParent.get(parent);
+      if (siblings == null) {
+        siblings = new ArrayList<DialogNode>();
+        byParent.put(parent, siblings);
+      }
+      siblings.add(node);
+    }
+
+    List<DialogNode> roots = Collections.emptyList();
+    for (Map.Entry<String, List<DialogNode>> family : byParent.entrySet()) {
+      List<DialogNode> ordered = orderSiblings(family.getValue());
+      DialogNode parent = nodes.get(family.getKey());
+      List<DialogNode> children = new ArrayList<DialogNode>();
+      for (DialogNode node : ordered) {
+        if (node.isResponseCondition() && (parent != null)) {
+          parent.getResponses().add(node);
+        } else {
+          children.add(node);
+        }
+      }
+      for (int i = 1; i < children.size(); i++) {
+        children.get(i - 1).setNextSibling(children.get(i));
+      }
+      if (parent != null) {
+        parent.getChildren().addAll(children);
+      } else if (ROOT.equals(family.getKey())) {
+        roots = children;
+      }
+    }
+    return roots.isEmpty() ? null : roots.get(0);
+  }
+
+  private static List<DialogNode> orderSiblings(List<DialogNode> siblings) {
+    Map<String, DialogNode> byPrevious = new HashMap<String, DialogNode>();
+    Set<String> ids = new HashSet<String>();
+    for (DialogNode node : siblings) {
+      ids.add(node.getId());
+    }
+    DialogNode first = null;
+    for (DialogNode node : siblings) {
+      if ((node.getPreviousSibling() == null) || !ids.contains(node.getPreviousSibling())) {
+        if (first == null) {
+          first = node;
+        }
+      } else {
+        byPrevious.put(node.getPreviousSibling(), node);
+      }
+    }
+    List<DialogNode> ordered = new ArrayList<DialogNode>(siblings.size());
+    Set<DialogNode> seen = new HashSet<DialogNode>();
+    for (DialogNode node = first; (node != null) && seen.add(node); node = byPrevious.get(node.getId())) {
+      ordered.add(node);
+    }
+    // keep nodes with a broken sibling chain, in file order
+    for (DialogNode node : siblings) {
+      if (!seen.contains(node)) {
+        ordered.add(node);
+      }
+    }
+    return ordered;
+  }
+
+  /**
+   * Answers a message.
+   *
+   * @param request the message request
+   * @return the message response
+   */
+  @SuppressWarnings("unchecked")
+  public MessageResponse message(MessageRequest request) {
+    String text = request.inputText() == null ? "" : request.inputText();
+    Map<String, Object> context = request.context() == null ? new LinkedHashMap<String, Object>()
+        : new LinkedHashMap<String, Object>(request.context());
+    Map<String, Object> system = context.get(SYSTEM) instanceof Map
+        ? new LinkedHashMap<String, Object>((Map<String, Object>) context.get(SYSTEM)) : null;
+    boolean firstTurn = system == null;
+    if (system == null) {
+      system = new LinkedHashMap<String, Object>();
+    }
+    Map<String, Object> outputCounts = system.get(NODE_OUTPUT_MAP) instanceof Map
+        ? new LinkedHashMap<String, Object>((Map<String, Object>) system.get(NODE_OUTPUT_MAP))
+        : new LinkedHashMap<String, Object>();
+
+    Date now = new Date();
+    List<Intent> intents = classifier.classify(text,
+        Boolean.TRUE.equals(request.alternateIntents()) ? MAX_INTENTS : 1);
+    if (!intents.isEmpty() && (intents.get(0).getConfidence() < DialogTurn.INTENT_THRESHOLD)) {
+      intents = Collections.emptyList();
+    }
+    List<Entity> entities = extractor.extract(text, now);
+    DialogTurn turn = new DialogTurn(text, intents, entities, context, firstTurn, now);
+
+    List<String> texts = new ArrayList<String>();
+    List<String> visited = new ArrayList<String>();
+    Map<String, Object> action = new LinkedHashMap<String, Object>();
+    Map<String, Object> next = run(findStart(system, turn), turn, texts, visited, action, outputCounts);
+
+    system.put(DIALOG_STACK, Collections.singletonList(next));
+    system.put("dialog_turn_counter", getCounter(system, "dialog_turn_counter") + 1);
+    system.put("dialog_request_counter", getCounter(system, "dialog_request_counter") + 1);
+    system.put(NODE_OUTPUT_MAP, outputCounts);
+    context.put(SYSTEM, system);
+    if (context.get("conversation_id") == null) {
+      context.put("conversation_id", UUID.randomUUID().toString());
+    }
+
+    Map<String, Object> output = new LinkedHashMap<String, Object>();
+    output.put("text", texts);
+    output.put("nodes_visited", visited);
+    output.put("log_messages", new ArrayList<Object>());
+    if (!action.isEmpty()) {
+      output.put("action", action);
+    }
+    Map<String, Object> input = request.input() == null ? new LinkedHashMap<String, Object>()
+        : new LinkedHashMap<String, Object>(request.input());
+    input.put("text", text);
+
+    MessageResponse response = new MessageResponse();
+    response.setInput(input);
+    response.setIntents(new ArrayList<Intent>(intents));
+    response.setEntities(entities);
+    response.setOutput(output);
+    response.setContext(context);
+    return response;
+  }
+
+  /**
+   * Finds the node which answers the turn: a child of the node the conversation waits on, else a root node.
+   */
+  @SuppressWarnings("unchecked")
+  private DialogNode findStart(Map<String, Object> system, DialogTurn turn) {
+    Object stack = system.get(DIALOG_STACK);
+    if ((stack instanceof List) && !((List<?>) stack).isEmpty() && (((List<?>) stack).get(0) instanceof Map)) {
+      Map<String, Object> top = (Map<String, Object>) ((List<?>) stack).get(0);
+      DialogNode waiting = nodes.get(String.valueOf(top.get(DIALOG_NODE)));
+      if (waiting != null) {
+        DialogNode match = USER_INPUT.equals(top.get(SELECTOR)) ? findMatch(waiting, turn)
+            : findMatch(waiting.getChildren().isEmpty() ? null : waiting.getChildren().get(0), turn);
+        if (match != null) {
+          return match;
+        }
+      }
+    }
+    return findMatch(firstRoot, turn);
+  }
+
+  /**
+   * Finds the first node, from the given node through its next siblings, whose condition holds.
+   */
+  private static DialogNode findMatch(DialogNode first, DialogTurn turn) {
+    for (DialogNode node = first; node != null; node = node.getNextSibling()) {
+      if (node.matches(turn)) {
+        return node;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Runs a node and the nodes it jumps to.
+   *
+   * @return the dialog stack entry the conversation waits on afterwards
+   */
+  private Map<String, Object> run(DialogNode start, DialogTurn turn, List<String> texts, List<String> visited,
+      Map<String, Object> action, Map<String, Object> outputCounts) {
+    Map<String, Object> next = new LinkedHashMap<String, Object>();
+    next.put(DIALOG_NODE, ROOT);
+    DialogNode node = start;
+    for (int jumps = 0; (node != null) && (jumps < MAX_JUMPS); jumps++) {
+      visited.add(node.getId());
+      applyContext(node, turn);
+      addOutput(node, turn, texts, action, outputCounts);
+      for (DialogNode response : node.getResponses()) {
+        if (response.matches(turn)) {
+          applyContext(response, turn);
+          addOutput(response, turn, texts, action, outputCounts);
+          break;
+        }
+      }
+
+      DialogNode target = node.getGoTo() == null ? null : nodes.get(node.getGoTo());
+      if (target == null) {
+        if (!node.getChildren().isEmpty()) {
+          next.put(DIALOG_NODE, node.getId());
+        }
+        return next;
+      }
+      switch (node.getGoToSelector()) {
+        case BODY:
+          node = target;
+          break;
+        case USER_INPUT:
+          next.put(DIALOG_NODE, target.getId());
+          next.put(SELECTOR, USER_INPUT);
+          return next;
+        default:
+          node = findMatch(target, turn);
+          break;
+      }
+    }
+    return next;
+  }
+
+  private static void applyContext(DialogNode node, DialogTurn turn) {
+    for (Map.Entry<String, Object> assignment : node.getContext().entrySet()) {
+      Object value = assignment.getValue();
+      turn.getContext().put(assignment.getKey(),
+          value instanceof DialogTemplate ? ((DialogTemplate) value).getValue(turn) : value);
+    }
+  }
+
+  private void addOutput(DialogNode node, DialogTurn turn, List<String> texts, Map<String, Object> action,
+      Map<String, Object> outputCounts) {
+    List<DialogTemplate> templates = node.getTexts();
+    if ((templates != null) && !templates.isEmpty()) {
+      int index;
+      if (node.isRandomText()) {
+        index = random.nextInt(templates.size());
+      } else {
+        Object count = outputCounts.get(node.getId());
+        int shown = count instanceof Number ? ((Number) count).intValue() : 0;
+        index = shown % templates.size();
+        outputCounts.put(node.getId(), shown + 1);
+      }
+      String text = templates.get(index).render(turn).trim();
+      if (!text.isEmpty()) {
+        texts.add(text);
+      }
+    }
+    if (node.getAction() != null) {
+      for (Map.Entry<String, Object> entry : node.getAction().entrySet()) {
+        Object value = entry.getValue();
+        action.put(entry.getKey(), value instanceof DialogTemplate ? ((DialogTemplate) value).render(turn) : value);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of dialog conditions and outputs which could not be compiled. Nodes with such a condition never
+   * match, and nodes with such an output or context answer without it.
+   *
+   * @return the number of invalid conditions and outputs
+   */
+  public int getInvalidConditions() {
+    return invalidConditions;
+  }
+
+  /**
+   * Gets the number of dialog nodes.
+   *
+   * @return the number of nodes
+   */
+  public int size() {
+    return nodes.size();
+  }
+
+  private static int getCounter(Map<String, Object> system, String name) {
+    Object value = system.get(name);
+    return value instanceof Number ? ((Number) value).intValue() : 0;
+  }
+
+  /**
+   * Compiles the string values of a context or action object as templates and keeps the other values as they are.
+   */
+  private static Map<String, Object> compileValues(JsonObject json) {
+    if (json == null) {
+      return null;
+    }
+    Map<String, Object> values = new LinkedHashMap<String, Object>();
+    Gson gson = new Gson();
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      JsonElement value = entry.getValue();
+      if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+        values.put(entry.getKey(), DialogTemplate.parse(value.getAsString()));
+      } else {
+        values.put(entry.getKey(), DialogExpression.normalize(gson.fromJson(value, Object.class)));
+      }
+    }
+    return values;
+  }
+
+  private static JsonArray getArray(JsonObject json, String field) {
+    JsonElement value = json.get(field);
+    return (value != null) && value.isJsonArray() ? value.getAsJsonArray() : new JsonArray();
+  }
+
+  private static JsonObject getObject(JsonObject json, String field) {
+    JsonElement value = json.get(field);
+    return (value != null) && value.isJsonObject() ? value.getAsJsonObject() : null;
+  }
+
+  private static String getString(JsonObject json, String field) {
+    JsonElement value = json.get(field);
+    return (value == null) || value.isJsonNull() ? null : value.getAsString();
+  }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+
+/**
+ * Finds the entities of a workspace in the user's input. Entity values and their synonyms are matched as whole
+ * words, case insensitively, preferring the longest match. The system entities <code>sys-number</code>,
+ * <code>sys-date</code> and <code>sys-time</code> are recognized for simple forms such as "3", "three", "tomorrow",
+ * "friday" and "7:30 pm".
+ */
+public class EntityExtractor {
+
+  private static final String SYS_NUMBER = "sys-number";
+  private static final String SYS_DATE = "sys-date";
+  private static final String SYS_TIME = "sys-time";
+
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+(?:'[\\p{L}]+)?");
+  private static final Pattern NUMBER = Pattern.compile("(?<![\\p{L}\\p{N}.:])\\d+(?:\\.\\d+)?(?![\\p{L}\\p{N}:])");
+  private static final Pattern TIME = Pattern.compile(
+      "\\b(\\d{1,2})(?::(\\d{2}))?\\s*(am|pm|a\\.m\\.|p\\.m\\.)|\\b(\\d{1,2}):(\\d{2})\\b|\\b(noon|midnight)\\b");
+  private static final List<String> NUMBER_WORDS = Arrays.asList("zero", "one", "two", "three", "four", "five", "six",
+      "seven", "eight", "nine", "ten", "eleven", "twelve");
+  private static final List<String> WEEKDAYS = Arrays.asList("sunday", "monday", "tuesday", "wednesday", "thursday",
+      "friday", "saturday");
+
+  /** Patterns of each entity value, keyed by their first word. */
+  private final Map<String, List<Synonym>> synonyms = new HashMap<String, List<Synonym>>();
+  private final boolean numbers;
+  private final boolean dates;
+  private final boolean times;
+
+  /**
+   * Instantiates a new entity extractor.
+   *
+   * @param entities the synonyms of each value of each entity, keyed by entity and value
+   * @param systemEntities the system entities used by the workspace
+   */
+  public EntityExtractor(Map<String, Map<String, List<String>>> entities, Set<String> systemEntities) {
+    for (Map.Entry<String, Map<String, List<String>>> entity : entities.entrySet()) {
+      for (Map.Entry<String, List<String>> value : entity.getValue().entrySet()) {
+        add(entity.getKey(), value.getKey(), value.getKey());
+        for (String synonym : value.getValue()) {
+          add(entity.getKey(), value.getKey(), synonym);
+        }
+      }
+    }
+    numbers = systemEntities.contains(SYS_NUMBER);
+    dates = systemEntities.contains(SYS_DATE);
+    times = systemEntities.contains(SYS_TIME);
+  }
+
+  private void add(String entity, String value, String synonym) {
+    List<String> words = new ArrayList<String>();
+    Matcher matcher = WORD.matcher(synonym.toLowerCase(Locale.ENGLISH));
+    while (matcher.find()) {
+      words.add(matcher.group());
+    }
+    if (words.isEmpty()) {
+      return;
+    }
+    List<Synonym> list = synonyms.get(words.get(0));
+    if (list == null) {
+      list = new ArrayList<Synonym>();
+      synonyms.put(words.get(0), list);
+    }
+    list.add(new Synonym(entity, value, words.toArray(new String[words.size()])));
+  }
+
+  /**
+   * Finds the entities in an input.
+   *
+   * @param text the user's input
+   * @param now the time the relative dates are resolved against
+   * @return the entities, in input order
+   */
+  public List<Entity> extract(String text, Date now) {
+    List<Entity> entities = new ArrayList<Entity>();
+    if ((text == null) || text.isEmpty()) {
+      return entities;
+    }
+    String lower = text.toLowerCase(Locale.ENGLISH);
+    findSynonyms(lower, entities);
+    if (numbers) {
+      findNumbers(lower, entities);
+    }
+    if (times) {
+      findTimes(lower, entities);
+    }
+    if (dates) {
+      findDates(lower, now, entities);
+    }
+    Collections.sort(entities, new Comparator<Entity>() {
+      @Override
+      public int compare(Entity left, Entity right) {
+        return left.getLocation()[0].compareTo(right.getLocation()[0]);
+      }
+    });
+    return entities;
+  }
+
+  private void findSynonyms(String text, List<Entity> entities) {
+    List<int[]> spans = new ArrayList<int[]>();
+    List<String> words = new ArrayList<String>();
+    Matcher matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      spans.add(new int[] { matcher.start(), matcher.end() });
+      words.add(matcher.group());
+    }
+
+    Map<String, int[]> longest = new HashMap<String, int[]>();
+    Map<String, String> values = new HashMap<String, String>();
+    for (int i = 0; i < words.size(); i++) {
+      List<Synonym> candidates = synonyms.get(words.get(i));
+      if (candidates == null) {
+        continue;
+      }
+      for (Synonym synonym : candidates) {
+        if (synonym.matches(words, i)) {
+          int start = spans.get(i)[0];
+          int end = spans.get(i + synonym.words.length - 1)[1];
+          String key = synonym.entity + '|' + start;
+          int[] current = longest.get(key);
+          if ((current == null) || (current[1] < end)) {
+            longest.put(key, new int[] { start, end });
+            values.put(key, synonym.value);
+          }
+        }
+      }
+    }
+
+    for (Map.Entry<String, int[]> match : longest.entrySet()) {
+      String entity = match.getKey().substring(0, match.getKey().lastIndexOf('|'));
+      int[] span = match.getValue();
+      if (!isInsideLongerMatch(entity, span, longest)) {
+        entities.add(new Entity(entity, values.get(match.getKey()), new Integer[] { span[0], span[1] }));
+      }
+    }
+  }
+
+  private static boolean isInsideLongerMatch(String entity, int[] span, Map<String, int[]> matches) {
+    for (Map.Entry<String, int[]> other : matches.entrySet()) {
+      int[] otherSpan = other.getValue();
+      if ((otherSpan != span) && other.getKey().startsWith(entity + '|') && (otherSpan[0] <= span[0])
+          && (otherSpan[1] >= span[1]) && ((otherSpan[1] - otherSpan[0]) > (span[1] - span[0]))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void findNumbers(String text, List<Entity> entities) {
+    Matcher matcher = NUMBER.matcher(text);
+    while (matcher.find()) {
+      entities.add(new Entity(SYS_NUMBER, normalizeNumber(matcher.group()),
+          new Integer[] { matcher.start(), matcher.end() }));
+    }
+    matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      int number = NUMBER_WORDS.indexOf(matcher.group());
+      if (number >= 0) {
+        entities.add(new Entity(SYS_NUMBER, String.valueOf(number), new Integer[] { matcher.start(), matcher.end() }));
+      }
+    }
+  }
+
+  private static String normalizeNumber(String number) {
+    double value = Double.parseDouble(number);
+    return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+  }
+
+  private static void findTimes(String text, List<Entity> entities) {
+    Matcher matcher = TIME.matcher(text);
+    while (matcher.find()) {
+      int hour;
+      int minute;
+      if (matcher.group(1) != null) {
+        hour = Integer.parseInt(matcher.group(1)) % 12;
+        minute = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+        if (matcher.group(3).startsWith("p")) {
+          hour += 12;
+        }
+      } else if (matcher.group(4) != null) {
+        hour = Integer.parseInt(matcher.group(4));
+        minute = Integer.parseInt(matcher.group(5));
+      } else {
+        hour = "noon".equals(matcher.group(6)) ? 12 : 0;
+        minute = 0;
+      }
+      if ((hour < 24) && (minute < 60)) {
+        entities.add(new Entity(SYS_TIME, String.format(Locale.ENGLISH, "%02d:%02d:00", hour, minute),
+            new Integer[] { matcher.start(), matcher.end() }));
+      }
+    }
+  }
+
+  private static void findDates(String text, Date now, List<Entity> entities) {
+    Matcher matcher = WORD.matcher(text);
+    while (matcher.find()) {
+      String word = matcher.group();
+      Calendar calendar = Calendar.getInstance();
+      calendar.setTime(now);
+      if ("tomorrow".equals(word)) {
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+      } else if ("yesterday".equals(word)) {
+        calendar.add(Calendar.DAY_OF_MONTH, -1);
+      } else if (WEEKDAYS.contains(word)) {
+        int days = ((WEEKDAYS.indexOf(word) + 1) - calendar.get(Calendar.DAY_OF_WEEK) + 7) % 7;
+        calendar.add(Calendar.DAY_OF_MONTH, days);
+      } else if (!"today".equals(word) && !"tonight".equals(word)) {
+        continue;
+      }
+      entities.add(new Entity(SYS_DATE, new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH).format(calendar.getTime()),
+          new Integer[] { matcher.start(), matcher.end() }));
+    }
+  }
+
+  /**
+   * The words of a value or synonym.
+   */
+  private static class Synonym {
+    private final String entity;
+    private final String value;
+    private final String[] words;
+
+    Synonym(String entity, String value, String[] words) {
+      this.entity = entity;
+      this.value = value;
+      this.words = words;
+    }
+
+    boolean matches(List<String> input, int start) {
+      if ((start + words.length) > input.size()) {
+        return false;
+      }
+      for (int i = 0; i < words.length; i++) {
+        if (!words[i].equals(input.get(start + i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
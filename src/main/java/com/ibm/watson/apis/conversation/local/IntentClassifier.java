@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+
+/**
+ * Classifies the user's input into the intents of a workspace. Every example of every intent is stored as a
+ * normalized TF-IDF vector of its words and word pairs; the confidence of an intent is the cosine similarity of the
+ * input to its closest example. Counterexamples are stored the same way, and an input closest to a counterexample
+ * has no intent.
+ */
+public class IntentClassifier {
+
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+  /** The intent of each example, or null for counterexamples. */
+  private final String[] exampleIntents;
+  private final Map<String, Integer> features;
+  private final float[] idf;
+  /** The weight of words which are not in any example, which lowers the confidence of inputs containing them. */
+  private final float unknownIdf;
+  /** For each feature, the examples containing it and the feature's weight in each. */
+  private final int[][] postingExamples;
+  private final float[][] postingWeights;
+
+  /**
+   * Trains a classifier.
+   *
+   * @param examples the examples of each intent
+   * @param counterexamples inputs which should not match any intent
+   */
+  public IntentClassifier(Map<String, List<String>> examples, List<String> counterexamples) {
+    List<String> intents = new ArrayList<String>();
+    List<List<String>> documents = new ArrayList<List<String>>();
+    for (Map.Entry<String, List<String>> intent : examples.entrySet()) {
+      for (String example : intent.getValue()) {
+        intents.add(intent.getKey());
+        documents.add(extractFeatures(example));
+      }
+    }
+    for (String counterexample : counterexamples) {
+      intents.add(null);
+      documents.add(extractFeatures(counterexample));
+    }
+    exampleIntents = intents.toArray(new String[intents.size()]);
+
+    features = new HashMap<String, Integer>();
+    List<Integer> documentFrequencies = new ArrayList<Integer>();
+    for (List<String> document : documents) {
+      for (String feature : new HashSet<String>(document)) {
+        Integer id = features.get(feature);
+        if (id == null) {
+          features.put(feature, features.size());
+          documentFrequencies.add(1);
+        } else {
+          documentFrequencies.set(id, documentFrequencies.get(id) + 1);
+        }
+      }
+    }
+    idf = new float[features.size()];
+    for (int i = 0; i < idf.length; i++) {
+      idf[i] = (float) (Math.log((double) documents.size() / documentFrequencies.get(i)) + 1);
+    }
+    unknownIdf = (float) (Math.log(Math.max(1, documents.size())) + 1);
+
+    List<List<Integer>> postings = new ArrayList<List<Integer>>(features.size());
+    List<List<Float>> weights = new ArrayList<List<Float>>(features.size());
+    for (int i = 0; i < features.size(); i++) {
+      postings.add(new ArrayList<Integer>());
+      weights.add(new ArrayList<Float>());
+    }
+    for (int example = 0; example < documents.size(); example++) {
+      Map<Integer, Float> vector = vectorize(documents.get(example));
+      for (Map.Entry<Integer, Float> weight : vector.entrySet()) {
+        postings.get(weight.getKey()).add(example);
+        weights.get(weight.getKey()).add(weight.getValue());
+      }
+    }
+    postingExamples = new int[features.size()][];
+    postingWeights = new float[features.size()][];
+    for (int i = 0; i < features.size(); i++) {
+      postingExamples[i] = new int[postings.get(i).size()];
+      postingWeights[i] = new float[postings.get(i).size()];
+      for (int j = 0; j < postingExamples[i].length; j++) {
+        postingExamples[i][j] = postings.get(i).get(j);
+        postingWeights[i][j] = weights.get(i).get(j);
+      }
+    }
+  }
+
+  /**
+   * Classifies an input.
+   *
+   * @param text the user's input
+   * @param max the maximum number of intents
+   * @return the intents, best first. Empty if the input matches nothing or is closest to a counterexample.
+   */
+  public List<Intent> classify(String text, int max) {
+    Map<Integer, Float> vector = vectorize(extractFeatures(text));
+    if (vector.isEmpty()) {
+      return Collections.emptyList();
+    }
+    float[] scores = new float[exampleIntents.length];
+    for (Map.Entry<Integer, Float> weight : vector.entrySet()) {
+      int[] examples = postingExamples[weight.getKey()];
+      float[] exampleWeights = postingWeights[weight.getKey()];
+      for (int i = 0; i < examples.length; i++) {
+        scores[examples[i]] += weight.getValue() * exampleWeights[i];
+      }
+    }
+
+    Map<String, Double> best = new HashMap<String, Double>();
+    double bestCounterexample = 0;
+    for (int example = 0; example < scores.length; example++) {
+      if (scores[example] <= 0) {
+        continue;
+      }
+      String intent = exampleIntents[example];
+      if (intent == null) {
+        bestCounterexample = Math.max(bestCounterexample, scores[example]);
+      } else {
+        Double current = best.get(intent);
+        if ((current == null) || (current < scores[example])) {
+          best.put(intent, Math.min(1.0, (double) scores[example]));
+        }
+      }
+    }
+
+    List<Intent> intents = new ArrayList<Intent>(best.size());
+    for (Map.Entry<String, Double> intent : best.entrySet()) {
+      intents.add(new Intent(intent.getKey(), intent.getValue()));
+    }
+    Collections.sort(intents, new Comparator<Intent>() {
+      @Override
+      public int compare(Intent left, Intent right) {
+        return right.getConfidence().compareTo(left.getConfidence());
+      }
+    });
+    if (intents.isEmpty() || (bestCounterexample > intents.get(0).getConfidence())) {
+      return Collections.emptyList();
+    }
+    return intents.size() > max ? new ArrayList<Intent>(intents.subList(0, max)) : intents;
+  }
+
+  /**
+   * Gets the words and word pairs of a text.
+   */
+  private static List<String> extractFeatures(String text) {
+    List<String> words = new ArrayList<String>();
+    if (text != null) {
+      Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ENGLISH));
+      while (matcher.find()) {
+        words.add(matcher.group());
+      }
+    }
+    List<String> result = new ArrayList<String>(words.size() * 2);
+    result.addAll(words);
+    for (int i = 1; i < words.size(); i++) {
+      result.add(words.get(i - 1) + ' ' + words.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Builds the TF-IDF vector of the known features of a text, normalized over all features of the text.
+   */
+  private Map<Integer, Float> vectorize(List<String> document) {
+    Map<Integer, Float> vector = new HashMap<Integer, Float>();
+    double norm = 0;
+    for (String feature : document) {
+      Integer id = features.get(feature);
+      if (id != null) {
+        Float current = vector.get(id);
+        vector.put(id, (current == null ? 0 : current) + idf[id]);
+      } else {
+        norm += unknownIdf * unknownIdf;
+      }
+    }
+    for (Float weight : vector.values()) {
+      norm += weight * weight;
+    }
+    norm = Math.sqrt(norm);
+    for (Map.Entry<Integer, Float> weight : vector.entrySet()) {
+      weight.setValue((float) (weight.getValue() / norm));
+    }
+    return vector;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Answers chat turns in process with the {@link DialogWorkspace} compiled from the workspace export named by the
+ * <code>LOCAL_WORKSPACE</code> setting, or the <code>workspace.json</code> bundled with the application when it is
+ * not set. The workspace is compiled when the application starts if the <code>CONVERSATION_MODE</code> uses the local
+ * runtime, otherwise the first time it is asked for.
+ */
+public class LocalDialogRuntime {
+  private static final Logger logger = LogManager.getLogger(LocalDialogRuntime.class.getName());
+
+  private static final String BUNDLED_WORKSPACE = "/workspace.json";
+
+  private static final LocalDialogRuntime INSTANCE = new LocalDialogRuntime();
+
+  private volatile DialogWorkspace workspace;
+
+  private LocalDialogRuntime() {
+
+  }
+
+  /**
+   * Gets the runtime.
+   *
+   * @return the runtime
+   */
+  public static LocalDialogRuntime getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Compiles the workspace if it has not been compiled yet. Called by the servlet context listener when the
+   * application starts.
+   */
+  public void initialize() {
+    try {
+      getWorkspace();
+    } catch (IOException e) {
+      logger.error(Messages.getString("LocalDialogRuntime.LOAD_FAILED") + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the workspace, compiling it the first time it is asked for.
+   *
+   * @return the workspace
+   * @throws IOException if the workspace cannot be read
+   */
+  public DialogWorkspace getWorkspace() throws IOException {
+    DialogWorkspace current = workspace;
+    if (current == null) {
+      synchronized (this) {
+        if (workspace == null) {
+          long start = System.currentTimeMillis();
+          workspace = readWorkspace();
+          logger.info(Messages.getString("LocalDialogRuntime.LOADED") + workspace.size() + " ("
+              + (System.currentTimeMillis() - start) + " ms)");
+        }
+        current = workspace;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Answers a message with the local workspace.
+   *
+   * @param request the message request
+   * @return the message response
+   * @throws IOException if the workspace cannot be read
+   */
+  public MessageResponse message(MessageRequest request) throws IOException {
+    return getWorkspace().message(request);
+  }
+
+  private static DialogWorkspace readWorkspace() throws IOException {
+    String location = EnvironmentUtils.getString("LOCAL_WORKSPACE", null);
+    InputStream in = location == null ? LocalDialogRuntime.class.getResourceAsStream(BUNDLED_WORKSPACE)
+        : new FileInputStream(location);
+    if (in == null) {
+      throw new IOException(BUNDLED_WORKSPACE);
+    }
+    try {
+      return DialogWorkspace.load(new InputStreamReader(in, "UTF-8"));
+    } finally {
+      in.close();
+    }
+  }
+}
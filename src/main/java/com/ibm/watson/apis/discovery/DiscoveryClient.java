@@ -23,12 +23,12 @@ import java.util.regex.Pattern;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.metrics.RecordingEvent;
 import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.apis.retrieval.RetrievalBackend;
 import com.ibm.watson.apis.utils.Constants;
 import com.ibm.watson.apis.utils.EnrichedObject;
 import com.ibm.watson.apis.utils.EnrichedTextObject;
@@ -38,7 +38,7 @@ import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResponse;
 /**
  * DiscoveryClient.
  */
-public class DiscoveryClient {
+public class DiscoveryClient implements RetrievalBackend {
 
   private static final Logger logger = LogManager.getLogger(DiscoveryClient.class.getName());
 
@@ -46,6 +46,16 @@ public class DiscoveryClient {
 
   private Pattern pattern = Pattern.compile("((.+?)</p>){1,2}");
   
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return "DISCOVERY";
+  }
+
   /**
    * This method uses the Query object to send the user's query (the <code>input</code> param) to the discovery service.
    *
@@ -54,88 +64,74 @@ public class DiscoveryClient {
    *         possible answer to the user's query
    * @throws Exception the exception
    */
+  @Override
   public List<DocumentPayload> getDocuments(String input) throws Exception {
-    DiscoveryQuery discoveryQuery = new DiscoveryQuery();
-    QueryResponse output = discoveryQuery.query(input);
-    List<Map<String, Object>> results = output.getResults();
-    String jsonRes = new Gson().toJson(results);
-    JsonElement jelement = new JsonParser().parse(jsonRes);
-    
-    return createPayload(jelement);
+    QueryResponse output = DiscoveryQuery.getInstance().query(input);
+    long start = System.nanoTime();
+    List<DocumentPayload> payload = createPayload(output.getResults());
+    Metrics.MAPPING.record(start);
+    if (Recording.isActive()) {
+      Recording.commit(RecordingEvent.Type.MAPPING, start, "backend", getName(), "documents", payload.size());
+    }
+    return payload;
   }
 
   /**
    * Helper Method to include highlighting information along with the Discovery response so the final payload
-   * includes id,title,body,sourceUrl as json key value pairs.
+   * includes id,title,body,sourceUrl as json key value pairs. The payload is built directly from the result maps of
+   * the SDK, without converting them to JSON first.
    *
-   * @param resultsElement the results element
+   * @param results the results of the discovery query
    * @return A list of DocumentPayload objects, each representing a single document the discovery service believes is a
    *         possible answer to the user's query
    */
-  private List<DocumentPayload> createPayload(JsonElement resultsElement) {
+  List<DocumentPayload> createPayload(List<Map<String, Object>> results) {
     logger.info(Messages.getString("Service.CREATING_DISCOVERY_PAYLOAD"));
     List<DocumentPayload> payload = new ArrayList<DocumentPayload>();
-    JsonArray jarray = resultsElement.getAsJsonArray();
 
-    if (jarray.size() > 0) {
-      for (int i = 0; (i < jarray.size()) && (i < Constants.DISCOVERY_MAX_SEARCH_RESULTS_TO_SHOW); i++) {
-        JsonObject jsonObj = jarray.get(i).getAsJsonObject();
+    if ((results != null) && (results.size() > 0)) {
+      for (int i = 0; (i < results.size()) && (i < Constants.DISCOVERY_MAX_SEARCH_RESULTS_TO_SHOW); i++) {
+        Map<String, Object> result = results.get(i);
         DocumentPayload documentPayload = new DocumentPayload();
-        String id = jsonObj.get(Constants.DISCOVERY_FIELD_ID).toString().replaceAll("\"", "");
-        documentPayload.setId(id);
-        
+        documentPayload.setId(getString(result, Constants.DISCOVERY_FIELD_ID));
+        Map<String, Object> enrichedText = getMap(result, Constants.SCHEMA_FIELD_ENRICHED_TEXT);
+        Map<String, Object> metadata = getMap(result, Constants.SCHEMA_FIELD_EXTRACTED_METADATA);
+
         //body
-        String body;
-        if (jsonObj.get(Constants.DISCOVERY_FIELD_BODY) != null) {
-          body = jsonObj.get(Constants.DISCOVERY_FIELD_BODY).toString();
-        } else if (jsonObj.get(Constants.SCHEMA_FIELD_ENRICHED_TEXT) != null){
-          //body = getEnrichedData(jsonObj.get(Constants.SCHEMA_FIELD_ENRICHED_TEXT).getAsJsonObject());
-          String html = jsonObj.get(Constants.SCHEMA_FIELD_CONTENT_HTML).toString();
-          body = html.replaceAll("\\\\n", "")		//remove '\\n'
-          			 .replaceAll("\\\\", "'");		//replace '\\' with single quote
-        } else {
-        	body = "empty";
-        	documentPayload.setBody(body);
-        	documentPayload.setTitle("No results found");
+        String body = getString(result, Constants.DISCOVERY_FIELD_BODY);
+        if ((body == null) && (enrichedText != null)) {
+          String html = getString(result, Constants.SCHEMA_FIELD_CONTENT_HTML);
+          // remove new lines
+          body = html == null ? null : html.replace("\n", "");
         }
-        if (body != "empty") {
-        	body = body.replaceAll("\"", "");
-        	documentPayload.setBody(body);
-            documentPayload.setBodySnippet(getSniplet(body));
-            
-            //Get title either through "title" or extracted_metadata->title
-            String title;
-            if (jsonObj.get(Constants.DISCOVERY_FIELD_TITLE) == null) {
-            	JsonElement metadata = jsonObj.get(Constants.SCHEMA_FIELD_EXTRACTED_METADATA);
-            	title = metadata.getAsJsonObject().get(Constants.DISCOVERY_FIELD_TITLE).toString();
-            } else {
-            	title = jsonObj.get(Constants.DISCOVERY_FIELD_TITLE).toString();
-            }
-            documentPayload.setTitle(title.replaceAll("\"", ""));
+        if (body == null) {
+          documentPayload.setBody("empty");
+          documentPayload.setTitle("No results found");
+        } else {
+          documentPayload.setBody(body);
+          documentPayload.setBodySnippet(getSniplet(body));
+
+          //Get title either through "title" or extracted_metadata->title
+          String title = getString(result, Constants.DISCOVERY_FIELD_TITLE);
+          if ((title == null) && (metadata != null)) {
+            title = getString(metadata, Constants.DISCOVERY_FIELD_TITLE);
+          }
+          documentPayload.setTitle(title);
         }
-        
+
         //Source URL of document
-        String url;
-        if (jsonObj.get(Constants.DISCOVERY_FIELD_SOURCE_URL) != null) {
-        	documentPayload.setSourceUrl(jsonObj.get(Constants.DISCOVERY_FIELD_SOURCE_URL)
-                    .toString().replaceAll("\"", ""));
-        } else if (jsonObj.get(Constants.SCHEMA_FIELD_ENRICHED_TEXT).getAsJsonObject().get(Constants.DISCOVERY_FIELD_SOURCE_URL) != null) {
-        	documentPayload.setSourceUrl(jsonObj.get(Constants.SCHEMA_FIELD_ENRICHED_TEXT).getAsJsonObject()
-        			.get(Constants.DISCOVERY_FIELD_SOURCE_URL).toString().replaceAll("\"", ""));
-        } else {
-        	documentPayload.setSourceUrl("empty");
+        String url = getString(result, Constants.DISCOVERY_FIELD_SOURCE_URL);
+        if ((url == null) && (enrichedText != null)) {
+          url = getString(enrichedText, Constants.DISCOVERY_FIELD_SOURCE_URL);
         }
-        
+        documentPayload.setSourceUrl(url == null ? "empty" : url);
+
         //Confidence of document
-        if (jsonObj.get(Constants.DISCOVERY_FIELD_CONFIDENCE) != null) {
-        	documentPayload.setConfidence(jsonObj.get(Constants.DISCOVERY_FIELD_CONFIDENCE)
-        			.toString().replaceAll("\"", ""));
-        } else if (jsonObj.get(Constants.SCHEMA_FIELD_EXTRACTED_METADATA).getAsJsonObject().get(Constants.DISCOVERY_FIELD_CONFIDENCE) != null) {
-        	documentPayload.setConfidence(jsonObj.get(Constants.SCHEMA_FIELD_EXTRACTED_METADATA).getAsJsonObject()
-        			.get(Constants.DISCOVERY_FIELD_CONFIDENCE).toString().replaceAll("\"", ""));
-        } else {
-          documentPayload.setConfidence("0.0");
+        String confidence = getString(result, Constants.DISCOVERY_FIELD_CONFIDENCE);
+        if ((confidence == null) && (metadata != null)) {
+          confidence = getString(metadata, Constants.DISCOVERY_FIELD_CONFIDENCE);
         }
+        documentPayload.setConfidence(confidence == null ? "0.0" : confidence);
         payload.add(i, documentPayload);
       }
     } else {
@@ -151,6 +147,31 @@ public class DiscoveryClient {
 
     return payload;
   }
+
+  /**
+   * Gets a field of a result as a string, or null if the field is not present.
+   *
+   * @param result the result map
+   * @param field the field name
+   * @return the string value
+   */
+  private static String getString(Map<String, Object> result, String field) {
+    Object value = result.get(field);
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Gets a nested object of a result, or null if the field is not present or not an object.
+   *
+   * @param result the result map
+   * @param field the field name
+   * @return the nested object
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> getMap(Map<String, Object> result, String field) {
+    Object value = result.get(field);
+    return value instanceof Map ? (Map<String, Object>) value : null;
+  }
   
 	/**
 	 * Extracts entity keywords and keyword suggestions from Discovery's "enriched_text" tag.
@@ -229,7 +250,7 @@ public class DiscoveryClient {
    * @param body discovery response
    * @return
    */
-  private String getSniplet(String body) {
+  String getSniplet(String body) {
     if (body == null) {
       return "";
     }
@@ -248,7 +269,7 @@ public class DiscoveryClient {
    * @param body
    * @return string
    */
-  private String limitParagraph(String body) {
+  String limitParagraph(String body) {
     String returnString = body;
 
     Matcher matcher = pattern.matcher(body);
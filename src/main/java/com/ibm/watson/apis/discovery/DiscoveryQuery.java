@@ -12,43 +12,71 @@
  */
 package com.ibm.watson.apis.discovery;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
+import com.ibm.watson.apis.resilience.RequestHedger;
 import com.ibm.watson.apis.utils.Constants;
+import com.ibm.watson.apis.utils.WatsonServiceUtils;
 import com.ibm.watson.developer_cloud.discovery.v1.Discovery;
 import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
 import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResponse;
 
 /**
- * The Class DiscoveryQuery.
+ * The Class DiscoveryQuery. The settings, the SDK client and the query template are built once, so a single
+ * instance is shared by the whole application (see {@link #getInstance()}). Instances are thread safe.
  */
 public class DiscoveryQuery {
 
-  private String collectionId;
+  private static volatile DiscoveryQuery instance;
 
-  private Discovery discovery;
+  private final String collectionId;
 
-  private String environmentId;
+  private final Discovery discovery;
 
-  private String password;
+  private final String environmentId;
 
-  private String userName;
+  /** The <code>field:</code> prefixes of the query, or null to send the user's text as is. */
+  private final String[] fieldPrefixes;
 
-  private String queryFields = "none";
+  private final RequestHedger hedger = RequestHedger.get("DISCOVERY");
 
   /**
    * Instantiates a new discovery query.
    */
   public DiscoveryQuery() {
-    userName = System.getenv("DISCOVERY_USERNAME");
-    password = System.getenv("DISCOVERY_PASSWORD");
+    String userName = System.getenv("DISCOVERY_USERNAME");
+    String password = System.getenv("DISCOVERY_PASSWORD");
     collectionId = System.getenv("DISCOVERY_COLLECTION_ID");
     environmentId = System.getenv("DISCOVERY_ENVIRONMENT_ID");
-    queryFields = System.getenv("DISCOVERY_QUERY_FIELDS");
+    fieldPrefixes = parseQueryFields(System.getenv("DISCOVERY_QUERY_FIELDS"));
 
     discovery = new Discovery(Constants.DISCOVERY_VERSION);
     discovery.setEndPoint(Constants.DISCOVERY_URL);
     discovery.setUsernameAndPassword(userName, password);
+    if (hedger.isEnabled()) {
+      WatsonServiceUtils.abortWhenCancelled(discovery);
+    }
+  }
+
+  /**
+   * Gets the application wide discovery query, creating it the first time it is asked for.
+   *
+   * @return the discovery query
+   */
+  public static DiscoveryQuery getInstance() {
+    DiscoveryQuery query = instance;
+    if (query == null) {
+      synchronized (DiscoveryQuery.class) {
+        if (instance == null) {
+          instance = new DiscoveryQuery();
+        }
+        query = instance;
+      }
+    }
+    return query;
   }
 
   /**
@@ -60,26 +88,50 @@ public class DiscoveryQuery {
    */
   public QueryResponse query(String userQuery) throws Exception {
     QueryRequest.Builder queryBuilder = new QueryRequest.Builder(environmentId, collectionId);
-    
-    StringBuilder sb = new StringBuilder();
-    
-    if(queryFields == null || queryFields.length() == 0 || queryFields.equalsIgnoreCase("none")) {
-      sb.append(userQuery);
-    } else {
-      StringTokenizer st = new StringTokenizer(queryFields, ",");
-      while (st.hasMoreTokens()) {
-        sb.append(st.nextToken().trim());
-        sb.append(":");
-        sb.append(userQuery);
-        if (st.hasMoreTokens()) {
-          sb.append(",");
-        }
-      }
-    }
+    queryBuilder.query(buildQuery(userQuery));
+    final QueryRequest queryRequest = queryBuilder.build();
 
-    queryBuilder.query(sb.toString());
-    QueryResponse queryResponse = discovery.query(queryBuilder.build()).execute();
+    // A slow query is sent a second time if hedging is enabled, see RequestHedger
+    QueryResponse queryResponse = hedger.call(new Callable<QueryResponse>() {
+      @Override
+      public QueryResponse call() {
+        return discovery.query(queryRequest).execute();
+      }
+    });
 
     return queryResponse;
   }
+
+  /**
+   * Builds the query string by putting the user's text after each configured field prefix.
+   *
+   * @param userQuery the user's query
+   * @return the query string sent to the discovery service
+   */
+  String buildQuery(String userQuery) {
+    if (fieldPrefixes == null) {
+      return userQuery;
+    }
+    StringBuilder sb = new StringBuilder(fieldPrefixes.length * (userQuery.length() + 16));
+    for (int i = 0; i < fieldPrefixes.length; i++) {
+      if (i > 0) {
+        sb.append(",");
+      }
+      sb.append(fieldPrefixes[i]);
+      sb.append(userQuery);
+    }
+    return sb.toString();
+  }
+
+  private static String[] parseQueryFields(String queryFields) {
+    if (queryFields == null || queryFields.length() == 0 || queryFields.equalsIgnoreCase("none")) {
+      return null;
+    }
+    List<String> prefixes = new ArrayList<String>();
+    StringTokenizer st = new StringTokenizer(queryFields, ",");
+    while (st.hasMoreTokens()) {
+      prefixes.add(st.nextToken().trim() + ":");
+    }
+    return prefixes.toArray(new String[prefixes.size()]);
+  }
 }
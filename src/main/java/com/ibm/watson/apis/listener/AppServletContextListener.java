@@ -21,6 +21,19 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.google.gson.JsonObject;
+import com.ibm.watson.apis.conversation.ConversationClientRegistry;
+import com.ibm.watson.apis.conversation.ConversationRouter;
+import com.ibm.watson.apis.conversation.local.LocalDialogRuntime;
+import com.ibm.watson.apis.local.LocalSearchEngine;
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.resilience.RequestHedger;
+import com.ibm.watson.apis.rest.ChatSocket;
+import com.ibm.watson.apis.rest.MessageBatch;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator;
+import com.ibm.watson.apis.retrieval.SpeculativeRetrieval;
+import com.ibm.watson.apis.retrieve_and_rank.requests.RetrieveAndRankConfigurationCache;
+import com.ibm.watson.apis.retrieve_and_rank.utils.Logging;
+import com.ibm.watson.apis.retrieve_and_rank.utils.SolrClientHolder;
 
 /**
  * The listener interface for receiving servletContext events. The class that is interested in processing a
@@ -43,6 +56,18 @@ public class AppServletContextListener implements javax.servlet.ServletContextLi
    */
   @Override
   public void contextDestroyed(ServletContextEvent arg0) { 
+    ChatSocket.shutdown();
+    MessageBatch.shutdown();
+    ConversationClientRegistry.getInstance().shutdown();
+    ConversationRouter.getInstance().shutdown();
+    SolrClientHolder.getInstance().shutdown();
+    RetrieveAndRankConfigurationCache.getInstance().shutdown();
+    Logging.shutdownInstance();
+    SpeculativeRetrieval.getInstance().shutdown();
+    RetrievalOrchestrator.shutdownInstance();
+    RequestHedger.shutdown();
+    LocalSearchEngine.getInstance().shutdown();
+    Recording.shutdown();
     logger.info("Destroying ServletContextListener");
   }
 
@@ -53,6 +78,15 @@ public class AppServletContextListener implements javax.servlet.ServletContextLi
    */
   @Override
   public void contextInitialized(ServletContextEvent arg0) {
+    ConversationClientRegistry.getInstance().initialize();
+    if (ConversationRouter.getInstance().getMode() != ConversationRouter.Mode.REMOTE) {
+      LocalDialogRuntime.getInstance().initialize();
+    }
+    RetrieveAndRankConfigurationCache.getInstance().initialize();
+    Logging.initialize();
+    if (RetrievalOrchestrator.getConfiguredBackends().contains("LOCAL")) {
+      LocalSearchEngine.getInstance().initialize();
+    }
     SetupThread setupThread = new SetupThread();
     setupThread.addChangeListener(this);
     setupThread.start();
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * Reads the local corpus, a zip archive or a directory of JSON documents, into a new {@link CorpusSnapshot}. The
+ * entries are parsed in parallel with fork/join: each one is hashed with SHA-256, and only the entries whose hash is
+ * not the one of the previous snapshot are parsed and analyzed again (the HTML is cleaned, and the snippet and the
+ * words of the title and text computed); the others are taken from the previous snapshot as they are. The progress
+ * and the time of each phase are reported to a {@link CorpusIngestion}.
+ */
+public class CorpusIngester {
+  private static final Logger logger = LogManager.getLogger(CorpusIngester.class.getName());
+
+  private static final String BUNDLED_CORPUS = "/manualdocs.zip";
+  private static final String JSON = ".json";
+  private static final String MAC_METADATA = "__MACOSX";
+  private static final int ENTRIES_PER_TASK = 8;
+
+  private final int parallelism;
+
+  /**
+   * Instantiates a new corpus ingester.
+   *
+   * @param parallelism the number of threads parsing the entries
+   */
+  public CorpusIngester(int parallelism) {
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * Ingests a corpus.
+   *
+   * @param location a zip archive or a directory of JSON documents, null for the <code>manualdocs.zip</code> bundled
+   *        with the application
+   * @param previous the snapshot being replaced, null if there is none
+   * @param progress receives the progress
+   * @return the new snapshot
+   * @throws IOException if the corpus cannot be read
+   */
+  public CorpusSnapshot ingest(String location, CorpusSnapshot previous, CorpusIngestion progress)
+      throws IOException {
+    if ((location != null) && new File(location).isDirectory()) {
+      return ingest(listDirectory(new File(location)), previous, progress);
+    }
+    InputStream in = location == null ? CorpusIngester.class.getResourceAsStream(BUNDLED_CORPUS)
+        : new FileInputStream(location);
+    if (in == null) {
+      throw new IOException(BUNDLED_CORPUS);
+    }
+    try {
+      return ingest(in, previous, progress);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Ingests a zip archive.
+   *
+   * @param zip the archive
+   * @param previous the snapshot being replaced, null if there is none
+   * @param progress receives the progress
+   * @return the new snapshot
+   * @throws IOException if the archive cannot be read
+   */
+  public CorpusSnapshot ingest(InputStream zip, CorpusSnapshot previous, CorpusIngestion progress)
+      throws IOException {
+    return ingest(readZip(zip), previous, progress);
+  }
+
+  private CorpusSnapshot ingest(List<Item> items, CorpusSnapshot previous, CorpusIngestion progress)
+      throws IOException {
+    progress.setTotal(items.size());
+    progress.enter(CorpusIngestion.Phase.PARSING);
+    CorpusSnapshot.Entry[] entries = new CorpusSnapshot.Entry[items.size()];
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new Prepare(items, entries, 0, items.size(), previous, progress));
+    } catch (ReadFailure e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdown();
+    }
+
+    progress.enter(CorpusIngestion.Phase.INDEXING);
+    Map<String, CorpusSnapshot.Entry> byName = new LinkedHashMap<String, CorpusSnapshot.Entry>();
+    List<LocalDocument> documents = new ArrayList<LocalDocument>(entries.length);
+    List<LocalIndex.Terms> terms = new ArrayList<LocalIndex.Terms>(entries.length);
+    for (int i = 0; i < entries.length; i++) {
+      byName.put(items.get(i).name, entries[i]);
+      if (entries[i].getDocument() != null) {
+        documents.add(entries[i].getDocument());
+        terms.add(entries[i].getTerms());
+      }
+    }
+    int removed = 0;
+    if (previous != null) {
+      for (String name : previous.getEntryNames()) {
+        if (!byName.containsKey(name)) {
+          removed++;
+        }
+      }
+    }
+    long version = previous == null ? 1 : previous.getVersion() + 1;
+    CorpusSnapshot snapshot = new CorpusSnapshot(LocalIndex.build(documents, terms), byName, version);
+    progress.onIndexed(documents.size(), removed, version);
+    return snapshot;
+  }
+
+  /**
+   * Reads the entries of a zip archive which are JSON documents. Entries such as the <code>__MACOSX</code> metadata
+   * are skipped.
+   */
+  private static List<Item> readZip(InputStream in) throws IOException {
+    List<Item> items = new ArrayList<Item>();
+    ZipInputStream zip = new ZipInputStream(in);
+    byte[] buffer = new byte[8192];
+    for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+      String name = entry.getName();
+      if (!entry.isDirectory() && name.endsWith(JSON) && !name.startsWith(MAC_METADATA)) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(32, (int) entry.getSize()));
+        for (int read = zip.read(buffer); read != -1; read = zip.read(buffer)) {
+          content.write(buffer, 0, read);
+        }
+        items.add(new Item(name, content.toByteArray(), null));
+      }
+    }
+    sort(items);
+    return items;
+  }
+
+  /**
+   * Lists the JSON documents of a directory and its subdirectories. They are read while being parsed.
+   */
+  private static List<Item> listDirectory(File directory) {
+    List<Item> items = new ArrayList<Item>();
+    listDirectory(directory, "", items);
+    sort(items);
+    return items;
+  }
+
+  private static void listDirectory(File directory, String prefix, List<Item> items) {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    for (File file : files) {
+      if (file.isDirectory()) {
+        if (!file.getName().equals(MAC_METADATA)) {
+          listDirectory(file, prefix + file.getName() + "/", items);
+        }
+      } else if (file.getName().endsWith(JSON)) {
+        items.add(new Item(prefix + file.getName(), null, file));
+      }
+    }
+  }
+
+  private static void sort(List<Item> items) {
+    Collections.sort(items, new Comparator<Item>() {
+      @Override
+      public int compare(Item a, Item b) {
+        return a.name.compareTo(b.name);
+      }
+    });
+  }
+
+  /**
+   * Hashes an entry and parses it, unless the previous snapshot has the same content for it.
+   */
+  private static CorpusSnapshot.Entry prepare(Item item, CorpusSnapshot previous, CorpusIngestion progress)
+      throws IOException {
+    byte[] content = item.read();
+    String hash = hash(content);
+    CorpusSnapshot.Entry old = previous == null ? null : previous.getEntry(item.name);
+    if ((old != null) && old.getHash().equals(hash)) {
+      progress.onReused();
+      if (old.getDocument() == null) {
+        progress.onSkipped();
+      }
+      return old;
+    }
+    LocalDocument document = null;
+    try {
+      JsonElement json = new JsonParser().parse(new InputStreamReader(new ByteArrayInputStream(content), "UTF-8"));
+      document = json.isJsonObject() ? LocalDocument.fromJson(json.getAsJsonObject()) : null;
+    } catch (JsonParseException e) {
+      logger.warn(Messages.getString("CorpusIngester.INVALID_DOCUMENT") + item.name);
+    } catch (IllegalStateException e) {
+      // a field which should be a string is an array
+      logger.warn(Messages.getString("CorpusIngester.INVALID_DOCUMENT") + item.name);
+    } catch (UnsupportedOperationException e) {
+      // a field which should be a string is an object
+      logger.warn(Messages.getString("CorpusIngester.INVALID_DOCUMENT") + item.name);
+    }
+    progress.onParsed();
+    if (document == null) {
+      progress.onSkipped();
+      return new CorpusSnapshot.Entry(hash, null, null);
+    }
+    return new CorpusSnapshot.Entry(hash, document, LocalIndex.analyze(document));
+  }
+
+  /**
+   * Computes the SHA-256 hash of the content of an entry.
+   *
+   * @param content the content
+   * @return the hash in hexadecimal
+   */
+  static String hash(byte[] content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+      StringBuilder hex = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * An entry of the corpus, read from the archive or still in its file.
+   */
+  private static final class Item {
+    private final String name;
+    private final byte[] content;
+    private final File file;
+
+    Item(String name, byte[] content, File file) {
+      this.name = name;
+      this.content = content;
+      this.file = file;
+    }
+
+    byte[] read() throws IOException {
+      if (content != null) {
+        return content;
+      }
+      InputStream in = new FileInputStream(file);
+      try {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(32, file.length()));
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+          bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+      } finally {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Prepares a range of entries, split in halves until it is small enough.
+   */
+  private static final class Prepare extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Item> items;
+    private final CorpusSnapshot.Entry[] entries;
+    private final int from;
+    private final int to;
+    private final CorpusSnapshot previous;
+    private final CorpusIngestion progress;
+
+    Prepare(List<Item> items, CorpusSnapshot.Entry[] entries, int from, int to, CorpusSnapshot previous,
+        CorpusIngestion progress) {
+      this.items = items;
+      this.entries = entries;
+      this.from = from;
+      this.to = to;
+      this.previous = previous;
+      this.progress = progress;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= ENTRIES_PER_TASK) {
+        for (int i = from; i < to; i++) {
+          try {
+            entries[i] = prepare(items.get(i), previous, progress);
+          } catch (IOException e) {
+            throw new ReadFailure(e);
+          }
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new Prepare(items, entries, from, middle, previous, progress),
+          new Prepare(items, entries, middle, to, previous, progress));
+    }
+  }
+
+  /**
+   * Carries a read failure out of the fork/join tasks.
+   */
+  private static final class ReadFailure extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    ReadFailure(IOException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized IOException getCause() {
+      return (IOException) super.getCause();
+    }
+  }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The progress and timing of one ingestion of the local corpus, updated by the {@link CorpusIngester} while it runs
+ * and read by the setup API.
+ */
+public class CorpusIngestion {
+
+  /**
+   * The phases of an ingestion, in order. An ingestion ends as {@link #PUBLISHED} or {@link #FAILED}.
+   */
+  public enum Phase {
+    /** The corpus entries are listed and the archive is read. */
+    READING,
+    /** The changed entries are parsed. */
+    PARSING,
+    /** The index is built. */
+    INDEXING,
+    /** The new snapshot is searched. */
+    PUBLISHED,
+    /** The ingestion failed, the previous snapshot is still searched. */
+    FAILED
+  }
+
+  private final long startedAt = System.currentTimeMillis();
+  private final long start = System.nanoTime();
+  private long phaseStart = start;
+  private volatile Phase phase = Phase.READING;
+  private volatile int total;
+  private final AtomicInteger processed = new AtomicInteger();
+  private final AtomicInteger parsed = new AtomicInteger();
+  private final AtomicInteger reused = new AtomicInteger();
+  private final AtomicInteger skipped = new AtomicInteger();
+  private volatile int removed;
+  private volatile int documents;
+  private volatile long version;
+  private volatile long readMillis;
+  private volatile long parseMillis;
+  private volatile long indexMillis;
+  private volatile long totalMillis;
+  private volatile String error;
+
+  /**
+   * Moves to the next phase, recording how long the current one took.
+   *
+   * @param next the next phase
+   */
+  synchronized void enter(Phase next) {
+    long now = System.nanoTime();
+    long millis = TimeUnit.NANOSECONDS.toMillis(now - phaseStart);
+    switch (phase) {
+      case READING:
+        readMillis = millis;
+        break;
+      case PARSING:
+        parseMillis = millis;
+        break;
+      case INDEXING:
+        indexMillis = millis;
+        break;
+      default:
+        break;
+    }
+    phaseStart = now;
+    if ((next == Phase.PUBLISHED) || (next == Phase.FAILED)) {
+      totalMillis = TimeUnit.NANOSECONDS.toMillis(now - start);
+    }
+    phase = next;
+  }
+
+  void setTotal(int total) {
+    this.total = total;
+  }
+
+  void onParsed() {
+    parsed.incrementAndGet();
+    processed.incrementAndGet();
+  }
+
+  void onReused() {
+    reused.incrementAndGet();
+    processed.incrementAndGet();
+  }
+
+  void onSkipped() {
+    skipped.incrementAndGet();
+  }
+
+  void onIndexed(int documents, int removed, long version) {
+    this.documents = documents;
+    this.removed = removed;
+    this.version = version;
+  }
+
+  void fail(Exception e) {
+    error = e.getClass().getSimpleName() + ": " + e.getMessage();
+    enter(Phase.FAILED);
+  }
+
+  /**
+   * Returns true until the ingestion is published or failed.
+   *
+   * @return true while running
+   */
+  public boolean isRunning() {
+    Phase current = phase;
+    return (current != Phase.PUBLISHED) && (current != Phase.FAILED);
+  }
+
+  /**
+   * Gets the current phase.
+   *
+   * @return the phase
+   */
+  public Phase getPhase() {
+    return phase;
+  }
+
+  /**
+   * Gets the time the ingestion started.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getStartedAt() {
+    return startedAt;
+  }
+
+  /**
+   * Gets the number of corpus entries, known once the corpus was read.
+   *
+   * @return the entries
+   */
+  public int getTotal() {
+    return total;
+  }
+
+  /**
+   * Gets the number of entries parsed or reused so far.
+   *
+   * @return the processed entries
+   */
+  public int getProcessed() {
+    return processed.get();
+  }
+
+  /**
+   * Gets the number of entries parsed because they are new or changed.
+   *
+   * @return the parsed entries
+   */
+  public int getParsed() {
+    return parsed.get();
+  }
+
+  /**
+   * Gets the number of unchanged entries taken from the previous snapshot.
+   *
+   * @return the reused entries
+   */
+  public int getReused() {
+    return reused.get();
+  }
+
+  /**
+   * Gets the number of entries which are not documents, or whose JSON cannot be read.
+   *
+   * @return the skipped entries
+   */
+  public int getSkipped() {
+    return skipped.get();
+  }
+
+  /**
+   * Gets the number of entries of the previous snapshot which are gone.
+   *
+   * @return the removed entries
+   */
+  public int getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Gets the number of documents of the new snapshot.
+   *
+   * @return the documents
+   */
+  public int getDocuments() {
+    return documents;
+  }
+
+  /**
+   * Gets the version of the new snapshot.
+   *
+   * @return the version, 0 until the index is built
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the time spent listing and reading the corpus.
+   *
+   * @return the time in milliseconds
+   */
+  public long getReadMillis() {
+    return readMillis;
+  }
+
+  /**
+   * Gets the time spent parsing the changed entries.
+   *
+   * @return the time in milliseconds
+   */
+  public long getParseMillis() {
+    return parseMillis;
+  }
+
+  /**
+   * Gets the time spent building the index.
+   *
+   * @return the time in milliseconds
+   */
+  public long getIndexMillis() {
+    return indexMillis;
+  }
+
+  /**
+   * Gets the duration of the whole ingestion.
+   *
+   * @return the time in milliseconds, 0 while running
+   */
+  public long getTotalMillis() {
+    return totalMillis;
+  }
+
+  /**
+   * Gets the failure of the ingestion.
+   *
+   * @return the error, or null
+   */
+  public String getError() {
+    return error;
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable version of the local corpus: the {@link LocalIndex} searched by the requests, and the content hash,
+ * document and words of each corpus entry, so that the next ingestion only analyzes the entries which changed (see
+ * {@link CorpusIngester}). A new snapshot replaces the current one in a single write; requests which already hold
+ * the previous one keep searching it until they finish.
+ */
+public final class CorpusSnapshot {
+
+  private final LocalIndex index;
+  private final Map<String, Entry> entries;
+  private final long version;
+  private final long createdAt;
+
+  /**
+   * Instantiates a new snapshot.
+   *
+   * @param index the index of the documents
+   * @param entries the entries of the corpus by name
+   * @param version the version, one more than the snapshot it replaces
+   */
+  CorpusSnapshot(LocalIndex index, Map<String, Entry> entries, long version) {
+    this.index = index;
+    this.entries = Collections.unmodifiableMap(entries);
+    this.version = version;
+    this.createdAt = System.currentTimeMillis();
+  }
+
+  /**
+   * Gets the index.
+   *
+   * @return the index
+   */
+  public LocalIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the documents, in the order of the entries.
+   *
+   * @return the documents
+   */
+  public List<LocalDocument> getDocuments() {
+    List<LocalDocument> documents = new ArrayList<LocalDocument>(entries.size());
+    for (Entry entry : entries.values()) {
+      if (entry.document != null) {
+        documents.add(entry.document);
+      }
+    }
+    return documents;
+  }
+
+  /**
+   * Gets the entry of the corpus with the given name.
+   *
+   * @param name the name of the entry in the archive or directory
+   * @return the entry, or null if there is none
+   */
+  Entry getEntry(String name) {
+    return entries.get(name);
+  }
+
+  /**
+   * Gets the names of the corpus entries.
+   *
+   * @return the names
+   */
+  Iterable<String> getEntryNames() {
+    return entries.keySet();
+  }
+
+  /**
+   * Gets the version.
+   *
+   * @return the version
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  /**
+   * Gets the time the snapshot was built.
+   *
+   * @return the time in milliseconds since the epoch
+   */
+  public long getCreatedAt() {
+    return createdAt;
+  }
+
+  /**
+   * A corpus entry: the hash of its content, and its document and words if it is a document.
+   */
+  static final class Entry {
+    private final String hash;
+    private final LocalDocument document;
+    private final LocalIndex.Terms terms;
+
+    Entry(String hash, LocalDocument document, LocalIndex.Terms terms) {
+      this.hash = hash;
+      this.document = document;
+      this.terms = terms;
+    }
+
+    String getHash() {
+      return hash;
+    }
+
+    LocalDocument getDocument() {
+      return document;
+    }
+
+    LocalIndex.Terms getTerms() {
+      return terms;
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import org.jsoup.Jsoup;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.ibm.watson.apis.utils.Constants;
+
+/**
+ * A document of the local corpus, in the schema of the documents uploaded to Retrieve and Rank and Discovery
+ * (<code>id</code>, <code>title</code>, <code>body</code>, <code>contentHtml</code> and <code>sourceUrl</code>). The
+ * plain text and the snippet shown in the UI are computed once, when the corpus is read.
+ */
+public class LocalDocument {
+
+  private static final int SNIPPET_LENGTH = 150;
+
+  private final String id;
+  private final String title;
+  private final String html;
+  private final String text;
+  private final String snippet;
+  private final String sourceUrl;
+
+  /**
+   * Instantiates a new local document.
+   *
+   * @param id the document id
+   * @param title the title
+   * @param html the HTML content returned to the UI
+   * @param text the plain text content which is indexed and highlighted
+   * @param sourceUrl the URL of the original document
+   */
+  public LocalDocument(String id, String title, String html, String text, String sourceUrl) {
+    this.id = id;
+    this.title = title;
+    this.html = html;
+    this.text = text;
+    this.snippet = text.length() > SNIPPET_LENGTH ? text.substring(0, SNIPPET_LENGTH - 3) + "..." : text;
+    this.sourceUrl = sourceUrl;
+  }
+
+  /**
+   * Creates a document from its JSON form. The HTML content is <code>contentHtml</code>, or <code>body</code> if
+   * there is none, and the plain text is the HTML without markup.
+   *
+   * @param json the document JSON
+   * @return the document, or null if the JSON has no id
+   */
+  public static LocalDocument fromJson(JsonObject json) {
+    String id = getString(json, Constants.SCHEMA_FIELD_ID);
+    if (id == null) {
+      return null;
+    }
+    String html = getString(json, Constants.DISCOVERY_FIELD_BODY);
+    if (html == null) {
+      html = getString(json, Constants.SCHEMA_FIELD_BODY);
+    }
+    String text = "";
+    if (html != null) {
+      html = html.replace("\n", "");
+      text = Jsoup.parse(html).text().replace('\u00a0', ' ').replaceAll("\\s+", " ").trim();
+    }
+    return new LocalDocument(id, getString(json, Constants.SCHEMA_FIELD_TITLE), html, text,
+        getString(json, Constants.SCHEMA_FIELD_SOURCE_URL));
+  }
+
+  private static String getString(JsonObject json, String field) {
+    JsonElement value = json.get(field);
+    return (value == null) || value.isJsonNull() ? null : value.getAsString();
+  }
+
+  /**
+   * Gets the document id.
+   *
+   * @return the id
+   */
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * Gets the title.
+   *
+   * @return the title
+   */
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * Gets the HTML content.
+   *
+   * @return the HTML content
+   */
+  public String getHtml() {
+    return html;
+  }
+
+  /**
+   * Gets the plain text content.
+   *
+   * @return the text
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the first <code>SNIPPET_LENGTH</code> characters of the plain text.
+   *
+   * @return the snippet
+   */
+  public String getSnippet() {
+    return snippet;
+  }
+
+  /**
+   * Gets the URL of the original document.
+   *
+   * @return the source URL
+   */
+  public String getSourceUrl() {
+    return sourceUrl;
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.apis.retrieval.QueryNormalizer;
+
+/**
+ * An immutable in-memory inverted index over {@link LocalDocument}s, scored with Okapi BM25. The title and the plain
+ * text of each document are indexed; title words count twice. Question words are normalized with the
+ * {@link QueryNormalizer}, so stopwords in the question do not influence the ranking.
+ */
+public final class LocalIndex {
+
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  private static final int TITLE_WEIGHT = 2;
+
+  private final LocalDocument[] documents;
+  private final int[] lengths;
+  private final double averageLength;
+  private final Map<String, Posting> postings;
+
+  private LocalIndex(LocalDocument[] documents, int[] lengths, Map<String, Posting> postings) {
+    this.documents = documents;
+    this.lengths = lengths;
+    this.postings = postings;
+    long total = 0;
+    for (int length : lengths) {
+      total += length;
+    }
+    this.averageLength = documents.length == 0 ? 1 : Math.max(1, (double) total / documents.length);
+  }
+
+  /**
+   * Builds an index of the given documents.
+   *
+   * @param corpus the documents
+   * @return the index
+   */
+  public static LocalIndex build(Collection<LocalDocument> corpus) {
+    List<LocalDocument> documents = new ArrayList<LocalDocument>(corpus);
+    List<Terms> terms = new ArrayList<Terms>(documents.size());
+    for (LocalDocument document : documents) {
+      terms.add(analyze(document));
+    }
+    return build(documents, terms);
+  }
+
+  /**
+   * Builds an index of documents whose words were already counted, so that a corpus which is read again only
+   * analyzes the documents which changed.
+   *
+   * @param corpus the documents
+   * @param terms the words of each document, see {@link #analyze(LocalDocument)}
+   * @return the index
+   */
+  static LocalIndex build(List<LocalDocument> corpus, List<Terms> terms) {
+    LocalDocument[] documents = corpus.toArray(new LocalDocument[corpus.size()]);
+    int[] lengths = new int[documents.length];
+    Map<String, List<int[]>> entries = new HashMap<String, List<int[]>>();
+
+    for (int doc = 0; doc < documents.length; doc++) {
+      Terms counted = terms.get(doc);
+      lengths[doc] = counted.length;
+      for (Map.Entry<String, Integer> frequency : counted.frequencies.entrySet()) {
+        List<int[]> list = entries.get(frequency.getKey());
+        if (list == null) {
+          list = new ArrayList<int[]>();
+          entries.put(frequency.getKey(), list);
+        }
+        list.add(new int[] { doc, frequency.getValue() });
+      }
+    }
+
+    Map<String, Posting> postings = new HashMap<String, Posting>(entries.size() * 2);
+    for (Map.Entry<String, List<int[]>> entry : entries.entrySet()) {
+      postings.put(entry.getKey(), new Posting(entry.getValue()));
+    }
+    return new LocalIndex(documents, lengths, postings);
+  }
+
+  /**
+   * Counts the words of a document; title words count twice.
+   *
+   * @param document the document
+   * @return the words of the document
+   */
+  static Terms analyze(LocalDocument document) {
+    Map<String, Integer> frequencies = new HashMap<String, Integer>();
+    int length = 0;
+    for (String word : tokenize(document.getTitle())) {
+      add(frequencies, word, TITLE_WEIGHT);
+      length += TITLE_WEIGHT;
+    }
+    for (String word : tokenize(document.getText())) {
+      add(frequencies, word, 1);
+      length++;
+    }
+    return new Terms(frequencies, length);
+  }
+
+  /**
+   * Searches the index.
+   *
+   * @param query the user's question
+   * @param max the maximum number of hits
+   * @return the best hits, best first
+   */
+  public List<Hit> search(String query, int max) {
+    Set<String> terms = getQueryTerms(query);
+    if (terms.isEmpty() || (max <= 0)) {
+      return Collections.emptyList();
+    }
+
+    double[] scores = new double[documents.length];
+    int n = documents.length;
+    for (String term : terms) {
+      Posting posting = postings.get(term);
+      if (posting == null) {
+        continue;
+      }
+      int df = posting.docs.length;
+      double idf = Math.log(1 + ((n - df + 0.5) / (df + 0.5)));
+      for (int i = 0; i < df; i++) {
+        int doc = posting.docs[i];
+        int tf = posting.frequencies[i];
+        double norm = K1 * (1 - B + ((B * lengths[doc]) / averageLength));
+        scores[doc] += (idf * tf * (K1 + 1)) / (tf + norm);
+      }
+    }
+
+    PriorityQueue<Hit> best = new PriorityQueue<Hit>(max + 1);
+    for (int doc = 0; doc < n; doc++) {
+      if ((scores[doc] > 0) && ((best.size() < max) || (scores[doc] > best.peek().score))) {
+        best.add(new Hit(documents[doc], scores[doc]));
+        if (best.size() > max) {
+          best.poll();
+        }
+      }
+    }
+    List<Hit> hits = new ArrayList<Hit>(best);
+    Collections.sort(hits, Collections.reverseOrder());
+    return hits;
+  }
+
+  /**
+   * Gets the normalized words of a question which are looked up in the index.
+   *
+   * @param query the user's question
+   * @return the distinct words, in question order
+   */
+  public static Set<String> getQueryTerms(String query) {
+    return new LinkedHashSet<String>(tokenize(QueryNormalizer.normalize(query)));
+  }
+
+  /**
+   * Splits text into lower case words.
+   *
+   * @param text the text
+   * @return the words
+   */
+  static List<String> tokenize(String text) {
+    List<String> words = new ArrayList<String>();
+    if (text != null) {
+      Matcher matcher = WORD.matcher(text.toLowerCase(Locale.ENGLISH));
+      while (matcher.find()) {
+        words.add(matcher.group());
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Gets the number of indexed documents.
+   *
+   * @return the size
+   */
+  public int size() {
+    return documents.length;
+  }
+
+  private static void add(Map<String, Integer> frequencies, String word, int count) {
+    Integer current = frequencies.get(word);
+    frequencies.put(word, current == null ? count : current + count);
+  }
+
+  /**
+   * The words of a document and how often it contains them.
+   */
+  static final class Terms {
+    private final Map<String, Integer> frequencies;
+    private final int length;
+
+    Terms(Map<String, Integer> frequencies, int length) {
+      this.frequencies = frequencies;
+      this.length = length;
+    }
+  }
+
+  /**
+   * The documents containing a word and how often they contain it.
+   */
+  private static class Posting {
+    private final int[] docs;
+    private final int[] frequencies;
+
+    Posting(List<int[]> entries) {
+      docs = new int[entries.size()];
+      frequencies = new int[entries.size()];
+      for (int i = 0; i < docs.length; i++) {
+        docs[i] = entries.get(i)[0];
+        frequencies[i] = entries.get(i)[1];
+      }
+    }
+  }
+
+  /**
+   * A document matching a question, with its BM25 score.
+   */
+  public static class Hit implements Comparable<Hit> {
+    private final LocalDocument document;
+    private final double score;
+
+    Hit(LocalDocument document, double score) {
+      this.document = document;
+      this.score = score;
+    }
+
+    /**
+     * Gets the document.
+     *
+     * @return the document
+     */
+    public LocalDocument getDocument() {
+      return document;
+    }
+
+    /**
+     * Gets the BM25 score.
+     *
+     * @return the score
+     */
+    public double getScore() {
+      return score;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    @Override
+    public int compareTo(Hit other) {
+      return Double.compare(score, other.score);
+    }
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.apis.retrieval.RetrievalBackend;
+import com.ibm.watson.apis.utils.Constants;
+
+/**
+ * Answers the user's question from the {@link LocalIndex} held by the {@link LocalSearchEngine}, without calling a
+ * remote service. The payload has the same shape as the one of the <code>DiscoveryClient</code>, with the matching
+ * words of the question highlighted.
+ */
+public class LocalSearchClient implements RetrievalBackend {
+
+  private static final int SNIPPET_LENGTH = 150;
+  private static final int HIGHLIGHT_CONTEXT = 40;
+  private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+  private final LocalSearchEngine engine;
+
+  /**
+   * Instantiates a new local search client using the application wide engine.
+   */
+  public LocalSearchClient() {
+    this(LocalSearchEngine.getInstance());
+  }
+
+  /**
+   * Instantiates a new local search client.
+   *
+   * @param engine the engine holding the index
+   */
+  public LocalSearchClient(LocalSearchEngine engine) {
+    this.engine = engine;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return "LOCAL";
+  }
+
+  /**
+   * Searches the local index with the user's query.
+   *
+   * @param input The user's query
+   * @return A list of DocumentPayload objects, each representing a single document which is a possible answer to the
+   *         user's query
+   * @throws Exception the exception
+   */
+  @Override
+  public List<DocumentPayload> getDocuments(String input) throws Exception {
+    return createPayload(input, engine.getIndex().search(input, Constants.DISCOVERY_MAX_SEARCH_RESULTS_TO_SHOW));
+  }
+
+  /**
+   * Maps the hits of the index to the payload sent to the UI. The confidence is the score relative to the best hit.
+   *
+   * @param input the user's query
+   * @param hits the hits, best first
+   * @return the payload
+   */
+  List<DocumentPayload> createPayload(String input, List<LocalIndex.Hit> hits) {
+    List<DocumentPayload> payload = new ArrayList<DocumentPayload>(Math.max(1, hits.size()));
+    if (hits.isEmpty()) {
+      DocumentPayload documentPayload = new DocumentPayload();
+      documentPayload.setTitle("No results found");
+      documentPayload.setBody("empty");
+      documentPayload.setSourceUrl("empty");
+      documentPayload.setBodySnippet("empty");
+      documentPayload.setConfidence("0.0");
+      payload.add(documentPayload);
+      return payload;
+    }
+
+    Set<String> terms = LocalIndex.getQueryTerms(input);
+    double best = hits.get(0).getScore();
+    for (LocalIndex.Hit hit : hits) {
+      LocalDocument document = hit.getDocument();
+      DocumentPayload documentPayload = new DocumentPayload();
+      documentPayload.setId(document.getId());
+      documentPayload.setTitle(document.getTitle());
+      documentPayload.setBody(document.getHtml() == null ? "empty" : document.getHtml());
+      documentPayload.setBodySnippet(document.getSnippet());
+      documentPayload.setSourceUrl(document.getSourceUrl() == null ? "empty" : document.getSourceUrl());
+      documentPayload.setConfidence(String.valueOf(hit.getScore() / best));
+      documentPayload.setHighlight(highlight(document.getText(), terms));
+      payload.add(documentPayload);
+    }
+    return payload;
+  }
+
+  /**
+   * Cuts a passage of about <code>SNIPPET_LENGTH</code> characters around the first word of the question found in
+   * the text, with the words of the question wrapped in <code>&lt;em&gt;</code> like Retrieve and Rank highlighting.
+   *
+   * @param text the text of the document
+   * @param terms the normalized words of the question
+   * @return the highlighted passage
+   */
+  static String highlight(String text, Set<String> terms) {
+    Matcher matcher = WORD.matcher(text);
+    int first = -1;
+    while (matcher.find()) {
+      if (terms.contains(matcher.group().toLowerCase(Locale.ENGLISH))) {
+        first = matcher.start();
+        break;
+      }
+    }
+    int start = first <= HIGHLIGHT_CONTEXT ? 0 : text.lastIndexOf(' ', first - HIGHLIGHT_CONTEXT) + 1;
+    int end = Math.min(text.length(), start + SNIPPET_LENGTH);
+    if (end < text.length()) {
+      int space = text.lastIndexOf(' ', end);
+      end = space > start ? space : end;
+    }
+
+    StringBuilder highlighted = new StringBuilder(end - start + 32);
+    if (start > 0) {
+      highlighted.append("...");
+    }
+    matcher = WORD.matcher(text).region(start, end);
+    int last = start;
+    while (matcher.find()) {
+      if (terms.contains(matcher.group().toLowerCase(Locale.ENGLISH))) {
+        highlighted.append(text, last, matcher.start()).append("<em>").append(matcher.group()).append("</em>");
+        last = matcher.end();
+      }
+    }
+    highlighted.append(text, last, end);
+    if (end < text.length()) {
+      highlighted.append("...");
+    }
+    return highlighted.toString();
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import java.io.IOException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Holds the {@link CorpusSnapshot} whose {@link LocalIndex} is searched by the {@link LocalSearchClient}. The corpus
+ * is the zip archive or the directory of JSON documents named by the <code>LOCAL_CORPUS</code> setting, or the
+ * <code>manualdocs.zip</code> bundled with the application when it is not set. The first snapshot is built when the
+ * application starts if the <code>LOCAL</code> backend is configured, otherwise the first time it is searched.
+ * <p>
+ * {@link #reload()} ingests the corpus again on a background thread, with <code>CORPUS_INGEST_THREADS</code> threads
+ * (see {@link CorpusIngester}), while the current snapshot is still searched; the new one then replaces it in a single
+ * volatile write. A request searches the snapshot it got when it started, so the previous one stays readable until
+ * the requests in progress finish. A failed ingestion leaves the current snapshot in place.
+ */
+public class LocalSearchEngine {
+  private static final Logger logger = LogManager.getLogger(LocalSearchEngine.class.getName());
+
+  private static final LocalSearchEngine INSTANCE = new LocalSearchEngine();
+
+  private final CorpusIngester ingester = new CorpusIngester(
+      EnvironmentUtils.getInt("CORPUS_INGEST_THREADS", Runtime.getRuntime().availableProcessors()));
+
+  private final ThreadPoolExecutor reloader;
+
+  /** Held while a corpus is ingested, so that ingestions run one at a time. */
+  private final Object ingestLock = new Object();
+
+  private volatile CorpusSnapshot snapshot;
+
+  private volatile CorpusIngestion ingestion;
+
+  private LocalSearchEngine() {
+    reloader = ThreadPools.newFixedThreadPool("corpus-ingestion", 1, new LinkedBlockingQueue<Runnable>());
+  }
+
+  /**
+   * Gets the engine.
+   *
+   * @return the engine
+   */
+  public static LocalSearchEngine getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Builds the index if it has not been built yet. Called by the servlet context listener when the application
+   * starts.
+   */
+  public void initialize() {
+    try {
+      getIndex();
+    } catch (IOException e) {
+      logger.error(Messages.getString("LocalSearchEngine.LOAD_FAILED") + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the index of the current snapshot, building the first one the first time it is asked for.
+   *
+   * @return the index
+   * @throws IOException if the corpus cannot be read
+   */
+  public LocalIndex getIndex() throws IOException {
+    CorpusSnapshot current = snapshot;
+    if (current == null) {
+      synchronized (ingestLock) {
+        if (snapshot == null) {
+          CorpusIngestion run = new CorpusIngestion();
+          ingestion = run;
+          ingest(run);
+        }
+        current = snapshot;
+      }
+    }
+    return current.getIndex();
+  }
+
+  /**
+   * Gets the current snapshot.
+   *
+   * @return the snapshot, or null if the corpus has not been read yet
+   */
+  public CorpusSnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Gets the ingestion in progress, or the last one.
+   *
+   * @return the ingestion, or null if the corpus has not been read yet
+   */
+  public CorpusIngestion getIngestion() {
+    return ingestion;
+  }
+
+  /**
+   * Starts ingesting the corpus again in the background, unless an ingestion is already in progress.
+   *
+   * @return the new ingestion, or null if one is already in progress
+   */
+  public synchronized CorpusIngestion reload() {
+    CorpusIngestion current = ingestion;
+    if ((current != null) && current.isRunning()) {
+      return null;
+    }
+    final CorpusIngestion run = new CorpusIngestion();
+    ingestion = run;
+    reloader.execute(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (ingestLock) {
+          try {
+            ingest(run);
+          } catch (IOException e) {
+            logger.error(Messages.getString("LocalSearchEngine.LOAD_FAILED") + e.getMessage());
+          }
+        }
+      }
+    });
+    return run;
+  }
+
+  /**
+   * Ingests the corpus and publishes the new snapshot. Called with the ingest lock held.
+   */
+  private void ingest(CorpusIngestion run) throws IOException {
+    try {
+      CorpusSnapshot next = ingester.ingest(EnvironmentUtils.getString("LOCAL_CORPUS", null), snapshot, run);
+      snapshot = next;
+      run.enter(CorpusIngestion.Phase.PUBLISHED);
+      logger.info(Messages.getString("LocalSearchEngine.LOADED") + next.getIndex().size() + " (version "
+          + next.getVersion() + ", parsed " + run.getParsed() + ", unchanged " + run.getReused() + ", "
+          + run.getTotalMillis() + " ms)");
+    } catch (IOException e) {
+      run.fail(e);
+      throw e;
+    } catch (RuntimeException e) {
+      run.fail(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Stops the background ingestion thread.
+   */
+  public void shutdown() {
+    reloader.shutdownNow();
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The stages of the chat request pipeline and the gauges of the message endpoints, exposed by
+ * {@link com.ibm.watson.apis.rest.MetricsResource}. A stage is timed with
+ * <code>long start = System.nanoTime(); ... Metrics.PARSE.record(start);</code>.
+ */
+public final class Metrics {
+
+  /** A whole message request, until its response is ready to be written. */
+  public static final Stage REQUEST = new Stage("request");
+
+  /** Reading the message request. */
+  public static final Stage PARSE = new Stage("parse");
+
+  /** The Conversation call, or the local dialog runtime. */
+  public static final Stage CONVERSATION = new Stage("conversation");
+
+  /** All retrieval backends together. */
+  public static final Stage RETRIEVAL = new Stage("retrieval");
+
+  /** Building the document payloads from a backend response. */
+  public static final Stage MAPPING = new Stage("mapping");
+
+  /** Writing the JSON response. */
+  public static final Stage SERIALIZATION = new Stage("serialization");
+
+  private static final List<Stage> STAGES =
+      Arrays.asList(REQUEST, PARSE, CONVERSATION, RETRIEVAL, MAPPING, SERIALIZATION);
+
+  private static final ConcurrentMap<String, Stage> BACKENDS = new ConcurrentHashMap<String, Stage>();
+
+  private static final AtomicInteger ACTIVE_REQUESTS = new AtomicInteger();
+
+  private static final AtomicInteger ACTIVE_ASYNC_REQUESTS = new AtomicInteger();
+
+  private static final AtomicLong RETRIEVAL_FALLBACKS = new AtomicLong();
+
+  private Metrics() {
+  }
+
+  /**
+   * Gets the pipeline stages.
+   *
+   * @return the stages, in pipeline order
+   */
+  public static List<Stage> getStages() {
+    return STAGES;
+  }
+
+  /**
+   * Gets the stage of a retrieval backend, creating it the first time it is asked for. Callers on the hot path
+   * should keep the stage rather than look it up for every call.
+   *
+   * @param name the backend name, for example <code>DISCOVERY</code>
+   * @return the stage
+   */
+  public static Stage getBackend(String name) {
+    Stage stage = BACKENDS.get(name);
+    if (stage == null) {
+      BACKENDS.putIfAbsent(name, new Stage(name.toLowerCase()));
+      stage = BACKENDS.get(name);
+    }
+    return stage;
+  }
+
+  /**
+   * Gets the stages of the retrieval backends.
+   *
+   * @return the stages, by backend name
+   */
+  public static Collection<Stage> getBackends() {
+    Map<String, Stage> sorted = new TreeMap<String, Stage>(BACKENDS);
+    return sorted.values();
+  }
+
+  /**
+   * Gets the number of message requests in progress on the JAX-RS endpoint.
+   *
+   * @return the gauge
+   */
+  public static AtomicInteger getActiveRequests() {
+    return ACTIVE_REQUESTS;
+  }
+
+  /**
+   * Gets the number of message requests in progress on the asynchronous endpoint.
+   *
+   * @return the gauge
+   */
+  public static AtomicInteger getActiveAsyncRequests() {
+    return ACTIVE_ASYNC_REQUESTS;
+  }
+
+  /**
+   * Gets the number of turns answered with the Conversation output alone because no retrieval backend answered.
+   *
+   * @return the counter
+   */
+  public static AtomicLong getRetrievalFallbacks() {
+    return RETRIEVAL_FALLBACKS;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+/**
+ * Builds a page in the Prometheus text exposition format (version 0.0.4).
+ */
+public class PrometheusWriter {
+
+  /** The content type of the page. */
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final int MICROS_DIGITS = 6;
+
+  private final StringBuilder sb = new StringBuilder(16384);
+
+  /**
+   * Starts a metric family.
+   *
+   * @param name the metric name
+   * @param type <code>counter</code>, <code>gauge</code> or <code>histogram</code>
+   * @param help the description
+   * @return this writer
+   */
+  public PrometheusWriter family(String name, String type, String help) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    return this;
+  }
+
+  /**
+   * Writes a sample.
+   *
+   * @param name the metric name
+   * @param value the value
+   * @param labels the label names and values, alternating
+   * @return this writer
+   */
+  public PrometheusWriter sample(String name, double value, String... labels) {
+    sb.append(name);
+    if (labels.length > 0) {
+      sb.append('{');
+      for (int i = 0; i + 1 < labels.length; i += 2) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        sb.append(labels[i]).append("=\"");
+        escape(labels[i + 1]);
+        sb.append('"');
+      }
+      sb.append('}');
+    }
+    sb.append(' ');
+    appendValue(value);
+    sb.append('\n');
+    return this;
+  }
+
+  /**
+   * Writes the latency histograms of stages, in seconds, and their error counters.
+   *
+   * @param name the name of the histogram, the error counter is named <code>&lt;name&gt;_errors_total</code>
+   * @param label the label carrying the stage name
+   * @param help the description of the histogram
+   * @param errorsHelp the description of the error counter
+   * @param stages the stages
+   * @return this writer
+   */
+  public PrometheusWriter histograms(String name, String label, String help, String errorsHelp,
+      Collection<Stage> stages) {
+    String seconds = name + "_duration_seconds";
+    family(seconds, "histogram", help);
+    long[] micros = Stage.getBoundsMicros();
+    String[] bounds = new String[micros.length];
+    for (int i = 0; i < micros.length; i++) {
+      bounds[i] = BigDecimal.valueOf(micros[i]).movePointLeft(MICROS_DIGITS).stripTrailingZeros().toPlainString();
+    }
+    for (Stage stage : stages) {
+      long[] counts = stage.getBucketCounts();
+      long cumulated = 0;
+      for (int i = 0; i < counts.length; i++) {
+        cumulated += counts[i];
+        sb.append(seconds).append("_bucket{").append(label).append("=\"");
+        escape(stage.getName());
+        sb.append("\",le=\"");
+        sb.append(i < bounds.length ? bounds[i] : "+Inf").append("\"} ").append(cumulated).append('\n');
+      }
+      sample(seconds + "_sum", stage.getSumNanos() / NANOS_PER_SECOND, label, stage.getName());
+      sample(seconds + "_count", cumulated, label, stage.getName());
+    }
+    family(name + "_errors_total", "counter", errorsHelp);
+    for (Stage stage : stages) {
+      sample(name + "_errors_total", stage.getErrors(), label, stage.getName());
+    }
+    return this;
+  }
+
+  private void appendValue(double value) {
+    if ((value == Math.rint(value)) && (Math.abs(value) < Long.MAX_VALUE)) {
+      sb.append((long) value);
+    } else {
+      sb.append(value);
+    }
+  }
+
+  private void escape(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if ((c == '\\') || (c == '"')) {
+        sb.append('\\').append(c);
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return sb.toString();
+  }
+}
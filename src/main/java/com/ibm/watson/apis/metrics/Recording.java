@@ -0,0 +1,294 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * An on-demand recording of individual chat turns, outbound calls and payload mappings (see {@link RecordingEvent}),
+ * to diagnose slow turns in production. While no recording is running, {@link #isActive()} is a volatile read and
+ * callers skip building the event, so the instrumentation can stay in place:
+ * <code>if (Recording.isActive()) { Recording.commit(Type.CALL, start, "dependency", name); }</code>.
+ * <p>
+ * A recording keeps at most a given number of events, dropping the oldest, and stops accepting events after a given
+ * time. When the JVM supports it (HotSpot with the <code>DiagnosticCommand</code> MBean), a JVM flight recording is
+ * started alongside and dumped next to the events, so that slow turns can be matched with the GC, lock and I/O events
+ * of the same period. The JVM writes the flight recording to a temporary file when it is stopped or its time is up,
+ * so that it can still be dumped after {@link #stop()}; the file is deleted by the next start or by
+ * {@link #shutdown()}.
+ */
+public final class Recording {
+  private static final Logger logger = LogManager.getLogger(Recording.class.getName());
+
+  private static final String JVM_RECORDING_NAME = "chatbot";
+  private static final String DIAGNOSTIC_COMMAND = "com.sun.management:type=DiagnosticCommand";
+
+  private static volatile boolean active;
+  private static volatile long deadlineNanos;
+
+  private static final ArrayDeque<RecordingEvent> events = new ArrayDeque<RecordingEvent>();
+  private static int maxEvents;
+  private static long dropped;
+  private static long startMillis;
+  private static boolean jvmRecording;
+  private static File jvmRecordingFile;
+
+  private Recording() {
+  }
+
+  /**
+   * Starts a recording, dropping the events of the previous one.
+   *
+   * @param maxEvents the maximum number of events kept
+   * @param maxSeconds how long the recording accepts events
+   * @param withJvmRecording true to start a JVM flight recording as well
+   */
+  public static synchronized void start(int maxEvents, long maxSeconds, boolean withJvmRecording) {
+    if (active) {
+      stop();
+    }
+    events.clear();
+    Recording.maxEvents = Math.max(1, maxEvents);
+    dropped = 0;
+    startMillis = System.currentTimeMillis();
+    deleteJvmRecordingFile();
+    jvmRecording = withJvmRecording && startJvmRecording(maxSeconds);
+    deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(maxSeconds);
+    active = true;
+    logger.info(Messages.getString("Recording.STARTED") + maxSeconds);
+  }
+
+  /**
+   * Stops the recording. The events and the JVM flight recording are kept until the next start, so that they can
+   * still be dumped.
+   */
+  public static synchronized void stop() {
+    active = false;
+    if (jvmRecording) {
+      jvmRecording = false;
+      try {
+        diagnosticCommand("jfrStop", "name=" + JVM_RECORDING_NAME,
+            "filename=" + jvmRecordingFile.getAbsolutePath());
+      } catch (JMException e) {
+        // the JVM recording already ended after its duration, and was written to the file then
+        logger.debug(e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Stops the recording and deletes the temporary file of its JVM flight recording, when the application stops.
+   */
+  public static synchronized void shutdown() {
+    stop();
+    deleteJvmRecordingFile();
+  }
+
+  /**
+   * Returns true if a recording is accepting events. Callers should check it before building an event.
+   *
+   * @return true while recording
+   */
+  public static boolean isActive() {
+    return active && (System.nanoTime() - deadlineNanos < 0);
+  }
+
+  /**
+   * Adds an event which ends now, if a recording is accepting events.
+   *
+   * @param type the type of the event
+   * @param startNanos the {@link System#nanoTime()} at the start of the event
+   * @param fields the field names and values, alternating
+   */
+  public static void commit(RecordingEvent.Type type, long startNanos, Object... fields) {
+    if (!isActive()) {
+      return;
+    }
+    RecordingEvent event = new RecordingEvent(type, startNanos, fields);
+    synchronized (Recording.class) {
+      if (events.size() >= maxEvents) {
+        events.removeFirst();
+        dropped++;
+      }
+      events.addLast(event);
+    }
+  }
+
+  /**
+   * Gets a copy of the recorded events.
+   *
+   * @return the events, oldest first
+   */
+  public static synchronized List<RecordingEvent> getEvents() {
+    return new ArrayList<RecordingEvent>(events);
+  }
+
+  /**
+   * Writes the recorded events, one JSON object per line, and the JVM flight recording if there is one, to a
+   * directory. The files are named after the current time.
+   *
+   * @param directory the directory
+   * @return the files written
+   * @throws IOException if the events could not be written
+   */
+  public static List<File> dump(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException(directory.getPath());
+    }
+    String name = "chatbot-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+    List<File> files = new ArrayList<File>();
+
+    File file = new File(directory, name + ".jsonl");
+    Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      for (RecordingEvent event : getEvents()) {
+        writer.write(event.toJson().toString());
+        writer.write('\n');
+      }
+    } finally {
+      writer.close();
+    }
+    files.add(file);
+
+    File jfr = new File(directory, name + ".jfr");
+    if (dumpJvmRecording(jfr)) {
+      files.add(jfr);
+    }
+    logger.info(Messages.getString("Recording.DUMPED") + files);
+    return files;
+  }
+
+  /**
+   * Writes the JVM flight recording: the one in progress, or the file the JVM wrote when it ended.
+   *
+   * @return true if there was a JVM flight recording
+   */
+  private static synchronized boolean dumpJvmRecording(File jfr) {
+    if (isJvmRecording()) {
+      try {
+        diagnosticCommand("jfrDump", "name=" + JVM_RECORDING_NAME, "filename=" + jfr.getAbsolutePath());
+        return true;
+      } catch (JMException e) {
+        // the JVM recording ended after its duration
+        logger.debug(e.getMessage());
+        jvmRecording = false;
+      }
+    }
+    if ((jvmRecordingFile == null) || (jvmRecordingFile.length() == 0)) {
+      return false;
+    }
+    try {
+      Files.copy(jvmRecordingFile.toPath(), jfr.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    } catch (IOException e) {
+      logger.warn(Messages.getString("Recording.JVM_DUMP_FAILED") + e.getMessage());
+      return false;
+    }
+  }
+
+  private static boolean startJvmRecording(long maxSeconds) {
+    try {
+      jvmRecordingFile = File.createTempFile("chatbot-", ".jfr");
+      diagnosticCommand("jfrStart", "name=" + JVM_RECORDING_NAME, "duration=" + maxSeconds + "s",
+          "filename=" + jvmRecordingFile.getAbsolutePath());
+      return true;
+    } catch (IOException e) {
+      logger.warn(Messages.getString("Recording.JVM_UNAVAILABLE") + e.getMessage());
+    } catch (JMException e) {
+      logger.warn(Messages.getString("Recording.JVM_UNAVAILABLE") + e.getMessage());
+    }
+    deleteJvmRecordingFile();
+    return false;
+  }
+
+  private static void deleteJvmRecordingFile() {
+    if (jvmRecordingFile != null) {
+      jvmRecordingFile.delete();
+      jvmRecordingFile = null;
+    }
+  }
+
+  /**
+   * Gets the temporary file the JVM writes its flight recording to.
+   *
+   * @return the file, null if there is no JVM flight recording
+   */
+  static synchronized File getJvmRecordingFile() {
+    return jvmRecordingFile;
+  }
+
+  private static String diagnosticCommand(String operation, String... arguments) throws JMException {
+    Object result = ManagementFactory.getPlatformMBeanServer().invoke(new ObjectName(DIAGNOSTIC_COMMAND),
+        operation, new Object[] { arguments }, new String[] { String[].class.getName() });
+    return String.valueOf(result);
+  }
+
+  /**
+   * Gets the number of events kept.
+   *
+   * @return the number of events
+   */
+  public static synchronized int getEventCount() {
+    return events.size();
+  }
+
+  /**
+   * Gets the number of events dropped because the recording was full.
+   *
+   * @return the number of dropped events
+   */
+  public static synchronized long getDropped() {
+    return dropped;
+  }
+
+  /**
+   * Gets the start time of the last recording.
+   *
+   * @return the time in milliseconds since the epoch, 0 if no recording was started
+   */
+  public static synchronized long getStartMillis() {
+    return startMillis;
+  }
+
+  /**
+   * Returns true while the JVM flight recording started along with the current recording is running: until the
+   * recording is stopped or its time is up, when the JVM ends its flight recording as well.
+   *
+   * @return true if there is a JVM flight recording in progress
+   */
+  public static synchronized boolean isJvmRecording() {
+    return jvmRecording && (System.nanoTime() - deadlineNanos < 0);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import com.google.gson.JsonObject;
+
+/**
+ * One timed event of a {@link Recording}: a chat turn, an outbound call or a payload mapping, with the fields which
+ * describe it.
+ */
+public class RecordingEvent {
+
+  /** The kinds of events. */
+  public enum Type {
+    /** A message request, from its arrival until its response is ready. */
+    TURN,
+    /** A call of an outbound service, see {@link com.ibm.watson.apis.resilience.Dependency}. */
+    CALL,
+    /** Building the document payloads from a backend response. */
+    MAPPING
+  }
+
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  private final Type type;
+  private final long startMillis;
+  private final long durationNanos;
+  private final String thread;
+  private final Object[] fields;
+
+  /**
+   * Instantiates a new event which ends now.
+   *
+   * @param type the type
+   * @param startNanos the {@link System#nanoTime()} at the start of the event
+   * @param fields the field names and values, alternating
+   */
+  public RecordingEvent(Type type, long startNanos, Object... fields) {
+    this.type = type;
+    this.durationNanos = Math.max(0, System.nanoTime() - startNanos);
+    this.startMillis = System.currentTimeMillis() - (long) (durationNanos / NANOS_PER_MILLI);
+    this.thread = Thread.currentThread().getName();
+    this.fields = fields;
+  }
+
+  /**
+   * Gets the type.
+   *
+   * @return the type
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Gets the duration.
+   *
+   * @return the duration in nanoseconds
+   */
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * Gets the value of a field.
+   *
+   * @param name the field name
+   * @return the value, null if the event has no such field
+   */
+  public Object getField(String name) {
+    for (int i = 0; i + 1 < fields.length; i += 2) {
+      if (name.equals(fields[i])) {
+        return fields[i + 1];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts the event to JSON. The start time is in milliseconds since the epoch, so that the event can be lined up
+   * with the events of a JVM flight recording taken at the same time.
+   *
+   * @return the JSON object
+   */
+  public JsonObject toJson() {
+    JsonObject json = new JsonObject();
+    json.addProperty("type", type.name().toLowerCase());
+    json.addProperty("startTime", startMillis);
+    json.addProperty("durationMs", durationNanos / NANOS_PER_MILLI);
+    json.addProperty("thread", thread);
+    for (int i = 0; i + 1 < fields.length; i += 2) {
+      Object value = fields[i + 1];
+      if (value instanceof Number) {
+        json.addProperty(String.valueOf(fields[i]), (Number) value);
+      } else if (value instanceof Boolean) {
+        json.addProperty(String.valueOf(fields[i]), (Boolean) value);
+      } else if (value != null) {
+        json.addProperty(String.valueOf(fields[i]), value.toString());
+      }
+    }
+    return json;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The latency histogram and error count of one stage of the chat request pipeline. The buckets go from 100
+ * microseconds to 60 seconds in 1-2.5-5 steps. Recording only increments atomic counters, so it does not allocate
+ * or lock and can stay on in production.
+ */
+public class Stage {
+  private static final long[] BOUNDS_MICROS = { 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000,
+      250000, 500000, 1000000, 2500000, 5000000, 10000000, 25000000, 60000000 };
+
+  private static final long[] BOUNDS_NANOS = new long[BOUNDS_MICROS.length];
+
+  static {
+    for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+      BOUNDS_NANOS[i] = TimeUnit.MICROSECONDS.toNanos(BOUNDS_MICROS[i]);
+    }
+  }
+
+  private final String name;
+  private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_NANOS.length + 1);
+  private final AtomicLong sumNanos = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  /**
+   * Instantiates a new stage.
+   *
+   * @param name the name of the stage, used as label value
+   */
+  public Stage(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Records a stage which completed.
+   *
+   * @param startNanos the {@link System#nanoTime()} at the start of the stage
+   */
+  public void record(long startNanos) {
+    long nanos = Math.max(0, System.nanoTime() - startNanos);
+    int bucket = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+    buckets.incrementAndGet(bucket < 0 ? -bucket - 1 : bucket);
+    sumNanos.addAndGet(nanos);
+  }
+
+  /**
+   * Records a stage which failed.
+   *
+   * @param startNanos the {@link System#nanoTime()} at the start of the stage
+   */
+  public void recordError(long startNanos) {
+    errors.incrementAndGet();
+    record(startNanos);
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the upper bounds of the buckets, the last bucket having no bound.
+   *
+   * @return the bounds in microseconds
+   */
+  public static long[] getBoundsMicros() {
+    return BOUNDS_MICROS.clone();
+  }
+
+  /**
+   * Gets the number of recorded stages of each bucket, not cumulated.
+   *
+   * @return the counts, one more than the bounds
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[buckets.length()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = buckets.get(i);
+    }
+    return counts;
+  }
+
+  /**
+   * Gets the total time of the recorded stages.
+   *
+   * @return the sum in nanoseconds
+   */
+  public long getSumNanos() {
+    return sumNanos.get();
+  }
+
+  /**
+   * Gets the number of failed stages.
+   *
+   * @return the errors
+   */
+  public long getErrors() {
+    return errors.get();
+  }
+}
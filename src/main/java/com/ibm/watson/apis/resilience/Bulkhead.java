@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of concurrent calls of a dependency, so that a slow dependency holds at most
+ * <code>maxConcurrent</code> threads. A call waits up to <code>maxWaitMillis</code> for a free slot.
+ */
+public class Bulkhead {
+  private final int maxConcurrent;
+  private final long maxWaitMillis;
+  private final Semaphore permits;
+  private final AtomicLong rejected = new AtomicLong();
+
+  /**
+   * Instantiates a new bulkhead.
+   *
+   * @param maxConcurrent the maximum number of concurrent calls
+   * @param maxWaitMillis how long a call waits for a free slot, 0 to not wait
+   */
+  public Bulkhead(int maxConcurrent, long maxWaitMillis) {
+    this.maxConcurrent = maxConcurrent;
+    this.maxWaitMillis = maxWaitMillis;
+    this.permits = new Semaphore(maxConcurrent);
+  }
+
+  /**
+   * Takes a slot. Every slot taken must be given back with {@link #release()}.
+   *
+   * @return true if a slot was free
+   */
+  public boolean tryAcquire() {
+    try {
+      if ((maxWaitMillis <= 0) ? permits.tryAcquire() : permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+        return true;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    rejected.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Gives back a slot.
+   */
+  public void release() {
+    permits.release();
+  }
+
+  /**
+   * Gets the maximum number of concurrent calls.
+   *
+   * @return the maximum
+   */
+  public int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * Gets the number of free slots.
+   *
+   * @return the free slots
+   */
+  public int getAvailable() {
+    return permits.availablePermits();
+  }
+
+  /**
+   * Gets the number of calls refused because every slot was taken.
+   *
+   * @return the refused calls
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+}
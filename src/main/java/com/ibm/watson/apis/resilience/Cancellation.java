@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+
+import org.apache.http.conn.ConnectTimeoutException;
+
+/**
+ * The cancellation of a call made on a pool thread for a caller which may stop waiting for it. Interrupting the
+ * thread is not enough: it does not stop a blocking HTTP call, and the HTTP clients clear the interrupt flag and wrap
+ * the interruption before the failure reaches the caller. So the caller cancels the call explicitly with
+ * {@link #cancel()} before cancelling its future; the HTTP call registers how to abort it with {@link #onCancel}
+ * (see <code>WatsonServiceUtils.abortWhenCancelled</code> and <code>HttpSolrClientUtils</code>), and the code on the
+ * call's thread asks {@link #isCancellation} whether a failure came from the cancellation.
+ */
+public final class Cancellation {
+  private static final ThreadLocal<Cancellation> CURRENT = new ThreadLocal<Cancellation>();
+
+  private Runnable abort;
+  private boolean cancelled;
+  private boolean finished;
+
+  /**
+   * Wraps a call so that it runs under this cancellation. A cancellation is meant for one call.
+   *
+   * @param <T> the type of the result
+   * @param call the call
+   * @return the call to submit
+   */
+  public <T> Callable<T> wrap(final Callable<T> call) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        Cancellation outer = CURRENT.get();
+        CURRENT.set(Cancellation.this);
+        try {
+          return call.call();
+        } finally {
+          CURRENT.set(outer);
+          synchronized (Cancellation.this) {
+            finished = true;
+            abort = null;
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Cancels the call, running the abort it registered. Does nothing once the call has finished.
+   */
+  public void cancel() {
+    Runnable running;
+    synchronized (this) {
+      if (cancelled || finished) {
+        return;
+      }
+      cancelled = true;
+      running = abort;
+    }
+    if (running != null) {
+      running.run();
+    }
+  }
+
+  /**
+   * Tells if the call was cancelled.
+   *
+   * @return true if {@link #cancel()} was called before the call finished
+   */
+  public synchronized boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Registers how to abort the call running on the current thread, called by the call once its HTTP request is
+   * created. If the call is cancelled the abort is run from the cancelling thread; if it was already cancelled, the
+   * abort is run right away. Does nothing outside a call wrapped by a cancellation.
+   *
+   * @param abort aborts the HTTP call, must be safe to run after the call has completed
+   */
+  public static void onCancel(Runnable abort) {
+    Cancellation current = CURRENT.get();
+    if (current != null) {
+      current.register(abort);
+    }
+  }
+
+  private void register(Runnable abort) {
+    synchronized (this) {
+      if (!cancelled) {
+        this.abort = abort;
+        return;
+      }
+    }
+    abort.run();
+  }
+
+  /**
+   * Tells if the failure of a call made on the current thread comes from its cancellation rather than from the
+   * service: the call was cancelled, or an interruption is found among the causes of the failure. Timeouts are
+   * interruptions to Java but failures of the service, so they never count as a cancellation: the socket and connect
+   * timeouts are subclasses of {@link InterruptedIOException}, and Okio reports its deadlines with a plain one.
+   *
+   * @param failure the failure, may be null
+   * @return true if the call was cancelled by its caller
+   */
+  public static boolean isCancellation(Throwable failure) {
+    if (failure == null) {
+      return false;
+    }
+    Cancellation current = CURRENT.get();
+    if ((current != null) && current.isCancelled()) {
+      return true;
+    }
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (isTimeout(cause)) {
+        return false;
+      }
+      if ((cause instanceof InterruptedException) || (cause instanceof InterruptedIOException)) {
+        return true;
+      }
+    }
+    return Thread.currentThread().isInterrupted();
+  }
+
+  private static boolean isTimeout(Throwable cause) {
+    if ((cause instanceof SocketTimeoutException) || (cause instanceof ConnectTimeoutException)) {
+      return true;
+    }
+    String message = cause.getMessage();
+    return (cause instanceof InterruptedIOException) && (message != null)
+        && (message.contains("timeout") || message.contains("deadline"));
+  }
+}
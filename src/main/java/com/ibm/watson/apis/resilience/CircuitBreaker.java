@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * A circuit breaker over the outcomes of the last <code>windowSize</code> calls of a dependency. Once at least
+ * <code>minimumCalls</code> calls were recorded, the breaker opens when the percentage of failed calls reaches
+ * <code>failureRate</code> or the percentage of calls slower than <code>slowCallMillis</code> reaches
+ * <code>slowCallRate</code>. An open breaker refuses every call for <code>openMillis</code>, then lets
+ * <code>halfOpenCalls</code> trial calls through: the breaker closes when they all succeed and opens again on the
+ * first trial which fails or is slow.
+ */
+public class CircuitBreaker {
+  private static final Logger logger = LogManager.getLogger(CircuitBreaker.class.getName());
+
+  /** The states of a breaker. */
+  public enum State {
+    /** Calls are let through and their outcomes recorded. */
+    CLOSED,
+    /** Calls are refused. */
+    OPEN,
+    /** A few trial calls are let through to find out if the dependency is back. */
+    HALF_OPEN
+  }
+
+  private final String name;
+  private final int minimumCalls;
+  private final int failureRate;
+  private final long slowCallMillis;
+  private final int slowCallRate;
+  private final long openNanos;
+  private final int halfOpenCalls;
+
+  private final boolean[] failed;
+  private final boolean[] slow;
+  private int position;
+  private int calls;
+  private int failures;
+  private int slowCalls;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int trialCalls;
+  private int trialSuccesses;
+
+  private final Map<State, AtomicLong> transitions = new EnumMap<State, AtomicLong>(State.class);
+  private final AtomicLong notPermitted = new AtomicLong();
+
+  /**
+   * Instantiates a new circuit breaker.
+   *
+   * @param name the name of the dependency, used in the log
+   * @param windowSize the number of recent calls whose outcomes are kept
+   * @param minimumCalls the number of calls recorded before the breaker may open
+   * @param failureRate the percentage of failed calls which opens the breaker
+   * @param slowCallMillis the duration from which a call counts as slow
+   * @param slowCallRate the percentage of slow calls which opens the breaker
+   * @param openMillis how long the breaker stays open before trial calls are let through
+   * @param halfOpenCalls the number of trial calls
+   */
+  public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRate, long slowCallMillis,
+      int slowCallRate, long openMillis, int halfOpenCalls) {
+    this.name = name;
+    this.failed = new boolean[windowSize];
+    this.slow = new boolean[windowSize];
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRate = failureRate;
+    this.slowCallMillis = slowCallMillis;
+    this.slowCallRate = slowCallRate;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    this.halfOpenCalls = Math.max(1, halfOpenCalls);
+    for (State to : State.values()) {
+      transitions.put(to, new AtomicLong());
+    }
+  }
+
+  /**
+   * Asks for the permission to make a call. Every permitted call must be followed by {@link #onResult},
+   * {@link #onIgnored} or {@link #onCancelled}.
+   *
+   * @return true if the call may be made
+   */
+  public synchronized boolean tryAcquire() {
+    if ((state == State.OPEN) && (System.nanoTime() - openedAt >= openNanos)) {
+      transition(State.HALF_OPEN);
+    }
+    if ((state == State.OPEN) || ((state == State.HALF_OPEN) && (trialCalls >= halfOpenCalls))) {
+      notPermitted.incrementAndGet();
+      return false;
+    }
+    if (state == State.HALF_OPEN) {
+      trialCalls++;
+    }
+    return true;
+  }
+
+  /**
+   * Records the outcome of a permitted call.
+   *
+   * @param millis how long the call took
+   * @param failure true if the call failed
+   */
+  public synchronized void onResult(long millis, boolean failure) {
+    boolean slowCall = millis >= slowCallMillis;
+    if (state == State.HALF_OPEN) {
+      if (failure || slowCall) {
+        transition(State.OPEN);
+      } else if (++trialSuccesses >= halfOpenCalls) {
+        transition(State.CLOSED);
+      }
+      return;
+    }
+    if (state == State.OPEN) {
+      // a call made before the breaker opened
+      return;
+    }
+    if (calls == failed.length) {
+      failures -= failed[position] ? 1 : 0;
+      slowCalls -= slow[position] ? 1 : 0;
+    } else {
+      calls++;
+    }
+    failed[position] = failure;
+    slow[position] = slowCall;
+    failures += failure ? 1 : 0;
+    slowCalls += slowCall ? 1 : 0;
+    position = (position + 1) % failed.length;
+    if ((calls >= minimumCalls)
+        && ((failures * 100 >= failureRate * calls) || (slowCalls * 100 >= slowCallRate * calls))) {
+      transition(State.OPEN);
+    }
+  }
+
+  /**
+   * Gives back the permission of a call whose outcome says nothing about the dependency, for example a call
+   * cancelled by the caller.
+   */
+  public synchronized void onIgnored() {
+    if ((state == State.HALF_OPEN) && (trialCalls > trialSuccesses)) {
+      trialCalls--;
+    }
+  }
+
+  /**
+   * Records a call cancelled by its caller. Its outcome says nothing about the dependency, unless it already took
+   * longer than a slow call, for example because the caller gave up at its deadline: then it counts as a slow call.
+   *
+   * @param millis how long the call ran before it was cancelled
+   */
+  public synchronized void onCancelled(long millis) {
+    if (millis >= slowCallMillis) {
+      onResult(millis, false);
+    } else {
+      onIgnored();
+    }
+  }
+
+  private void transition(State to) {
+    state = to;
+    transitions.get(to).incrementAndGet();
+    trialCalls = 0;
+    trialSuccesses = 0;
+    if (to == State.OPEN) {
+      openedAt = System.nanoTime();
+    } else if (to == State.CLOSED) {
+      position = 0;
+      calls = 0;
+      failures = 0;
+      slowCalls = 0;
+    }
+    if (to == State.HALF_OPEN) {
+      logger.info(Messages.getString("CircuitBreaker.STATE_CHANGED") + name + " " + to);
+    } else {
+      logger.warn(Messages.getString("CircuitBreaker.STATE_CHANGED") + name + " " + to);
+    }
+  }
+
+  /**
+   * Gets the current state. An open breaker whose open time has passed is reported open until the next call.
+   *
+   * @return the state
+   */
+  public synchronized State getState() {
+    return state;
+  }
+
+  /**
+   * Gets the percentage of failed calls in the window.
+   *
+   * @return the failure rate, 0 when no call was recorded
+   */
+  public synchronized double getFailureRate() {
+    return calls == 0 ? 0 : failures * 100.0 / calls;
+  }
+
+  /**
+   * Gets the number of times the breaker went into a state.
+   *
+   * @param to the state
+   * @return the number of transitions into the state
+   */
+  public long getTransitions(State to) {
+    return transitions.get(to).get();
+  }
+
+  /**
+   * Gets the number of calls refused by the breaker.
+   *
+   * @return the refused calls
+   */
+  public long getNotPermitted() {
+    return notPermitted.get();
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.metrics.RecordingEvent;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+
+/**
+ * An outbound service (Conversation, Retrieve and Rank, Discovery, Cloudant) guarded by a {@link CircuitBreaker}
+ * and a {@link Bulkhead}, so that one sick service fails fast instead of holding the request threads. The settings
+ * are read once per dependency, <code>&lt;NAME&gt;_&lt;SETTING&gt;</code> first and then <code>&lt;SETTING&gt;</code>
+ * (for example <code>DISCOVERY_BULKHEAD_MAX_CONCURRENT</code>, then <code>BULKHEAD_MAX_CONCURRENT</code>).
+ * <p>
+ * Calls cancelled by the caller (see {@link Cancellation}) and client errors of the Watson services (4xx other than
+ * 429) do not count as failures, since they say nothing about the health of the service; a cancelled call which ran
+ * longer than a slow call still counts as slow. Each call is added to the
+ * running {@link Recording}, if any.
+ */
+public class Dependency {
+  private static final ConcurrentMap<String, Dependency> DEPENDENCIES = new ConcurrentHashMap<String, Dependency>();
+
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final int SERVER_ERROR = 500;
+
+  private final String name;
+  private final CircuitBreaker breaker;
+  private final Bulkhead bulkhead;
+
+  /**
+   * Instantiates a new dependency.
+   *
+   * @param name the name of the dependency
+   * @param breaker the circuit breaker
+   * @param bulkhead the bulkhead
+   */
+  public Dependency(String name, CircuitBreaker breaker, Bulkhead bulkhead) {
+    this.name = name;
+    this.breaker = breaker;
+    this.bulkhead = bulkhead;
+  }
+
+  /**
+   * Gets the application wide dependency of a name, creating it from the settings the first time it is asked for.
+   *
+   * @param name the upper case name, for example <code>CONVERSATION</code>
+   * @return the dependency
+   */
+  public static Dependency get(String name) {
+    Dependency dependency = DEPENDENCIES.get(name);
+    if (dependency == null) {
+      CircuitBreaker breaker = new CircuitBreaker(name, getInt(name, "BREAKER_WINDOW_SIZE", 20),
+          getInt(name, "BREAKER_MINIMUM_CALLS", 10), getInt(name, "BREAKER_FAILURE_RATE", 50),
+          getLong(name, "BREAKER_SLOW_CALL_MS", 5000), getInt(name, "BREAKER_SLOW_CALL_RATE", 80),
+          getLong(name, "BREAKER_OPEN_MS", 30000), getInt(name, "BREAKER_HALF_OPEN_CALLS", 3));
+      Bulkhead bulkhead = new Bulkhead(getInt(name, "BULKHEAD_MAX_CONCURRENT", 20),
+          getLong(name, "BULKHEAD_MAX_WAIT_MS", 0));
+      DEPENDENCIES.putIfAbsent(name, new Dependency(name, breaker, bulkhead));
+      dependency = DEPENDENCIES.get(name);
+    }
+    return dependency;
+  }
+
+  /**
+   * Gets the application wide dependencies created so far.
+   *
+   * @return the dependencies by name
+   */
+  public static Collection<Dependency> getAll() {
+    Map<String, Dependency> sorted = new TreeMap<String, Dependency>(DEPENDENCIES);
+    return sorted.values();
+  }
+
+  /**
+   * Reads a setting of a dependency, <code>&lt;NAME&gt;_&lt;SETTING&gt;</code> first and then
+   * <code>&lt;SETTING&gt;</code>.
+   */
+  static int getInt(String name, String setting, int defaultValue) {
+    return EnvironmentUtils.getInt(name + "_" + setting, EnvironmentUtils.getInt(setting, defaultValue));
+  }
+
+  static long getLong(String name, String setting, long defaultValue) {
+    return EnvironmentUtils.getLong(name + "_" + setting, EnvironmentUtils.getLong(setting, defaultValue));
+  }
+
+  /**
+   * Makes a call through the bulkhead and the circuit breaker.
+   *
+   * @param <T> the type of the result
+   * @param call the call
+   * @return the result of the call
+   * @throws Exception the failure of the call, or {@link DependencyUnavailableException} if it was not made
+   */
+  public <T> T call(Callable<T> call) throws Exception {
+    long start = acquire();
+    try {
+      T result = call.call();
+      release(start, null);
+      return result;
+    } catch (Exception e) {
+      release(start, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Takes a slot of the bulkhead and the permission of the circuit breaker, for calls which cannot be made through
+   * {@link #call}, such as asynchronous ones. Every successful acquire must be followed by {@link #release}.
+   *
+   * @return the start time of the call, to pass to {@link #release}
+   * @throws DependencyUnavailableException if the bulkhead is full or the breaker is open
+   */
+  public long acquire() {
+    if (!bulkhead.tryAcquire()) {
+      throw new DependencyUnavailableException(name + ": bulkhead full");
+    }
+    if (!breaker.tryAcquire()) {
+      bulkhead.release();
+      throw new DependencyUnavailableException(name + ": circuit open");
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the outcome of a call and gives back its bulkhead slot.
+   *
+   * @param start the start time returned by {@link #acquire}
+   * @param failure the failure of the call, null if it succeeded
+   */
+  public void release(long start, Exception failure) {
+    bulkhead.release();
+    boolean cancelled = Cancellation.isCancellation(failure);
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (cancelled) {
+      breaker.onCancelled(millis);
+    } else {
+      breaker.onResult(millis, isFailure(failure));
+    }
+    if (Recording.isActive()) {
+      Recording.commit(RecordingEvent.Type.CALL, start, "dependency", name, "outcome",
+          failure == null ? "ok" : (cancelled ? "cancelled" : failure.getClass().getSimpleName()));
+    }
+  }
+
+  private static boolean isFailure(Exception failure) {
+    if (failure instanceof ServiceResponseException) {
+      int status = ((ServiceResponseException) failure).getStatusCode();
+      return (status >= SERVER_ERROR) || (status == TOO_MANY_REQUESTS);
+    }
+    return failure != null;
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the circuit breaker.
+   *
+   * @return the circuit breaker
+   */
+  public CircuitBreaker getCircuitBreaker() {
+    return breaker;
+  }
+
+  /**
+   * Gets the bulkhead.
+   *
+   * @return the bulkhead
+   */
+  public Bulkhead getBulkhead() {
+    return bulkhead;
+  }
+}
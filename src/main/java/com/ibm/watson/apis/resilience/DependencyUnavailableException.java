@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+/**
+ * Thrown instead of calling a {@link Dependency} whose circuit breaker is open or whose bulkhead is full.
+ */
+public class DependencyUnavailableException extends RuntimeException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Instantiates a new exception.
+   *
+   * @param message the name of the dependency and the reason
+   */
+  public DependencyUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of call latencies in buckets which grow by a quarter, from 1 ms to 2 minutes. The counts are halved
+ * whenever <code>window</code> more calls were recorded, so the percentiles follow the recent latencies.
+ */
+public class LatencyHistogram {
+  private static final long[] BOUNDS = createBounds();
+
+  private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length);
+  private final AtomicLong samples = new AtomicLong();
+  private final long window;
+
+  /**
+   * Instantiates a new histogram.
+   *
+   * @param window the number of calls after which the counts are halved
+   */
+  public LatencyHistogram(long window) {
+    this.window = window;
+  }
+
+  private static long[] createBounds() {
+    List<Long> bounds = new ArrayList<Long>();
+    for (long bound = 1; bound < 120000; bound = Math.max(bound + 1, bound * 5 / 4)) {
+      bounds.add(bound);
+    }
+    bounds.add(Long.MAX_VALUE);
+    long[] array = new long[bounds.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = bounds.get(i);
+    }
+    return array;
+  }
+
+  /**
+   * Records the latency of a call.
+   *
+   * @param millis the latency
+   */
+  public void record(long millis) {
+    int bucket = 0;
+    while (millis > BOUNDS[bucket]) {
+      bucket++;
+    }
+    counts.incrementAndGet(bucket);
+    if (samples.incrementAndGet() % window == 0) {
+      for (int i = 0; i < BOUNDS.length; i++) {
+        long count = counts.get(i);
+        counts.addAndGet(i, -(count / 2));
+      }
+    }
+  }
+
+  /**
+   * Gets the number of calls currently counted.
+   *
+   * @return the count
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BOUNDS.length; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Gets the latency under which a percentage of the counted calls completed, rounded up to its bucket.
+   *
+   * @param percentile the percentage, for example 95
+   * @return the latency in milliseconds, 0 when no call was recorded
+   */
+  public long getPercentile(double percentile) {
+    long[] snapshot = new long[BOUNDS.length];
+    long count = 0;
+    for (int i = 0; i < BOUNDS.length; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BOUNDS.length - 1; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return BOUNDS[i];
+      }
+    }
+    return BOUNDS[BOUNDS.length - 2];
+  }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Sends a second, identical request when the first one has not answered within the <code>percentile</code> of the
+ * recent latencies, and takes whichever answers first; the other one is cancelled through its {@link Cancellation},
+ * which aborts its HTTP call; otherwise the losing call would keep its thread and connection until the service
+ * answers. The hedges are limited to
+ * <code>budgetPercent</code> of the calls, so a slow service gets at most that much extra load. Until
+ * <code>minSamples</code> latencies were recorded no hedge is sent.
+ * <p>
+ * The application wide hedgers (see {@link #get}) are disabled unless <code>HEDGE_ENABLED</code> is true, and read
+ * their settings like a {@link Dependency}, for example <code>DISCOVERY_HEDGE_PERCENTILE</code> and then
+ * <code>HEDGE_PERCENTILE</code>. The requests run on a shared pool of <code>HEDGE_THREADS</code> threads; when it is
+ * busy, the request is made on the calling thread without a hedge.
+ */
+public class RequestHedger {
+  private static final ConcurrentMap<String, RequestHedger> HEDGERS = new ConcurrentHashMap<String, RequestHedger>();
+
+  private static final int TOKEN = 100;
+  private static final int MAX_TOKENS = 10 * TOKEN;
+  private static final long HISTOGRAM_WINDOW = 1000;
+
+  private static volatile ThreadPoolExecutor sharedExecutor;
+
+  private final String name;
+  private final boolean enabled;
+  private final double percentile;
+  private final long minDelayMillis;
+  private final int budgetPercent;
+  private final long minSamples;
+  private final ThreadPoolExecutor executor;
+  private final LatencyHistogram latencies = new LatencyHistogram(HISTOGRAM_WINDOW);
+  private final AtomicLong tokens = new AtomicLong();
+  private final Stats stats = new Stats();
+
+  /**
+   * Instantiates a new hedger.
+   *
+   * @param name the name of the service
+   * @param enabled false to make every request once, on the calling thread
+   * @param percentile the percentile of the latencies after which a hedge is sent
+   * @param minDelayMillis the shortest delay before a hedge is sent
+   * @param budgetPercent the maximum number of hedges per 100 calls
+   * @param minSamples the number of latencies recorded before hedges are sent
+   * @param executor the pool the requests run on
+   */
+  public RequestHedger(String name, boolean enabled, double percentile, long minDelayMillis, int budgetPercent,
+      long minSamples, ThreadPoolExecutor executor) {
+    this.name = name;
+    this.enabled = enabled;
+    this.percentile = percentile;
+    this.minDelayMillis = minDelayMillis;
+    this.budgetPercent = budgetPercent;
+    this.minSamples = minSamples;
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the application wide hedger of a service, creating it from the settings the first time it is asked for.
+   *
+   * @param name the upper case name, for example <code>DISCOVERY</code>
+   * @return the hedger
+   */
+  public static RequestHedger get(String name) {
+    RequestHedger hedger = HEDGERS.get(name);
+    if (hedger == null) {
+      boolean enabled = EnvironmentUtils.getBoolean(name + "_HEDGE_ENABLED",
+          EnvironmentUtils.getBoolean("HEDGE_ENABLED", false));
+      HEDGERS.putIfAbsent(name, new RequestHedger(name, enabled, Dependency.getInt(name, "HEDGE_PERCENTILE", 95),
+          Dependency.getLong(name, "HEDGE_MIN_DELAY_MS", 50), Dependency.getInt(name, "HEDGE_BUDGET_PERCENT", 5),
+          Dependency.getLong(name, "HEDGE_MIN_SAMPLES", 20), enabled ? getSharedExecutor() : null));
+      hedger = HEDGERS.get(name);
+    }
+    return hedger;
+  }
+
+  /**
+   * Gets the application wide hedgers created so far.
+   *
+   * @return the hedgers, by name
+   */
+  public static Collection<RequestHedger> getAll() {
+    Map<String, RequestHedger> sorted = new TreeMap<String, RequestHedger>(HEDGERS);
+    return sorted.values();
+  }
+
+  private static ThreadPoolExecutor getSharedExecutor() {
+    ThreadPoolExecutor executor = sharedExecutor;
+    if (executor == null) {
+      synchronized (RequestHedger.class) {
+        if (sharedExecutor == null) {
+          int threads = EnvironmentUtils.getInt("HEDGE_THREADS", 32);
+          sharedExecutor = ThreadPools.newFixedThreadPool("hedge", threads, new SynchronousQueue<Runnable>());
+        }
+        executor = sharedExecutor;
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Stops the shared pool of the application wide hedgers, interrupting the running requests.
+   */
+  public static synchronized void shutdown() {
+    if (sharedExecutor != null) {
+      sharedExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Makes a request, and a hedge if the request is slow.
+   *
+   * @param <T> the type of the response
+   * @param request the request, which must be safe to send twice
+   * @return the first response
+   * @throws Exception the failure of the request, or of the first one if both failed
+   */
+  public <T> T call(Callable<T> request) throws Exception {
+    if (!enabled) {
+      return request.call();
+    }
+    stats.calls.incrementAndGet();
+    addBudget();
+    Callable<T> timed = timed(request);
+    CompletionService<T> completionService = new ExecutorCompletionService<T>(executor);
+    Cancellation primaryCancellation = new Cancellation();
+    Cancellation hedgeCancellation = new Cancellation();
+    Future<T> primary;
+    try {
+      primary = completionService.submit(primaryCancellation.wrap(timed));
+    } catch (RejectedExecutionException e) {
+      return timed.call();
+    }
+    Future<T> hedge = null;
+    try {
+      Future<T> done = completionService.poll(getDelayMillis(), TimeUnit.MILLISECONDS);
+      if (done == null) {
+        hedge = submitHedge(completionService, hedgeCancellation.wrap(timed));
+        done = completionService.take();
+      }
+      try {
+        return getResult(done, hedge);
+      } catch (ExecutionException e) {
+        if (hedge == null) {
+          throw unwrap(e);
+        }
+        try {
+          return getResult(completionService.take(), hedge);
+        } catch (ExecutionException other) {
+          throw unwrap(e);
+        }
+      }
+    } finally {
+      primaryCancellation.cancel();
+      primary.cancel(true);
+      if (hedge != null) {
+        hedgeCancellation.cancel();
+        hedge.cancel(true);
+      }
+    }
+  }
+
+  private <T> Future<T> submitHedge(CompletionService<T> completionService, Callable<T> attempt) {
+    if ((latencies.getCount() < minSamples) || !takeBudget()) {
+      stats.denied.incrementAndGet();
+      return null;
+    }
+    try {
+      Future<T> hedge = completionService.submit(attempt);
+      stats.hedges.incrementAndGet();
+      return hedge;
+    } catch (RejectedExecutionException e) {
+      tokens.addAndGet(TOKEN);
+      stats.denied.incrementAndGet();
+      return null;
+    }
+  }
+
+  private <T> T getResult(Future<T> done, Future<T> hedge) throws ExecutionException, InterruptedException {
+    T result = done.get();
+    if (done == hedge) {
+      stats.wins.incrementAndGet();
+    }
+    return result;
+  }
+
+  private static Exception unwrap(ExecutionException e) {
+    return e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+  }
+
+  private <T> Callable<T> timed(final Callable<T> request) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        long start = System.nanoTime();
+        try {
+          return request.call();
+        } finally {
+          // the requests which failed or were aborted are the slow tail, so they count with the time they ran
+          latencies.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+      }
+    };
+  }
+
+  private void addBudget() {
+    long current;
+    do {
+      current = tokens.get();
+    } while ((current < MAX_TOKENS) && !tokens.compareAndSet(current, Math.min(MAX_TOKENS, current + budgetPercent)));
+  }
+
+  private boolean takeBudget() {
+    long current;
+    do {
+      current = tokens.get();
+      if (current < TOKEN) {
+        return false;
+      }
+    } while (!tokens.compareAndSet(current, current - TOKEN));
+    return true;
+  }
+
+  /**
+   * Gets how long a request may take before a hedge is sent.
+   *
+   * @return the delay in milliseconds
+   */
+  public long getDelayMillis() {
+    return Math.max(minDelayMillis, latencies.getPercentile(percentile));
+  }
+
+  /**
+   * Gets the latencies of the requests. The requests which failed or were cancelled count with the time they ran
+   * until then, which is less than they would have taken.
+   *
+   * @return the histogram
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * Gets the name.
+   *
+   * @return the name
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Tells if hedges are sent.
+   *
+   * @return true if enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Gets the counters of this hedger.
+   *
+   * @return the statistics
+   */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /**
+   * Counters of the hedged calls.
+   */
+  public static class Stats {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong wins = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    /**
+     * Gets the number of calls.
+     *
+     * @return the calls
+     */
+    public long getCalls() {
+      return calls.get();
+    }
+
+    /**
+     * Gets the number of hedges sent.
+     *
+     * @return the hedges
+     */
+    public long getHedges() {
+      return hedges.get();
+    }
+
+    /**
+     * Gets the number of hedges which answered before the first request.
+     *
+     * @return the wins
+     */
+    public long getWins() {
+      return wins.get();
+    }
+
+    /**
+     * Gets the number of slow calls which got no hedge, because of the budget, too few latencies or a busy pool.
+     *
+     * @return the denied hedges
+     */
+    public long getDenied() {
+      return denied.get();
+    }
+
+    /**
+     * Gets the percentage of calls which were hedged.
+     *
+     * @return the hedge rate
+     */
+    public double getHedgeRate() {
+      long count = calls.get();
+      return count == 0 ? 0 : hedges.get() * 100.0 / count;
+    }
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.conversation.ConversationRouter;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+
+/**
+ * Asynchronous variant of {@link ProxyResource#postMessage(String, java.io.InputStream)}, mapped to
+ * <code>/async/conversation/api/v1/workspaces/{id}/message</code>. The request is suspended with the Servlet 3
+ * async API (the JAX-RS 1.1 runtime used by this application has no <code>AsyncResponse</code>), the conversation
+ * service is called with the SDK's <code>enqueue</code>, and the retrieval calls run on a small pool of their own.
+ * No container thread is held while the remote calls are in progress. A request which takes longer than
+ * <code>ASYNC_MESSAGE_TIMEOUT_MS</code> is answered with the usual error JSON.
+ */
+public class AsyncMessageServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+  private static final Logger logger = LogManager.getLogger(AsyncMessageServlet.class.getName());
+  private static final String MESSAGE_PATH = "/message";
+
+  private transient ThreadPoolExecutor retrievalExecutor;
+
+  private long timeout;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.GenericServlet#init()
+   */
+  @Override
+  public void init() throws ServletException {
+    timeout = EnvironmentUtils.getLong("ASYNC_MESSAGE_TIMEOUT_MS", 30000);
+    int threads = EnvironmentUtils.getInt("ASYNC_RETRIEVAL_THREADS", 16);
+    retrievalExecutor = ThreadPools.newFixedThreadPool("async-message", threads,
+        new LinkedBlockingQueue<Runnable>(EnvironmentUtils.getInt("ASYNC_RETRIEVAL_QUEUE_SIZE", 200)));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.GenericServlet#destroy()
+   */
+  @Override
+  public void destroy() {
+    retrievalExecutor.shutdownNow();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.http.HttpServlet#doPost(javax.servlet.http.HttpServletRequest,
+   * javax.servlet.http.HttpServletResponse)
+   */
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    String path = req.getPathInfo();
+    if ((path == null) || !path.endsWith(MESSAGE_PATH) || (path.length() <= MESSAGE_PATH.length() + 1)) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    final String id = path.substring(1, path.length() - MESSAGE_PATH.length());
+    final ProxyResource proxy = new ProxyResource();
+    final long start = System.nanoTime();
+
+    MessageRequest request;
+    try {
+      MessageRequestReader.getInstance().checkContentLength(req.getContentLength());
+      request = proxy.buildMessageFromPayload(req.getInputStream());
+    } catch (InvalidRequestException e) {
+      Metrics.PARSE.recordError(start);
+      Metrics.REQUEST.recordError(start);
+      resp.sendError(e.getStatus(), e.getMessage());
+      return;
+    }
+    Metrics.PARSE.record(start);
+    Metrics.getActiveAsyncRequests().incrementAndGet();
+
+    final boolean gzip = JsonStreamingOutput.useGzip(req.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    final AsyncContext asyncContext = req.startAsync();
+    asyncContext.setTimeout(timeout);
+    final Exchange exchange = new Exchange(asyncContext, proxy, id, start, gzip);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException {
+        exchange.fail(new TimeoutException());
+      }
+
+      @Override
+      public void onError(AsyncEvent event) throws IOException {
+        exchange.fail(new IOException(event.getThrowable()));
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) throws IOException {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) throws IOException {
+      }
+    });
+
+    proxy.speculate(request);
+    final long conversationStart = System.nanoTime();
+    ConversationRouter.getInstance().messageAsync(proxy.getConversationService(), id, request,
+        new ServiceCallback<MessageResponse>() {
+          @Override
+          public void onResponse(final MessageResponse response) {
+            Metrics.CONVERSATION.record(conversationStart);
+            try {
+              retrievalExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                  try {
+                    proxy.lookupIfNeeded(response);
+                    proxy.storeContext(response);
+                    exchange.complete(response);
+                  } catch (Exception e) {
+                    exchange.fail(e);
+                  }
+                }
+              });
+            } catch (Exception e) {
+              proxy.discardSpeculation();
+              exchange.fail(e);
+            }
+          }
+
+          @Override
+          public void onFailure(Exception e) {
+            Metrics.CONVERSATION.recordError(conversationStart);
+            proxy.discardSpeculation();
+            exchange.fail(e);
+          }
+        });
+  }
+
+  /**
+   * A suspended message request, answered once by whichever of the response, a failure or the timeout comes first.
+   */
+  private static final class Exchange {
+    private final AsyncContext asyncContext;
+    private final ProxyResource proxy;
+    private final String id;
+    private final long start;
+    private final boolean gzip;
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    Exchange(AsyncContext asyncContext, ProxyResource proxy, String id, long start, boolean gzip) {
+      this.asyncContext = asyncContext;
+      this.proxy = proxy;
+      this.id = id;
+      this.start = start;
+      this.gzip = gzip;
+    }
+
+    void complete(MessageResponse response) {
+      if (completed.compareAndSet(false, true)) {
+        Metrics.REQUEST.record(start);
+        proxy.recordTurn(id, response, start, null);
+        write(new JsonStreamingOutput(response, MessageResponse.class, gzip));
+      }
+    }
+
+    void fail(Exception e) {
+      if (completed.compareAndSet(false, true)) {
+        Metrics.REQUEST.recordError(start);
+        proxy.recordTurn(id, null, start, e);
+        write(new JsonStreamingOutput(ProxyResource.buildError(e), Map.class, gzip));
+      }
+    }
+
+    /**
+     * Writes the JSON and completes the request.
+     */
+    private void write(JsonStreamingOutput output) {
+      Metrics.getActiveAsyncRequests().decrementAndGet();
+      try {
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        response.setContentType(MediaType.APPLICATION_JSON);
+        response.setCharacterEncoding("UTF-8");
+        if (output.isGzip()) {
+          response.setHeader(HttpHeaders.CONTENT_ENCODING, JsonStreamingOutput.GZIP);
+        }
+        output.write(response.getOutputStream());
+      } catch (Exception e) {
+        logger.error(Messages.getString("AsyncMessageServlet.WRITE_ERROR"), e);
+      } finally {
+        asyncContext.complete();
+      }
+    }
+  }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.InputStream;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Replays many utterances through the bot in one call, for offline evaluation and bulk traffic. The API endpoint
+ * points to '/rest/batch'. <code>POST</code> a JSON array or an NDJSON stream of
+ * <code>{"workspaceId": ..., "input": {...}, "context": {...}}</code> items; the answers are streamed back as NDJSON
+ * as they complete (see {@link MessageBatch}). The <code>workspaceId</code> query parameter is used for the items
+ * which do not name a workspace. Like '/rest/cache', it requires the <code>ADMIN_KEY</code> in the
+ * <code>X-Admin-Key</code> header.
+ */
+@Path("batch")
+public class BatchResource {
+
+  /**
+   * Answers a batch of message requests.
+   *
+   * @param adminKey the admin key
+   * @param workspaceId the workspace of the items which do not name one
+   * @param body the items
+   * @return the NDJSON stream of the answers
+   */
+  @POST
+  @Consumes({ MediaType.APPLICATION_JSON, MessageBatch.NDJSON })
+  @Produces(MessageBatch.NDJSON)
+  public Response postBatch(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey,
+      @QueryParam("workspaceId") String workspaceId, InputStream body) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    return Response.ok(new MessageBatch(body, workspaceId)).type(MessageBatch.NDJSON)
+        .header("Cache-Control", "no-cache").build();
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.util.Map;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonObject;
+import com.ibm.watson.apis.retrieval.AnswerCache;
+import com.ibm.watson.apis.retrieval.CoalescingRetrievalBackend;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * Administration of the retrieval {@link AnswerCache}. The API endpoint points to '/rest/cache'. <code>GET</code>
+ * returns the size and the hit, miss and eviction counters of each backend, along with how many calls were collapsed
+ * into a shared backend call (see {@link CoalescingRetrievalBackend}); <code>DELETE</code> (or
+ * <code>DELETE /rest/cache/{backend}</code>) drops the cached answers, for example after the corpus was re-ingested.
+ * The endpoint is disabled unless the <code>ADMIN_KEY</code> setting is present, and every call must send it in the
+ * <code>X-Admin-Key</code> header.
+ */
+@Path("cache")
+public class CacheResource {
+  private static final Logger logger = LogManager.getLogger(CacheResource.class.getName());
+
+  /** The header carrying the admin key. */
+  public static final String ADMIN_KEY_HEADER = "X-Admin-Key";
+
+  /**
+   * Gets the cache counters.
+   *
+   * @param adminKey the admin key
+   * @return the counters
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getStats(@HeaderParam(ADMIN_KEY_HEADER) String adminKey) {
+    if (!isAuthorized(adminKey)) {
+      return forbidden();
+    }
+    AnswerCache cache = AnswerCache.getInstance();
+    JsonObject stats = new JsonObject();
+    stats.addProperty("enabled", cache.isEnabled());
+    stats.addProperty("size", cache.size());
+    JsonObject backends = new JsonObject();
+    for (Map.Entry<String, AnswerCache.Stats> entry : cache.getStats().entrySet()) {
+      JsonObject counters = new JsonObject();
+      counters.addProperty("hits", entry.getValue().getHits());
+      counters.addProperty("misses", entry.getValue().getMisses());
+      counters.addProperty("evictions", entry.getValue().getEvictions());
+      backends.add(entry.getKey(), counters);
+    }
+    stats.add("backends", backends);
+    JsonObject coalescing = new JsonObject();
+    for (Map.Entry<String, CoalescingRetrievalBackend.Stats> entry : RetrievalOrchestrator.getCoalescingStats()
+        .entrySet()) {
+      JsonObject counters = new JsonObject();
+      counters.addProperty("calls", entry.getValue().getCalls());
+      counters.addProperty("collapsed", entry.getValue().getCollapsed());
+      counters.addProperty("rejected", entry.getValue().getRejected());
+      counters.addProperty("timeouts", entry.getValue().getTimeouts());
+      coalescing.add(entry.getKey(), counters);
+    }
+    stats.add("coalescing", coalescing);
+    return ok(stats);
+  }
+
+  /**
+   * Drops every cached answer.
+   *
+   * @param adminKey the admin key
+   * @return the number of answers dropped
+   */
+  @DELETE
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response invalidateAll(@HeaderParam(ADMIN_KEY_HEADER) String adminKey) {
+    return invalidate(adminKey, null);
+  }
+
+  /**
+   * Drops the cached answers of one backend.
+   *
+   * @param adminKey the admin key
+   * @param backend the backend name, for example <code>DISCOVERY</code>
+   * @return the number of answers dropped
+   */
+  @DELETE
+  @Path("{backend}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response invalidateBackend(@HeaderParam(ADMIN_KEY_HEADER) String adminKey,
+      @PathParam("backend") String backend) {
+    return invalidate(adminKey, backend.toUpperCase());
+  }
+
+  private Response invalidate(String adminKey, String backend) {
+    if (!isAuthorized(adminKey)) {
+      return forbidden();
+    }
+    int removed = AnswerCache.getInstance().invalidate(backend);
+    logger.info(Messages.getString("CacheResource.INVALIDATED") + removed);
+    JsonObject result = new JsonObject();
+    result.addProperty("removed", removed);
+    return ok(result);
+  }
+
+  /**
+   * Checks the admin key sent by the caller against the <code>ADMIN_KEY</code> setting.
+   *
+   * @param adminKey the key sent by the caller
+   * @return true if the admin endpoints are enabled and the key matches
+   */
+  static boolean isAuthorized(String adminKey) {
+    String expected = EnvironmentUtils.getString("ADMIN_KEY", null);
+    return (expected != null) && !expected.isEmpty() && expected.equals(adminKey);
+  }
+
+  static Response forbidden() {
+    return Response.status(Response.Status.FORBIDDEN).type(MediaType.APPLICATION_JSON)
+        .entity("{\"error\":\"" + Messages.getString("CacheResource.FORBIDDEN") + "\"}").build();
+  }
+
+  static Response ok(JsonObject body) {
+    return Response.ok(body.toString()).type(MediaType.APPLICATION_JSON).header("Cache-Control", "no-cache").build();
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.EndpointConfig;
+import javax.websocket.OnClose;
+import javax.websocket.OnError;
+import javax.websocket.OnMessage;
+import javax.websocket.OnOpen;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import javax.websocket.server.PathParam;
+import javax.websocket.server.ServerEndpoint;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * A chat session over one WebSocket, mapped to <code>/socket/conversation/api/v1/workspaces/{id}</code>, so that a
+ * turn does not pay for a new HTTP request with its headers and cookies. Each text frame the client sends is a
+ * message request, as posted to {@link ProxyResource#postMessage(String, java.io.InputStream)}; a request without a
+ * context continues with the context of the last response on the socket, so the client need not send it back. Each
+ * turn is answered with the events of a {@link StreamedTurn}, one text frame per event:
+ * <code>{"event": "message", "data": {...}}</code>, and ends with the <code>done</code> event. Turns run one at a
+ * time, in the order the frames arrived.
+ * <p>
+ * The limits, whose settings are in <code>server.env</code>:
+ * <ul>
+ * <li>at most <code>WEBSOCKET_MAX_CONNECTIONS</code> open sockets; more are closed with 1013 (try again later);</li>
+ * <li>a socket idle for <code>WEBSOCKET_IDLE_TIMEOUT_MS</code> is closed by the container;</li>
+ * <li>a frame larger than <code>MAX_REQUEST_BYTES</code> is refused by the container with 1009 (too big);</li>
+ * <li>a client which keeps sending while more than <code>WEBSOCKET_MAX_PENDING_MESSAGES</code> of its messages wait
+ * for their turn, or which reads so slowly that more than <code>WEBSOCKET_MAX_QUEUED_BYTES</code> of events wait to
+ * be sent, is closed with 1013.</li>
+ * </ul>
+ * Frames are sent asynchronously, one at a time, so neither a turn nor the container waits on a slow client.
+ */
+@ServerEndpoint("/socket/conversation/api/v1/workspaces/{id}")
+public class ChatSocket implements EventSink {
+  private static final Logger logger = LogManager.getLogger(ChatSocket.class.getName());
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final byte[] EVENT = "{\"event\":\"".getBytes(UTF_8);
+  private static final byte[] DATA = "\",\"data\":".getBytes(UTF_8);
+  private static final byte[] END = "}".getBytes(UTF_8);
+
+  private static final AtomicInteger connections = new AtomicInteger();
+  private static final AtomicLong refused = new AtomicLong();
+  private static final AtomicLong flooded = new AtomicLong();
+  private static final AtomicLong slow = new AtomicLong();
+  private static final Set<ChatSocket> OPEN =
+      Collections.newSetFromMap(new ConcurrentHashMap<ChatSocket, Boolean>());
+
+  private final int maxConnections;
+  private final long idleTimeout;
+  private final int maxPending;
+  private final long maxQueuedBytes;
+
+  private Session session;
+  private String id;
+  private boolean counted;
+  private boolean closed;
+  private boolean busy;
+  private boolean sending;
+  private long queuedBytes;
+  private Map<String, Object> context;
+  private final Queue<String> pending = new ArrayDeque<String>();
+  private final Queue<byte[]> outbox = new ArrayDeque<byte[]>();
+
+  /**
+   * Instantiates a new chat socket with the limits of the settings. Called by the container for each connection.
+   */
+  public ChatSocket() {
+    this(EnvironmentUtils.getInt("WEBSOCKET_MAX_CONNECTIONS", 1000),
+        EnvironmentUtils.getLong("WEBSOCKET_IDLE_TIMEOUT_MS", 5 * 60 * 1000),
+        EnvironmentUtils.getInt("WEBSOCKET_MAX_PENDING_MESSAGES", 4),
+        EnvironmentUtils.getLong("WEBSOCKET_MAX_QUEUED_BYTES", 1024 * 1024));
+  }
+
+  /**
+   * Instantiates a new chat socket.
+   *
+   * @param maxConnections the maximum number of open sockets
+   * @param idleTimeout the time in milliseconds after which an idle socket is closed
+   * @param maxPending the maximum number of messages waiting for their turn
+   * @param maxQueuedBytes the maximum size of the frames waiting to be sent
+   */
+  ChatSocket(int maxConnections, long idleTimeout, int maxPending, long maxQueuedBytes) {
+    this.maxConnections = maxConnections;
+    this.idleTimeout = idleTimeout;
+    this.maxPending = maxPending;
+    this.maxQueuedBytes = maxQueuedBytes;
+  }
+
+  /**
+   * Accepts a connection, unless too many are open.
+   *
+   * @param session the WebSocket session
+   * @param config the endpoint configuration
+   * @param id the workspace id
+   */
+  @OnOpen
+  public void onOpen(Session session, EndpointConfig config, @PathParam("id") String id) {
+    synchronized (this) {
+      this.session = session;
+      this.id = id;
+    }
+    if (connections.incrementAndGet() > maxConnections) {
+      connections.decrementAndGet();
+      refused.incrementAndGet();
+      closeSocket(CloseCodes.TRY_AGAIN_LATER, "ChatSocket.TOO_MANY_CONNECTIONS");
+      return;
+    }
+    synchronized (this) {
+      counted = true;
+    }
+    OPEN.add(this);
+    session.setMaxIdleTimeout(idleTimeout);
+    session.setMaxTextMessageBufferSize(
+        (int) Math.min(Integer.MAX_VALUE, MessageRequestReader.getInstance().getMaxBodyBytes()));
+  }
+
+  /**
+   * Starts the turn of a message, or queues it while another turn is running.
+   *
+   * @param text the message request
+   */
+  @OnMessage
+  public void onMessage(String text) {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (busy) {
+        if (pending.size() < maxPending) {
+          pending.add(text);
+          return;
+        }
+        flooded.incrementAndGet();
+        text = null;
+      }
+      busy = true;
+    }
+    if (text == null) {
+      closeSocket(CloseCodes.TRY_AGAIN_LATER, "ChatSocket.TOO_MANY_MESSAGES");
+    } else {
+      startTurn(text);
+    }
+  }
+
+  /**
+   * Releases the connection. A running turn goes on, but its events are dropped.
+   *
+   * @param session the WebSocket session
+   * @param reason why the socket was closed
+   */
+  @OnClose
+  public void onClose(Session session, CloseReason reason) {
+    synchronized (this) {
+      closed = true;
+      pending.clear();
+      outbox.clear();
+      if (!counted) {
+        return;
+      }
+      counted = false;
+    }
+    connections.decrementAndGet();
+    OPEN.remove(this);
+  }
+
+  /**
+   * Logs an error of the connection, after which the container closes it.
+   *
+   * @param session the WebSocket session
+   * @param t the error
+   */
+  @OnError
+  public void onError(Session session, Throwable t) {
+    logger.debug(Messages.getString("ChatSocket.SOCKET_ERROR") + t.getMessage());
+  }
+
+  /**
+   * Runs a turn. Ends with {@link #close()}, which starts the next one.
+   */
+  private void startTurn(String text) {
+    final long start = System.nanoTime();
+    ProxyResource proxy = new ProxyResource();
+    MessageRequest request;
+    try {
+      byte[] body = text.getBytes(UTF_8);
+      MessageRequestReader reader = MessageRequestReader.getInstance();
+      reader.checkContentLength(body.length);
+      request = reader.read(new ByteArrayInputStream(body));
+      synchronized (this) {
+        if ((request.context() == null) && (context != null)) {
+          request = request.newBuilder().context(new LinkedHashMap<String, Object>(context)).build();
+        }
+      }
+      request = proxy.restoreContext(request);
+    } catch (InvalidRequestException e) {
+      Metrics.PARSE.recordError(start);
+      Metrics.REQUEST.recordError(start);
+      try {
+        send("error", new JsonStreamingOutput(ProxyResource.buildError(e), Map.class, false).toByteArray());
+      } catch (IOException ioe) {
+        logger.error(Messages.getString("StreamedTurn.WRITE_ERROR"), ioe);
+      }
+      send("done", new byte[] { '{', '}' });
+      close();
+      return;
+    }
+    Metrics.PARSE.record(start);
+    new StreamedTurn(this, proxy, id, start) {
+      @Override
+      void ended(MessageResponse response) {
+        keepContext(response);
+      }
+    }.start(request, StreamedTurn.getRetrievalExecutor());
+  }
+
+  /**
+   * Keeps the context of a response for the next message which comes without one.
+   */
+  private synchronized void keepContext(MessageResponse response) {
+    if ((response != null) && (response.getContext() != null)) {
+      context = new LinkedHashMap<String, Object>(response.getContext());
+      // the UI drops this variable before sending the context back
+      context.remove(ProxyResource.CALL_RETRIEVE_AND_RANK);
+    }
+  }
+
+  /**
+   * Queues the frame of an event and sends it if no other frame is being sent.
+   *
+   * @param event the event name
+   * @param json the data of the event
+   * @return false if the socket is closed
+   */
+  @Override
+  public boolean send(String event, byte[] json) {
+    byte[] name = event.getBytes(UTF_8);
+    byte[] frame = new byte[EVENT.length + name.length + DATA.length + json.length + END.length];
+    System.arraycopy(EVENT, 0, frame, 0, EVENT.length);
+    System.arraycopy(name, 0, frame, EVENT.length, name.length);
+    System.arraycopy(DATA, 0, frame, EVENT.length + name.length, DATA.length);
+    System.arraycopy(json, 0, frame, EVENT.length + name.length + DATA.length, json.length);
+    System.arraycopy(END, 0, frame, frame.length - END.length, END.length);
+    synchronized (this) {
+      if (closed) {
+        return false;
+      }
+      if ((queuedBytes > 0) && (queuedBytes + frame.length > maxQueuedBytes)) {
+        slow.incrementAndGet();
+        frame = null;
+      } else {
+        queuedBytes += frame.length;
+        if (sending) {
+          outbox.add(frame);
+          return true;
+        }
+        sending = true;
+      }
+    }
+    if (frame == null) {
+      closeSocket(CloseCodes.TRY_AGAIN_LATER, "ChatSocket.SLOW_CLIENT");
+      return false;
+    }
+    transmit(frame);
+    return true;
+  }
+
+  private void transmit(final byte[] frame) {
+    session.getAsyncRemote().sendText(new String(frame, UTF_8), new SendHandler() {
+      @Override
+      public void onResult(SendResult result) {
+        if (!result.isOK()) {
+          logger.debug(Messages.getString("ChatSocket.SOCKET_ERROR") + result.getException());
+          closeSocket(CloseCodes.CLOSED_ABNORMALLY, "ChatSocket.SOCKET_ERROR");
+          return;
+        }
+        byte[] next;
+        synchronized (ChatSocket.this) {
+          queuedBytes -= frame.length;
+          next = outbox.poll();
+          sending = next != null;
+        }
+        if (next != null) {
+          transmit(next);
+        }
+      }
+    });
+  }
+
+  /**
+   * Ends a turn and starts the turn of the next pending message, if any.
+   */
+  @Override
+  public void close() {
+    String next;
+    synchronized (this) {
+      next = closed ? null : pending.poll();
+      busy = next != null;
+    }
+    if (next != null) {
+      startTurn(next);
+    }
+  }
+
+  private void closeSocket(CloseCodes code, String key) {
+    synchronized (this) {
+      closed = true;
+      pending.clear();
+      outbox.clear();
+    }
+    try {
+      session.close(new CloseReason(code, Messages.getString(key)));
+    } catch (IOException e) {
+      logger.debug(Messages.getString("ChatSocket.SOCKET_ERROR") + e.getMessage());
+    }
+  }
+
+  /**
+   * Gets the number of open sockets.
+   *
+   * @return the open sockets
+   */
+  public static int getConnections() {
+    return connections.get();
+  }
+
+  /**
+   * Gets the number of connections refused because too many sockets were open.
+   *
+   * @return the refused connections
+   */
+  public static long getRefused() {
+    return refused.get();
+  }
+
+  /**
+   * Gets the number of sockets closed because their client sent too many messages at once.
+   *
+   * @return the sockets closed for too many messages
+   */
+  public static long getFlooded() {
+    return flooded.get();
+  }
+
+  /**
+   * Gets the number of sockets closed because their client did not read the events fast enough.
+   *
+   * @return the sockets closed for a slow client
+   */
+  public static long getSlow() {
+    return slow.get();
+  }
+
+  /**
+   * Closes the open sockets and stops the retrieval threads of the streamed turns, which the Server-Sent Events
+   * endpoint shares.
+   */
+  public static void shutdown() {
+    for (ChatSocket socket : new ArrayList<ChatSocket>(OPEN)) {
+      socket.closeSocket(CloseCodes.GOING_AWAY, "ChatSocket.SHUTDOWN");
+    }
+    StreamedTurn.shutdown();
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+/**
+ * Where a {@link StreamedTurn} sends its events: a Server-Sent Events response ({@link EventStream}) or a WebSocket
+ * ({@link ChatSocket}).
+ */
+interface EventSink {
+
+  /**
+   * Sends an event. Can be called from any thread.
+   *
+   * @param event the event name
+   * @param json the data of the event, JSON on a single line
+   * @return false if the event was dropped because the sink is closed
+   */
+  boolean send(String event, byte[] json);
+
+  /**
+   * Called once the turn sent its last event.
+   */
+  void close();
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * Writes Server-Sent Events to a suspended response with the Servlet 3.1 non-blocking output: events are queued and
+ * written while the container says the output is ready, and the rest is written from
+ * {@link #onWritePossible()}, so no thread waits on a slow client. Events can be sent from any thread. Once closed,
+ * the queued events are written and the request is completed.
+ */
+class EventStream implements EventSink, WriteListener {
+  private static final Logger logger = LogManager.getLogger(EventStream.class.getName());
+
+  /** The content type of the stream. */
+  static final String CONTENT_TYPE = "text/event-stream";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final byte[] DATA = "\ndata: ".getBytes(UTF_8);
+  private static final byte[] END = "\n\n".getBytes(UTF_8);
+
+  private final AsyncContext asyncContext;
+  private final ServletOutputStream output;
+  private final Queue<byte[]> pending = new ArrayDeque<byte[]>();
+  private boolean closing;
+  private boolean completed;
+
+  /**
+   * Instantiates a new event stream. Must be called on the request thread, after the request was suspended.
+   *
+   * @param asyncContext the suspended request, whose content type is already set
+   * @throws IOException if the output cannot be opened
+   */
+  EventStream(AsyncContext asyncContext) throws IOException {
+    this.asyncContext = asyncContext;
+    this.output = asyncContext.getResponse().getOutputStream();
+    output.setWriteListener(this);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.rest.EventSink#send(java.lang.String, byte[])
+   */
+  @Override
+  public synchronized boolean send(String event, byte[] json) {
+    if (closing) {
+      return false;
+    }
+    byte[] name = ("event: " + event).getBytes(UTF_8);
+    byte[] frame = new byte[name.length + DATA.length + json.length + END.length];
+    System.arraycopy(name, 0, frame, 0, name.length);
+    System.arraycopy(DATA, 0, frame, name.length, DATA.length);
+    System.arraycopy(json, 0, frame, name.length + DATA.length, json.length);
+    System.arraycopy(END, 0, frame, frame.length - END.length, END.length);
+    pending.add(frame);
+    drain();
+    return true;
+  }
+
+  /**
+   * Closes the stream once the queued events are written.
+   */
+  @Override
+  public synchronized void close() {
+    if (!closing) {
+      closing = true;
+      drain();
+    }
+  }
+
+  /**
+   * Returns true once the stream was closed.
+   *
+   * @return true if closed
+   */
+  synchronized boolean isClosed() {
+    return closing;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.WriteListener#onWritePossible()
+   */
+  @Override
+  public synchronized void onWritePossible() {
+    drain();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.WriteListener#onError(java.lang.Throwable)
+   */
+  @Override
+  public synchronized void onError(Throwable t) {
+    logger.debug(Messages.getString("EventStream.WRITE_ERROR") + t.getMessage());
+    closing = true;
+    pending.clear();
+    complete();
+  }
+
+  /**
+   * Writes queued events while the output is ready, then completes the request if the stream is closed.
+   */
+  private void drain() {
+    if (completed) {
+      return;
+    }
+    try {
+      while (output.isReady()) {
+        byte[] frame = pending.poll();
+        if (frame != null) {
+          output.write(frame);
+        } else {
+          output.flush();
+          if (closing && output.isReady()) {
+            complete();
+          }
+          return;
+        }
+      }
+    } catch (IOException e) {
+      onError(e);
+    }
+  }
+
+  private void complete() {
+    if (!completed) {
+      completed = true;
+      asyncContext.complete();
+    }
+  }
+}
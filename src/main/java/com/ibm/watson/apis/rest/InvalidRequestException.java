@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+/**
+ * Thrown when a request body is rejected before it reaches the Watson services. Carries the HTTP status the client
+ * is answered with.
+ */
+public class InvalidRequestException extends IllegalArgumentException {
+  private static final long serialVersionUID = 1L;
+
+  private final int status;
+
+  /**
+   * Instantiates a new invalid request exception.
+   *
+   * @param status the HTTP status, such as 400 or 413
+   * @param message the message sent to the client
+   */
+  public InvalidRequestException(int status, String message) {
+    super(message);
+    this.status = status;
+  }
+
+  /**
+   * Gets the HTTP status.
+   *
+   * @return the status
+   */
+  public int getStatus() {
+    return status;
+  }
+}
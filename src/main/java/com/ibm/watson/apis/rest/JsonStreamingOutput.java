@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Writes a JSON response straight to the response stream instead of building it as a String first. One Gson
+ * instance is shared by all responses, with hand-written adapters for the {@link MessageResponse}, the intents and
+ * entities and both document payload classes, so no reflection is used for the objects sent to the UI. The fields
+ * are written in the order Gson's reflective adapters used. The response is gzip compressed when the
+ * <code>RESPONSE_GZIP</code> setting is true and the client accepts it.
+ */
+public class JsonStreamingOutput implements StreamingOutput {
+
+  /** The Content-Encoding of compressed responses. */
+  public static final String GZIP = "gzip";
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final boolean GZIP_ENABLED = EnvironmentUtils.getBoolean("RESPONSE_GZIP", false);
+
+  private static final IntentAdapter INTENT = new IntentAdapter();
+
+  private static final EntityAdapter ENTITY = new EntityAdapter();
+
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(MessageResponse.class, new MessageResponseAdapter())
+      .registerTypeAdapter(Intent.class, INTENT)
+      .registerTypeAdapter(Entity.class, ENTITY)
+      .registerTypeAdapter(DocumentPayload.class, new DocumentPayloadAdapter())
+      .registerTypeAdapter(com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload.class,
+          new RetrieveAndRankPayloadAdapter())
+      .create();
+
+  private final Object value;
+  private final Type type;
+  private final boolean gzip;
+
+  /**
+   * Instantiates a new JSON streaming output.
+   *
+   * @param value the object to write
+   * @param type the type of the object
+   * @param gzip true to compress the JSON
+   */
+  public JsonStreamingOutput(Object value, Type type, boolean gzip) {
+    this.value = value;
+    this.type = type;
+    this.gzip = gzip;
+  }
+
+  /**
+   * Tells if a response should be compressed.
+   *
+   * @param acceptEncoding the Accept-Encoding header of the request, may be null
+   * @return true if compression is enabled and the client accepts gzip
+   */
+  public static boolean useGzip(String acceptEncoding) {
+    return GZIP_ENABLED && (acceptEncoding != null) && acceptEncoding.contains(GZIP);
+  }
+
+  /**
+   * Tells if a response should be compressed.
+   *
+   * @param headers the request headers, may be null
+   * @return true if compression is enabled and the client accepts gzip
+   */
+  public static boolean useGzip(HttpHeaders headers) {
+    if (!GZIP_ENABLED || (headers == null)) {
+      return false;
+    }
+    List<String> values = headers.getRequestHeader(HttpHeaders.ACCEPT_ENCODING);
+    return (values != null) && useGzip(values.toString());
+  }
+
+  /**
+   * Gets the Gson instance with the response adapters.
+   *
+   * @return the Gson instance
+   */
+  public static Gson getGson() {
+    return GSON;
+  }
+
+  /**
+   * Tells if the JSON is compressed.
+   *
+   * @return true if the JSON is gzip compressed
+   */
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+   */
+  @Override
+  public void write(OutputStream output) throws IOException {
+    long start = System.nanoTime();
+    try {
+      GZIPOutputStream compressed = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : null;
+      JsonWriter writer = new JsonWriter(new BufferedWriter(
+          new OutputStreamWriter(compressed != null ? compressed : output, "UTF-8"), BUFFER_SIZE));
+      GSON.toJson(value, type, writer);
+      writer.flush();
+      if (compressed != null) {
+        compressed.finish();
+      }
+    } catch (IOException e) {
+      Metrics.SERIALIZATION.recordError(start);
+      throw e;
+    }
+    Metrics.SERIALIZATION.record(start);
+  }
+
+  /**
+   * Writes the JSON to a byte array, for callers which frame it themselves such as the event stream.
+   *
+   * @return the UTF-8 JSON, compressed if gzip was asked for
+   * @throws IOException if the value cannot be written
+   */
+  public byte[] toByteArray() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+    write(bytes);
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Base class of the adapters, which only write.
+   */
+  private abstract static class WriteOnlyAdapter<T> extends TypeAdapter<T> {
+    @Override
+    public T read(JsonReader in) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Writes a {@link MessageResponse}. The maps are written with Gson's map adapter, which looks up the adapters
+   * above for the intents, entities and payloads they contain.
+   */
+  private static class MessageResponseAdapter extends WriteOnlyAdapter<MessageResponse> {
+    @Override
+    public void write(JsonWriter out, MessageResponse response) throws IOException {
+      if (response == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      if (response.getContext() != null) {
+        GSON.toJson(response.getContext(), Object.class, out.name("context"));
+      }
+      if (response.getEntities() != null) {
+        out.name("entities").beginArray();
+        for (Entity entity : response.getEntities()) {
+          ENTITY.write(out, entity);
+        }
+        out.endArray();
+      }
+      if (response.getIntents() != null) {
+        out.name("intents").beginArray();
+        for (Intent intent : response.getIntents()) {
+          INTENT.write(out, intent);
+        }
+        out.endArray();
+      }
+      if (response.getOutput() != null) {
+        GSON.toJson(response.getOutput(), Object.class, out.name("output"));
+      }
+      if (response.getInput() != null) {
+        GSON.toJson(response.getInput(), Object.class, out.name("input"));
+      }
+      out.endObject();
+    }
+  }
+
+  /**
+   * Writes an {@link Intent}.
+   */
+  private static class IntentAdapter extends WriteOnlyAdapter<Intent> {
+    @Override
+    public void write(JsonWriter out, Intent intent) throws IOException {
+      if (intent == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("confidence").value(intent.getConfidence());
+      out.name("intent").value(intent.getIntent());
+      out.endObject();
+    }
+  }
+
+  /**
+   * Writes an {@link Entity}.
+   */
+  private static class EntityAdapter extends WriteOnlyAdapter<Entity> {
+    @Override
+    public void write(JsonWriter out, Entity entity) throws IOException {
+      if (entity == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("entity").value(entity.getEntity());
+      if (entity.getLocation() != null) {
+        out.name("location").beginArray();
+        for (Integer location : entity.getLocation()) {
+          out.value(location);
+        }
+        out.endArray();
+      }
+      out.name("value").value(entity.getValue());
+      out.endObject();
+    }
+  }
+
+  /**
+   * Writes a Discovery {@link DocumentPayload}.
+   */
+  private static class DocumentPayloadAdapter extends WriteOnlyAdapter<DocumentPayload> {
+    @Override
+    public void write(JsonWriter out, DocumentPayload payload) throws IOException {
+      if (payload == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("body").value(payload.getBody());
+      out.name("bodySnippet").value(payload.getBodySnippet());
+      out.name("confidence").value(payload.getConfidence());
+      out.name("highlight").value(payload.getHighlight());
+      out.name("id").value(payload.getId());
+      out.name("sourceUrl").value(payload.getSourceUrl());
+      out.name("title").value(payload.getTitle());
+      out.endObject();
+    }
+  }
+
+  /**
+   * Writes a Retrieve and Rank {@link com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload}.
+   */
+  private static class RetrieveAndRankPayloadAdapter
+      extends WriteOnlyAdapter<com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload> {
+    @Override
+    public void write(JsonWriter out, com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload payload)
+        throws IOException {
+      if (payload == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("title").value(payload.getTitle());
+      out.name("body").value(payload.getBody());
+      out.name("sourceUrl").value(payload.getSourceUrl());
+      out.name("highlight").value(payload.getHighlight());
+      out.name("id").value(payload.getId());
+      out.name("bodySnippet").value(payload.getBodySnippet());
+      out.name("confidence").value(payload.getConfidence());
+      out.endObject();
+    }
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Answers a batch of message requests, read from a JSON array or an NDJSON stream of
+ * <code>{"workspaceId": ..., "input": {...}, "context": {...}}</code> items, and writes one NDJSON line per item as
+ * soon as it is answered: <code>{"index": ..., "id": ..., "workspaceId": ..., "response": {...}}</code>, or
+ * <code>"error"</code> instead of <code>"response"</code>. Lines come in the order the items complete, so the
+ * <code>index</code> of the item (and its <code>id</code>, if it has one) tells which one a line answers. A stream
+ * which cannot be read, or which has more than <code>BATCH_MAX_ITEMS</code> items, ends with a line holding only an
+ * <code>"error"</code>.
+ * <p>
+ * Items run through the same pipeline as {@link ProxyResource#postMessage(String, InputStream)}, but without
+ * speculative retrieval or the context store, on a pool of <code>BATCH_THREADS</code> low priority threads shared by
+ * all batches. At most <code>BATCH_MAX_PARALLEL</code> items of a batch are in progress at a time, and the next item
+ * is held back while <code>BATCH_YIELD_ACTIVE_REQUESTS</code> or more chat requests are in progress, so interactive
+ * traffic keeps precedence. Items are read as the batch progresses, so a large batch is never held in memory.
+ */
+public class MessageBatch implements StreamingOutput {
+
+  /** The content type of NDJSON streams. */
+  static final String NDJSON = "application/x-ndjson";
+
+  private static final String WORKSPACE_ID = "workspaceId";
+  private static final byte[] NEWLINE = { '\n' };
+  private static final AtomicLong answered = new AtomicLong();
+  private static final AtomicLong failed = new AtomicLong();
+  private static final ThreadPoolExecutor EXECUTOR = newExecutor(EnvironmentUtils.getInt("BATCH_THREADS", 4));
+
+  private final InputStream body;
+  private final String defaultWorkspaceId;
+  private final Executor executor;
+  private final int maxParallel;
+  private final int maxItems;
+  private final int yieldActiveRequests;
+  private final long yieldMillis;
+
+  /**
+   * Instantiates a batch with the limits of the settings.
+   *
+   * @param body the items
+   * @param defaultWorkspaceId the workspace of the items which do not name one, may be null
+   */
+  MessageBatch(InputStream body, String defaultWorkspaceId) {
+    this(body, defaultWorkspaceId, EXECUTOR, EnvironmentUtils.getInt("BATCH_MAX_PARALLEL", 4),
+        EnvironmentUtils.getInt("BATCH_MAX_ITEMS", 10000), EnvironmentUtils.getInt("BATCH_YIELD_ACTIVE_REQUESTS", 8),
+        EnvironmentUtils.getLong("BATCH_YIELD_MS", 100));
+  }
+
+  /**
+   * Instantiates a batch.
+   *
+   * @param body the items
+   * @param defaultWorkspaceId the workspace of the items which do not name one, may be null
+   * @param executor runs the items
+   * @param maxParallel the maximum number of items in progress
+   * @param maxItems the maximum number of items read
+   * @param yieldActiveRequests the number of chat requests in progress from which items are held back, 0 to never
+   *        hold them back
+   * @param yieldMillis how long items are held back before the chat requests are counted again
+   */
+  MessageBatch(InputStream body, String defaultWorkspaceId, Executor executor, int maxParallel, int maxItems,
+      int yieldActiveRequests, long yieldMillis) {
+    this.body = body;
+    this.defaultWorkspaceId = defaultWorkspaceId;
+    this.executor = executor;
+    this.maxParallel = Math.max(1, maxParallel);
+    this.maxItems = maxItems;
+    this.yieldActiveRequests = yieldActiveRequests;
+    this.yieldMillis = yieldMillis;
+  }
+
+  private static ThreadPoolExecutor newExecutor(int threads) {
+    return ThreadPools.newFixedThreadPool(threads, new LinkedBlockingQueue<Runnable>(),
+        ThreadPools.daemonThreadFactory("message-batch", Thread.MIN_PRIORITY));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.ws.rs.core.StreamingOutput#write(java.io.OutputStream)
+   */
+  @Override
+  public void write(OutputStream output) throws IOException {
+    BlockingQueue<byte[]> lines = new LinkedBlockingQueue<byte[]>();
+    AtomicBoolean cancelled = new AtomicBoolean();
+    int submitted = 0;
+    int written = 0;
+    try {
+      String error = null;
+      try {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, "UTF-8"));
+        reader.setLenient(true);
+        boolean array = peek(reader) == JsonToken.BEGIN_ARRAY;
+        if (array) {
+          reader.beginArray();
+        }
+        for (JsonElement item = next(reader, array); item != null; item = next(reader, array)) {
+          if (submitted == maxItems) {
+            error = Messages.getString("MessageBatch.TOO_MANY_ITEMS") + maxItems;
+            break;
+          }
+          for (; submitted - written >= maxParallel; written++) {
+            writeLine(output, lines.take());
+          }
+          holdBack();
+          submit(submitted++, item, lines, cancelled);
+          for (byte[] line = lines.poll(); line != null; line = lines.poll()) {
+            writeLine(output, line);
+            written++;
+          }
+        }
+      } catch (JsonParseException e) {
+        error = Messages.getString("MessageBatch.INVALID_ITEM") + submitted;
+      }
+      for (; written < submitted; written++) {
+        writeLine(output, lines.take());
+      }
+      if (error != null) {
+        Map<String, Object> line = new LinkedHashMap<String, Object>();
+        line.put("error", error);
+        writeLine(output, toJson(line));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } finally {
+      // the items not started yet are skipped if the client went away
+      cancelled.set(true);
+    }
+  }
+
+  private static JsonToken peek(JsonReader reader) {
+    try {
+      return reader.peek();
+    } catch (IOException e) {
+      throw new JsonParseException(e);
+    }
+  }
+
+  /**
+   * Reads the next item.
+   *
+   * @return the item, or null at the end of the items
+   * @throws JsonParseException if the items cannot be read
+   */
+  private static JsonElement next(JsonReader reader, boolean array) {
+    try {
+      if (array ? !reader.hasNext() : (reader.peek() == JsonToken.END_DOCUMENT)) {
+        return null;
+      }
+    } catch (IOException e) {
+      throw new JsonParseException(e);
+    }
+    return new JsonParser().parse(reader);
+  }
+
+  /**
+   * Waits while the chat requests in progress are above the threshold.
+   */
+  private void holdBack() throws InterruptedException {
+    while ((yieldActiveRequests > 0) && (Metrics.getActiveRequests().get()
+        + Metrics.getActiveAsyncRequests().get() >= yieldActiveRequests)) {
+      Thread.sleep(yieldMillis);
+    }
+  }
+
+  private void submit(final int index, final JsonElement item, final BlockingQueue<byte[]> lines,
+      final AtomicBoolean cancelled) {
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (cancelled.get()) {
+            return;
+          }
+          // the writer takes one line per submitted item, so a line is queued whatever happens
+          byte[] line = null;
+          try {
+            line = answerItem(index, item);
+          } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            line = toJson(result(index, item, null, e));
+          } finally {
+            lines.add((line != null) ? line : failedLine(index));
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      lines.add(toJson(result(index, item, null, e)));
+    }
+  }
+
+  /**
+   * Answers an item and builds its line.
+   */
+  private byte[] answerItem(int index, JsonElement item) {
+    String workspaceId = defaultWorkspaceId;
+    MessageResponse response = null;
+    Exception failure = null;
+    try {
+      if (!item.isJsonObject()) {
+        throw new IllegalArgumentException(Messages.getString("MessageBatch.INVALID_ITEM") + index);
+      }
+      JsonElement workspace = item.getAsJsonObject().get(WORKSPACE_ID);
+      if ((workspace != null) && workspace.isJsonPrimitive()) {
+        workspaceId = workspace.getAsString();
+      }
+      if ((workspaceId == null) || workspaceId.isEmpty()) {
+        throw new IllegalArgumentException(Messages.getString("MessageBatch.NO_WORKSPACE") + index);
+      }
+      response = answer(workspaceId, item.toString().getBytes("UTF-8"));
+      answered.incrementAndGet();
+    } catch (Exception e) {
+      failed.incrementAndGet();
+      failure = e;
+    }
+    return toJson(result(index, item, response, failure));
+  }
+
+  /**
+   * Answers the message request of an item.
+   *
+   * @param workspaceId the workspace
+   * @param item the JSON of the item, read as a message request
+   * @return the response
+   * @throws Exception if the item is not a message request or the pipeline fails
+   */
+  MessageResponse answer(String workspaceId, byte[] item) throws Exception {
+    ProxyResource proxy = new ProxyResource();
+    return proxy.answer(proxy.buildMessageFromPayload(new ByteArrayInputStream(item)), workspaceId);
+  }
+
+  private Map<String, Object> result(int index, JsonElement item, MessageResponse response, Exception failure) {
+    Map<String, Object> line = new LinkedHashMap<String, Object>();
+    line.put("index", index);
+    if (item.isJsonObject()) {
+      JsonObject object = item.getAsJsonObject();
+      if (object.has("id")) {
+        line.put("id", object.get("id"));
+      }
+      line.put(WORKSPACE_ID, object.has(WORKSPACE_ID) ? object.get(WORKSPACE_ID) : defaultWorkspaceId);
+    }
+    if (failure == null) {
+      line.put("response", response);
+    } else {
+      line.putAll(ProxyResource.buildError(failure));
+    }
+    return line;
+  }
+
+  /**
+   * Builds the line of an item whose own line could not be built.
+   */
+  private static byte[] failedLine(int index) {
+    Map<String, Object> line = new LinkedHashMap<String, Object>();
+    line.put("index", index);
+    line.put("error", Messages.getString("ProxyResource.GENERIC_ERROR"));
+    return toJson(line);
+  }
+
+  private static byte[] toJson(Map<String, Object> line) {
+    try {
+      return new JsonStreamingOutput(line, Map.class, false).toByteArray();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void writeLine(OutputStream output, byte[] line) throws IOException {
+    output.write(line);
+    output.write(NEWLINE);
+    output.flush();
+  }
+
+  /**
+   * Gets the number of batch items answered.
+   *
+   * @return the answered items
+   */
+  static long getAnswered() {
+    return answered.get();
+  }
+
+  /**
+   * Gets the number of batch items which failed.
+   *
+   * @return the failed items
+   */
+  static long getFailed() {
+    return failed.get();
+  }
+
+  /**
+   * Stops the batch threads.
+   */
+  public static void shutdown() {
+    EXECUTOR.shutdownNow();
+  }
+}
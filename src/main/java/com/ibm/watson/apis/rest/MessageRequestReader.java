@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Reads the {@link MessageRequest} posted by the UI straight from the request stream with a {@link JsonReader}, so
+ * the body (which carries the whole conversation context and grows with every turn) is never copied into a String.
+ * A body larger than <code>MAX_REQUEST_BYTES</code> or a context larger than <code>MAX_CONTEXT_SIZE</code> JSON
+ * characters is rejected with 413 as soon as the limit is reached, and a body which is not a message with 400.
+ */
+public class MessageRequestReader {
+  private static final Logger logger = LogManager.getLogger(MessageRequestReader.class.getName());
+
+  private static final MessageRequestReader INSTANCE = new MessageRequestReader(
+      EnvironmentUtils.getLong("MAX_REQUEST_BYTES", 1024 * 1024),
+      EnvironmentUtils.getLong("MAX_CONTEXT_SIZE", 256 * 1024));
+
+  private final long maxBodyBytes;
+  private final long maxContextSize;
+
+  /**
+   * Instantiates a new message request reader.
+   *
+   * @param maxBodyBytes the maximum size of the body in bytes
+   * @param maxContextSize the maximum size of the context in JSON characters
+   */
+  public MessageRequestReader(long maxBodyBytes, long maxContextSize) {
+    this.maxBodyBytes = maxBodyBytes;
+    this.maxContextSize = maxContextSize;
+  }
+
+  /**
+   * Gets the reader configured with the <code>MAX_REQUEST_BYTES</code> and <code>MAX_CONTEXT_SIZE</code> settings.
+   *
+   * @return the reader
+   */
+  public static MessageRequestReader getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the maximum size of a body.
+   *
+   * @return the maximum size in bytes
+   */
+  public long getMaxBodyBytes() {
+    return maxBodyBytes;
+  }
+
+  /**
+   * Rejects a request whose declared length is over the body limit before any of it is read.
+   *
+   * @param contentLength the Content-Length of the request, or -1 if it is not known
+   * @throws InvalidRequestException if the body is too large
+   */
+  public void checkContentLength(long contentLength) {
+    if (contentLength > maxBodyBytes) {
+      throw tooLarge();
+    }
+  }
+
+  /**
+   * Reads a message request.
+   *
+   * @param body the request body, which is closed
+   * @return the message request
+   * @throws InvalidRequestException if the body is too large or not a message request
+   */
+  public MessageRequest read(InputStream body) {
+    JsonReader reader = null;
+    try {
+      reader = new JsonReader(new InputStreamReader(new LimitedInputStream(body, maxBodyBytes), "UTF-8"));
+      reader.setLenient(true);
+      Gson gson = GsonSingleton.getGsonWithoutPrettyPrinting();
+      MessageRequest.Builder builder = new MessageRequest.Builder();
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (reader.peek() == JsonToken.NULL) {
+          reader.nextNull();
+        } else if ("input".equals(name)) {
+          builder.input(readObject(reader, new long[] { maxBodyBytes }));
+        } else if ("context".equals(name)) {
+          builder.context(readObject(reader, new long[] { maxContextSize }));
+        } else if ("alternate_intents".equals(name)) {
+          builder.alternateIntents(reader.nextBoolean());
+        } else if ("intents".equals(name)) {
+          List<Intent> intents = new ArrayList<Intent>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            intents.add(gson.<Intent>fromJson(reader, Intent.class));
+          }
+          reader.endArray();
+          builder.intents(intents);
+        } else if ("entities".equals(name)) {
+          List<Entity> entities = new ArrayList<Entity>();
+          reader.beginArray();
+          while (reader.hasNext()) {
+            entities.add(gson.<Entity>fromJson(reader, Entity.class));
+          }
+          reader.endArray();
+          builder.entities(entities);
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+      return builder.build();
+    } catch (TooLargeException e) {
+      throw tooLarge();
+    } catch (IOException e) {
+      throw invalid(e);
+    } catch (IllegalStateException e) {
+      throw invalid(e);
+    } catch (NumberFormatException e) {
+      throw invalid(e);
+    } catch (JsonParseException e) {
+      // Gson wraps the stream's exceptions while it reads the intents and entities
+      if (e.getCause() instanceof TooLargeException) {
+        throw tooLarge();
+      }
+      throw invalid(e);
+    } finally {
+      close(reader, body);
+    }
+  }
+
+  /**
+   * Reads a JSON object the way Gson reads a <code>Map&lt;String, Object&gt;</code>: numbers become Doubles, objects
+   * LinkedHashMaps and arrays ArrayLists.
+   *
+   * @param budget the remaining size in JSON characters, decreased as values are read
+   */
+  private static Map<String, Object> readObject(JsonReader reader, long[] budget) throws IOException {
+    Map<String, Object> object = new LinkedHashMap<String, Object>();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      spend(budget, name.length() + 4);
+      object.put(name, readValue(reader, budget));
+    }
+    reader.endObject();
+    spend(budget, 2);
+    return object;
+  }
+
+  private static Object readValue(JsonReader reader, long[] budget) throws IOException {
+    switch (reader.peek()) {
+      case BEGIN_OBJECT:
+        return readObject(reader, budget);
+      case BEGIN_ARRAY:
+        List<Object> array = new ArrayList<Object>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          array.add(readValue(reader, budget));
+          spend(budget, 1);
+        }
+        reader.endArray();
+        spend(budget, 2);
+        return array;
+      case STRING:
+        String text = reader.nextString();
+        spend(budget, text.length() + 2);
+        return text;
+      case NUMBER:
+        String number = reader.nextString();
+        spend(budget, number.length());
+        return Double.valueOf(number);
+      case BOOLEAN:
+        spend(budget, 5);
+        return reader.nextBoolean();
+      default:
+        reader.nextNull();
+        spend(budget, 4);
+        return null;
+    }
+  }
+
+  private static void spend(long[] budget, long size) throws TooLargeException {
+    budget[0] -= size;
+    if (budget[0] < 0) {
+      throw new TooLargeException();
+    }
+  }
+
+  private static InvalidRequestException tooLarge() {
+    return new InvalidRequestException(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+        Messages.getString("MessageRequestReader.TOO_LARGE"));
+  }
+
+  private static InvalidRequestException invalid(Exception e) {
+    logger.debug(Messages.getString("MessageRequestReader.INVALID") + e.getMessage());
+    return new InvalidRequestException(HttpServletResponse.SC_BAD_REQUEST,
+        Messages.getString("ProxyResource.NO_REQUEST"));
+  }
+
+  private static void close(JsonReader reader, InputStream body) {
+    try {
+      if (reader != null) {
+        reader.close();
+      } else {
+        body.close();
+      }
+    } catch (IOException e) {
+      logger.error(Messages.getString("MessageRequestReader.STREAM_CLOSE"), e);
+    }
+  }
+
+  /**
+   * Thrown when the body or the context is over its limit.
+   */
+  private static class TooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * Fails the read as soon as more than the allowed number of bytes is consumed.
+   */
+  private static class LimitedInputStream extends FilterInputStream {
+    private long remaining;
+
+    LimitedInputStream(InputStream in, long limit) {
+      super(in);
+      this.remaining = limit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        consume(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      int count = super.read(buffer, offset, length);
+      if (count > 0) {
+        consume(count);
+      }
+      return count;
+    }
+
+    private void consume(int count) throws TooLargeException {
+      remaining -= count;
+      if (remaining < 0) {
+        throw new TooLargeException();
+      }
+    }
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.util.Map;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+import com.ibm.watson.apis.conversation.ContextStore;
+import com.ibm.watson.apis.conversation.ConversationRouter;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.metrics.PrometheusWriter;
+import com.ibm.watson.apis.resilience.CircuitBreaker;
+import com.ibm.watson.apis.resilience.Dependency;
+import com.ibm.watson.apis.resilience.RequestHedger;
+import com.ibm.watson.apis.retrieval.AnswerCache;
+import com.ibm.watson.apis.retrieval.CoalescingRetrievalBackend;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator;
+import com.ibm.watson.apis.retrieval.SpeculativeRetrieval;
+import com.ibm.watson.apis.retrieve_and_rank.requests.RetrieveAndRankConfigurationCache;
+import com.ibm.watson.apis.retrieve_and_rank.utils.Logging;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+
+/**
+ * The metrics of the chat request pipeline in the Prometheus text format. The API endpoint points to
+ * '/rest/metrics'. It returns the latency histograms and error counters of each stage (see {@link Metrics}) and each
+ * retrieval backend, the requests in progress, the chat sockets, the batch items, the fallbacks, the conversation
+ * context store, and the counters of the answer cache, the coalesced calls, the speculative retrievals, the circuit
+ * breakers, the hedged requests, the Retrieve and Rank configuration lookups and the Cloudant conversation log, when
+ * there is one. Unlike the admin endpoints it needs no key, so that it can be scraped; it answers 404 when the
+ * <code>METRICS_ENABLED</code> setting is false.
+ */
+@Path("metrics")
+public class MetricsResource {
+
+  /**
+   * Gets the metrics.
+   *
+   * @return the metrics page
+   */
+  @GET
+  @Produces(PrometheusWriter.CONTENT_TYPE)
+  public Response getMetrics() {
+    if (!EnvironmentUtils.getBoolean("METRICS_ENABLED", true)) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.ok(render()).type(PrometheusWriter.CONTENT_TYPE).header("Cache-Control", "no-cache").build();
+  }
+
+  /**
+   * Renders the metrics page.
+   *
+   * @return the page
+   */
+  static String render() {
+    PrometheusWriter writer = new PrometheusWriter();
+    writer.histograms("chatbot_stage", "stage", "Latency of the stages of the message requests",
+        "Failed stages of the message requests", Metrics.getStages());
+    writer.histograms("chatbot_backend", "backend", "Latency of the retrieval backend calls",
+        "Failed retrieval backend calls", Metrics.getBackends());
+
+    writer.family("chatbot_active_requests", "gauge", "Message requests in progress");
+    writer.sample("chatbot_active_requests", Metrics.getActiveRequests().get(), "endpoint", "rest");
+    writer.sample("chatbot_active_requests", Metrics.getActiveAsyncRequests().get(), "endpoint", "async");
+    writer.family("chatbot_websocket_connections", "gauge", "Open chat sockets");
+    writer.sample("chatbot_websocket_connections", ChatSocket.getConnections());
+    writer.family("chatbot_websocket_closed_total", "counter", "Chat sockets refused or closed by a limit");
+    writer.sample("chatbot_websocket_closed_total", ChatSocket.getRefused(), "reason", "too_many_connections");
+    writer.sample("chatbot_websocket_closed_total", ChatSocket.getFlooded(), "reason", "too_many_messages");
+    writer.sample("chatbot_websocket_closed_total", ChatSocket.getSlow(), "reason", "slow_client");
+    writer.family("chatbot_batch_items_total", "counter", "Batch message items by outcome");
+    writer.sample("chatbot_batch_items_total", MessageBatch.getAnswered(), "result", "answered");
+    writer.sample("chatbot_batch_items_total", MessageBatch.getFailed(), "result", "failed");
+
+    ConversationRouter router = ConversationRouter.getInstance();
+    writer.family("chatbot_fallbacks_total", "counter", "Turns answered in a degraded way");
+    writer.sample("chatbot_fallbacks_total", router.getFallbacks(), "kind", "local_dialog");
+    writer.sample("chatbot_fallbacks_total", Metrics.getRetrievalFallbacks().get(), "kind", "no_retrieval");
+    writer.family("chatbot_shadow_runs_total", "counter", "Turns replayed on the local dialog runtime");
+    writer.sample("chatbot_shadow_runs_total", router.getShadowRuns());
+    writer.family("chatbot_shadow_mismatches_total", "counter", "Shadow runs which disagreed with Conversation");
+    writer.sample("chatbot_shadow_mismatches_total", router.getShadowMismatches());
+
+    AnswerCache cache = AnswerCache.getInstance();
+    writer.family("chatbot_answer_cache_size", "gauge", "Answers in the retrieval cache");
+    writer.sample("chatbot_answer_cache_size", cache.size());
+    writer.family("chatbot_answer_cache_requests_total", "counter", "Retrieval cache lookups");
+    for (Map.Entry<String, AnswerCache.Stats> entry : cache.getStats().entrySet()) {
+      writer.sample("chatbot_answer_cache_requests_total", entry.getValue().getHits(), "backend", entry.getKey(),
+          "result", "hit");
+      writer.sample("chatbot_answer_cache_requests_total", entry.getValue().getMisses(), "backend", entry.getKey(),
+          "result", "miss");
+    }
+
+    ContextStore contexts = ContextStore.getInstance();
+    writer.family("chatbot_context_store_size", "gauge", "Conversation contexts kept on the server");
+    writer.sample("chatbot_context_store_size", contexts.size());
+    writer.family("chatbot_context_store_bytes", "gauge", "Estimated memory of the stored conversation contexts");
+    writer.sample("chatbot_context_store_bytes", contexts.getBytes());
+    writer.family("chatbot_context_store_requests_total", "counter", "Stored context lookups");
+    writer.sample("chatbot_context_store_requests_total", contexts.getStats().getHits(), "result", "hit");
+    writer.sample("chatbot_context_store_requests_total", contexts.getStats().getMisses(), "result", "miss");
+    writer.family("chatbot_context_store_removals_total", "counter", "Contexts dropped or not stored, by reason");
+    writer.sample("chatbot_context_store_removals_total", contexts.getStats().getEvictions(), "reason", "evicted");
+    writer.sample("chatbot_context_store_removals_total", contexts.getStats().getExpirations(), "reason", "expired");
+    writer.sample("chatbot_context_store_removals_total", contexts.getStats().getRejected(), "reason", "too_large");
+
+    writer.family("chatbot_coalesced_calls_total", "counter", "Retrieval calls by how they were served");
+    for (Map.Entry<String, CoalescingRetrievalBackend.Stats> entry : RetrievalOrchestrator.getCoalescingStats()
+        .entrySet()) {
+      CoalescingRetrievalBackend.Stats stats = entry.getValue();
+      writer.sample("chatbot_coalesced_calls_total", stats.getCalls(), "backend", entry.getKey(), "result", "call");
+      writer.sample("chatbot_coalesced_calls_total", stats.getCollapsed(), "backend", entry.getKey(), "result",
+          "collapsed");
+      writer.sample("chatbot_coalesced_calls_total", stats.getRejected(), "backend", entry.getKey(), "result",
+          "rejected");
+      writer.sample("chatbot_coalesced_calls_total", stats.getTimeouts(), "backend", entry.getKey(), "result",
+          "timeout");
+    }
+
+    SpeculativeRetrieval.Stats speculative = SpeculativeRetrieval.getInstance().getStats();
+    writer.family("chatbot_speculative_retrievals_total", "counter", "Retrievals started with the Conversation call");
+    writer.sample("chatbot_speculative_retrievals_total", speculative.getStarted(), "result", "started");
+    writer.sample("chatbot_speculative_retrievals_total", speculative.getUsed(), "result", "used");
+    writer.sample("chatbot_speculative_retrievals_total", speculative.getWasted(), "result", "wasted");
+    writer.sample("chatbot_speculative_retrievals_total", speculative.getSkipped(), "result", "skipped");
+
+    writer.family("chatbot_circuit_state", "gauge", "Circuit breaker state (0 closed, 1 open, 2 half open)");
+    for (Dependency dependency : Dependency.getAll()) {
+      writer.sample("chatbot_circuit_state", dependency.getCircuitBreaker().getState().ordinal(), "dependency",
+          dependency.getName());
+    }
+    writer.family("chatbot_circuit_transitions_total", "counter", "Circuit breaker state changes");
+    for (Dependency dependency : Dependency.getAll()) {
+      for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+        writer.sample("chatbot_circuit_transitions_total", dependency.getCircuitBreaker().getTransitions(state),
+            "dependency", dependency.getName(), "state", state.name().toLowerCase());
+      }
+    }
+    writer.family("chatbot_rejected_calls_total", "counter", "Calls refused by a circuit breaker or a bulkhead");
+    for (Dependency dependency : Dependency.getAll()) {
+      writer.sample("chatbot_rejected_calls_total", dependency.getCircuitBreaker().getNotPermitted(), "dependency",
+          dependency.getName(), "by", "circuit");
+      writer.sample("chatbot_rejected_calls_total", dependency.getBulkhead().getRejected(), "dependency",
+          dependency.getName(), "by", "bulkhead");
+    }
+
+    writer.family("chatbot_hedged_calls_total", "counter", "Hedged queries by outcome");
+    for (RequestHedger hedger : RequestHedger.getAll()) {
+      writer.sample("chatbot_hedged_calls_total", hedger.getStats().getCalls(), "service", hedger.getName(),
+          "result", "call");
+      writer.sample("chatbot_hedged_calls_total", hedger.getStats().getHedges(), "service", hedger.getName(),
+          "result", "hedge");
+      writer.sample("chatbot_hedged_calls_total", hedger.getStats().getWins(), "service", hedger.getName(),
+          "result", "win");
+    }
+
+    RetrieveAndRankConfigurationCache rnrConfiguration = RetrieveAndRankConfigurationCache.getInstance();
+    writer.family("chatbot_rnr_config_resolutions_total", "counter",
+        "Retrieve and Rank configuration lookups; discovered ones made remote calls for the cluster or ranker id");
+    writer.sample("chatbot_rnr_config_resolutions_total", rnrConfiguration.getResolveCount(), "result", "lookup");
+    writer.sample("chatbot_rnr_config_resolutions_total", rnrConfiguration.getDiscoveryCount(), "result",
+        "discovered");
+    writer.sample("chatbot_rnr_config_resolutions_total", rnrConfiguration.getFailureCount(), "result", "failed");
+    writeConversationLog(writer, Logging.getInstance());
+    return writer.toString();
+  }
+
+  /**
+   * Writes the queue and counters of the Cloudant conversation log.
+   *
+   * @param writer the page
+   * @param logging the logger, nothing is written if it is null
+   */
+  static void writeConversationLog(PrometheusWriter writer, Logging logging) {
+    if (logging == null) {
+      return;
+    }
+    Logging.Stats stats = logging.getStats();
+    writer.family("chatbot_cloudant_log_queue_depth", "gauge", "Conversation log entries waiting for the writer");
+    writer.sample("chatbot_cloudant_log_queue_depth", logging.getQueueDepth());
+    writer.family("chatbot_cloudant_log_entries_total", "counter", "Conversation log entries by outcome");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getEnqueued(), "result", "enqueued");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getDropped(), "result", "dropped");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getSpilled(), "result", "spilled");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getReplayed(), "result", "replayed");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getCorrupt(), "result", "corrupt");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getSaved(), "result", "saved");
+    writer.sample("chatbot_cloudant_log_entries_total", stats.getRejected(), "result", "rejected");
+    writer.family("chatbot_cloudant_log_flushes_total", "counter", "Conversation log _bulk_docs requests by outcome");
+    writer.sample("chatbot_cloudant_log_flushes_total", stats.getFlushes(), "result", "ok");
+    writer.sample("chatbot_cloudant_log_flushes_total", stats.getFailedFlushes(), "result", "failed");
+    writer.family("chatbot_cloudant_log_flush_seconds", "gauge",
+        "Latency of the successful conversation log _bulk_docs requests");
+    writer.sample("chatbot_cloudant_log_flush_seconds", stats.getAverageFlushMillis() / 1000, "stat", "average");
+    writer.sample("chatbot_cloudant_log_flush_seconds", stats.getMaxFlushMillis() / 1000, "stat", "max");
+  }
+}
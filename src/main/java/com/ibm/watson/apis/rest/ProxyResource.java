@@ -13,37 +13,46 @@
 
 package com.ibm.watson.apis.rest;
 
-import java.io.BufferedReader;
-import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.google.gson.Gson;
-import com.ibm.watson.apis.retrieve_and_rank.requests.RetrieveAndRankClient;
-import com.ibm.watson.apis.discovery.DiscoveryClient;
-import com.ibm.watson.apis.payload.DocumentPayload;
-import com.ibm.watson.apis.utils.Constants;
+import com.ibm.watson.apis.conversation.ConversationClientRegistry;
+import com.ibm.watson.apis.conversation.ContextStore;
+import com.ibm.watson.apis.conversation.ConversationRouter;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.metrics.RecordingEvent;
+import com.ibm.watson.apis.resilience.DependencyUnavailableException;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator;
+import com.ibm.watson.apis.retrieval.SpeculativeRetrieval;
 import com.ibm.watson.apis.utils.Messages;
 import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
 import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
 import com.ibm.watson.developer_cloud.service.exception.UnauthorizedException;
-import com.ibm.watson.developer_cloud.util.GsonSingleton;
 
 /**
  * Manages input from the user and calls to Watson Retrieve
@@ -53,43 +62,94 @@ import com.ibm.watson.developer_cloud.util.GsonSingleton;
 public class ProxyResource {
   private static String API_VERSION;
   private static final String ERROR = "error";
+  private static final String CONVERSATION_ID = "conversation_id";
+  private static final String CONTEXT_VERSION = "context_version";
+  static final String CALL_RETRIEVE_AND_RANK = "callRetrieveAndRank";
   private static final Logger logger = LogManager.getLogger(ProxyResource.class.getName());
   
-  private DiscoveryClient discoveryClient = new DiscoveryClient();
-  
   private String password = System.getenv("CONVERSATION_PASSWORD");
   
   private String url;
   
   private String username = System.getenv("CONVERSATION_USERNAME");
 
-  private MessageRequest buildMessageFromPayload(InputStream body) {
-    StringBuilder sbuilder = null;
-    BufferedReader reader = null;
-    try {
-      reader = new BufferedReader(new InputStreamReader(body, "UTF-8"));
-      sbuilder = new StringBuilder();
-      String str = reader.readLine();
-      while (str != null) {
-        sbuilder.append(str);
-        str = reader.readLine();
-        if (str != null) {
-          sbuilder.append("\n");
-        }
-      }
-      return GsonSingleton.getGson().fromJson(sbuilder.toString(), MessageRequest.class);
-    } catch (IOException e) {
-      logger.error(Messages.getString("ProxyResource.JSON_READ"), e);
-    } finally {
-      try {
-        if (reader != null) {
-          reader.close();
-        }
-      } catch (IOException e) {
-        logger.error(Messages.getString("ProxyResource.STREAM_CLOSE"), e);
+  @Context
+  private HttpHeaders headers;
+
+  /** What each retrieval backend answered for this request, filled only while a recording is running. */
+  private Map<String, Integer> retrievalResults;
+
+  /** The retrieval started along with the Conversation call, see {@link #speculate(MessageRequest)}. */
+  private Future<List<?>> speculation;
+  private String speculativeQuery;
+  private Map<String, Integer> speculativeResults;
+
+  /**
+   * Reads the message request posted by the UI, with its stored context if it refers to one (see
+   * {@link #restoreContext(MessageRequest)}).
+   *
+   * @param body the request body
+   * @return the message request
+   * @throws InvalidRequestException if the body is too large or not a message request, or if the stored context it
+   *         refers to is gone
+   */
+  MessageRequest buildMessageFromPayload(InputStream body) {
+    return restoreContext(MessageRequestReader.getInstance().read(body));
+  }
+
+  /**
+   * When the {@link ContextStore} is enabled, a client sends back the context of the last response, which is only
+   * <code>{"conversation_id": ..., "context_version": ...}</code> (see {@link #storeContext(MessageResponse)}). This
+   * replaces it with the stored context; any other variable sent along overrides the stored one. A request with a
+   * full context is left as it is.
+   *
+   * @param request the message request
+   * @return the request with the stored context
+   * @throws InvalidRequestException with 409 if the stored context expired or a newer version exists
+   */
+  MessageRequest restoreContext(MessageRequest request) {
+    Map<String, Object> context = request.context();
+    ContextStore store = ContextStore.getInstance();
+    if (!store.isEnabled() || (context == null) || !(context.get(CONTEXT_VERSION) instanceof Number)) {
+      return request;
+    }
+    Object conversationId = context.get(CONVERSATION_ID);
+    Map<String, Object> stored = conversationId == null ? null
+        : store.load(conversationId.toString(), ((Number) context.get(CONTEXT_VERSION)).longValue());
+    if (stored == null) {
+      throw new InvalidRequestException(HttpServletResponse.SC_CONFLICT,
+          Messages.getString("ProxyResource.CONTEXT_EXPIRED"));
+    }
+    for (Map.Entry<String, Object> variable : context.entrySet()) {
+      if (!CONTEXT_VERSION.equals(variable.getKey())) {
+        stored.put(variable.getKey(), variable.getValue());
       }
     }
-    return null;
+    return request.newBuilder().context(stored).build();
+  }
+
+  /**
+   * Keeps the context of the response in the {@link ContextStore}, if it is enabled, and sends the client only the
+   * conversation id and the version of the stored context. A context too large for the store is sent in full.
+   *
+   * @param response the response of the conversation service
+   */
+  void storeContext(MessageResponse response) {
+    ContextStore store = ContextStore.getInstance();
+    Map<String, Object> context = response.getContext();
+    if (!store.isEnabled() || (context == null) || !(context.get(CONVERSATION_ID) instanceof String)) {
+      return;
+    }
+    String conversationId = (String) context.get(CONVERSATION_ID);
+    // the UI drops this variable before sending the context back, so the stored context does the same
+    context.remove(CALL_RETRIEVE_AND_RANK);
+    long version = store.save(conversationId, context);
+    if (version > 0) {
+      Map<String, Object> reference = new LinkedHashMap<String, Object>();
+      reference.put(CONVERSATION_ID, conversationId);
+      reference.put(CONTEXT_VERSION, version);
+      response.setContext(reference);
+    }
   }
 
   /**
@@ -105,82 +165,170 @@ public class ProxyResource {
    */
   private MessageResponse getWatsonResponse(MessageRequest request, String id) throws Exception {
 
-    // Configure the Watson Developer Cloud SDK to make a call to the
-    // appropriate conversation service.
-    ConversationService service =
-        new ConversationService(API_VERSION != null ? API_VERSION : ConversationService.VERSION_DATE_2016_09_20);
-    if ((username != null) || (password != null)) {
-      service.setUsernameAndPassword(username, password);
-    }
+    // Start the retrieval of a question while Conversation decides whether it is needed
+    speculate(request);
+
+    MessageResponse response = answer(request, id);
+    storeContext(response);
 
-    service.setEndPoint(url == null ? Constants.CONVERSATION_URL : url);
-
-    // Use the previously configured service object to make a call to the
-    // conversational service
-    MessageResponse response = service.message(id, request).execute();
-
-    // Determine if conversation's response is sufficient to answer the
-    // user's question or if we
-    // should call the discovery service to obtain better answers
-    if (response.getOutput().containsKey("action") 
-    		&& (response.getOutput().get("action").toString().indexOf("lookup_information") != -1)) {
-    	callRetrieveAndRank(response);
-    	boolean noResults = response.getOutput().get("CEPayload").toString() == "[]";
-    	if (noResults) {
-    		callDiscovery(response);
-    	}
+    return response;
+  }
+
+  /**
+   * Calls the conversation service and the retrieval backends if the dialog asks for a lookup, without starting a
+   * speculative retrieval or storing the context. Used as is by the {@link MessageBatch}.
+   *
+   * @param request the message request
+   * @param id the ID of the conversational workspace
+   * @return the response from Watson
+   * @throws Exception if the conversation service fails
+   */
+  MessageResponse answer(MessageRequest request, String id) throws Exception {
+    // Use the configured service object to make a call to the
+    // conversational service, or answer locally (see ConversationRouter)
+    long start = System.nanoTime();
+    MessageResponse response;
+    try {
+      response = ConversationRouter.getInstance().message(getConversationService(), id, request);
+    } catch (Exception e) {
+      Metrics.CONVERSATION.recordError(start);
+      discardSpeculation();
+      throw e;
     }
+    Metrics.CONVERSATION.record(start);
 
+    lookupIfNeeded(response);
     return response;
   }
-  
-	private void callRetrieveAndRank(MessageResponse response) throws Exception {
-		String query = response.getInputText();
-
-		// Extract the user's original query from the conversational response
-		if (query != null && !query.isEmpty()) {
-			RetrieveAndRankClient retrieveAndRankClient = new RetrieveAndRankClient();
-			Map<String, Object> output = response.getOutput();
-			if (output == null) {
-				output = new HashMap<String, Object>();
-				response.setOutput(output);
-			}
-
-			// Send the user's question to the retrieve and rank service
-			List<com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload> docs;
-			docs = retrieveAndRankClient.getDocuments(query);
-
-			// Append the retrieve and rank answers to the output object that
-			// will be sent to the UI
-			output.put("CEPayload", docs); //$NON-NLS-1$
-		}
-	}
+
+  /**
+   * Gets the Watson Developer Cloud SDK service object for the appropriate conversation service. Service objects are
+   * shared across requests.
+   *
+   * @return the conversation service
+   */
+  ConversationService getConversationService() {
+    return ConversationClientRegistry.getInstance().getService(API_VERSION, url, username, password);
+  }
+
+  /**
+   * Determine if conversation's response is sufficient to answer the user's question or if we should call the
+   * retrieve and rank and discovery services to obtain better answers.
+   *
+   * @param response The response from the conversation service
+   */
+  void lookupIfNeeded(MessageResponse response) throws Exception {
+    try {
+      if (isLookup(response)) {
+        callRetrieval(response);
+      }
+    } finally {
+      discardSpeculation();
+    }
+  }
+
+  /**
+   * Returns true if the dialog asks for the question to be looked up in the corpus.
+   *
+   * @param response The response from the conversation service
+   * @return true if the response carries the <code>lookup_information</code> action
+   */
+  static boolean isLookup(MessageResponse response) {
+    return (response.getOutput() != null) && response.getOutput().containsKey("action")
+        && (response.getOutput().get("action").toString().indexOf("lookup_information") != -1);
+  }
+
+  /**
+   * Starts the retrieval of the user's input before the Conversation call, if the {@link SpeculativeRetrieval} is
+   * enabled and takes it. The answer is used by {@link #lookupIfNeeded(MessageResponse)} when the dialog asks for a
+   * lookup of the same text, and discarded otherwise.
+   *
+   * @param request the message request
+   */
+  void speculate(MessageRequest request) {
+    SpeculativeRetrieval speculative = SpeculativeRetrieval.getInstance();
+    if (!speculative.isEnabled()) {
+      return;
+    }
+    speculativeQuery = request.inputText();
+    speculativeResults = Recording.isActive() ? new LinkedHashMap<String, Integer>() : null;
+    speculation = speculative.start(RetrievalOrchestrator.getInstance(), speculativeQuery, speculativeResults);
+  }
+
+  /**
+   * Discards the speculative retrieval if it was not used.
+   */
+  void discardSpeculation() {
+    if (speculation != null) {
+      SpeculativeRetrieval.getInstance().discard(speculation);
+      speculation = null;
+    }
+  }
+
+  /**
+   * Gets the documents of the speculative retrieval of a query.
+   *
+   * @return the documents, or null if the query was not speculated on
+   */
+  private List<?> takeSpeculation(String query) throws Exception {
+    Future<List<?>> answer = speculation;
+    if ((answer == null) || !query.equals(speculativeQuery)) {
+      return null;
+    }
+    speculation = null;
+    SpeculativeRetrieval.getInstance().onUsed();
+    try {
+      return answer.get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+    } finally {
+      retrievalResults = speculativeResults;
+    }
+  }
   
   /**
-   * This method calls the Discovery service if the Conversation alone was unable to adequately answer the user. 
+   * This method calls Retrieve and Rank and Discovery in parallel if the Conversation alone was unable to adequately
+   * answer the user. See {@link RetrievalOrchestrator} for how their answers are combined. If no backend can answer,
+   * for example because their circuit breakers are open, the Conversation output is returned alone. The answer of
+   * the speculative retrieval is used when there is one for the same text.
    *
-   * @param request The full query the user asked of Watson
+   * @param response The response from the conversation service
    */
-  private void callDiscovery(MessageResponse response) throws Exception {
+  private void callRetrieval(MessageResponse response) {
 	  String query = response.getInputText();
 
       // Extract the user's original query from the conversational
       // response
       if ((query != null) && !query.isEmpty()) {
-    	// JSON response shows both Conversation and Discovery responses
-    	// Output limited to three documents
+    	// JSON response shows both Conversation and retrieved documents
         Map<String, Object> output = response.getOutput();
         if (output == null) {
           output = new HashMap<String, Object>();
           response.setOutput(output);
         }
 
-        // Send the user's question to the discovery service
-        List<DocumentPayload> docs = discoveryClient.getDocuments(query);
+        // Send the user's question to the retrieve and rank and discovery services
+        List<?> docs;
+        long start = System.nanoTime();
+        try {
+          docs = takeSpeculation(query);
+          if (docs == null) {
+            if (Recording.isActive()) {
+              retrievalResults = new LinkedHashMap<String, Integer>();
+            }
+            docs = RetrievalOrchestrator.getInstance().getDocuments(query, retrievalResults);
+          }
+        } catch (Exception e) {
+          Metrics.RETRIEVAL.recordError(start);
+          Metrics.getRetrievalFallbacks().incrementAndGet();
+          logger.warn(Messages.getString("ProxyResource.RETRIEVAL_UNAVAILABLE") + e.getMessage());
+          return;
+        }
+        Metrics.RETRIEVAL.record(start);
 
-        // Append the discovery answers to the output object that will
+        // Append the answers to the output object that will
         // be sent to the UI
-        output.put("CEPayload", docs);
+        output.put("CEPayload", docs); //$NON-NLS-1$
       }
   }
 
@@ -196,36 +344,103 @@ public class ProxyResource {
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   public Response postMessage(@PathParam("id") String id, InputStream body) {
+    long start = System.nanoTime();
+    Metrics.getActiveRequests().incrementAndGet();
+    try {
+      MessageRequest request;
+      try {
+        request = buildMessageFromPayload(body);
+      } catch (InvalidRequestException e) {
+        Metrics.PARSE.recordError(start);
+        Metrics.REQUEST.recordError(start);
+        recordTurn(id, null, start, e);
+        return buildJsonResponse(Response.status(e.getStatus()), buildError(e), Map.class);
+      }
+      Metrics.PARSE.record(start);
 
-    HashMap<String, Object> errorsOutput = new HashMap<String, Object>();
-    MessageRequest request = buildMessageFromPayload(body);
+      MessageResponse response = null;
 
-    if (request == null) {
-      throw new IllegalArgumentException(Messages.getString("ProxyResource.NO_REQUEST"));
-    }
+      try {
+        response = getWatsonResponse(request, id);
 
-    MessageResponse response = null;
+      } catch (Exception e) {
+        Metrics.REQUEST.recordError(start);
+        recordTurn(id, null, start, e);
+        return buildJsonResponse(Response.ok(), buildError(e), Map.class);
+      }
+      Metrics.REQUEST.record(start);
+      recordTurn(id, response, start, null);
+      return buildJsonResponse(Response.ok(), response, MessageResponse.class);
+    } finally {
+      Metrics.getActiveRequests().decrementAndGet();
+    }
+  }
 
-    try {
-      response = getWatsonResponse(request, id);
+  /**
+   * Adds the turn to the running {@link Recording}, if any: the workspace, the action asked by the dialog, what each
+   * retrieval backend answered and the number of documents sent to the UI.
+   *
+   * @param id the workspace id
+   * @param response the response, null if the turn failed
+   * @param start the {@link System#nanoTime()} at the arrival of the request
+   * @param failure the failure of the turn, null if it succeeded
+   */
+  void recordTurn(String id, MessageResponse response, long start, Exception failure) {
+    if (!Recording.isActive()) {
+      return;
+    }
+    Map<String, Object> output = response == null ? null : response.getOutput();
+    Object action = output == null ? null : output.get("action");
+    Object documents = output == null ? null : output.get("CEPayload");
+    Recording.commit(RecordingEvent.Type.TURN, start, "workspace", id, "action", action, "backends",
+        retrievalResults == null ? null : retrievalResults.keySet(), "results", retrievalResults, "documents",
+        documents instanceof List ? ((List<?>) documents).size() : 0, "error",
+        failure == null ? null : failure.getClass().getSimpleName());
+  }
 
-    } catch (Exception e) {
-      if (e instanceof UnauthorizedException) {
-        errorsOutput.put(ERROR, Messages.getString("ProxyResource.INVALID_CONVERSATION_CREDS"));
-      } else if (e instanceof IllegalArgumentException) {
-        errorsOutput.put(ERROR, e.getMessage());
-      } else if (e instanceof MalformedURLException) {
-        errorsOutput.put(ERROR, Messages.getString("ProxyResource.MALFORMED_URL"));
-      } else if (e.getMessage().contains("URL workspaceid parameter is not a valid GUID.")) {
-        errorsOutput.put(ERROR, Messages.getString("ProxyResource.INVALID_WORKSPACEID"));
-      } else {
-        errorsOutput.put(ERROR, Messages.getString("ProxyResource.GENERIC_ERROR"));
-      }
+  /**
+   * Builds a response which streams the JSON of an object to the client, gzip compressed if enabled and accepted.
+   *
+   * @param builder the response builder with the status set
+   * @param entity the object sent as JSON
+   * @param type the type of the object
+   * @return the response
+   */
+  private Response buildJsonResponse(ResponseBuilder builder, Object entity, Type type) {
+    JsonStreamingOutput output = new JsonStreamingOutput(entity, type, JsonStreamingOutput.useGzip(headers));
+    if (output.isGzip()) {
+      builder.header(HttpHeaders.CONTENT_ENCODING, JsonStreamingOutput.GZIP);
+    }
+    return builder.entity(output).type(MediaType.APPLICATION_JSON).build();
+  }
 
-      logger.error(Messages.getString("ProxyResource.QUERY_EXCEPTION") + e.getMessage());
-      return Response.ok(new Gson().toJson(errorsOutput, HashMap.class)).type(MediaType.APPLICATION_JSON).build();
+  /**
+   * Logs the exception and builds the error object which is sent to the UI as JSON instead of the conversation
+   * response.
+   *
+   * @param e the exception
+   * @return the error object
+   */
+  static Map<String, Object> buildError(Exception e) {
+    HashMap<String, Object> errorsOutput = new HashMap<String, Object>();
+    if (e instanceof UnauthorizedException) {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.INVALID_CONVERSATION_CREDS"));
+    } else if (e instanceof IllegalArgumentException) {
+      errorsOutput.put(ERROR, e.getMessage());
+    } else if (e instanceof MalformedURLException) {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.MALFORMED_URL"));
+    } else if (e instanceof TimeoutException) {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.TIMEOUT"));
+    } else if (e instanceof DependencyUnavailableException) {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.UNAVAILABLE"));
+    } else if ((e.getMessage() != null) && e.getMessage().contains("URL workspaceid parameter is not a valid GUID.")) {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.INVALID_WORKSPACEID"));
+    } else {
+      errorsOutput.put(ERROR, Messages.getString("ProxyResource.GENERIC_ERROR"));
     }
-    return Response.ok(new Gson().toJson(response, MessageResponse.class)).type(MediaType.APPLICATION_JSON).build();
+
+    logger.error(Messages.getString("ProxyResource.QUERY_EXCEPTION") + e.getMessage());
+    return errorsOutput;
   }
   
   /**
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+
+/**
+ * Controls the on-demand {@link Recording} of chat turns and outbound calls. The API endpoint points to
+ * '/rest/recording'. <code>GET</code> returns the state of the recording, <code>POST /rest/recording/start</code>
+ * starts one (bounded by the <code>events</code> and <code>seconds</code> query parameters, or the
+ * <code>RECORDING_MAX_EVENTS</code> and <code>RECORDING_MAX_SECONDS</code> settings),
+ * <code>POST /rest/recording/stop</code> stops it and <code>POST /rest/recording/dump</code> writes it to the
+ * <code>RECORDING_DIR</code> directory on local disk. Like '/rest/cache', it requires the <code>ADMIN_KEY</code> in
+ * the <code>X-Admin-Key</code> header.
+ */
+@Path("recording")
+public class RecordingResource {
+  private static final Logger logger = LogManager.getLogger(RecordingResource.class.getName());
+
+  /**
+   * Gets the state of the recording.
+   *
+   * @param adminKey the admin key
+   * @return the state
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getState(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    return CacheResource.ok(describe());
+  }
+
+  /**
+   * Starts a recording, dropping the previous one.
+   *
+   * @param adminKey the admin key
+   * @param events the maximum number of events kept, the setting when absent
+   * @param seconds how long the recording runs, the setting when absent
+   * @return the state
+   */
+  @POST
+  @Path("start")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response start(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey,
+      @QueryParam("events") Integer events, @QueryParam("seconds") Long seconds) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    int maxEvents = EnvironmentUtils.getInt("RECORDING_MAX_EVENTS", 10000);
+    long maxSeconds = EnvironmentUtils.getLong("RECORDING_MAX_SECONDS", 600);
+    Recording.start(events == null ? maxEvents : Math.min(events, maxEvents),
+        seconds == null ? maxSeconds : Math.min(seconds, maxSeconds),
+        EnvironmentUtils.getBoolean("RECORDING_JVM", true));
+    return CacheResource.ok(describe());
+  }
+
+  /**
+   * Stops the recording.
+   *
+   * @param adminKey the admin key
+   * @return the state
+   */
+  @POST
+  @Path("stop")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response stop(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    Recording.stop();
+    return CacheResource.ok(describe());
+  }
+
+  /**
+   * Writes the recording to local disk.
+   *
+   * @param adminKey the admin key
+   * @return the paths of the files written
+   */
+  @POST
+  @Path("dump")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response dump(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    JsonArray paths = new JsonArray();
+    try {
+      for (File file : Recording.dump(new File(EnvironmentUtils.getString("RECORDING_DIR",
+          System.getProperty("java.io.tmpdir"))))) {
+        paths.add(file.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      logger.error(Messages.getString("RecordingResource.DUMP_FAILED") + e.getMessage());
+      JsonObject error = new JsonObject();
+      error.addProperty("error", Messages.getString("RecordingResource.DUMP_FAILED") + e.getMessage());
+      return Response.serverError().type(MediaType.APPLICATION_JSON).entity(error.toString()).build();
+    }
+    JsonObject result = describe();
+    result.add("files", paths);
+    return CacheResource.ok(result);
+  }
+
+  private static JsonObject describe() {
+    JsonObject state = new JsonObject();
+    state.addProperty("active", Recording.isActive());
+    state.addProperty("startTime", Recording.getStartMillis());
+    state.addProperty("events", Recording.getEventCount());
+    state.addProperty("dropped", Recording.getDropped());
+    state.addProperty("jvmRecording", Recording.isJvmRecording());
+    return state;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import com.google.gson.JsonObject;
+import com.ibm.watson.apis.resilience.Bulkhead;
+import com.ibm.watson.apis.resilience.CircuitBreaker;
+import com.ibm.watson.apis.resilience.Dependency;
+import com.ibm.watson.apis.resilience.RequestHedger;
+
+/**
+ * The state of the circuit breakers and bulkheads of the outbound services (see {@link Dependency}) and of the
+ * request hedging (see {@link RequestHedger}). The API endpoint points to '/rest/resilience'. <code>GET</code>
+ * returns, under <code>dependencies</code>, the breaker state, the failure rate, how many times the breaker went into
+ * each state and the calls refused by the breaker and the bulkhead, and under <code>hedging</code> the hedge delay,
+ * rate and wins of each service. Like '/rest/cache', it requires the <code>ADMIN_KEY</code> in the
+ * <code>X-Admin-Key</code> header.
+ */
+@Path("resilience")
+public class ResilienceResource {
+
+  /**
+   * Gets the state of the dependencies.
+   *
+   * @param adminKey the admin key
+   * @return the state of each dependency
+   */
+  @GET
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getState(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    JsonObject dependencies = new JsonObject();
+    for (Dependency dependency : Dependency.getAll()) {
+      CircuitBreaker breaker = dependency.getCircuitBreaker();
+      JsonObject transitions = new JsonObject();
+      for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+        transitions.addProperty(state.name().toLowerCase(), breaker.getTransitions(state));
+      }
+      JsonObject state = new JsonObject();
+      state.addProperty("state", breaker.getState().name().toLowerCase());
+      state.addProperty("failureRate", breaker.getFailureRate());
+      state.add("transitions", transitions);
+      state.addProperty("notPermitted", breaker.getNotPermitted());
+
+      Bulkhead bulkhead = dependency.getBulkhead();
+      JsonObject slots = new JsonObject();
+      slots.addProperty("maxConcurrent", bulkhead.getMaxConcurrent());
+      slots.addProperty("available", bulkhead.getAvailable());
+      slots.addProperty("rejected", bulkhead.getRejected());
+      state.add("bulkhead", slots);
+      dependencies.add(dependency.getName(), state);
+    }
+
+    JsonObject hedging = new JsonObject();
+    for (RequestHedger hedger : RequestHedger.getAll()) {
+      JsonObject counters = new JsonObject();
+      counters.addProperty("enabled", hedger.isEnabled());
+      counters.addProperty("delayMs", hedger.getDelayMillis());
+      counters.addProperty("calls", hedger.getStats().getCalls());
+      counters.addProperty("hedges", hedger.getStats().getHedges());
+      counters.addProperty("hedgeRate", hedger.getStats().getHedgeRate());
+      counters.addProperty("wins", hedger.getStats().getWins());
+      counters.addProperty("denied", hedger.getStats().getDenied());
+      hedging.add(hedger.getName(), counters);
+    }
+
+    JsonObject result = new JsonObject();
+    result.add("dependencies", dependencies);
+    result.add("hedging", hedging);
+    return CacheResource.ok(result);
+  }
+}
@@ -15,6 +15,8 @@ package com.ibm.watson.apis.rest;
 import java.text.MessageFormat;
 
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
@@ -26,13 +28,20 @@ import org.apache.logging.log4j.Logger;
 
 import com.google.gson.JsonObject;
 import com.ibm.watson.apis.listener.AppServletContextListener;
+import com.ibm.watson.apis.local.CorpusIngestion;
+import com.ibm.watson.apis.local.CorpusSnapshot;
+import com.ibm.watson.apis.local.LocalSearchEngine;
 import com.ibm.watson.apis.utils.Constants;
 import com.ibm.watson.apis.utils.Messages;
 
 /**
  * The SetupResource is used to fetch the configuration file with the WorkspaceId from the env file and the setup
  * configuration stage that the application is currently in. The API endpoint points to '/rest/setup'
- *
+ * <p>
+ * '/rest/setup/corpus' reports the local corpus searched by the <code>LOCAL</code> backend: the version and size of
+ * the snapshot being searched, and the progress and timing of the last ingestion. <code>POST</code>ing to
+ * '/rest/setup/corpus/reload' ingests the corpus again in the background; like '/rest/cache', it requires the
+ * <code>ADMIN_KEY</code> in the <code>X-Admin-Key</code> header.
  */
 @Path("setup")
 public class SetupResource {
@@ -77,4 +86,70 @@ public class SetupResource {
         .header("Cache-Control", "no-cache").build();
   }
 
+  /**
+   * Gets the status of the local corpus.
+   *
+   * @return the snapshot being searched and the last ingestion
+   */
+  @GET
+  @Path("corpus")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response getCorpus() {
+    return CacheResource.ok(describeCorpus());
+  }
+
+  /**
+   * Ingests the local corpus again. The current snapshot is searched until the new one is built.
+   *
+   * @param adminKey the admin key
+   * @return 202 with the status of the corpus, or 409 if an ingestion is already in progress
+   */
+  @POST
+  @Path("corpus/reload")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response reloadCorpus(@HeaderParam(CacheResource.ADMIN_KEY_HEADER) String adminKey) {
+    if (!CacheResource.isAuthorized(adminKey)) {
+      return CacheResource.forbidden();
+    }
+    boolean started = LocalSearchEngine.getInstance().reload() != null;
+    if (started) {
+      logger.info(Messages.getString("SetupResource.CORPUS_RELOAD"));
+    }
+    return Response.status(started ? Response.Status.ACCEPTED : Response.Status.CONFLICT)
+        .type(MediaType.APPLICATION_JSON).header("Cache-Control", "no-cache").entity(describeCorpus().toString())
+        .build();
+  }
+
+  private static JsonObject describeCorpus() {
+    LocalSearchEngine engine = LocalSearchEngine.getInstance();
+    JsonObject corpus = new JsonObject();
+    CorpusSnapshot snapshot = engine.getSnapshot();
+    if (snapshot != null) {
+      corpus.addProperty("version", snapshot.getVersion());
+      corpus.addProperty("documents", snapshot.getIndex().size());
+      corpus.addProperty("createdAt", snapshot.getCreatedAt());
+    }
+    CorpusIngestion ingestion = engine.getIngestion();
+    if (ingestion != null) {
+      JsonObject last = new JsonObject();
+      last.addProperty("phase", ingestion.getPhase().name());
+      last.addProperty("running", ingestion.isRunning());
+      last.addProperty("startedAt", ingestion.getStartedAt());
+      last.addProperty("total", ingestion.getTotal());
+      last.addProperty("processed", ingestion.getProcessed());
+      last.addProperty("parsed", ingestion.getParsed());
+      last.addProperty("reused", ingestion.getReused());
+      last.addProperty("skipped", ingestion.getSkipped());
+      last.addProperty("removed", ingestion.getRemoved());
+      last.addProperty("readMs", ingestion.getReadMillis());
+      last.addProperty("parseMs", ingestion.getParseMillis());
+      last.addProperty("indexMs", ingestion.getIndexMillis());
+      last.addProperty("totalMs", ingestion.getTotalMillis());
+      if (ingestion.getError() != null) {
+        last.addProperty("error", ingestion.getError());
+      }
+      corpus.add("ingestion", last);
+    }
+    return corpus;
+  }
 }
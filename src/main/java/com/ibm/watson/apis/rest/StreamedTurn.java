@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.conversation.ConversationRouter;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+
+/**
+ * A message request answered as a series of events rather than one response:
+ * <ul>
+ * <li><code>message</code>: the Conversation response, as soon as the Conversation call returns;</li>
+ * <li><code>documents</code>: on lookup turns, <code>{"backend": ..., "CEPayload": [...]}</code> for each backend
+ * which found documents, as it answers (or the "No results found" document if none did);</li>
+ * <li><code>error</code>: the usual error JSON, if the turn failed;</li>
+ * <li><code>done</code>: the last event.</li>
+ * </ul>
+ * The turn ends once, by whichever of the last event or a failure comes first. No request thread waits for the
+ * remote calls: the Conversation is called asynchronously and the retrieval runs on the given executor, which for
+ * both the Server-Sent Events and the WebSocket endpoints is the pool of <code>STREAM_RETRIEVAL_THREADS</code> threads
+ * (see {@link #getRetrievalExecutor()}).
+ */
+class StreamedTurn {
+  private static final Logger logger = LogManager.getLogger(StreamedTurn.class.getName());
+  private static final byte[] EMPTY = { '{', '}' };
+  private static final ThreadPoolExecutor RETRIEVAL_EXECUTOR = ThreadPools.newFixedThreadPool("stream-retrieval",
+      EnvironmentUtils.getInt("STREAM_RETRIEVAL_THREADS", 16),
+      new LinkedBlockingQueue<Runnable>(EnvironmentUtils.getInt("STREAM_RETRIEVAL_QUEUE_SIZE", 200)));
+
+  private final EventSink sink;
+  private final ProxyResource proxy;
+  private final String id;
+  private final long start;
+  private final AtomicBoolean completed = new AtomicBoolean();
+
+  /**
+   * Instantiates a new turn, counted as an active asynchronous request until it ends.
+   *
+   * @param sink where the events are sent
+   * @param proxy the resource which read the request
+   * @param id the workspace id
+   * @param start the {@link System#nanoTime()} at the arrival of the request
+   */
+  StreamedTurn(EventSink sink, ProxyResource proxy, String id, long start) {
+    this.sink = sink;
+    this.proxy = proxy;
+    this.id = id;
+    this.start = start;
+    Metrics.getActiveAsyncRequests().incrementAndGet();
+  }
+
+  /**
+   * Gets the pool the streamed turns look their questions up on, shared by the streaming endpoints.
+   *
+   * @return the executor
+   */
+  static Executor getRetrievalExecutor() {
+    return RETRIEVAL_EXECUTOR;
+  }
+
+  /**
+   * Stops the retrieval threads of the streamed turns.
+   */
+  static void shutdown() {
+    RETRIEVAL_EXECUTOR.shutdownNow();
+  }
+
+  /**
+   * Calls the Conversation, then looks the question up on the executor if the dialog asks for it.
+   *
+   * @param request the message request
+   * @param retrievalExecutor runs the retrieval
+   */
+  void start(MessageRequest request, final Executor retrievalExecutor) {
+    final long conversationStart = System.nanoTime();
+    ConversationRouter.getInstance().messageAsync(proxy.getConversationService(), id, request,
+        new ServiceCallback<MessageResponse>() {
+          @Override
+          public void onResponse(final MessageResponse response) {
+            Metrics.CONVERSATION.record(conversationStart);
+            proxy.storeContext(response);
+            send("message", response, MessageResponse.class);
+            if (!ProxyResource.isLookup(response) || (response.getInputText() == null)
+                || response.getInputText().isEmpty()) {
+              complete(response);
+              return;
+            }
+            try {
+              retrievalExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                  retrieve(response);
+                }
+              });
+            } catch (Exception e) {
+              fail(e);
+            }
+          }
+
+          @Override
+          public void onFailure(Exception e) {
+            Metrics.CONVERSATION.recordError(conversationStart);
+            fail(e);
+          }
+        });
+  }
+
+  /**
+   * Looks the question up, sending the documents of each backend as they arrive.
+   */
+  private void retrieve(MessageResponse response) {
+    final boolean[] sent = new boolean[1];
+    long retrievalStart = System.nanoTime();
+    try {
+      List<?> documents = RetrievalOrchestrator.getInstance().getDocuments(response.getInputText(), null,
+          new RetrievalOrchestrator.Listener() {
+            @Override
+            public void onAnswer(String backend, List<?> answer) {
+              if (!RetrievalOrchestrator.isEmpty(answer)) {
+                sent[0] = true;
+                sendDocuments(backend, answer);
+              }
+            }
+          });
+      Metrics.RETRIEVAL.record(retrievalStart);
+      if (!sent[0]) {
+        sendDocuments(null, documents);
+      }
+    } catch (Exception e) {
+      Metrics.RETRIEVAL.recordError(retrievalStart);
+      Metrics.getRetrievalFallbacks().incrementAndGet();
+      logger.warn(Messages.getString("ProxyResource.RETRIEVAL_UNAVAILABLE") + e.getMessage());
+    }
+    complete(response);
+  }
+
+  private void sendDocuments(String backend, List<?> documents) {
+    Map<String, Object> event = new LinkedHashMap<String, Object>();
+    event.put("backend", backend);
+    event.put("CEPayload", documents);
+    send("documents", event, Map.class);
+  }
+
+  private void send(String event, Object value, Type type) {
+    try {
+      sink.send(event, new JsonStreamingOutput(value, type, false).toByteArray());
+    } catch (IOException e) {
+      logger.error(Messages.getString("StreamedTurn.WRITE_ERROR"), e);
+    }
+  }
+
+  private void complete(MessageResponse response) {
+    if (completed.compareAndSet(false, true)) {
+      Metrics.REQUEST.record(start);
+      proxy.recordTurn(id, response, start, null);
+      end(response);
+    }
+  }
+
+  /**
+   * Ends the turn with an <code>error</code> event, unless it already ended.
+   *
+   * @param e the failure
+   */
+  void fail(Exception e) {
+    if (completed.compareAndSet(false, true)) {
+      Metrics.REQUEST.recordError(start);
+      proxy.recordTurn(id, null, start, e);
+      send("error", ProxyResource.buildError(e), Map.class);
+      end(null);
+    }
+  }
+
+  private void end(MessageResponse response) {
+    Metrics.getActiveAsyncRequests().decrementAndGet();
+    sink.send("done", EMPTY);
+    ended(response);
+    sink.close();
+  }
+
+  /**
+   * Called once the turn ended, before the sink is closed.
+   *
+   * @param response the response, null if the turn failed
+   */
+  void ended(MessageResponse response) {
+  }
+}
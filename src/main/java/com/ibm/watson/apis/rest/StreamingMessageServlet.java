@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+
+/**
+ * Streaming variant of {@link ProxyResource#postMessage(String, java.io.InputStream)}, mapped to
+ * <code>/stream/conversation/api/v1/workspaces/{id}/message</code>. The answer is a stream of Server-Sent Events, so
+ * the dialog reply is shown before the retrieval backends answer (see {@link StreamedTurn} for the events). A turn
+ * which takes longer than <code>STREAM_MESSAGE_TIMEOUT_MS</code> ends with an <code>error</code> event.
+ * <p>
+ * Like {@link AsyncMessageServlet}, the request is suspended while the remote calls are in progress, and the events
+ * are written with non-blocking I/O (see {@link EventStream}). The body is posted, so browsers read the stream with
+ * <code>fetch</code> rather than <code>EventSource</code>.
+ */
+public class StreamingMessageServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+  private static final String MESSAGE_PATH = "/message";
+
+  private long timeout;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.GenericServlet#init()
+   */
+  @Override
+  public void init() throws ServletException {
+    timeout = EnvironmentUtils.getLong("STREAM_MESSAGE_TIMEOUT_MS", 30000);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see javax.servlet.http.HttpServlet#doPost(javax.servlet.http.HttpServletRequest,
+   * javax.servlet.http.HttpServletResponse)
+   */
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+    String path = req.getPathInfo();
+    if ((path == null) || !path.endsWith(MESSAGE_PATH) || (path.length() <= MESSAGE_PATH.length() + 1)) {
+      resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+      return;
+    }
+    final String id = path.substring(1, path.length() - MESSAGE_PATH.length());
+    final ProxyResource proxy = new ProxyResource();
+    final long start = System.nanoTime();
+
+    MessageRequest request;
+    try {
+      MessageRequestReader.getInstance().checkContentLength(req.getContentLength());
+      request = proxy.buildMessageFromPayload(req.getInputStream());
+    } catch (InvalidRequestException e) {
+      Metrics.PARSE.recordError(start);
+      Metrics.REQUEST.recordError(start);
+      resp.sendError(e.getStatus(), e.getMessage());
+      return;
+    }
+    Metrics.PARSE.record(start);
+
+    resp.setContentType(EventStream.CONTENT_TYPE);
+    resp.setCharacterEncoding("UTF-8");
+    resp.setHeader("Cache-Control", "no-cache");
+    // keeps proxies such as nginx from buffering the events
+    resp.setHeader("X-Accel-Buffering", "no");
+    final AsyncContext asyncContext = req.startAsync();
+    asyncContext.setTimeout(timeout);
+    final StreamedTurn turn = new StreamedTurn(new EventStream(asyncContext), proxy, id, start);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException {
+        turn.fail(new TimeoutException());
+      }
+
+      @Override
+      public void onError(AsyncEvent event) throws IOException {
+        turn.fail(new IOException(event.getThrowable()));
+      }
+
+      @Override
+      public void onComplete(AsyncEvent event) throws IOException {
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) throws IOException {
+      }
+    });
+
+    turn.start(request, StreamedTurn.getRetrievalExecutor());
+  }
+}
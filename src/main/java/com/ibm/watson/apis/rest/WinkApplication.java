@@ -39,6 +39,11 @@ public class WinkApplication extends Application {
     Set<Class<?>> classes = new HashSet<Class<?>>();
     classes.add(ProxyResource.class);
     classes.add(SetupResource.class);
+    classes.add(CacheResource.class);
+    classes.add(ResilienceResource.class);
+    classes.add(MetricsResource.class);
+    classes.add(RecordingResource.class);
+    classes.add(BatchResource.class);
     return classes;
   }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+
+/**
+ * A bounded cache of retrieval answers. Entries are kept per namespace (one per backend) and keyed by the normalized
+ * question (see {@link QueryNormalizer}). The least recently used entry is evicted when the cache holds more than
+ * <code>ANSWER_CACHE_SIZE</code> entries, and entries expire <code>ANSWER_CACHE_TTL_SECONDS</code> after they were
+ * added. A size of 0 disables the cache.
+ */
+public class AnswerCache {
+
+  private static final AnswerCache INSTANCE = new AnswerCache(EnvironmentUtils.getInt("ANSWER_CACHE_SIZE", 1000),
+      TimeUnit.SECONDS.toMillis(EnvironmentUtils.getLong("ANSWER_CACHE_TTL_SECONDS", 600)));
+
+  private final int maxSize;
+  private final long ttlMillis;
+  private final LinkedHashMap<String, Entry> entries;
+  private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+  /**
+   * Instantiates a new answer cache.
+   *
+   * @param maxSize the maximum number of entries
+   * @param ttlMillis how long an entry is kept, in milliseconds
+   */
+  public AnswerCache(int maxSize, long ttlMillis) {
+    this.maxSize = maxSize;
+    this.ttlMillis = ttlMillis;
+    this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > AnswerCache.this.maxSize) {
+          getStats(eldest.getValue().namespace).evictions.incrementAndGet();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Gets the application wide answer cache.
+   *
+   * @return the answer cache
+   */
+  public static AnswerCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns true if the cache stores anything.
+   *
+   * @return true if enabled
+   */
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * Gets a cached answer.
+   *
+   * @param namespace the namespace, usually the backend name
+   * @param query the user's question
+   * @return the answer, or null if there is no answer or it has expired
+   */
+  public List<?> get(String namespace, String query) {
+    if (!isEnabled()) {
+      return null;
+    }
+    String key = key(namespace, query);
+    Stats namespaceStats = getStats(namespace);
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if ((entry != null) && (entry.expires < System.currentTimeMillis())) {
+        entries.remove(key);
+        namespaceStats.evictions.incrementAndGet();
+        entry = null;
+      }
+      if (entry == null) {
+        namespaceStats.misses.incrementAndGet();
+        return null;
+      }
+      namespaceStats.hits.incrementAndGet();
+      return entry.documents;
+    }
+  }
+
+  /**
+   * Adds an answer to the cache.
+   *
+   * @param namespace the namespace, usually the backend name
+   * @param query the user's question
+   * @param documents the answer
+   * @return the cached, unmodifiable answer
+   */
+  public List<?> put(String namespace, String query, List<?> documents) {
+    List<?> cached = Collections.unmodifiableList(documents);
+    if (isEnabled()) {
+      Entry entry = new Entry(namespace, cached, System.currentTimeMillis() + ttlMillis);
+      synchronized (entries) {
+        entries.put(key(namespace, query), entry);
+      }
+    }
+    return cached;
+  }
+
+  /**
+   * Removes every entry of a namespace, or of all namespaces.
+   *
+   * @param namespace the namespace, or null for all namespaces
+   * @return the number of entries removed
+   */
+  public int invalidate(String namespace) {
+    int removed = 0;
+    synchronized (entries) {
+      Iterator<Entry> iterator = entries.values().iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if ((namespace == null) || namespace.equals(entry.namespace)) {
+          iterator.remove();
+          removed++;
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Gets the number of entries in the cache.
+   *
+   * @return the size
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Gets the counters of every namespace used so far.
+   *
+   * @return the counters by namespace
+   */
+  public Map<String, Stats> getStats() {
+    return Collections.unmodifiableMap(stats);
+  }
+
+  private Stats getStats(String namespace) {
+    Stats namespaceStats = stats.get(namespace);
+    if (namespaceStats == null) {
+      stats.putIfAbsent(namespace, new Stats());
+      namespaceStats = stats.get(namespace);
+    }
+    return namespaceStats;
+  }
+
+  private static String key(String namespace, String query) {
+    return namespace + '|' + QueryNormalizer.normalize(query);
+  }
+
+  /**
+   * A cached answer.
+   */
+  private static class Entry {
+    private final String namespace;
+    private final List<?> documents;
+    private final long expires;
+
+    Entry(String namespace, List<?> documents, long expires) {
+      this.namespace = namespace;
+      this.documents = documents;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Hit, miss and eviction counters of a namespace.
+   */
+  public static class Stats {
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return the hits
+     */
+    public long getHits() {
+      return hits.get();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return the misses
+     */
+    public long getMisses() {
+      return misses.get();
+    }
+
+    /**
+     * Gets the number of entries evicted because the cache was full or the entry expired.
+     *
+     * @return the evictions
+     */
+    public long getEvictions() {
+      return evictions.get();
+    }
+  }
+}
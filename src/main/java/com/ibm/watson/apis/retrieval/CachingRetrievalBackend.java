@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.List;
+
+/**
+ * A {@link RetrievalBackend} which answers repeated questions from an {@link AnswerCache}. The backend's name is
+ * used as the cache namespace, so each backend keeps its own answers. Failures are not cached.
+ */
+public class CachingRetrievalBackend implements RetrievalBackend {
+
+  private final RetrievalBackend backend;
+  private final AnswerCache cache;
+
+  /**
+   * Instantiates a new caching backend.
+   *
+   * @param backend the backend whose answers are cached
+   * @param cache the cache
+   */
+  public CachingRetrievalBackend(RetrievalBackend backend, AnswerCache cache) {
+    this.backend = backend;
+    this.cache = cache;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return backend.getName();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getDocuments(java.lang.String)
+   */
+  @Override
+  public List<?> getDocuments(String input) throws Exception {
+    List<?> documents = cache.get(getName(), input);
+    if (documents == null) {
+      documents = cache.put(getName(), input, backend.getDocuments(input));
+    }
+    return documents;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.apis.resilience.Cancellation;
+
+/**
+ * A {@link RetrievalBackend} which lets concurrent callers asking the same question share one backend call. The
+ * first caller of a normalized question (see {@link QueryNormalizer}) calls the backend; callers asking the same
+ * question while that call is in flight wait for it, up to <code>maxWaiters</code> per question and
+ * <code>timeoutMillis</code> each, and get its documents or its failure.
+ * <p>
+ * The call runs on the first caller's thread, so its caller may cancel it (see {@link Cancellation}), for example
+ * because another backend answered first. That failure is not the waiters' own: the call is abandoned instead, and
+ * the waiters ask again, one of them making a new call.
+ */
+public class CoalescingRetrievalBackend implements RetrievalBackend {
+
+  private final RetrievalBackend backend;
+  private final int maxWaiters;
+  private final long timeoutMillis;
+  private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<String, Flight>();
+  private final Stats stats = new Stats();
+
+  /**
+   * Instantiates a new coalescing backend.
+   *
+   * @param backend the backend whose calls are shared
+   * @param maxWaiters the maximum number of callers waiting for the call of one question
+   * @param timeoutMillis how long a caller waits for the call in flight
+   */
+  public CoalescingRetrievalBackend(RetrievalBackend backend, int maxWaiters, long timeoutMillis) {
+    this.backend = backend;
+    this.maxWaiters = maxWaiters;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return backend.getName();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getDocuments(java.lang.String)
+   */
+  @Override
+  public List<?> getDocuments(String input) throws Exception {
+    String key = QueryNormalizer.normalize(input);
+    Flight flight = new Flight();
+    Flight inFlight = flights.putIfAbsent(key, flight);
+    if (inFlight == null) {
+      stats.calls.incrementAndGet();
+      try {
+        flight.documents = backend.getDocuments(input);
+        return flight.documents;
+      } catch (Exception e) {
+        if (Cancellation.isCancellation(e)) {
+          flight.abandoned = true;
+        } else {
+          flight.failure = e;
+        }
+        throw e;
+      } finally {
+        flights.remove(key, flight);
+        flight.done.countDown();
+      }
+    }
+
+    if (inFlight.waiters.incrementAndGet() > maxWaiters) {
+      inFlight.waiters.decrementAndGet();
+      stats.rejected.incrementAndGet();
+      throw new RejectedExecutionException(getName());
+    }
+    try {
+      if (!inFlight.done.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+        stats.timeouts.incrementAndGet();
+        throw new TimeoutException(getName());
+      }
+    } finally {
+      inFlight.waiters.decrementAndGet();
+    }
+    if (inFlight.abandoned) {
+      return getDocuments(input);
+    }
+    stats.collapsed.incrementAndGet();
+    if (inFlight.failure != null) {
+      throw inFlight.failure;
+    }
+    return inFlight.documents;
+  }
+
+  /**
+   * Gets the number of callers waiting for a call in flight.
+   *
+   * @return the waiting callers
+   */
+  int getWaiting() {
+    int waiting = 0;
+    for (Flight flight : flights.values()) {
+      waiting += flight.waiters.get();
+    }
+    return waiting;
+  }
+
+  /**
+   * Gets the counters of this backend.
+   *
+   * @return the statistics
+   */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /**
+   * A backend call in flight.
+   */
+  private static class Flight {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile List<?> documents;
+    private volatile Exception failure;
+    private volatile boolean abandoned;
+  }
+
+  /**
+   * Counters of the shared calls.
+   */
+  public static class Stats {
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    /**
+     * Gets the number of calls made to the backend.
+     *
+     * @return the calls
+     */
+    public long getCalls() {
+      return calls.get();
+    }
+
+    /**
+     * Gets the number of callers answered by another caller's call.
+     *
+     * @return the collapsed calls
+     */
+    public long getCollapsed() {
+      return collapsed.get();
+    }
+
+    /**
+     * Gets the number of callers turned away because too many were waiting for the same question.
+     *
+     * @return the rejected callers
+     */
+    public long getRejected() {
+      return rejected.get();
+    }
+
+    /**
+     * Gets the number of callers which gave up waiting for the call in flight.
+     *
+     * @return the timed out callers
+     */
+    public long getTimeouts() {
+      return timeouts.get();
+    }
+  }
+}
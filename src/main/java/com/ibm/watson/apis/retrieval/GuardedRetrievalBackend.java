@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import com.ibm.watson.apis.resilience.Dependency;
+
+/**
+ * A {@link RetrievalBackend} whose calls go through the circuit breaker and the bulkhead of a {@link Dependency}.
+ * While the dependency is unavailable the backend fails at once, so the orchestrator goes on with the other
+ * backends.
+ */
+public class GuardedRetrievalBackend implements RetrievalBackend {
+
+  private final RetrievalBackend backend;
+  private final Dependency dependency;
+
+  /**
+   * Instantiates a new guarded backend.
+   *
+   * @param backend the backend
+   * @param dependency the dependency guarding its calls
+   */
+  public GuardedRetrievalBackend(RetrievalBackend backend, Dependency dependency) {
+    this.backend = backend;
+    this.dependency = dependency;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+   */
+  @Override
+  public String getName() {
+    return backend.getName();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getDocuments(java.lang.String)
+   */
+  @Override
+  public List<?> getDocuments(final String input) throws Exception {
+    return dependency.call(new Callable<List<?>>() {
+      @Override
+      public List<?> call() throws Exception {
+        return backend.getDocuments(input);
+      }
+    });
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalizes the user's question so that questions which only differ in case, whitespace, punctuation or stopwords
+ * ("How do I check the tire pressure?" and "check tire pressure") are treated as the same question.
+ */
+public class QueryNormalizer {
+
+  private static final Set<String> STOPWORDS = new HashSet<String>(Arrays.asList("a", "an", "and", "are", "as", "at",
+      "be", "by", "can", "could", "do", "does", "for", "from", "how", "i", "in", "is", "it", "me", "my", "of", "on",
+      "or", "please", "should", "the", "this", "to", "what", "when", "where", "which", "who", "why", "will", "with",
+      "would", "you", "your"));
+
+  private QueryNormalizer() {
+
+  }
+
+  /**
+   * Normalizes a question: lower case, punctuation removed, whitespace collapsed and stopwords dropped. If nothing is
+   * left after dropping stopwords, the question is kept with its stopwords.
+   *
+   * @param query the user's question
+   * @return the normalized question
+   */
+  public static String normalize(String query) {
+    if (query == null) {
+      return "";
+    }
+    String[] words = query.toLowerCase(Locale.ENGLISH).split("[^\\p{L}\\p{N}]+");
+    StringBuilder normalized = new StringBuilder(query.length());
+    StringBuilder allWords = new StringBuilder(query.length());
+    for (String word : words) {
+      if (word.isEmpty()) {
+        continue;
+      }
+      append(allWords, word);
+      if (!STOPWORDS.contains(word)) {
+        append(normalized, word);
+      }
+    }
+    return normalized.length() > 0 ? normalized.toString() : allWords.toString();
+  }
+
+  private static void append(StringBuilder sb, String word) {
+    if (sb.length() > 0) {
+      sb.append(' ');
+    }
+    sb.append(word);
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.List;
+
+/**
+ * A service which can look up documents answering the user's question, such as Retrieve and Rank or Discovery. The
+ * documents are added to the conversation output as the <code>CEPayload</code>.
+ */
+public interface RetrievalBackend {
+
+  /**
+   * Gets the name of the backend, used for settings, logs and metrics.
+   *
+   * @return the name
+   */
+  String getName();
+
+  /**
+   * Sends the user's query to the backend.
+   *
+   * @param input The user's query
+   * @return A list of document payloads, each representing a single document the backend believes is a possible
+   *         answer to the user's query
+   * @throws Exception the exception
+   */
+  List<?> getDocuments(String input) throws Exception;
+}
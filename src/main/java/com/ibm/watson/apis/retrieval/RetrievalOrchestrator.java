@@ -0,0 +1,429 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.discovery.DiscoveryClient;
+import com.ibm.watson.apis.local.LocalSearchClient;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.metrics.Stage;
+import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.apis.resilience.Cancellation;
+import com.ibm.watson.apis.resilience.Dependency;
+import com.ibm.watson.apis.retrieve_and_rank.requests.RetrieveAndRankClient;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.Messages;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Sends the user's question to every {@link RetrievalBackend} at the same time on a bounded thread pool and combines
+ * the answers according to the <code>RETRIEVAL_POLICY</code> setting:
+ * <ul>
+ * <li><code>first</code> (default): the first backend with a non-empty answer wins and the others are cancelled. If
+ * no backend has an answer, the answer of the last backend (Discovery's "No results found" document) is used.</li>
+ * <li><code>merge</code>: waits for all backends and returns their documents in backend order.</li>
+ * </ul>
+ * Each backend has its own deadline, <code>&lt;NAME&gt;_TIMEOUT_MS</code> (for example
+ * <code>DISCOVERY_TIMEOUT_MS</code>). A backend which fails or misses its deadline counts as having no answer.
+ * <p>
+ * The calls which are no longer waited for are cancelled through their {@link Cancellation}, which aborts their HTTP
+ * call so that they give back their thread and connection at once. A backend cancelled because another one answered
+ * first does not count as an error of its stage; one which missed its deadline does.
+ */
+public class RetrievalOrchestrator {
+  private static final Logger logger = LogManager.getLogger(RetrievalOrchestrator.class.getName());
+
+  /** How the answers of the backends are combined. */
+  public enum Policy {
+    FIRST, MERGE
+  }
+
+  /** Told about the answer of each backend as soon as it arrives, before the answers are combined. */
+  public interface Listener {
+
+    /**
+     * Called on the calling thread of {@link RetrievalOrchestrator#getDocuments(String, Map, Listener)} when a
+     * backend answers.
+     *
+     * @param backend the backend name
+     * @param documents the answer of the backend
+     */
+    void onAnswer(String backend, List<?> documents);
+  }
+
+  private static volatile RetrievalOrchestrator instance;
+
+  private static final Map<String, CoalescingRetrievalBackend.Stats> coalescingStats =
+      new ConcurrentHashMap<String, CoalescingRetrievalBackend.Stats>();
+
+  private final List<RetrievalBackend> backends;
+  private final long[] timeoutsNanos;
+  private final Stage[] stages;
+  private final Policy policy;
+  private final ThreadPoolExecutor executor;
+
+  /**
+   * Instantiates a new orchestrator.
+   *
+   * @param backends the backends in order of preference
+   * @param policy how the answers are combined
+   * @param threads the maximum number of concurrent backend calls
+   * @param queueSize the maximum number of backend calls waiting for a thread
+   */
+  public RetrievalOrchestrator(List<RetrievalBackend> backends, Policy policy, int threads, int queueSize) {
+    this.backends = new ArrayList<RetrievalBackend>(backends);
+    this.policy = policy;
+    this.timeoutsNanos = new long[backends.size()];
+    this.stages = new Stage[backends.size()];
+    for (int i = 0; i < timeoutsNanos.length; i++) {
+      String name = backends.get(i).getName();
+      timeoutsNanos[i] = TimeUnit.MILLISECONDS.toNanos(EnvironmentUtils.getLong(name + "_TIMEOUT_MS", 5000));
+      stages[i] = Metrics.getBackend(name);
+    }
+    executor = ThreadPools.newFixedThreadPool("retrieval", threads, new LinkedBlockingQueue<Runnable>(queueSize));
+  }
+
+  /**
+   * Gets the application wide orchestrator, creating it the first time it is asked for. The backends are named, in
+   * order of preference, by the <code>RETRIEVAL_BACKENDS</code> setting (see {@link #getConfiguredBackends()}). The
+   * answers of the remote backends are cached in the {@link AnswerCache}, and concurrent calls asking the same
+   * question share one remote call (see {@link CoalescingRetrievalBackend}). The remote calls go through the circuit
+   * breaker and bulkhead of their {@link Dependency}.
+   *
+   * @return the orchestrator
+   */
+  public static RetrievalOrchestrator getInstance() {
+    RetrievalOrchestrator orchestrator = instance;
+    if (orchestrator == null) {
+      synchronized (RetrievalOrchestrator.class) {
+        if (instance == null) {
+          List<RetrievalBackend> backends = new ArrayList<RetrievalBackend>();
+          for (String name : getConfiguredBackends()) {
+            RetrievalBackend backend = createBackend(name);
+            if (backend != null) {
+              backends.add(backend);
+            }
+          }
+          instance = new RetrievalOrchestrator(backends,
+              getConfiguredPolicy(),
+              EnvironmentUtils.getInt("RETRIEVAL_THREADS", 16), EnvironmentUtils.getInt("RETRIEVAL_QUEUE_SIZE", 100));
+        }
+        orchestrator = instance;
+      }
+    }
+    return orchestrator;
+  }
+
+  /**
+   * Gets the names of the backends listed by the <code>RETRIEVAL_BACKENDS</code> setting, a comma separated list of
+   * <code>RNR</code>, <code>DISCOVERY</code> and <code>LOCAL</code>. The default is <code>RNR,DISCOVERY</code>.
+   *
+   * @return the upper case backend names, in order of preference
+   */
+  public static List<String> getConfiguredBackends() {
+    List<String> names = new ArrayList<String>();
+    for (String name : EnvironmentUtils.getString("RETRIEVAL_BACKENDS", "RNR,DISCOVERY").split(",")) {
+      if (!name.trim().isEmpty()) {
+        names.add(name.trim().toUpperCase());
+      }
+    }
+    return names;
+  }
+
+  /**
+   * Gets the policy set by the <code>RETRIEVAL_POLICY</code> setting, <code>first</code> or <code>merge</code>. An
+   * unknown policy is logged and {@link Policy#FIRST} is used.
+   *
+   * @return the policy
+   */
+  public static Policy getConfiguredPolicy() {
+    String name = EnvironmentUtils.getString("RETRIEVAL_POLICY", "first");
+    try {
+      return Policy.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      logger.warn(Messages.getString("RetrievalOrchestrator.UNKNOWN_POLICY") + name);
+      return Policy.FIRST;
+    }
+  }
+
+  private static RetrievalBackend createBackend(String name) {
+    if ("RNR".equals(name)) {
+      return new CachingRetrievalBackend(coalesce(guard(new RetrieveAndRankClient())), AnswerCache.getInstance());
+    } else if ("DISCOVERY".equals(name)) {
+      return new CachingRetrievalBackend(coalesce(guard(new DiscoveryClient())), AnswerCache.getInstance());
+    } else if ("LOCAL".equals(name)) {
+      return new LocalSearchClient();
+    }
+    logger.warn(Messages.getString("RetrievalOrchestrator.UNKNOWN_BACKEND") + name);
+    return null;
+  }
+
+  private static RetrievalBackend guard(RetrievalBackend backend) {
+    return new GuardedRetrievalBackend(backend, Dependency.get(backend.getName()));
+  }
+
+  /**
+   * Lets concurrent calls of a backend share one call per question, unless <code>COALESCE_MAX_WAITERS</code> is 0.
+   * Callers wait for the shared call up to <code>COALESCE_TIMEOUT_MS</code>.
+   */
+  private static RetrievalBackend coalesce(RetrievalBackend backend) {
+    int maxWaiters = EnvironmentUtils.getInt("COALESCE_MAX_WAITERS", 100);
+    if (maxWaiters <= 0) {
+      return backend;
+    }
+    CoalescingRetrievalBackend coalescing =
+        new CoalescingRetrievalBackend(backend, maxWaiters, EnvironmentUtils.getLong("COALESCE_TIMEOUT_MS", 5000));
+    coalescingStats.put(backend.getName(), coalescing.getStats());
+    return coalescing;
+  }
+
+  /**
+   * Gets the counters of the shared backend calls of the application wide orchestrator.
+   *
+   * @return the counters by backend name
+   */
+  public static Map<String, CoalescingRetrievalBackend.Stats> getCoalescingStats() {
+    return Collections.unmodifiableMap(coalescingStats);
+  }
+
+  /**
+   * Stops the application wide orchestrator.
+   */
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown();
+      instance = null;
+    }
+  }
+
+  /**
+   * Sends the user's query to all backends and combines their answers.
+   *
+   * @param input The user's query
+   * @return the documents answering the query
+   * @throws Exception the failure of the first backend, if every backend failed
+   */
+  public List<?> getDocuments(final String input) throws Exception {
+    return getDocuments(input, null);
+  }
+
+  /**
+   * Sends the user's query to all backends and combines their answers, reporting what each backend answered.
+   *
+   * @param input The user's query
+   * @param results filled with the number of documents of each backend which answered, -1 for the backends which
+   *        failed or missed their deadline; the backends cancelled because another one answered first are left out.
+   *        May be null.
+   * @return the documents answering the query
+   * @throws Exception the failure of the first backend, if every backend failed
+   */
+  public List<?> getDocuments(final String input, Map<String, Integer> results) throws Exception {
+    return getDocuments(input, results, null);
+  }
+
+  /**
+   * Sends the user's query to all backends and combines their answers, reporting each answer as it arrives.
+   *
+   * @param input The user's query
+   * @param results see {@link #getDocuments(String, Map)}, may be null
+   * @param listener told about each answer, may be null
+   * @return the documents answering the query
+   * @throws Exception the failure of the first backend, if every backend failed
+   */
+  public List<?> getDocuments(final String input, Map<String, Integer> results, Listener listener) throws Exception {
+    CompletionService<List<?>> completionService = new ExecutorCompletionService<List<?>>(executor);
+    Map<Future<List<?>>, Integer> pending = new HashMap<Future<List<?>>, Integer>();
+    Cancellation[] cancellations = new Cancellation[backends.size()];
+    long[] deadlines = new long[backends.size()];
+    List<?>[] answers = new List<?>[backends.size()];
+    Exception[] failures = new Exception[backends.size()];
+
+    long start = System.nanoTime();
+    for (int i = 0; i < backends.size(); i++) {
+      final RetrievalBackend backend = backends.get(i);
+      final Stage stage = stages[i];
+      deadlines[i] = start + timeoutsNanos[i];
+      cancellations[i] = new Cancellation();
+      try {
+        pending.put(completionService.submit(cancellations[i].wrap(new Callable<List<?>>() {
+          @Override
+          public List<?> call() throws Exception {
+            long callStart = System.nanoTime();
+            try {
+              List<?> documents = backend.getDocuments(input);
+              stage.record(callStart);
+              return documents;
+            } catch (Exception e) {
+              // a backend cancelled because another one answered first has not failed
+              if (!Cancellation.isCancellation(e)) {
+                stage.recordError(callStart);
+              }
+              throw e;
+            }
+          }
+        })), i);
+      } catch (RejectedExecutionException e) {
+        failures[i] = e;
+      }
+    }
+
+    try {
+      while (!pending.isEmpty()) {
+        long wait = nextDeadline(pending, deadlines) - System.nanoTime();
+        if (wait <= 0) {
+          expire(pending, cancellations, start, deadlines, failures);
+          continue;
+        }
+        Future<List<?>> done = completionService.poll(wait, TimeUnit.NANOSECONDS);
+        Integer index = done == null ? null : pending.remove(done);
+        if (index == null) {
+          // nothing finished in time, or a backend which was already expired
+          continue;
+        }
+        try {
+          answers[index] = done.get();
+        } catch (ExecutionException e) {
+          failures[index] = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          logger.warn(Messages.getString("RetrievalOrchestrator.BACKEND_FAILED") + backends.get(index).getName()
+              + ": " + failures[index].getMessage());
+          continue;
+        }
+        if (listener != null) {
+          listener.onAnswer(backends.get(index).getName(), answers[index]);
+        }
+        if ((policy == Policy.FIRST) && !isEmpty(answers[index])) {
+          return answers[index];
+        }
+      }
+    } finally {
+      for (Map.Entry<Future<List<?>>, Integer> entry : pending.entrySet()) {
+        cancellations[entry.getValue()].cancel();
+        entry.getKey().cancel(true);
+      }
+      if (results != null) {
+        report(answers, failures, results);
+      }
+    }
+    return combine(answers, failures);
+  }
+
+  private void report(List<?>[] answers, Exception[] failures, Map<String, Integer> results) {
+    for (int i = 0; i < answers.length; i++) {
+      if (answers[i] != null) {
+        results.put(backends.get(i).getName(), isEmpty(answers[i]) ? 0 : answers[i].size());
+      } else if (failures[i] != null) {
+        results.put(backends.get(i).getName(), -1);
+      }
+    }
+  }
+
+  /**
+   * Stops the thread pool, interrupting running backend calls.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Returns true if a backend answer contains no documents. Discovery answers a query without results with a single
+   * placeholder document which has no id, so that counts as empty as well.
+   *
+   * @param documents the answer of a backend
+   * @return true if there are no documents
+   */
+  public static boolean isEmpty(List<?> documents) {
+    if ((documents == null) || documents.isEmpty()) {
+      return true;
+    }
+    for (Object document : documents) {
+      if (!(document instanceof DocumentPayload) || (((DocumentPayload) document).getId() != null)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private List<?> combine(List<?>[] answers, Exception[] failures) throws Exception {
+    if (policy == Policy.MERGE) {
+      List<Object> merged = new ArrayList<Object>();
+      for (List<?> answer : answers) {
+        if (!isEmpty(answer)) {
+          merged.addAll(answer);
+        }
+      }
+      if (!merged.isEmpty()) {
+        return merged;
+      }
+    }
+    for (int i = answers.length - 1; i >= 0; i--) {
+      if (answers[i] != null) {
+        return answers[i];
+      }
+    }
+    for (Exception failure : failures) {
+      if (failure != null) {
+        throw failure;
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  private static long nextDeadline(Map<Future<List<?>>, Integer> pending, long[] deadlines) {
+    long next = Long.MAX_VALUE;
+    for (Integer index : pending.values()) {
+      next = Math.min(next, deadlines[index]);
+    }
+    return next;
+  }
+
+  private void expire(Map<Future<List<?>>, Integer> pending, Cancellation[] cancellations, long start,
+      long[] deadlines, Exception[] failures) {
+    long now = System.nanoTime();
+    Map<Future<List<?>>, Integer> expired = new LinkedHashMap<Future<List<?>>, Integer>();
+    for (Map.Entry<Future<List<?>>, Integer> entry : pending.entrySet()) {
+      if (deadlines[entry.getValue()] <= now) {
+        expired.put(entry.getKey(), entry.getValue());
+      }
+    }
+    for (Map.Entry<Future<List<?>>, Integer> entry : expired.entrySet()) {
+      pending.remove(entry.getKey());
+      cancellations[entry.getValue()].cancel();
+      entry.getKey().cancel(true);
+      // the cancelled call is not counted by its stage, but missing the deadline is an error of the backend
+      stages[entry.getValue()].recordError(start);
+      failures[entry.getValue()] = new TimeoutException(backends.get(entry.getValue()).getName());
+      logger.warn(Messages.getString("RetrievalOrchestrator.BACKEND_TIMEOUT") + backends.get(entry.getValue())
+          .getName());
+    }
+  }
+}
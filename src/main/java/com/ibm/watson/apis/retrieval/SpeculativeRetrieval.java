@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Starts the retrieval of a question while the Conversation call is still in progress, so that a lookup turn does not
+ * wait for the Conversation and the retrieval backends one after the other. Retrieval only uses the text the user
+ * typed, so the speculative answer is the one the lookup would get. It is used if the dialog asks for a lookup and
+ * left to finish otherwise: interrupting it would only abandon the backend calls it may share with other requests,
+ * and its answer is kept by the {@link AnswerCache} for the next time the question is asked.
+ * <p>
+ * Enabled by <code>SPECULATIVE_RETRIEVAL</code>. Only inputs which look like questions (see {@link #isQuestion}) are
+ * speculated on, and at most <code>SPECULATIVE_THREADS</code> at a time: when they are all busy the turn runs in
+ * sequence as usual.
+ */
+public class SpeculativeRetrieval {
+
+  private static final Set<String> QUESTION_WORDS = new HashSet<String>(Arrays.asList("what", "how", "why", "where",
+      "when", "which", "who", "can", "could", "does", "do", "is", "are", "should", "will", "would"));
+
+  private static final SpeculativeRetrieval INSTANCE = new SpeculativeRetrieval(
+      EnvironmentUtils.getBoolean("SPECULATIVE_RETRIEVAL", false), EnvironmentUtils.getInt("SPECULATIVE_THREADS", 8),
+      EnvironmentUtils.getInt("SPECULATIVE_MIN_WORDS", 4));
+
+  private final boolean enabled;
+  private final int minWords;
+  private final ThreadPoolExecutor executor;
+  private final Stats stats = new Stats();
+
+  /**
+   * Instantiates a new speculative retrieval.
+   *
+   * @param enabled true to speculate
+   * @param threads the maximum number of speculative retrievals at a time
+   * @param minWords the number of words from which an input counts as a question even without a question word
+   */
+  public SpeculativeRetrieval(boolean enabled, int threads, int minWords) {
+    this.enabled = enabled;
+    this.minWords = minWords;
+    executor = new ThreadPoolExecutor(0, Math.max(1, threads), 60, TimeUnit.SECONDS,
+        new SynchronousQueue<Runnable>(), ThreadPools.daemonThreadFactory("speculative"));
+  }
+
+  /**
+   * Gets the application wide speculative retrieval.
+   *
+   * @return the speculative retrieval
+   */
+  public static SpeculativeRetrieval getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts the retrieval of an input, if it looks like a question and a thread is free.
+   *
+   * @param orchestrator the orchestrator answering the question
+   * @param text the text the user typed
+   * @param results passed to {@link RetrievalOrchestrator#getDocuments(String, Map)}, may be null
+   * @return the pending answer, or null if the input is not speculated on
+   */
+  public Future<List<?>> start(final RetrievalOrchestrator orchestrator, final String text,
+      final Map<String, Integer> results) {
+    if (!enabled || !isQuestion(text)) {
+      return null;
+    }
+    try {
+      Future<List<?>> answer = executor.submit(new Callable<List<?>>() {
+        @Override
+        public List<?> call() throws Exception {
+          return orchestrator.getDocuments(text, results);
+        }
+      });
+      stats.started.incrementAndGet();
+      return answer;
+    } catch (RejectedExecutionException e) {
+      stats.skipped.incrementAndGet();
+      return null;
+    }
+  }
+
+  /**
+   * Records that a speculative answer was used.
+   */
+  public void onUsed() {
+    stats.used.incrementAndGet();
+  }
+
+  /**
+   * Records that a speculative answer is not needed. The retrieval is left to finish, so that its answer fills the
+   * {@link AnswerCache}.
+   *
+   * @param answer the pending answer
+   */
+  public void discard(Future<List<?>> answer) {
+    stats.wasted.incrementAndGet();
+  }
+
+  /**
+   * Returns true if an input looks like a question the corpus could answer: it ends with a question mark, starts with
+   * a question word, or has at least the configured number of words.
+   *
+   * @param text the text the user typed
+   * @return true if the input is worth a speculative retrieval
+   */
+  boolean isQuestion(String text) {
+    if (text == null) {
+      return false;
+    }
+    String trimmed = text.trim();
+    if (trimmed.isEmpty()) {
+      return false;
+    }
+    if (trimmed.endsWith("?")) {
+      return true;
+    }
+    String[] words = trimmed.toLowerCase(Locale.ENGLISH).split("\\s+");
+    return QUESTION_WORDS.contains(words[0]) || (words.length >= minWords);
+  }
+
+  /**
+   * Returns true if inputs are speculated on.
+   *
+   * @return true if enabled
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Gets the counters.
+   *
+   * @return the counters
+   */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /**
+   * Stops the thread pool, interrupting running retrievals.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * The counters of the speculative retrievals.
+   */
+  public static class Stats {
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * Gets the number of speculative retrievals started.
+     *
+     * @return the started retrievals
+     */
+    public long getStarted() {
+      return started.get();
+    }
+
+    /**
+     * Gets the number of speculative answers used by a lookup turn.
+     *
+     * @return the used answers
+     */
+    public long getUsed() {
+      return used.get();
+    }
+
+    /**
+     * Gets the number of speculative retrievals not used because the turn needed no lookup.
+     *
+     * @return the wasted retrievals
+     */
+    public long getWasted() {
+      return wasted.get();
+    }
+
+    /**
+     * Gets the number of questions not speculated on because every thread was busy.
+     *
+     * @return the skipped questions
+     */
+    public long getSkipped() {
+      return skipped.get();
+    }
+  }
+}
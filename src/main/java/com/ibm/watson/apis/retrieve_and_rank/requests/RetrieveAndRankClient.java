@@ -15,10 +15,8 @@ package com.ibm.watson.apis.retrieve_and_rank.requests;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,20 +24,31 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.metrics.Recording;
+import com.ibm.watson.apis.metrics.RecordingEvent;
+import com.ibm.watson.apis.retrieval.RetrievalBackend;
 import com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload;
 import com.ibm.watson.apis.retrieve_and_rank.utils.Messages;
 import com.ibm.watson.apis.utils.Constants;
 
-public class RetrieveAndRankClient {
+public class RetrieveAndRankClient implements RetrievalBackend {
 	private static final Logger logger = LogManager.getLogger(RetrieveAndRankClient.class.getName());
 	private static final int SNIPPET_LENGTH = 150;
 
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.ibm.watson.apis.retrieval.RetrievalBackend#getName()
+	 */
+	@Override
+	public String getName() {
+		return "RNR";
+	}
+
 	/**
 	 * This method uses the Query object to send the user's query (the
 	 * <code>input</code> param) to the retrieve and rank service
@@ -52,18 +61,24 @@ public class RetrieveAndRankClient {
 	 * @throws SolrServerException
 	 * @throws IOException
 	 */
+	@Override
 	public List<DocumentPayload> getDocuments(String input) throws Exception {
-		List<DocumentPayload> documents = new ArrayList<DocumentPayload>();
 		QueryResponse output = new RetrieveAndRankQuery().query(input);
-		documents = createPayload(input, new Gson().toJson(output.getResults()),
-				new Gson().toJson(output.getHighlighting()));
-		return documents;
+		long start = System.nanoTime();
+		List<DocumentPayload> payload = createPayload(input, output.getResults(), output.getHighlighting());
+		Metrics.MAPPING.record(start);
+		if (Recording.isActive()) {
+			Recording.commit(RecordingEvent.Type.MAPPING, start, "backend", getName(), "documents", payload.size());
+		}
+		return payload;
 	}
 
 	/**
 	 * Helper Method to include highlighting information along with the retrieve
 	 * and rank response so the final payload includes
-	 * id,title,highlight,body,sourceUrl as json key value pairs.
+	 * id,title,highlight,body,sourceUrl as json key value pairs. The payload is
+	 * built directly from the SOLR documents, without converting them to JSON
+	 * first.
 	 * 
 	 * @param input
 	 *            The user's query sent to the retrieve and rank service
@@ -72,62 +87,64 @@ public class RetrieveAndRankClient {
 	 *            service with <code>input</code> as the query
 	 * @param highlights
 	 *            SOLR highlighting information obtained from a call to the
-	 *            retrieve and rank service
+	 *            retrieve and rank service, keyed by document id and field
 	 * @return A list of DocumentPayload objects, each representing a single
 	 *         document the retrieve and rank service believes is a possible
 	 *         answer to the user's query
 	 */
-	private List<DocumentPayload> createPayload(String input, String results, String highlights) {
+	List<DocumentPayload> createPayload(String input, SolrDocumentList results,
+			Map<String, Map<String, List<String>>> highlights) {
 		logger.info(Messages.getString("Service.CREATING_RNR_PAYLOAD")); //$NON-NLS-1$
-		List<DocumentPayload> payload = new ArrayList<DocumentPayload>();
-		HashMap<String, Integer> hm = new HashMap<String, Integer>();
-		JsonElement jelement = new JsonParser().parse(results);
-		JsonArray jarray = jelement.getAsJsonArray();
-		for (int i = 0; i < jarray.size(); i++) {
+		List<DocumentPayload> payload = new ArrayList<DocumentPayload>(results == null ? 0 : results.size());
+		if (results == null) {
+			return payload;
+		}
+		for (SolrDocument result : results) {
 			DocumentPayload documentPayload = new DocumentPayload();
-			String id = jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_ID).toString().replaceAll("\"", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			String id = getString(result, Constants.SCHEMA_FIELD_ID);
 			documentPayload.setId(id);
-			documentPayload.setTitle(
-					jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_TITLE).toString().replaceAll("\"", "")); //$NON-NLS-1$ //$NON-NLS-2$
-			if (jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_BODY) != null) {
-				String bodyContent = jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_BODY).toString()
-						.replaceAll("\"", "");
+			documentPayload.setTitle(getString(result, Constants.SCHEMA_FIELD_TITLE));
+			String bodyContent = getString(result, Constants.SCHEMA_FIELD_BODY);
+			if (bodyContent != null) {
 				documentPayload.setBody(bodyContent);
 				documentPayload.setBodySnippet(getSniplet(bodyContent));
 			} else {
 				documentPayload.setBody("empty"); //$NON-NLS-1$
 			}
-			if (jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_SOURCE_URL) == null) {
-				documentPayload.setSourceUrl("empty"); //$NON-NLS-1$
-			} else {
-				documentPayload.setSourceUrl(jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_SOURCE_URL)
-						.toString().replaceAll("\"", "")); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-			if (jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_CONFIDENCE) != null) {
-				documentPayload.setConfidence(jarray.get(i).getAsJsonObject().get(Constants.SCHEMA_FIELD_CONFIDENCE)
-						.toString().replaceAll("\"", "")); //$NON-NLS-1$ //$NON-NLS-2$
-			} else {
-				documentPayload.setConfidence("0.0"); //$NON-NLS-1$
-			}
-			payload.add(i, documentPayload);
-			hm.put(id, i);
-		}
-		jelement = new JsonParser().parse(highlights);
-		JsonObject highlight = jelement.getAsJsonObject();
-		// Add highlighting information
-		Set<Map.Entry<String, JsonElement>> entrySet = highlight.entrySet();
-		for (Map.Entry<String, JsonElement> entry : entrySet) {
-			String docid = entry.getKey();
-			String highlighted = ""; //$NON-NLS-1$
-			if (entry.getValue().getAsJsonObject().get(Constants.SCHEMA_FIELD_BODY) != null) {
-				highlighted = entry.getValue().getAsJsonObject().get(Constants.SCHEMA_FIELD_BODY).getAsJsonArray()
-						.get(0).toString();
+			String sourceUrl = getString(result, Constants.SCHEMA_FIELD_SOURCE_URL);
+			documentPayload.setSourceUrl(sourceUrl == null ? "empty" : sourceUrl); //$NON-NLS-1$
+			String confidence = getString(result, Constants.SCHEMA_FIELD_CONFIDENCE);
+			documentPayload.setConfidence(confidence == null ? "0.0" : confidence); //$NON-NLS-1$
+
+			// Add highlighting information
+			if ((highlights != null) && (id != null) && highlights.containsKey(id)) {
+				String highlighted = ""; //$NON-NLS-1$
+				Map<String, List<String>> fields = highlights.get(id);
+				List<String> snippets = fields == null ? null : fields.get(Constants.SCHEMA_FIELD_BODY);
+				if ((snippets != null) && !snippets.isEmpty()) {
+					highlighted = snippets.get(0);
+				}
+				documentPayload.setHighlight(highlighted);
 			}
-			if (hm.get(docid) != null)
-				payload.get(hm.get(docid)).setHighlight(highlighted);
+			payload.add(documentPayload);
 		}
 		return payload;
 	}
+
+	/**
+	 * Gets the first value of a field of a SOLR document as a string, or null
+	 * if the field is not present.
+	 * 
+	 * @param document
+	 *            the SOLR document
+	 * @param field
+	 *            the field name
+	 * @return the string value
+	 */
+	private static String getString(SolrDocument document, String field) {
+		Object value = document.getFirstValue(field);
+		return value == null ? null : value.toString();
+	}
 	
 	/**
 	 * get first <code>SNIPPET_LENGTH</code> characters of body response.
@@ -135,7 +152,7 @@ public class RetrieveAndRankClient {
 	 * @param body discovery response
 	 * @return
 	 */
-	private String getSniplet(String body) {
+	String getSniplet(String body) {
 	  if (body == null) {
 	    return "";
 	  }
@@ -155,7 +172,7 @@ public class RetrieveAndRankClient {
 	 * @param replaceAll
 	 * @return string
 	 */
-	private static String limitParagraph(String body) {
+	static String limitParagraph(String body) {
 		String returnString = body;
 		final Pattern pattern = Pattern.compile("((.+?)<br><br>){1,2}"); //$NON-NLS-1$
 		final Matcher matcher = pattern.matcher(body);
@@ -0,0 +1,174 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.requests;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.ibm.watson.apis.retrieve_and_rank.utils.Messages;
+import com.ibm.watson.developer_cloud.retrieve_and_rank.v1.RetrieveAndRank;
+import com.ibm.watson.developer_cloud.util.CredentialUtils;
+import com.ibm.watson.developer_cloud.util.CredentialUtils.ServiceCredentials;
+
+/**
+ * The resolved settings needed to query Retrieve and Rank: the service credentials, the cluster, ranker and
+ * collection to use and the Solr url of the cluster. Instances are immutable and are created by
+ * {@link RetrieveAndRankConfigurationCache}.
+ */
+public class RetrieveAndRankConfiguration {
+
+  private final String username;
+  private final String password;
+  private final String clusterId;
+  private final String rankerId;
+  private final String collectionName;
+  private final String solrUrl;
+  private final boolean discovered;
+
+  /**
+   * Instantiates a new configuration.
+   *
+   * @param username the service username
+   * @param password the service password
+   * @param clusterId the Solr cluster id
+   * @param rankerId the ranker id
+   * @param collectionName the collection name
+   * @param solrUrl the Solr url of the cluster
+   * @param discovered true if the cluster or ranker id had to be looked up remotely
+   */
+  public RetrieveAndRankConfiguration(String username, String password, String clusterId, String rankerId,
+      String collectionName, String solrUrl, boolean discovered) {
+    this.username = username;
+    this.password = password;
+    this.clusterId = clusterId;
+    this.rankerId = rankerId;
+    this.collectionName = collectionName;
+    this.solrUrl = solrUrl;
+    this.discovered = discovered;
+  }
+
+  /**
+   * Reads the service credentials and the <code>CLUSTER_ID</code>, <code>RANKER_ID</code> and
+   * <code>COLLECTION_NAME</code> environment variables. When the cluster or ranker id is not set, the first cluster
+   * or ranker of the service instance is used, which costs a remote call each.
+   *
+   * @return the resolved configuration
+   */
+  public static RetrieveAndRankConfiguration resolve() {
+    ServiceCredentials creds = CredentialUtils.getUserNameAndPassword("retrieve_and_rank"); //$NON-NLS-1$
+    if (creds == null) {
+      throw new IllegalArgumentException(Messages.getString("Query.NO_SERVICE_CREDENTIALS")); //$NON-NLS-1$
+    }
+    String username = creds.getUsername();
+    String password = creds.getPassword();
+
+    RetrieveAndRank retrieveAndRankService = new RetrieveAndRank();
+    retrieveAndRankService.setUsernameAndPassword(username, password);
+    boolean discovered = false;
+
+    String clusterId;
+    if (StringUtils.isNotBlank(System.getenv("CLUSTER_ID"))) { //$NON-NLS-1$
+      clusterId = System.getenv("CLUSTER_ID"); //$NON-NLS-1$
+    } else {
+      discovered = true;
+      try {
+        clusterId = retrieveAndRankService.getSolrClusters().execute().getSolrClusters().get(0).getId();
+      } catch (Exception e) {
+        throw new IllegalArgumentException(Messages.getString("Query.MISSING_CLUSTER_ID")); //$NON-NLS-1$
+      }
+    }
+    String rankerId;
+    if (StringUtils.isNotBlank(System.getenv("RANKER_ID"))) { //$NON-NLS-1$
+      rankerId = System.getenv("RANKER_ID"); //$NON-NLS-1$
+    } else {
+      discovered = true;
+      try {
+        rankerId = retrieveAndRankService.getRankers().execute().getRankers().get(0).getId();
+      } catch (Exception e) {
+        throw new IllegalArgumentException(Messages.getString("Query.MISSING_RANKER_ID")); //$NON-NLS-1$
+      }
+    }
+    String collectionName;
+    if (StringUtils.isNotBlank(System.getenv("COLLECTION_NAME"))) { //$NON-NLS-1$
+      collectionName = System.getenv("COLLECTION_NAME"); //$NON-NLS-1$
+    } else {
+      throw new IllegalArgumentException(Messages.getString("Query.MISSING_COLLECTION_NAME")); //$NON-NLS-1$
+    }
+
+    return new RetrieveAndRankConfiguration(username, password, clusterId, rankerId, collectionName,
+        retrieveAndRankService.getSolrUrl(clusterId), discovered);
+  }
+
+  /**
+   * Gets the service username.
+   *
+   * @return the username
+   */
+  public String getUsername() {
+    return username;
+  }
+
+  /**
+   * Gets the service password.
+   *
+   * @return the password
+   */
+  public String getPassword() {
+    return password;
+  }
+
+  /**
+   * Gets the Solr cluster id.
+   *
+   * @return the cluster id
+   */
+  public String getClusterId() {
+    return clusterId;
+  }
+
+  /**
+   * Gets the ranker id.
+   *
+   * @return the ranker id
+   */
+  public String getRankerId() {
+    return rankerId;
+  }
+
+  /**
+   * Gets the collection name.
+   *
+   * @return the collection name
+   */
+  public String getCollectionName() {
+    return collectionName;
+  }
+
+  /**
+   * Gets the Solr url of the cluster.
+   *
+   * @return the Solr url
+   */
+  public String getSolrUrl() {
+    return solrUrl;
+  }
+
+  /**
+   * Returns true if the cluster or ranker id was looked up remotely. Only such configurations need to be refreshed.
+   *
+   * @return true if discovered remotely
+   */
+  public boolean isDiscovered() {
+    return discovered;
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.requests;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.retrieve_and_rank.utils.Messages;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Caches the {@link RetrieveAndRankConfiguration} so the credential lookup and the cluster/ranker discovery are done
+ * once when the application starts instead of on every query. If the cluster or ranker id was discovered remotely,
+ * the configuration is refreshed in the background every <code>RNR_CONFIG_REFRESH_SECONDS</code> (0 disables the
+ * refresh). The number of times the configuration was resolved, discovered remotely or failed is exported by
+ * '/rest/metrics'.
+ */
+public class RetrieveAndRankConfigurationCache {
+  private static final Logger logger = LogManager.getLogger(RetrieveAndRankConfigurationCache.class.getName());
+
+  private static final RetrieveAndRankConfigurationCache INSTANCE = new RetrieveAndRankConfigurationCache();
+
+  private final AtomicLong resolveCount = new AtomicLong();
+  private final AtomicLong discoveryCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+
+  private volatile RetrieveAndRankConfiguration configuration;
+
+  private ScheduledExecutorService scheduler;
+
+  private RetrieveAndRankConfigurationCache() {
+
+  }
+
+  /**
+   * Gets the cache.
+   *
+   * @return the cache
+   */
+  public static RetrieveAndRankConfigurationCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Resolves the configuration in the background and schedules the refresh. Called once by the servlet context
+   * listener when the application starts. A failure here is only logged; the resolution is retried on the first
+   * query.
+   */
+  public synchronized void initialize() {
+    if (scheduler != null) {
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(
+        ThreadPools.daemonThreadFactory("rnr-configuration-refresh"));
+    scheduler.execute(new Runnable() {
+      @Override
+      public void run() {
+        refreshQuietly();
+      }
+    });
+
+    long refreshSeconds = EnvironmentUtils.getLong("RNR_CONFIG_REFRESH_SECONDS", 3600);
+    if (refreshSeconds > 0) {
+      scheduler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          RetrieveAndRankConfiguration current = configuration;
+          if ((current == null) || current.isDiscovered()) {
+            refreshQuietly();
+          }
+        }
+      }, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Gets the resolved configuration, resolving it now if that has not happened yet.
+   *
+   * @return the configuration
+   * @throws IllegalArgumentException if the configuration cannot be resolved
+   */
+  public RetrieveAndRankConfiguration get() {
+    RetrieveAndRankConfiguration current = configuration;
+    if (current == null) {
+      synchronized (this) {
+        current = configuration;
+        if (current == null) {
+          current = refresh();
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Resolves the configuration again and replaces the cached one.
+   *
+   * @return the new configuration
+   * @throws IllegalArgumentException if the configuration cannot be resolved
+   */
+  public RetrieveAndRankConfiguration refresh() {
+    resolveCount.incrementAndGet();
+    try {
+      RetrieveAndRankConfiguration resolved = RetrieveAndRankConfiguration.resolve();
+      if (resolved.isDiscovered()) {
+        discoveryCount.incrementAndGet();
+      }
+      configuration = resolved;
+      logger.info(Messages.getString("RetrieveAndRankConfigurationCache.RESOLVED") //$NON-NLS-1$
+          + resolved.getClusterId());
+      return resolved;
+    } catch (RuntimeException e) {
+      failureCount.incrementAndGet();
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the number of times the configuration was resolved.
+   *
+   * @return the resolve count
+   */
+  public long getResolveCount() {
+    return resolveCount.get();
+  }
+
+  /**
+   * Gets the number of times the cluster or ranker id was discovered with remote calls.
+   *
+   * @return the discovery count
+   */
+  public long getDiscoveryCount() {
+    return discoveryCount.get();
+  }
+
+  /**
+   * Gets the number of times resolving the configuration failed.
+   *
+   * @return the failure count
+   */
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  /**
+   * Stops the background refresh and forgets the cached configuration.
+   */
+  public synchronized void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    configuration = null;
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      logger.warn(Messages.getString("RetrieveAndRankConfigurationCache.REFRESH_FAILED") //$NON-NLS-1$
+          + e.getMessage());
+    }
+  }
+}
@@ -14,8 +14,8 @@
 package com.ibm.watson.apis.retrieve_and_rank.requests;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -23,63 +23,42 @@ import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 import org.apache.solr.client.solrj.response.QueryResponse;
 
+import com.ibm.watson.apis.resilience.RequestHedger;
 import com.ibm.watson.apis.utils.Constants;
-import com.ibm.watson.apis.retrieve_and_rank.utils.HttpSolrClientUtils;
 import com.ibm.watson.apis.retrieve_and_rank.utils.Messages;
-import com.ibm.watson.developer_cloud.retrieve_and_rank.v1.RetrieveAndRank;
-import com.ibm.watson.developer_cloud.util.CredentialUtils;
-import com.ibm.watson.developer_cloud.util.CredentialUtils.ServiceCredentials;
+import com.ibm.watson.apis.retrieve_and_rank.utils.SolrClientHolder;
 
 public class RetrieveAndRankQuery {
 
-  public static String COLLECTION_NAME;
-  private static String USERNAME;
-  private static String PASSWORD;
-  private static String RANKER_ID;
-  private static String CLUSTER_ID;
+  private final RetrieveAndRankConfiguration configuration;
 
-  public static HttpSolrClient solrClient;
+  private final HttpSolrClient solrClient;
+
+  private final RequestHedger hedger = RequestHedger.get("RNR");
   private static final Logger logger = LogManager.getLogger(RetrieveAndRankQuery.class.getName());
 
   public RetrieveAndRankQuery(HttpSolrClient solrClient) {
-    RetrieveAndRankQuery.solrClient = solrClient;
+    this.configuration = RetrieveAndRankConfigurationCache.getInstance().get();
+    this.solrClient = solrClient;
     logger.info(Messages.getString("Query.INITIALIZE_SOLR_CLIENT")); //$NON-NLS-1$
   }
 
+  /**
+   * Instantiates a new query using the cached {@link RetrieveAndRankConfiguration}, so no remote calls are made to
+   * look up the cluster and ranker.
+   */
   public RetrieveAndRankQuery() {
-    ServiceCredentials creds = CredentialUtils.getUserNameAndPassword("retrieve_and_rank"); //$NON-NLS-1$
-    if (creds == null) {
-      throw new IllegalArgumentException(Messages.getString("Query.NO_SERVICE_CREDENTIALS")); //$NON-NLS-1$
-    }
-    USERNAME = creds.getUsername();
-    PASSWORD = creds.getPassword();
-    
-    RetrieveAndRank retrieveAndRankService = new RetrieveAndRank();
-    retrieveAndRankService.setUsernameAndPassword(USERNAME, PASSWORD);
-    
-    if(StringUtils.isNotBlank(System.getenv("CLUSTER_ID"))){ //$NON-NLS-1$
-      CLUSTER_ID = System.getenv("CLUSTER_ID"); //$NON-NLS-1$
-    } else {
-      try{
-        CLUSTER_ID = retrieveAndRankService.getSolrClusters().execute().getSolrClusters().get(0).getId();
-      } catch(Exception e){
-        throw new IllegalArgumentException(Messages.getString("Query.MISSING_CLUSTER_ID")); //$NON-NLS-1$
-      }
-    }
-    if(StringUtils.isNotBlank(System.getenv("RANKER_ID"))){ //$NON-NLS-1$
-      RANKER_ID = System.getenv("RANKER_ID"); //$NON-NLS-1$
-    } else {
-      try{
-        RANKER_ID = retrieveAndRankService.getRankers().execute().getRankers().get(0).getId();
-      } catch(Exception e) {
-        throw new IllegalArgumentException(Messages.getString("Query.MISSING_RANKER_ID")); //$NON-NLS-1$
-      }
-    }
-    if(StringUtils.isNotBlank(System.getenv("COLLECTION_NAME"))){ //$NON-NLS-1$
-      COLLECTION_NAME = System.getenv("COLLECTION_NAME"); //$NON-NLS-1$
-    } else {
-      throw new IllegalArgumentException(Messages.getString("Collection name cannot be null"));
-    }
+    this(RetrieveAndRankConfigurationCache.getInstance().get());
+  }
+
+  /**
+   * Instantiates a new query for the given configuration.
+   *
+   * @param configuration the resolved Retrieve and Rank configuration
+   */
+  public RetrieveAndRankQuery(RetrieveAndRankConfiguration configuration) {
+    this.configuration = configuration;
+    this.solrClient = null;
   }
 
   /**
@@ -92,11 +71,14 @@ public class RetrieveAndRankQuery {
    */
   public QueryResponse query(String userQuery) throws Exception {
     
-    // Configure the Watson Developer Cloud SDK to make a call to the appropriate retrieve and rank
-    // service. Specific information is obtained from environment variable and the services
-    // associated with the app. See the Query constructor for details.
-    RetrieveAndRank service = new RetrieveAndRank();
-    HttpSolrClient solrClient = HttpSolrClientUtils.getSolrClient(service.getSolrUrl(CLUSTER_ID), USERNAME, PASSWORD);
+    // Get the Solr client for the appropriate retrieve and rank service. Specific information is
+    // obtained from environment variable and the services associated with the app. See
+    // RetrieveAndRankConfiguration for details.
+    HttpSolrClient solrClient = this.solrClient;
+    if (solrClient == null) {
+      solrClient = SolrClientHolder.getInstance().getSolrClient(configuration.getSolrUrl(),
+          configuration.getCollectionName(), configuration.getUsername(), configuration.getPassword());
+    }
     
     logger.info(Messages.getString("Query.PASS_CLUSTER_DETAILS")); //$NON-NLS-1$
     
@@ -114,11 +96,18 @@ public class RetrieveAndRankQuery {
         // The retrieve and rank endpoint to hit
         .setRequestHandler("/fcselect")
         // The ranker to rank the potential answers
-        .setParam("ranker_id", RANKER_ID); //$NON-NLS-1$ //$NON-NLS-2$
+        .setParam("ranker_id", configuration.getRankerId()); //$NON-NLS-1$ //$NON-NLS-2$
 
     // Send the query to the retrieve and rank service to obtain answers to the user's query
+    // A slow query is sent a second time if hedging is enabled, see RequestHedger
     logger.info(Messages.getString("Query.QUERY_SOLR_RANKER")); //$NON-NLS-1$
-    return solrClient.query(COLLECTION_NAME, query);
+    final HttpSolrClient client = solrClient;
+    return hedger.call(new Callable<QueryResponse>() {
+      @Override
+      public QueryResponse call() throws Exception {
+        return client.query(configuration.getCollectionName(), query);
+      }
+    });
   }
 
 }
@@ -26,17 +26,24 @@ import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.conn.DefaultProxyRoutePlanner;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpCoreContext;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.solr.client.solrj.impl.HttpSolrClient;
 
+import com.ibm.watson.apis.resilience.Cancellation;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
 import com.ibm.watson.developer_cloud.retrieve_and_rank.v1.RetrieveAndRank;
 
 /**
@@ -46,7 +53,8 @@ public class HttpSolrClientUtils {
   private static final Logger logger = LogManager.getLogger(HttpSolrClientUtils.class.getName());
   
   /**
-   * Helper method to call {@link createHttpClient}.
+   * Helper method to call {@link createHttpClient}. The returned client owns a connection pool which is never closed;
+   * long running code should use {@link SolrClientHolder} instead.
    * 
    * @param uri the Solr server url
    * @param username the {@link RetrieveAndRank} service username
@@ -54,7 +62,20 @@ public class HttpSolrClientUtils {
    * @return the {@link HttpClient}
    */
   public static HttpSolrClient getSolrClient(String uri, String username, String password) {
-    return new HttpSolrClient(uri, createHttpClient(uri, username, password));
+    return new HttpSolrClient(uri, createHttpClient(uri, username, password, createConnectionManager()));
+  }
+
+  /**
+   * Creates a pooling connection manager sized with the <code>SOLR_MAX_CONNECTIONS</code> and
+   * <code>SOLR_MAX_CONNECTIONS_PER_ROUTE</code> settings.
+   *
+   * @return the connection manager
+   */
+  public static PoolingHttpClientConnectionManager createConnectionManager() {
+    final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(EnvironmentUtils.getInt("SOLR_MAX_CONNECTIONS", 128));
+    connectionManager.setDefaultMaxPerRoute(EnvironmentUtils.getInt("SOLR_MAX_CONNECTIONS_PER_ROUTE", 32));
+    return connectionManager;
   }
 
   private static class PreemptiveAuthInterceptor implements HttpRequestInterceptor {
@@ -77,14 +98,37 @@ public class HttpSolrClientUtils {
   }
 
   /**
-   * Creates the {@link HttpClient} to use with the Solrj
+   * Registers each request with {@link Cancellation#onCancel}, so that the request of a cancelled query, for example
+   * a hedged query which lost, is aborted, closing its connection, instead of holding a thread until Solr answers.
+   */
+  private static class AbortInterceptor implements HttpRequestInterceptor {
+    public void process(final HttpRequest request, final HttpContext context) {
+      HttpRequest original = request instanceof HttpRequestWrapper ? ((HttpRequestWrapper) request).getOriginal()
+          : request;
+      if (original instanceof HttpUriRequest) {
+        final HttpUriRequest abortable = (HttpUriRequest) original;
+        Cancellation.onCancel(new Runnable() {
+          @Override
+          public void run() {
+            abortable.abort();
+          }
+        });
+      }
+    }
+  }
+
+  /**
+   * Creates the {@link HttpClient} to use with the Solrj. Connect and socket timeouts are taken from the
+   * <code>SOLR_CONNECT_TIMEOUT_MS</code> and <code>SOLR_SOCKET_TIMEOUT_MS</code> settings.
    *
    * @param url the Solr server url
    * @param username the {@link RetrieveAndRank} service username
    * @param password the {@link RetrieveAndRank} service password
+   * @param connectionManager the connection manager which pools the connections of the client
    * @return the {@link HttpClient}
    */
-  private static HttpClient createHttpClient(String url, String username, String password) {
+  public static CloseableHttpClient createHttpClient(String url, String username, String password,
+      HttpClientConnectionManager connectionManager) {
     final URI scopeUri = URI.create(url);
     logger.info(Messages.getString("HttpSolrClientUtils.CREATING_HTTP_CLIENT")); //$NON-NLS-1$
     final BasicCredentialsProvider credentialsProvider = new BasicCredentialsProvider();
@@ -95,9 +139,15 @@ public class HttpSolrClientUtils {
  	HttpHost proxy = new HttpHost("127.0.0.1", 3128);
  	DefaultProxyRoutePlanner routePlanner = new DefaultProxyRoutePlanner(proxy);
 
-    final HttpClientBuilder builder = HttpClientBuilder.create().setMaxConnTotal(128).setMaxConnPerRoute(32)
-        .setDefaultRequestConfig(RequestConfig.copy(RequestConfig.DEFAULT).setRedirectsEnabled(true).build())
+    final RequestConfig requestConfig = RequestConfig.copy(RequestConfig.DEFAULT).setRedirectsEnabled(true)
+        .setConnectTimeout(EnvironmentUtils.getInt("SOLR_CONNECT_TIMEOUT_MS", 5000))
+        .setConnectionRequestTimeout(EnvironmentUtils.getInt("SOLR_CONNECT_TIMEOUT_MS", 5000))
+        .setSocketTimeout(EnvironmentUtils.getInt("SOLR_SOCKET_TIMEOUT_MS", 30000)).build();
+
+    final HttpClientBuilder builder = HttpClientBuilder.create().setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(requestConfig)
         .setDefaultCredentialsProvider(credentialsProvider).addInterceptorFirst(new PreemptiveAuthInterceptor())
+        .addInterceptorLast(new AbortInterceptor())
         .setRoutePlanner(routePlanner);
     return builder.build();
   }
@@ -1,11 +1,11 @@
 /**
  * (C) Copyright IBM Corp. 2016. All Rights Reserved.
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
  * in compliance with the License. You may obtain a copy of the License at
- * 
+ *
  * http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software distributed under the License
  * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
  * or implied. See the License for the specific language governing permissions and limitations under
@@ -13,9 +13,25 @@
  */
 package com.ibm.watson.apis.retrieve_and_rank.utils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
@@ -24,61 +40,600 @@ import org.apache.logging.log4j.Logger;
 import com.cloudant.client.api.ClientBuilder;
 import com.cloudant.client.api.CloudantClient;
 import com.cloudant.client.api.Database;
+import com.cloudant.client.api.model.Response;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.ibm.watson.apis.resilience.Dependency;
+import com.ibm.watson.apis.resilience.DependencyUnavailableException;
+import com.ibm.watson.apis.utils.EnvironmentUtils;
 import com.ibm.watson.developer_cloud.util.CredentialUtils;
 import com.ibm.watson.developer_cloud.util.CredentialUtils.ServiceCredentials;
 
-
+/**
+ * Logs the conversation turns to a Cloudant database without blocking the chat path. {@link #log} only puts the
+ * entry on a bounded queue; a background writer saves the queued entries with one <code>_bulk_docs</code> request
+ * when <code>CLOUDANT_LOG_BATCH_SIZE</code> entries are queued or <code>CLOUDANT_LOG_FLUSH_MS</code> has passed,
+ * whichever comes first. When Cloudant fails, the batch is appended to a journal file and the writer waits
+ * <code>CLOUDANT_LOG_RETRY_MS</code> before it sends the journal and the new entries again. What happens when the
+ * queue is full is chosen by <code>CLOUDANT_LOG_OVERFLOW</code>, see {@link OverflowPolicy}. The requests go
+ * through the circuit breaker of the <code>CLOUDANT</code> {@link Dependency}, and batches are journaled right away
+ * while it is open.
+ */
 public class Logging {
-  CloudantClient client = null;
-  private static String USERNAME;
-  private static String PASSWORD;
-  private static URL URL;
-  
+
+  /** What {@link Logging#log} does with an entry when the queue is full. */
+  public enum OverflowPolicy {
+    /** Drop the entry. */
+    DROP,
+    /** Wait up to <code>CLOUDANT_LOG_BLOCK_MS</code> for room in the queue, then drop the entry. */
+    BLOCK,
+    /** Append the entry to the journal, which is sent once the writer catches up. */
+    SPILL
+  }
+
+  private static final String DATABASE = "conversation_enhanced_db"; //$NON-NLS-1$
+  private static final String JOURNAL_SUFFIX = ".replay"; //$NON-NLS-1$
+  private static final String UNREADABLE_SUFFIX = ".unreadable"; //$NON-NLS-1$
+
   private static final Logger logger = LogManager.getLogger(Logging.class.getName());
 
+  private static volatile Logging instance;
+
+  private final CloudantClient client;
+  private final String databaseName;
+  private final BlockingQueue<Document> queue;
+  private final int batchSize;
+  private final long flushIntervalMillis;
+  private final long retryMillis;
+  private final long blockMillis;
+  private final OverflowPolicy overflowPolicy;
+  private final File journal;
+  private final long maxJournalBytes;
+  private final Object journalLock = new Object();
+  private final Gson gson = new Gson();
+  private final Stats stats = new Stats();
+  private final Thread writer;
+  private final Dependency cloudant = Dependency.get("CLOUDANT");
+
+  private volatile boolean running = true;
+  private volatile long retryAt;
+  private Database database;
+
+  /**
+   * Creates the logger for the Cloudant service bound to the application, configured with the
+   * <code>CLOUDANT_LOG_*</code> settings.
+   *
+   * @throws MalformedURLException if the service URL is not valid
+   */
   public Logging() throws MalformedURLException {
-      ServiceCredentials creds = CredentialUtils.getUserNameAndPassword("cloudantNoSQLDB"); //$NON-NLS-1$
-      if (creds == null) {
-        throw new IllegalArgumentException(Messages.getString("Logging.NO_SERVICE_CREDENTIALS")); //$NON-NLS-1$
+    this(createClient(), DATABASE, EnvironmentUtils.getInt("CLOUDANT_LOG_QUEUE_SIZE", 1000),
+        EnvironmentUtils.getInt("CLOUDANT_LOG_BATCH_SIZE", 100),
+        EnvironmentUtils.getLong("CLOUDANT_LOG_FLUSH_MS", 2000),
+        getConfiguredOverflowPolicy(),
+        new File(EnvironmentUtils.getString("CLOUDANT_LOG_JOURNAL",
+            new File(System.getProperty("java.io.tmpdir"), DATABASE + ".journal").getPath())));
+  }
+
+  /**
+   * Creates a logger and starts its writer thread.
+   *
+   * @param client the Cloudant client
+   * @param databaseName the database, created if it does not exist
+   * @param queueSize the maximum number of entries waiting for the writer
+   * @param batchSize the maximum number of entries saved with one request
+   * @param flushIntervalMillis the maximum time an entry waits for its batch to fill up
+   * @param overflowPolicy what to do when the queue is full
+   * @param journal the file entries are kept in while Cloudant is not available
+   */
+  public Logging(CloudantClient client, String databaseName, int queueSize, int batchSize,
+      long flushIntervalMillis, OverflowPolicy overflowPolicy, File journal) {
+    this.client = client;
+    this.databaseName = databaseName;
+    this.queue = new ArrayBlockingQueue<Document>(queueSize);
+    this.batchSize = batchSize;
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.overflowPolicy = overflowPolicy;
+    this.journal = journal;
+    this.retryMillis = EnvironmentUtils.getLong("CLOUDANT_LOG_RETRY_MS", 30000);
+    this.blockMillis = EnvironmentUtils.getLong("CLOUDANT_LOG_BLOCK_MS", 50);
+    this.maxJournalBytes = EnvironmentUtils.getLong("CLOUDANT_LOG_JOURNAL_MAX_BYTES", 10 * 1024 * 1024);
+
+    writer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runWriter();
+      }
+    }, "cloudant-log-writer"); //$NON-NLS-1$
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Gets the overflow policy set by <code>CLOUDANT_LOG_OVERFLOW</code>, {@link OverflowPolicy#SPILL} if it is not set
+   * or not valid.
+   *
+   * @return the policy
+   */
+  static OverflowPolicy getConfiguredOverflowPolicy() {
+    String name = EnvironmentUtils.getString("CLOUDANT_LOG_OVERFLOW", "spill"); //$NON-NLS-1$ //$NON-NLS-2$
+    try {
+      return OverflowPolicy.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      logger.warn(Messages.getString("Logging.UNKNOWN_OVERFLOW_POLICY") + name); //$NON-NLS-1$
+      return OverflowPolicy.SPILL;
+    }
+  }
+
+  /**
+   * Gets the application wide logger, started by {@link #initialize()}.
+   *
+   * @return the logger, or null if no Cloudant service is bound to the application
+   */
+  public static Logging getInstance() {
+    return instance;
+  }
+
+  /**
+   * Starts the application wide logger if a Cloudant service is bound to the application. A service which cannot be
+   * used is logged and leaves the application without conversation logging.
+   */
+  public static synchronized void initialize() {
+    if ((instance != null) || (CredentialUtils.getUserNameAndPassword("cloudantNoSQLDB") == null)) { //$NON-NLS-1$
+      return;
+    }
+    try {
+      instance = new Logging();
+    } catch (MalformedURLException e) {
+      logger.warn(Messages.getString("Logging.NOT_STARTED") + e.getMessage()); //$NON-NLS-1$
+    } catch (IllegalArgumentException e) {
+      logger.warn(Messages.getString("Logging.NOT_STARTED") + e.getMessage()); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Stops the application wide logger, waiting up to <code>CLOUDANT_LOG_SHUTDOWN_MS</code> for the batch in progress.
+   */
+  public static synchronized void shutdownInstance() {
+    if (instance != null) {
+      instance.shutdown(EnvironmentUtils.getLong("CLOUDANT_LOG_SHUTDOWN_MS", 5000));
+      instance = null;
+    }
+  }
+
+  private static CloudantClient createClient() throws MalformedURLException {
+    ServiceCredentials creds = CredentialUtils.getUserNameAndPassword("cloudantNoSQLDB"); //$NON-NLS-1$
+    if (creds == null) {
+      throw new IllegalArgumentException(Messages.getString("Logging.NO_SERVICE_CREDENTIALS")); //$NON-NLS-1$
+    }
+    URL url = new URL(CredentialUtils.getAPIUrl("cloudantNoSQLDB")); //$NON-NLS-1$
+    if (StringUtils.isBlank(url.toString())) {
+      throw new IllegalArgumentException(Messages.getString("Logging.NO_SERVICE_URL")); //$NON-NLS-1$
+    }
+
+    logger.info(Messages.getString("Logging.INITIALIZE_CLOUDANT_CLIENT")); //$NON-NLS-1$
+    return ClientBuilder.url(url).username(creds.getUsername()).password(creds.getPassword()).build();
+  }
+
+  /**
+   * Queues a conversation turn to be saved to the Cloudant DB. Never waits for Cloudant.
+   *
+   * @param question the user's question
+   * @param intent the top intent
+   * @param confidence the confidence of the top intent
+   * @param entity the entities
+   * @param convoOutput the conversation output
+   * @param convoId the conversation id
+   * @param retrieveAndRankOutput the retrieved documents
+   * @return true if the entry was queued or journaled, false if it was dropped
+   */
+  public boolean log(String question, String intent, String confidence, String entity, String convoOutput,
+      String convoId, String retrieveAndRankOutput) {
+    Document document =
+        new Document(question, intent, confidence, entity, convoOutput, convoId, retrieveAndRankOutput);
+    boolean queued = running && queue.offer(document);
+    if (!queued && running && (overflowPolicy == OverflowPolicy.BLOCK)) {
+      try {
+        queued = queue.offer(document, blockMillis, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
-      USERNAME = creds.getUsername();
-      PASSWORD = creds.getPassword();
-      URL = new URL(CredentialUtils.getAPIUrl("cloudantNoSQLDB"));
-      if(StringUtils.isBlank(URL.toString())){
-        throw new IllegalArgumentException(Messages.getString("Logging.NO_SERVICE_URL")); //$NON-NLS-1$
+    }
+    if (queued) {
+      stats.enqueued.incrementAndGet();
+      return true;
+    }
+    if ((overflowPolicy == OverflowPolicy.SPILL) && spill(Collections.singletonList(document))) {
+      return true;
+    }
+    stats.dropped.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Takes batches off the queue until the logger is shut down.
+   */
+  private void runWriter() {
+    List<Document> batch = new ArrayList<Document>(batchSize);
+    while (running) {
+      try {
+        Document first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+        if (first != null) {
+          batch.add(first);
+          long deadline = System.currentTimeMillis() + flushIntervalMillis;
+          queue.drainTo(batch, batchSize - batch.size());
+          while (running && (batch.size() < batchSize)) {
+            long wait = deadline - System.currentTimeMillis();
+            Document next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+            if (next == null) {
+              break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+          }
+          flush(batch);
+          batch.clear();
+        }
+        replayJournal();
+      } catch (InterruptedException e) {
+        break;
+      } catch (RuntimeException e) {
+        logger.error(Messages.getString("Logging.WRITER_ERROR"), e); //$NON-NLS-1$
+        batch.clear();
       }
-      
-      logger.info(Messages.getString("Logging.INITIALIZE_CLOUDANT_CLIENT")); //$NON-NLS-1$
-      client = ClientBuilder.url(URL).username(USERNAME)
-          .password(PASSWORD).build();
+    }
+    // whatever is left when the application stops is kept for the next start
+    queue.drainTo(batch);
+    if (!batch.isEmpty() && !spill(batch)) {
+      stats.dropped.addAndGet(batch.size());
+    }
   }
 
   /**
-   * This methods connects to the database and saves the given document to the Cloudant DB
-   * 
-   * @param question
-   * @param intent
-   * @param confidence
-   * @param entity
-   * @param convoOutput
-   * @param convoId
-   * @param retrieveAndRankOutput
-   * @throws Exception
+   * Saves a batch with one <code>_bulk_docs</code> request, or journals it if Cloudant is not available.
    */
-  public void log(String question, String intent, String confidence, String entity, String convoOutput, String convoId,
-      String retrieveAndRankOutput) throws Exception {
+  private void flush(List<Document> batch) {
+    if (!isAvailable() || !send(batch)) {
+      if (!spill(batch)) {
+        stats.dropped.addAndGet(batch.size());
+      }
+    }
+  }
 
-    logger.info(Messages.getString("Logging.ENTRY_INTO_DB")); //$NON-NLS-1$
-    Database db = client.database("conversation_enhanced_db", true);
-    db.save(new Document(question, intent, confidence, entity, convoOutput, convoId, retrieveAndRankOutput));
+  private boolean send(List<?> batch) {
+    long start;
+    try {
+      start = cloudant.acquire();
+    } catch (DependencyUnavailableException e) {
+      retryAt = System.currentTimeMillis() + retryMillis;
+      return false;
+    }
+    try {
+      if (database == null) {
+        database = client.database(databaseName, true);
+      }
+      int rejected = 0;
+      for (Response response : database.bulk(batch)) {
+        if (response.getError() != null) {
+          rejected++;
+          logger.warn(Messages.getString("Logging.REJECTED") + response.getError() + ": " //$NON-NLS-1$
+              + response.getReason());
+        }
+      }
+      stats.recordFlush(System.nanoTime() - start, batch.size() - rejected, rejected);
+      cloudant.release(start, null);
+      retryAt = 0;
+      return true;
+    } catch (RuntimeException e) {
+      cloudant.release(start, e);
+      stats.failedFlushes.incrementAndGet();
+      retryAt = System.currentTimeMillis() + retryMillis;
+      logger.warn(Messages.getString("Logging.FLUSH_FAILED") + e.getMessage()); //$NON-NLS-1$
+      return false;
+    }
+  }
+
+  private boolean isAvailable() {
+    return System.currentTimeMillis() >= retryAt;
+  }
+
+  /**
+   * Appends entries to the journal, one JSON document per line.
+   *
+   * @return false if the journal is full or cannot be written
+   */
+  private boolean spill(List<Document> documents) {
+    List<String> lines = new ArrayList<String>(documents.size());
+    for (Document document : documents) {
+      lines.add(gson.toJson(document));
+    }
+    if (!appendToJournal(lines)) {
+      return false;
+    }
+    stats.spilled.addAndGet(documents.size());
+    return true;
+  }
+
+  private boolean appendToJournal(List<String> lines) {
+    synchronized (journalLock) {
+      if (journal.length() >= maxJournalBytes) {
+        return false;
+      }
+      try {
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal, true), "UTF-8"));
+        try {
+          for (String line : lines) {
+            out.write(line);
+            out.write('\n');
+          }
+        } finally {
+          out.close();
+        }
+        return true;
+      } catch (IOException e) {
+        logger.error(Messages.getString("Logging.JOURNAL_ERROR") + e.getMessage()); //$NON-NLS-1$
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Sends the journaled entries once Cloudant is available again. The journal is moved aside first so that new
+   * entries can be journaled meanwhile; entries which cannot be sent are put back. Lines which are not JSON objects,
+   * such as the last one when the application stopped in the middle of an append, are skipped. If the file cannot be
+   * read, it is renamed with the <code>.unreadable</code> suffix so that the next replays are not stuck on it.
+   */
+  private void replayJournal() {
+    if (!isAvailable() || (journal.length() == 0)) {
+      return;
+    }
+    File replay = new File(journal.getPath() + JOURNAL_SUFFIX);
+    synchronized (journalLock) {
+      if (!replay.exists() && !journal.renameTo(replay)) {
+        return;
+      }
+    }
+
+    List<String> failed = new ArrayList<String>();
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(replay), "UTF-8"));
+      try {
+        JsonParser parser = new JsonParser();
+        List<JsonObject> batch = new ArrayList<JsonObject>(batchSize);
+        List<String> lines = new ArrayList<String>(batchSize);
+        String line = in.readLine();
+        while (line != null) {
+          JsonObject document = parseJournalLine(parser, line);
+          if (document != null) {
+            batch.add(document);
+            lines.add(line);
+          }
+          line = in.readLine();
+          if ((batch.size() == batchSize) || ((line == null) && !batch.isEmpty())) {
+            if (failed.isEmpty() && isAvailable() && send(batch)) {
+              stats.replayed.addAndGet(batch.size());
+            } else {
+              failed.addAll(lines);
+            }
+            batch.clear();
+            lines.clear();
+          }
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      logger.error(Messages.getString("Logging.JOURNAL_ERROR") + e.getMessage()); //$NON-NLS-1$
+      File unreadable = new File(replay.getPath() + UNREADABLE_SUFFIX);
+      unreadable.delete();
+      if (!replay.renameTo(unreadable)) {
+        replay.delete();
+      }
+    }
+    if (replay.exists() && !replay.delete()) {
+      logger.error(Messages.getString("Logging.JOURNAL_ERROR") + replay); //$NON-NLS-1$
+    }
+    if (!failed.isEmpty() && !appendToJournal(failed)) {
+      stats.dropped.addAndGet(failed.size());
+    }
+  }
+
+  /**
+   * Parses a journal line.
+   *
+   * @return the entry, or null if the line is blank or not a JSON object
+   */
+  private JsonObject parseJournalLine(JsonParser parser, String line) {
+    if (line.trim().isEmpty()) {
+      return null;
+    }
+    try {
+      JsonElement document = parser.parse(line);
+      if (document.isJsonObject()) {
+        return document.getAsJsonObject();
+      }
+    } catch (JsonParseException e) {
+      // reported below
+    }
+    stats.corrupt.incrementAndGet();
+    logger.warn(Messages.getString("Logging.CORRUPT_JOURNAL_LINE") + journal); //$NON-NLS-1$
+    return null;
+  }
+
+  /**
+   * Gets the number of entries waiting for the writer.
+   *
+   * @return the queue depth
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the counters of the logger.
+   *
+   * @return the statistics
+   */
+  public Stats getStats() {
+    return stats;
+  }
+
+  /**
+   * Stops the writer. The entries still queued are journaled and sent after the next start.
+   *
+   * @param timeoutMillis how long to wait for the batch in progress
+   */
+  public void shutdown(long timeoutMillis) {
+    running = false;
+    try {
+      writer.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    try {
+      // ends the Cloudant session, which fails when Cloudant cannot be reached
+      client.shutdown();
+    } catch (RuntimeException e) {
+      logger.warn(Messages.getString("Logging.CLIENT_SHUTDOWN_FAILED") + e.getMessage()); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Counters of the logging pipeline.
+   */
+  public static class Stats {
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong corrupt = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    void recordFlush(long nanos, int savedDocuments, int rejectedDocuments) {
+      flushes.incrementAndGet();
+      flushNanos.addAndGet(nanos);
+      saved.addAndGet(savedDocuments);
+      rejected.addAndGet(rejectedDocuments);
+      long max = maxFlushNanos.get();
+      while ((nanos > max) && !maxFlushNanos.compareAndSet(max, nanos)) {
+        max = maxFlushNanos.get();
+      }
+    }
+
+    /**
+     * Gets the number of entries put on the queue.
+     *
+     * @return the enqueued entries
+     */
+    public long getEnqueued() {
+      return enqueued.get();
+    }
+
+    /**
+     * Gets the number of entries lost because the queue and the journal were full.
+     *
+     * @return the dropped entries
+     */
+    public long getDropped() {
+      return dropped.get();
+    }
+
+    /**
+     * Gets the number of entries written to the journal.
+     *
+     * @return the journaled entries
+     */
+    public long getSpilled() {
+      return spilled.get();
+    }
+
+    /**
+     * Gets the number of journaled entries sent to Cloudant.
+     *
+     * @return the replayed entries
+     */
+    public long getReplayed() {
+      return replayed.get();
+    }
+
+    /**
+     * Gets the number of journal lines skipped because they are not entries, usually ones cut short by a crash.
+     *
+     * @return the skipped lines
+     */
+    public long getCorrupt() {
+      return corrupt.get();
+    }
+
+    /**
+     * Gets the number of entries saved to Cloudant, replayed ones included.
+     *
+     * @return the saved entries
+     */
+    public long getSaved() {
+      return saved.get();
+    }
+
+    /**
+     * Gets the number of entries Cloudant refused to save.
+     *
+     * @return the rejected entries
+     */
+    public long getRejected() {
+      return rejected.get();
+    }
+
+    /**
+     * Gets the number of successful <code>_bulk_docs</code> requests.
+     *
+     * @return the flushes
+     */
+    public long getFlushes() {
+      return flushes.get();
+    }
+
+    /**
+     * Gets the number of <code>_bulk_docs</code> requests which failed.
+     *
+     * @return the failed flushes
+     */
+    public long getFailedFlushes() {
+      return failedFlushes.get();
+    }
+
+    /**
+     * Gets the average latency of the successful <code>_bulk_docs</code> requests.
+     *
+     * @return the average latency in milliseconds
+     */
+    public double getAverageFlushMillis() {
+      long count = flushes.get();
+      return count == 0 ? 0 : flushNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Gets the highest latency of the successful <code>_bulk_docs</code> requests.
+     *
+     * @return the maximum latency in milliseconds
+     */
+    public double getMaxFlushMillis() {
+      return maxFlushNanos.get() / 1e6;
+    }
   }
 
   /**
-   * 
+   *
    * The POJO for the document to be saved to the Cloudant DB
-   * 
+   *
    */
-  private class Document {
+  private static class Document {
     private String Question;
     private String Intent;
     private String Confidence;
@@ -0,0 +1,144 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.utils;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+
+import com.ibm.watson.apis.utils.EnvironmentUtils;
+import com.ibm.watson.apis.utils.ThreadPools;
+
+/**
+ * Owns the long-lived {@link HttpSolrClient}s used to query Retrieve and Rank. One client is created per Solr
+ * cluster and collection and reused by every query. A background task closes connections which have been idle for
+ * longer than <code>SOLR_IDLE_CONNECTION_TIMEOUT_SECONDS</code>, and {@link #shutdown()} closes every client and
+ * its connection pool when the application is stopped.
+ */
+public class SolrClientHolder {
+  private static final Logger logger = LogManager.getLogger(SolrClientHolder.class.getName());
+
+  private static final SolrClientHolder INSTANCE = new SolrClientHolder();
+
+  private final ConcurrentMap<String, PooledSolrClient> clients = new ConcurrentHashMap<String, PooledSolrClient>();
+
+  private ScheduledExecutorService evictor;
+
+  private SolrClientHolder() {
+
+  }
+
+  /**
+   * Gets the holder.
+   *
+   * @return the holder
+   */
+  public static SolrClientHolder getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Gets the Solr client for the given cluster and collection, creating it the first time it is asked for.
+   *
+   * @param solrUrl the Solr url of the Retrieve and Rank cluster
+   * @param collection the name of the collection that will be queried
+   * @param username the Retrieve and Rank service username
+   * @param password the Retrieve and Rank service password
+   * @return the Solr client
+   */
+  public HttpSolrClient getSolrClient(String solrUrl, String collection, String username, String password) {
+    String key = solrUrl + '|' + collection + '|' + username;
+    PooledSolrClient client = clients.get(key);
+    if (client == null) {
+      synchronized (this) {
+        client = clients.get(key);
+        if (client == null) {
+          client = new PooledSolrClient(solrUrl, username, password);
+          clients.put(key, client);
+          startEvictor();
+          logger.info(Messages.getString("SolrClientHolder.CREATED_CLIENT") + solrUrl); //$NON-NLS-1$
+        }
+      }
+    }
+    return client.solrClient;
+  }
+
+  /**
+   * Closes every Solr client and its connection pool.
+   */
+  public synchronized void shutdown() {
+    if (evictor != null) {
+      evictor.shutdownNow();
+      evictor = null;
+    }
+    for (PooledSolrClient client : clients.values()) {
+      client.close();
+    }
+    clients.clear();
+    logger.info(Messages.getString("SolrClientHolder.SHUTDOWN")); //$NON-NLS-1$
+  }
+
+  private void startEvictor() {
+    if (evictor != null) {
+      return;
+    }
+    final long idleSeconds = EnvironmentUtils.getLong("SOLR_IDLE_CONNECTION_TIMEOUT_SECONDS", 60);
+    evictor = Executors.newSingleThreadScheduledExecutor(
+        ThreadPools.daemonThreadFactory("solr-idle-connection-evictor"));
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        for (PooledSolrClient client : clients.values()) {
+          client.connectionManager.closeExpiredConnections();
+          client.connectionManager.closeIdleConnections(idleSeconds, TimeUnit.SECONDS);
+        }
+      }
+    }, idleSeconds, idleSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * A Solr client together with the HTTP client and connection pool it owns.
+   */
+  private static class PooledSolrClient {
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final HttpSolrClient solrClient;
+
+    PooledSolrClient(String solrUrl, String username, String password) {
+      connectionManager = HttpSolrClientUtils.createConnectionManager();
+      httpClient = HttpSolrClientUtils.createHttpClient(solrUrl, username, password, connectionManager);
+      solrClient = new HttpSolrClient(solrUrl, httpClient);
+    }
+
+    void close() {
+      try {
+        solrClient.close();
+        httpClient.close();
+      } catch (IOException e) {
+        logger.error(Messages.getString("SolrClientHolder.CLOSE_ERROR"), e); //$NON-NLS-1$
+      } finally {
+        connectionManager.shutdown();
+      }
+    }
+  }
+}
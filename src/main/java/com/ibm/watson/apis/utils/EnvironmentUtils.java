@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Helper methods to read tuning settings. A setting is looked up as an environment variable first (the way the
+ * service credentials are provided in server.env or on Bluemix) and then as a JVM system property.
+ */
+public class EnvironmentUtils {
+  private static final Logger logger = LogManager.getLogger(EnvironmentUtils.class.getName());
+
+  private EnvironmentUtils() {
+
+  }
+
+  /**
+   * Gets a setting as a string.
+   *
+   * @param name the name of the environment variable or system property
+   * @param defaultValue the value returned when the setting is not present
+   * @return the setting value
+   */
+  public static String getString(String name, String defaultValue) {
+    String value = System.getenv(name);
+    if (StringUtils.isBlank(value)) {
+      value = System.getProperty(name);
+    }
+    return StringUtils.isBlank(value) ? defaultValue : value.trim();
+  }
+
+  /**
+   * Gets a setting as an int.
+   *
+   * @param name the name of the environment variable or system property
+   * @param defaultValue the value returned when the setting is not present or not a number
+   * @return the setting value
+   */
+  public static int getInt(String name, int defaultValue) {
+    return (int) getLong(name, defaultValue);
+  }
+
+  /**
+   * Gets a setting as a long.
+   *
+   * @param name the name of the environment variable or system property
+   * @param defaultValue the value returned when the setting is not present or not a number
+   * @return the setting value
+   */
+  public static long getLong(String name, long defaultValue) {
+    String value = getString(name, null);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      logger.warn(Messages.getString("EnvironmentUtils.INVALID_NUMBER") + name + "=" + value);
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Gets a setting as a boolean.
+   *
+   * @param name the name of the environment variable or system property
+   * @param defaultValue the value returned when the setting is not present
+   * @return the setting value
+   */
+  public static boolean getBoolean(String name, boolean defaultValue) {
+    String value = getString(name, null);
+    return value == null ? defaultValue : Boolean.parseBoolean(value);
+  }
+}
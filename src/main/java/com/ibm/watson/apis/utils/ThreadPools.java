@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.utils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper methods for the background thread pools of the application. Their threads are daemon threads, so that they
+ * never keep the server from stopping, and are named after the pool, so that they can be told apart in thread dumps.
+ */
+public final class ThreadPools {
+  private static final long KEEP_ALIVE_SECONDS = 60;
+
+  private ThreadPools() {
+
+  }
+
+  /**
+   * Creates a factory of daemon threads named <code>name-1</code>, <code>name-2</code> and so on.
+   *
+   * @param name the name of the pool
+   * @return the thread factory
+   */
+  public static ThreadFactory daemonThreadFactory(String name) {
+    return daemonThreadFactory(name, Thread.NORM_PRIORITY);
+  }
+
+  /**
+   * Creates a factory of daemon threads named <code>name-1</code>, <code>name-2</code> and so on.
+   *
+   * @param name the name of the pool
+   * @param priority the priority of the threads
+   * @return the thread factory
+   */
+  public static ThreadFactory daemonThreadFactory(final String name, final int priority) {
+    final AtomicInteger count = new AtomicInteger();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        thread.setPriority(priority);
+        return thread;
+      }
+    };
+  }
+
+  /**
+   * Creates a pool of up to <code>threads</code> daemon threads, started when tasks arrive and stopped after a minute
+   * without any.
+   *
+   * @param name the name of the pool
+   * @param threads the number of threads
+   * @param queue the tasks waiting for a thread
+   * @return the pool
+   */
+  public static ThreadPoolExecutor newFixedThreadPool(String name, int threads, BlockingQueue<Runnable> queue) {
+    return newFixedThreadPool(threads, queue, daemonThreadFactory(name));
+  }
+
+  /**
+   * Creates a pool of up to <code>threads</code> threads, started when tasks arrive and stopped after a minute
+   * without any.
+   *
+   * @param threads the number of threads
+   * @param queue the tasks waiting for a thread
+   * @param threadFactory creates the threads
+   * @return the pool
+   */
+  public static ThreadPoolExecutor newFixedThreadPool(int threads, BlockingQueue<Runnable> queue,
+      ThreadFactory threadFactory) {
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, threadFactory);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.ibm.watson.apis.resilience.Cancellation;
+import com.ibm.watson.developer_cloud.service.WatsonService;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Helper methods for the Watson Developer Cloud SDK service objects.
+ */
+public class WatsonServiceUtils {
+  private static final Logger logger = LogManager.getLogger(WatsonServiceUtils.class.getName());
+
+  private static final String CLIENT_FIELD = "client";
+
+  private WatsonServiceUtils() {
+
+  }
+
+  /**
+   * The SDK builds a private {@link OkHttpClient} for every service object and does not expose a way to configure it
+   * (the service classes are final). This method rebuilds that client on top of the given connection pool so that
+   * several long-lived service objects share their keep-alive connections and, for asynchronous calls, their
+   * dispatcher. If the SDK internals are not what we expect, the service keeps its own client and a warning is
+   * logged.
+   *
+   * @param service the service object
+   * @param connectionPool the shared connection pool
+   * @param dispatcher the shared dispatcher for asynchronous calls, or null to keep the client's own
+   * @return true if the pool was applied
+   */
+  public static boolean useConnectionPool(WatsonService service, ConnectionPool connectionPool,
+      Dispatcher dispatcher) {
+    try {
+      Field field = WatsonService.class.getDeclaredField(CLIENT_FIELD);
+      field.setAccessible(true);
+      OkHttpClient client = (OkHttpClient) field.get(service);
+      OkHttpClient.Builder builder = client.newBuilder().connectionPool(connectionPool);
+      if (dispatcher != null) {
+        builder.dispatcher(dispatcher);
+      }
+      field.set(service, builder.build());
+      return true;
+    } catch (Exception e) {
+      logger.warn(Messages.getString("WatsonServiceUtils.POOL_NOT_APPLIED") + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Rebuilds the client of a service object so that its calls register with {@link Cancellation#onCancel}: when a
+   * call is cancelled, for example a hedged request which lost, its OkHttp call is cancelled, which closes the
+   * connection and frees the thread, instead of blocking until the service answers. The SDK does not expose the call, so it is looked up among the running calls
+   * of the client's dispatcher.
+   *
+   * @param service the service object
+   * @return true if the client was rebuilt
+   */
+  public static boolean abortWhenCancelled(WatsonService service) {
+    try {
+      Field field = WatsonService.class.getDeclaredField(CLIENT_FIELD);
+      field.setAccessible(true);
+      OkHttpClient client = (OkHttpClient) field.get(service);
+      field.set(service, client.newBuilder().addInterceptor(new CancelInterceptor(client.dispatcher())).build());
+      return true;
+    } catch (Exception e) {
+      logger.warn(Messages.getString("WatsonServiceUtils.CANCEL_NOT_APPLIED") + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Registers the call of each request with {@link Cancellation#onCancel}.
+   */
+  private static class CancelInterceptor implements Interceptor {
+    private final Dispatcher dispatcher;
+
+    CancelInterceptor(Dispatcher dispatcher) {
+      this.dispatcher = dispatcher;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+      for (final Call call : dispatcher.runningCalls()) {
+        if (call.request() == chain.request()) {
+          Cancellation.onCancel(new Runnable() {
+            @Override
+            public void run() {
+              call.cancel();
+            }
+          });
+          break;
+        }
+      }
+      return chain.proceed(chain.request());
+    }
+  }
+}
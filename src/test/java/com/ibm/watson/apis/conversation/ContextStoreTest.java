@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ContextStore}.
+ */
+public class ContextStoreTest {
+
+  private static Map<String, Object> context(String id, String padding) {
+    Map<String, Object> context = new LinkedHashMap<String, Object>();
+    context.put("conversation_id", id);
+    context.put("padding", padding);
+    return context;
+  }
+
+  /**
+   * Only the latest version of a context should be handed out, as a copy.
+   */
+  @Test
+  public void shouldVersionContexts() {
+    ContextStore store = new ContextStore(10, 1024 * 1024, 1024, 60000);
+    assertEquals(1, store.save("a", context("a", "first")));
+    assertEquals(2, store.save("a", context("a", "second")));
+
+    assertNull(store.load("a", 1));
+    Map<String, Object> loaded = store.load("a", 2);
+    assertEquals("second", loaded.get("padding"));
+    loaded.put("padding", "changed");
+    assertEquals("second", store.load("a", 2).get("padding"));
+    assertEquals(2, store.getStats().getHits());
+    assertEquals(1, store.getStats().getMisses());
+  }
+
+  /**
+   * The least recently used context should be evicted when the store is full.
+   */
+  @Test
+  public void shouldEvictLeastRecentlyUsed() {
+    ContextStore store = new ContextStore(2, 1024 * 1024, 1024, 60000);
+    store.save("a", context("a", "x"));
+    store.save("b", context("b", "x"));
+    assertNotNull(store.load("a", 1));
+    store.save("c", context("c", "x"));
+
+    assertEquals(2, store.size());
+    assertNotNull(store.load("a", 1));
+    assertNull(store.load("b", 1));
+    assertEquals(1, store.getStats().getEvictions());
+  }
+
+  /**
+   * The store should stay within its memory budget.
+   */
+  @Test
+  public void shouldRespectMemoryBudget() {
+    char[] padding = new char[100];
+    Arrays.fill(padding, 'x');
+    long bytes = 2 * ContextStore.estimateSize(context("c0", new String(padding)));
+    ContextStore store = new ContextStore(100, bytes * 3, 1024, 60000);
+    for (int i = 0; i < 10; i++) {
+      store.save("c" + i, context("c" + i, new String(padding)));
+    }
+
+    assertEquals(3, store.size());
+    assertEquals(bytes * 3, store.getBytes());
+    assertEquals(7, store.getStats().getEvictions());
+  }
+
+  /**
+   * A context over the size cap should not be stored, and should drop its previous version.
+   */
+  @Test
+  public void shouldRejectLargeContexts() {
+    ContextStore store = new ContextStore(10, 1024 * 1024, 60, 60000);
+    store.save("a", context("a", "small"));
+    char[] padding = new char[100];
+    Arrays.fill(padding, 'x');
+
+    assertEquals(-1, store.save("a", context("a", new String(padding))));
+    assertNull(store.load("a", 1));
+    assertEquals(0, store.getBytes());
+    assertEquals(1, store.getStats().getRejected());
+  }
+
+  /**
+   * Unused contexts should expire.
+   *
+   * @throws InterruptedException if the test is interrupted
+   */
+  @Test
+  public void shouldExpire() throws InterruptedException {
+    ContextStore store = new ContextStore(10, 1024 * 1024, 1024, 10);
+    store.save("a", context("a", "x"));
+    Thread.sleep(50);
+
+    assertNull(store.load("a", 1));
+    assertEquals(0, store.size());
+    assertEquals(1, store.getStats().getExpirations());
+  }
+
+  /**
+   * A size of 0 should disable the store.
+   */
+  @Test
+  public void shouldBeDisabledWithoutSize() {
+    ContextStore store = new ContextStore(0, 1024 * 1024, 1024, 60000);
+    assertFalse(store.isEnabled());
+    assertEquals(-1, store.save("a", context("a", "x")));
+  }
+}
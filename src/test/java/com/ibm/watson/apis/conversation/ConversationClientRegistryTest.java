@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.conversation.v1.ConversationService;
+
+/**
+ * Unit tests for the {@link ConversationClientRegistry}.
+ */
+public class ConversationClientRegistryTest {
+  private static final String URL = "http://localhost:1234/conversation/api";
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    ConversationClientRegistry.getInstance().shutdown();
+  }
+
+  /**
+   * The same configuration should always get the same service object.
+   */
+  @Test
+  public void shouldReuseServiceForSameConfiguration() {
+    ConversationClientRegistry registry = ConversationClientRegistry.getInstance();
+    ConversationService first = registry.getService(null, URL, "user", "pass");
+    ConversationService second = registry.getService(null, URL, "user", "pass");
+
+    assertSame(first, second);
+  }
+
+  /**
+   * A different endpoint, version or credentials should get a different service object.
+   */
+  @Test
+  public void shouldSeparateServicesByConfiguration() {
+    ConversationClientRegistry registry = ConversationClientRegistry.getInstance();
+    ConversationService service = registry.getService(null, URL, "user", "pass");
+
+    assertNotSame(service, registry.getService(null, URL, "other", "pass"));
+    assertNotSame(service, registry.getService(ConversationService.VERSION_DATE_2016_07_11, URL, "user", "pass"));
+    assertNotSame(service, registry.getService(null, URL + "/v2", "user", "pass"));
+  }
+}
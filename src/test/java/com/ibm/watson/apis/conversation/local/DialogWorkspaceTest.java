@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.conversation.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Intent;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Unit tests for the {@link DialogWorkspace} compiled from the bundled workspace.json.
+ */
+public class DialogWorkspaceTest {
+
+  private static DialogWorkspace workspace;
+
+  /**
+   * Compiles the bundled workspace once for all tests.
+   *
+   * @throws Exception if the workspace cannot be read
+   */
+  @BeforeClass
+  public static void loadWorkspace() throws Exception {
+    InputStream in = DialogWorkspaceTest.class.getResourceAsStream("/workspace.json");
+    try {
+      workspace = DialogWorkspace.load(new InputStreamReader(in, "UTF-8"));
+    } finally {
+      in.close();
+    }
+  }
+
+  private static MessageResponse send(String text, Map<String, Object> context) {
+    return workspace.message(new MessageRequest.Builder().inputText(text).context(context).build());
+  }
+
+  /**
+   * Every condition of the bundled workspace should compile.
+   */
+  @Test
+  public void shouldCompileEveryCondition() {
+    assertEquals(142, workspace.size());
+    assertEquals(0, workspace.getInvalidConditions());
+  }
+
+  /**
+   * The first turn should run the welcome node, initialize the context and start a conversation.
+   */
+  @Test
+  public void shouldWelcomeOnFirstTurn() {
+    MessageResponse response = send("", null);
+
+    assertEquals(Collections.singletonList("Hi. It looks like a nice drive today. What would you like me to do?"),
+        response.getText());
+    assertEquals(0L, response.getContext().get("default_counter"));
+    assertNotNull(response.getContext().get("conversation_id"));
+    assertNotNull(response.getContext().get("system"));
+  }
+
+  /**
+   * A slot asked for in one turn should be filled from the next turn, and the action should carry the entity value.
+   */
+  @Test
+  public void shouldFollowDialogAcrossTurns() {
+    Map<String, Object> context = send("", null).getContext();
+
+    MessageResponse response = send("play some music", context);
+    assertEquals("turn_on", response.getIntents().get(0).getIntent());
+    assertTrue(response.getText().get(0).contains("Which genre"));
+
+    response = send("jazz", response.getContext());
+    assertEquals(Collections.singletonList("Great choice! Playing some jazz for you."), response.getText());
+    assertEquals("jazz", ((Map<?, ?>) response.getOutput().get("action")).get("music_on"));
+  }
+
+  /**
+   * Input that matches no intent should be answered by the anything_else node.
+   */
+  @Test
+  public void shouldAnswerUnknownInputWithAnythingElse() {
+    MessageResponse response = send("asdf qwerty", send("", null).getContext());
+
+    assertTrue(response.getIntents().isEmpty());
+    assertTrue(response.getText().get(0).startsWith("I'm not sure about that."));
+  }
+
+  /**
+   * Conditions should support intents, entities, context variables, methods and operators.
+   */
+  @Test
+  public void shouldEvaluateExpressions() {
+    Map<String, Object> context = new HashMap<String, Object>();
+    context.put("default_counter", 2);
+    List<Intent> intents = Arrays.asList(new Intent("turn_on", 0.9));
+    List<Entity> entities = Arrays.asList(new Entity("appliance", "lights", new Integer[] { 12, 18 }),
+        new Entity("sys-number", "7", new Integer[] { 20, 21 }));
+    DialogTurn turn = new DialogTurn("turn on the lights 7", intents, entities, context, false, new Date());
+
+    assertTrue(DialogExpression.parse("#turn_on && @appliance:lights").test(turn));
+    assertTrue(DialogExpression.parse("entities.size()>1 && @sys-number > 5").test(turn));
+    assertTrue(DialogExpression.parse("intents[0].confidence >= 0.51").test(turn));
+    assertFalse(DialogExpression.parse("#turn_off || $default_counter != 2").test(turn));
+    assertEquals(3L, DialogTemplate.parse("<?$default_counter+1?>").getValue(turn));
+    assertEquals("Turning on the lights.", DialogTemplate.parse("Turning on the @appliance.").render(turn));
+  }
+}
@@ -18,6 +18,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -26,6 +27,7 @@ import java.io.InputStreamReader;
 import java.util.List;
 
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.After;
@@ -110,8 +112,10 @@ public class ProxyResourceTest {
     InputStream inputStream = new ByteArrayInputStream(payload.getBytes("UTF-8"));
 
     Response jaxResponse = proxy.postMessage(WORKSPACE_ID, inputStream);
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    ((StreamingOutput) jaxResponse.getEntity()).write(json);
     MessageResponse serviceResponse = GsonSingleton.getGsonWithoutPrettyPrinting()
-        .fromJson(jaxResponse.getEntity().toString(), MessageResponse.class);
+        .fromJson(json.toString("UTF-8"), MessageResponse.class);
 
     RecordedRequest mockRequest = server.takeRequest();
     List<String> serviceText = serviceResponse.getText();
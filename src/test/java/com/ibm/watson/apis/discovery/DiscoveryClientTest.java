@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.discovery;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ibm.watson.apis.payload.DocumentPayload;
+
+/**
+ * Unit tests for the {@link DiscoveryClient} payload mapping.
+ */
+public class DiscoveryClientTest {
+
+  /**
+   * String values should be copied as they are, without stripping quotes.
+   */
+  @Test
+  public void shouldMapResultFields() {
+    Map<String, Object> result = new HashMap<String, Object>();
+    result.put("id", "doc1");
+    result.put("title", "Tire \"pressure\"");
+    result.put("contentHtml", "<p class=\"x\">Check the tires</p>");
+    result.put("sourceUrl", "http://example.com");
+    result.put("score", 1.5d);
+    List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+    results.add(result);
+
+    List<DocumentPayload> payload = new DiscoveryClient().createPayload(results);
+
+    assertEquals(1, payload.size());
+    DocumentPayload document = payload.get(0);
+    assertEquals("doc1", document.getId());
+    assertEquals("Tire \"pressure\"", document.getTitle());
+    assertEquals("<p class=\"x\">Check the tires</p>", document.getBody());
+    assertEquals("http://example.com", document.getSourceUrl());
+    assertEquals("1.5", document.getConfidence());
+  }
+
+  /**
+   * Title and confidence should fall back to the extracted metadata.
+   */
+  @Test
+  public void shouldUseExtractedMetadata() {
+    Map<String, Object> metadata = new HashMap<String, Object>();
+    metadata.put("title", "Bluetooth");
+    metadata.put("score", 0.5d);
+    Map<String, Object> result = new HashMap<String, Object>();
+    result.put("id", "doc2");
+    result.put("enriched_text", new HashMap<String, Object>());
+    result.put("extracted_metadata", metadata);
+    result.put("html", "<p>Pair\nyour phone</p>");
+    List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+    results.add(result);
+
+    DocumentPayload document = new DiscoveryClient().createPayload(results).get(0);
+
+    assertEquals("Bluetooth", document.getTitle());
+    assertEquals("<p>Pairyour phone</p>", document.getBody());
+    assertEquals("empty", document.getSourceUrl());
+    assertEquals("0.5", document.getConfidence());
+  }
+
+  /**
+   * No results should give a single placeholder document.
+   */
+  @Test
+  public void shouldReturnPlaceholderWithoutResults() {
+    List<DocumentPayload> payload = new DiscoveryClient().createPayload(new ArrayList<Map<String, Object>>());
+
+    assertEquals(1, payload.size());
+    assertEquals("No results found", payload.get(0).getTitle());
+  }
+}
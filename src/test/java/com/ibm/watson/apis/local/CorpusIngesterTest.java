@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for the {@link CorpusIngester}.
+ */
+public class CorpusIngesterTest {
+
+  /** The corpus directory. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final CorpusIngester ingester = new CorpusIngester(2);
+
+  private static String json(String id, String title, String body) {
+    return "{\"id\": \"" + id + "\", \"title\": \"" + title + "\", \"body\": \"<p>" + body + "</p>\"}";
+  }
+
+  private void write(String name, String content) throws IOException {
+    FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), name));
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * A second ingestion should only parse the new and changed documents, drop the removed ones, and leave the previous
+   * snapshot searchable as it was.
+   *
+   * @throws Exception if the corpus cannot be read
+   */
+  @Test
+  public void shouldReindexChangedDocuments() throws Exception {
+    write("tire.json", json("1", "Tire Pressure", "Check the tire pressure monthly."));
+    write("spare.json", json("2", "Spare Tire", "The spare tire is under the vehicle."));
+    write("radio.json", json("3", "Radio", "Press the knob to turn on the radio."));
+    write("notes.txt", "not a document");
+    String location = folder.getRoot().getPath();
+
+    CorpusIngestion first = new CorpusIngestion();
+    CorpusSnapshot previous = ingester.ingest(location, null, first);
+    first.enter(CorpusIngestion.Phase.PUBLISHED);
+    assertEquals(1, previous.getVersion());
+    assertEquals(3, first.getParsed());
+    assertEquals(3, previous.getIndex().size());
+    assertFalse(first.isRunning());
+
+    write("spare.json", json("2", "Spare Wheel", "The spare wheel is in the trunk."));
+    write("cruise.json", json("4", "Cruise Control", "Press the button to set the speed."));
+    assertTrue(new File(folder.getRoot(), "radio.json").delete());
+
+    CorpusIngestion second = new CorpusIngestion();
+    CorpusSnapshot next = ingester.ingest(location, previous, second);
+    assertEquals(2, next.getVersion());
+    assertEquals(3, second.getTotal());
+    assertEquals(2, second.getParsed());
+    assertEquals(1, second.getReused());
+    assertEquals(1, second.getRemoved());
+    assertEquals(3, second.getDocuments());
+    assertSame(previous.getEntry("tire.json").getDocument(), next.getEntry("tire.json").getDocument());
+
+    assertEquals("2", next.getIndex().search("spare wheel trunk", 3).get(0).getDocument().getId());
+    assertTrue(next.getIndex().search("radio", 3).isEmpty());
+    assertEquals("3", previous.getIndex().search("radio", 3).get(0).getDocument().getId());
+    assertTrue(previous.getIndex().search("trunk", 3).isEmpty());
+  }
+
+  /**
+   * Entries of an archive which are not valid documents should be skipped.
+   *
+   * @throws Exception if the archive cannot be read
+   */
+  @Test
+  public void shouldSkipInvalidEntries() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream(bytes);
+    String[][] entries = { { "docs/tire.json", json("1", "Tire Pressure", "Check the tire pressure.") },
+        { "docs/broken.json", "{\"id\": " }, { "docs/untitled.json", "{\"title\": \"No id\"}" },
+        { "__MACOSX/docs/._tire.json", "metadata" } };
+    for (String[] entry : entries) {
+      zip.putNextEntry(new ZipEntry(entry[0]));
+      zip.write(entry[1].getBytes("UTF-8"));
+      zip.closeEntry();
+    }
+    zip.close();
+
+    CorpusIngestion progress = new CorpusIngestion();
+    CorpusSnapshot snapshot = ingester.ingest(new ByteArrayInputStream(bytes.toByteArray()), null, progress);
+    assertEquals(3, progress.getTotal());
+    assertEquals(2, progress.getSkipped());
+    assertEquals(1, snapshot.getDocuments().size());
+    assertEquals("1", snapshot.getDocuments().get(0).getId());
+  }
+
+  /**
+   * Documents whose fields are not strings should be skipped without failing the ingestion.
+   *
+   * @throws Exception if the corpus cannot be read
+   */
+  @Test
+  public void shouldSkipDocumentsWithUnexpectedFields() throws Exception {
+    write("tire.json", json("1", "Tire Pressure", "Check the tire pressure monthly."));
+    write("object.json", "{\"id\": \"2\", \"title\": {\"text\": \"Spare Tire\"}}");
+    write("array.json", "{\"id\": \"3\", \"body\": [\"<p>Radio</p>\", \"<p>Knob</p>\"]}");
+
+    CorpusIngestion progress = new CorpusIngestion();
+    CorpusSnapshot snapshot = ingester.ingest(folder.getRoot().getPath(), null, progress);
+    assertEquals(3, progress.getParsed());
+    assertEquals(2, progress.getSkipped());
+    assertEquals(1, snapshot.getIndex().size());
+  }
+
+  /**
+   * The manual bundled with the application should be readable and searchable.
+   *
+   * @throws Exception if the corpus cannot be read
+   */
+  @Test
+  public void shouldSearchBundledCorpus() throws Exception {
+    LocalIndex index = ingester.ingest((String) null, null, new CorpusIngestion()).getIndex();
+    assertTrue(index.size() > 200);
+    List<LocalIndex.Hit> hits = index.search("tire pressure monitoring", 3);
+    assertEquals(3, hits.size());
+    assertTrue(hits.get(0).getDocument().getText().toLowerCase().contains("tire pressure"));
+  }
+
+  /**
+   * The hash should be the hexadecimal SHA-256 of the content.
+   *
+   * @throws Exception if UTF-8 is not supported
+   */
+  @Test
+  public void shouldHashContent() throws Exception {
+    assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+        CorpusIngester.hash("abc".getBytes("UTF-8")));
+  }
+}
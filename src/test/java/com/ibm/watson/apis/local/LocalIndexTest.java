@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.local;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ibm.watson.apis.payload.DocumentPayload;
+
+/**
+ * Unit tests for the {@link LocalIndex} and the {@link LocalSearchClient}.
+ */
+public class LocalIndexTest {
+
+  private static LocalDocument document(String id, String title, String text) {
+    return new LocalDocument(id, title, "<p>" + text + "</p>", text, "http://example.com/" + id);
+  }
+
+  /**
+   * Documents matching more and rarer question words should rank first, and stopwords should not match.
+   */
+  @Test
+  public void shouldRankByBm25() {
+    LocalIndex index = LocalIndex.build(Arrays.asList(
+        document("1", "Tire Pressure", "Check the tire pressure monthly."),
+        document("2", "Spare Tire", "The spare tire is under the vehicle."),
+        document("3", "Cruise Control", "Press the button to set the speed.")));
+
+    List<LocalIndex.Hit> hits = index.search("How do I check the tire pressure?", 3);
+    assertEquals(2, hits.size());
+    assertEquals("1", hits.get(0).getDocument().getId());
+    assertEquals("2", hits.get(1).getDocument().getId());
+    assertTrue(index.search("how do i do it", 3).isEmpty());
+  }
+
+  /**
+   * The payload should carry the document and a highlighted passage, or Discovery's placeholder when nothing matches.
+   */
+  @Test
+  public void shouldCreateHighlightedPayload() throws Exception {
+    LocalIndex index = LocalIndex.build(
+        Arrays.asList(document("1", "Tire Pressure", "Check the tire pressure monthly.")));
+    LocalSearchClient client = new LocalSearchClient();
+
+    List<DocumentPayload> payload = client.createPayload("tire pressure", index.search("tire pressure", 3));
+    assertEquals("1", payload.get(0).getId());
+    assertEquals("1.0", payload.get(0).getConfidence());
+    assertEquals("Check the <em>tire</em> <em>pressure</em> monthly.", payload.get(0).getHighlight());
+
+    List<DocumentPayload> empty = client.createPayload("radio", index.search("radio", 3));
+    assertEquals(1, empty.size());
+    assertNull(empty.get(0).getId());
+    assertEquals("No results found", empty.get(0).getTitle());
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link Stage} and the {@link PrometheusWriter}.
+ */
+public class PrometheusWriterTest {
+
+  /**
+   * Each sample should land in the bucket of its latency.
+   */
+  @Test
+  public void shouldCountInBuckets() {
+    Stage stage = new Stage("test");
+    long now = System.nanoTime();
+    stage.record(now);
+    stage.recordError(now - 30000000000L);
+    stage.record(now - 120000000000L);
+
+    long[] counts = stage.getBucketCounts();
+    assertEquals(Stage.getBoundsMicros().length + 1, counts.length);
+    assertEquals(1, counts[0]);
+    assertEquals(1, counts[counts.length - 2]);
+    assertEquals(1, counts[counts.length - 1]);
+    assertEquals(1, stage.getErrors());
+    assertTrue(stage.getSumNanos() >= 150000000000L);
+  }
+
+  /**
+   * The histograms should have cumulative buckets, a count equal to the last bucket, and an error counter.
+   */
+  @Test
+  public void shouldWriteHistograms() {
+    Stage parse = new Stage("parse");
+    long now = System.nanoTime();
+    parse.record(now);
+    parse.recordError(now - 2000000000L);
+
+    String page = new PrometheusWriter()
+        .histograms("chatbot_stage", "stage", "Latency", "Errors", Arrays.asList(parse)).toString();
+
+    assertTrue(page.contains("# TYPE chatbot_stage_duration_seconds histogram\n"));
+    assertTrue(page.contains("chatbot_stage_duration_seconds_bucket{stage=\"parse\",le=\"0.0001\"} 1\n"));
+    assertTrue(page.contains("chatbot_stage_duration_seconds_bucket{stage=\"parse\",le=\"2.5\"} 2\n"));
+    assertTrue(page.contains("chatbot_stage_duration_seconds_bucket{stage=\"parse\",le=\"+Inf\"} 2\n"));
+    assertTrue(page.contains("chatbot_stage_duration_seconds_count{stage=\"parse\"} 2\n"));
+    assertTrue(page.contains("# TYPE chatbot_stage_errors_total counter\n"));
+    assertTrue(page.contains("chatbot_stage_errors_total{stage=\"parse\"} 1\n"));
+  }
+
+  /**
+   * Label values should be escaped.
+   */
+  @Test
+  public void shouldEscapeLabels() {
+    String page = new PrometheusWriter().sample("m", 1.5, "a", "x\"y", "b", "z").toString();
+    assertEquals("m{a=\"x\\\"y\",b=\"z\"} 1.5\n", page);
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Unit tests for the {@link Recording}.
+ */
+public class RecordingTest {
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    Recording.shutdown();
+  }
+
+  /**
+   * Events should only be kept while recording.
+   */
+  @Test
+  public void shouldRecordOnlyWhileActive() {
+    Recording.start(10, 60, false);
+    Recording.commit(RecordingEvent.Type.CALL, System.nanoTime(), "dependency", "DISCOVERY", "outcome", "ok");
+    Recording.stop();
+    Recording.commit(RecordingEvent.Type.CALL, System.nanoTime(), "dependency", "RNR", "outcome", "ok");
+
+    assertFalse(Recording.isActive());
+    List<RecordingEvent> events = Recording.getEvents();
+    assertEquals(1, events.size());
+    assertEquals("DISCOVERY", events.get(0).getField("dependency"));
+  }
+
+  /**
+   * A full recording should drop its oldest events.
+   */
+  @Test
+  public void shouldDropOldestEvents() {
+    Recording.start(2, 60, false);
+    for (int i = 0; i < 5; i++) {
+      Recording.commit(RecordingEvent.Type.MAPPING, System.nanoTime(), "documents", i);
+    }
+
+    List<RecordingEvent> events = Recording.getEvents();
+    assertEquals(2, events.size());
+    assertEquals(3, events.get(0).getField("documents"));
+    assertEquals(3, Recording.getDropped());
+  }
+
+  /**
+   * A recording should stop accepting events after its time.
+   */
+  @Test
+  public void shouldExpire() {
+    Recording.start(10, 0, false);
+    Recording.commit(RecordingEvent.Type.TURN, System.nanoTime(), "workspace", "id");
+
+    assertFalse(Recording.isActive());
+    assertEquals(0, Recording.getEventCount());
+  }
+
+  /**
+   * The dump should hold one JSON object per event.
+   *
+   * @throws Exception if the dump cannot be written or read
+   */
+  @Test
+  public void shouldDumpJsonLines() throws Exception {
+    Recording.start(10, 60, false);
+    Recording.commit(RecordingEvent.Type.TURN, System.nanoTime() - 2000000, "workspace", "id", "documents", 3,
+        "error", null);
+
+    File directory = new File(System.getProperty("java.io.tmpdir"), "recording-test-" + System.nanoTime());
+    List<File> files = Recording.dump(directory);
+    assertEquals(1, files.size());
+
+    List<String> lines = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(files.get(0)), "UTF-8"));
+    try {
+      for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+        lines.add(line);
+      }
+    } finally {
+      reader.close();
+      files.get(0).delete();
+      directory.delete();
+    }
+
+    assertEquals(1, lines.size());
+    JsonObject event = new JsonParser().parse(lines.get(0)).getAsJsonObject();
+    assertEquals("turn", event.get("type").getAsString());
+    assertEquals("id", event.get("workspace").getAsString());
+    assertEquals(3, event.get("documents").getAsInt());
+    assertFalse(event.has("error"));
+    assertTrue(event.get("durationMs").getAsDouble() >= 2);
+  }
+
+  /**
+   * The JVM flight recording should still be written after the recording is stopped.
+   *
+   * @throws Exception if the dump cannot be written
+   */
+  @Test
+  public void shouldDumpJvmRecordingAfterStop() throws Exception {
+    Recording.start(10, 60, true);
+    Assume.assumeTrue(Recording.isJvmRecording());
+    Recording.stop();
+    assertFalse(Recording.isJvmRecording());
+
+    File directory = new File(System.getProperty("java.io.tmpdir"), "recording-test-" + System.nanoTime());
+    List<File> files = Recording.dump(directory);
+    try {
+      assertEquals(2, files.size());
+      assertTrue(files.get(1).getName().endsWith(".jfr"));
+      assertTrue(files.get(1).length() > 0);
+    } finally {
+      for (File file : files) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  /**
+   * The JVM flight recording should end with the time of the recording, and its temporary file should be deleted
+   * when the application stops.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldEndJvmRecordingWithItsTime() throws Exception {
+    Recording.start(10, 1, true);
+    Assume.assumeTrue(Recording.isJvmRecording());
+    File file = Recording.getJvmRecordingFile();
+    assertTrue(file.exists());
+
+    Thread.sleep(1100);
+    assertFalse(Recording.isJvmRecording());
+    Recording.shutdown();
+    assertFalse(file.exists());
+  }
+}
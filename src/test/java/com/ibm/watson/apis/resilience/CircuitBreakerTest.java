@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ibm.watson.apis.resilience.CircuitBreaker.State;
+
+/**
+ * Unit tests for the {@link CircuitBreaker}.
+ */
+public class CircuitBreakerTest {
+
+  private static void record(CircuitBreaker breaker, int calls, long millis, boolean failure) {
+    for (int i = 0; i < calls; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onResult(millis, failure);
+    }
+  }
+
+  /**
+   * The breaker should open once enough calls failed, and not before the minimum number of calls.
+   */
+  @Test
+  public void shouldOpenOnFailureRate() {
+    CircuitBreaker breaker = new CircuitBreaker("TEST", 10, 4, 50, 1000, 100, 60000, 2);
+    record(breaker, 3, 10, true);
+    assertEquals(State.CLOSED, breaker.getState());
+
+    record(breaker, 1, 10, false);
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(1, breaker.getNotPermitted());
+    assertEquals(1, breaker.getTransitions(State.OPEN));
+  }
+
+  /**
+   * The breaker should open when too many calls are slow, even if they succeed.
+   */
+  @Test
+  public void shouldOpenOnSlowCalls() {
+    CircuitBreaker breaker = new CircuitBreaker("TEST", 10, 4, 50, 100, 75, 60000, 2);
+    record(breaker, 1, 10, false);
+    record(breaker, 2, 500, false);
+    assertEquals(State.CLOSED, breaker.getState());
+
+    record(breaker, 1, 500, false);
+    assertEquals(State.OPEN, breaker.getState());
+  }
+
+  /**
+   * Cancelled calls should only count once they ran longer than a slow call.
+   */
+  @Test
+  public void shouldCountSlowCancelledCalls() {
+    CircuitBreaker breaker = new CircuitBreaker("TEST", 10, 4, 50, 100, 75, 60000, 2);
+    for (int i = 0; i < 10; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onCancelled(10);
+    }
+    assertEquals(State.CLOSED, breaker.getState());
+
+    for (int i = 0; i < 4; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onCancelled(500);
+    }
+    assertEquals(State.OPEN, breaker.getState());
+  }
+
+  /**
+   * Only the calls of the window should count.
+   */
+  @Test
+  public void shouldForgetOldCalls() {
+    CircuitBreaker breaker = new CircuitBreaker("TEST", 4, 4, 50, 1000, 100, 60000, 2);
+    record(breaker, 1, 10, true);
+    record(breaker, 2, 10, false);
+    record(breaker, 4, 10, false);
+    record(breaker, 1, 10, true);
+    assertEquals(State.CLOSED, breaker.getState());
+    assertEquals(25.0, breaker.getFailureRate(), 0.01);
+  }
+
+  /**
+   * After the open time, trial calls should close the breaker when they succeed and open it again when one fails.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldTryAgainAfterOpenTime() throws Exception {
+    CircuitBreaker breaker = new CircuitBreaker("TEST", 4, 2, 50, 1000, 100, 50, 2);
+    record(breaker, 2, 10, true);
+    assertEquals(State.OPEN, breaker.getState());
+    Thread.sleep(100);
+
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+    assertFalse(breaker.tryAcquire());
+    breaker.onResult(10, true);
+    assertEquals(State.OPEN, breaker.getState());
+    Thread.sleep(100);
+
+    record(breaker, 2, 10, false);
+    assertEquals(State.CLOSED, breaker.getState());
+    assertEquals(2, breaker.getTransitions(State.OPEN));
+    assertEquals(2, breaker.getTransitions(State.HALF_OPEN));
+    assertEquals(1, breaker.getTransitions(State.CLOSED));
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.ibm.watson.apis.resilience.CircuitBreaker.State;
+import com.ibm.watson.developer_cloud.service.exception.BadRequestException;
+
+/**
+ * Unit tests for the {@link Dependency}.
+ */
+public class DependencyTest {
+
+  private static Dependency createDependency(int maxConcurrent) {
+    return new Dependency("TEST", new CircuitBreaker("TEST", 4, 2, 50, 1000, 100, 60000, 1),
+        new Bulkhead(maxConcurrent, 0));
+  }
+
+  private static Callable<String> failing(final Exception e) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        throw e;
+      }
+    };
+  }
+
+  private static void assertUnavailable(Dependency dependency) throws Exception {
+    try {
+      dependency.call(failing(new IOException("not called")));
+      fail();
+    } catch (DependencyUnavailableException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Calls should fail at once while the bulkhead is full, and the slot should be free again after the release.
+   *
+   * @throws Exception if the call fails
+   */
+  @Test
+  public void shouldRejectWhenBulkheadIsFull() throws Exception {
+    Dependency dependency = createDependency(1);
+    long start = dependency.acquire();
+    assertUnavailable(dependency);
+    assertEquals(1, dependency.getBulkhead().getRejected());
+
+    dependency.release(start, null);
+    assertEquals("ok", dependency.call(new Callable<String>() {
+      @Override
+      public String call() {
+        return "ok";
+      }
+    }));
+    assertEquals(1, dependency.getBulkhead().getAvailable());
+  }
+
+  /**
+   * Calls should fail at once while the breaker is open, without holding a bulkhead slot.
+   *
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void shouldRejectWhenBreakerIsOpen() throws Exception {
+    Dependency dependency = createDependency(5);
+    for (int i = 0; i < 2; i++) {
+      try {
+        dependency.call(failing(new IOException("down")));
+        fail();
+      } catch (IOException e) {
+        // expected
+      }
+    }
+    assertEquals(State.OPEN, dependency.getCircuitBreaker().getState());
+    assertUnavailable(dependency);
+    assertEquals(5, dependency.getBulkhead().getAvailable());
+  }
+
+  private static void callUntilFailed(Dependency dependency, Callable<String> call, int times) throws Exception {
+    for (int i = 0; i < times; i++) {
+      try {
+        dependency.call(call);
+        fail();
+      } catch (RuntimeException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Calls cancelled by their caller should not open the breaker, whatever the HTTP client made of the abort, and
+   * the abort they registered should be run.
+   *
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void shouldNotCountCancelledCalls() throws Exception {
+    final Dependency dependency = createDependency(5);
+    final AtomicBoolean aborted = new AtomicBoolean();
+    for (int i = 0; i < 4; i++) {
+      final Cancellation cancellation = new Cancellation();
+      try {
+        cancellation.wrap(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return dependency.call(new Callable<String>() {
+              @Override
+              public String call() throws Exception {
+                Cancellation.onCancel(new Runnable() {
+                  @Override
+                  public void run() {
+                    aborted.set(true);
+                  }
+                });
+                cancellation.cancel();
+                throw new RuntimeException(new IOException("Canceled"));
+              }
+            });
+          }
+        }).call();
+        fail();
+      } catch (RuntimeException e) {
+        // expected
+      }
+    }
+    assertTrue(aborted.get());
+
+    // the interrupt flag is cleared by the HTTP client, which wraps the interruption
+    callUntilFailed(dependency, failing(new RuntimeException(new InterruptedIOException("thread interrupted"))), 4);
+    assertEquals(State.CLOSED, dependency.getCircuitBreaker().getState());
+  }
+
+  /**
+   * Timeouts should open the breaker, although they are interruptions to Java.
+   *
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void shouldCountTimeouts() throws Exception {
+    Dependency dependency = createDependency(5);
+    callUntilFailed(dependency, failing(new RuntimeException(new SocketTimeoutException("Read timed out"))), 2);
+    assertEquals(State.OPEN, dependency.getCircuitBreaker().getState());
+
+    dependency = createDependency(5);
+    callUntilFailed(dependency, failing(new RuntimeException(new InterruptedIOException("deadline reached"))), 2);
+    assertEquals(State.OPEN, dependency.getCircuitBreaker().getState());
+  }
+
+  /**
+   * Client errors of the Watson services should not open the breaker.
+   *
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void shouldNotCountClientErrors() throws Exception {
+    Dependency dependency = createDependency(5);
+    for (int i = 0; i < 4; i++) {
+      try {
+        dependency.call(failing(new BadRequestException("bad input", null)));
+        fail();
+      } catch (BadRequestException e) {
+        // expected
+      }
+    }
+    assertEquals(State.CLOSED, dependency.getCircuitBreaker().getState());
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.resilience;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link RequestHedger}.
+ */
+public class RequestHedgerTest {
+
+  private final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+  private final AtomicInteger attempts = new AtomicInteger();
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private RequestHedger createHedger(int budgetPercent) {
+    RequestHedger hedger = new RequestHedger("TEST", true, 95, 10, budgetPercent, 5, executor);
+    for (int i = 0; i < 20; i++) {
+      hedger.getLatencies().record(i < 19 ? 5 : 300);
+    }
+    return hedger;
+  }
+
+  /**
+   * A request whose first attempt is slow and whose second is fast.
+   */
+  private Callable<String> slowFirst(final long firstMillis, final boolean firstFails) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        if (attempts.incrementAndGet() == 1) {
+          Thread.sleep(firstMillis);
+          if (firstFails) {
+            throw new IOException("first failed");
+          }
+          return "first";
+        }
+        return "hedge";
+      }
+    };
+  }
+
+  /**
+   * The delay should follow the percentile of the recorded latencies.
+   */
+  @Test
+  public void shouldUsePercentileAsDelay() {
+    RequestHedger hedger = createHedger(100);
+    assertEquals(10, hedger.getDelayMillis());
+
+    for (int i = 0; i < 20; i++) {
+      hedger.getLatencies().record(300);
+    }
+    assertTrue(hedger.getDelayMillis() >= 300);
+  }
+
+  /**
+   * A slow request should be answered by its hedge.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void shouldTakeFasterHedge() throws Exception {
+    RequestHedger hedger = createHedger(100);
+    long start = System.currentTimeMillis();
+
+    assertEquals("hedge", hedger.call(slowFirst(5000, false)));
+    assertTrue(System.currentTimeMillis() - start < 2000);
+    assertEquals(1, hedger.getStats().getHedges());
+    assertEquals(1, hedger.getStats().getWins());
+    assertEquals(100.0, hedger.getStats().getHedgeRate(), 0.01);
+  }
+
+  /**
+   * When the first request fails after the hedge was sent, the hedge should answer.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void shouldFallBackToHedgeOnFailure() throws Exception {
+    RequestHedger hedger = createHedger(100);
+    final AtomicInteger calls = new AtomicInteger();
+    assertEquals("hedge", hedger.call(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        if (calls.incrementAndGet() == 1) {
+          Thread.sleep(100);
+          throw new IOException("first failed");
+        }
+        Thread.sleep(300);
+        return "hedge";
+      }
+    }));
+    assertEquals(1, hedger.getStats().getWins());
+  }
+
+  /**
+   * Without budget no hedge should be sent.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void shouldRespectBudget() throws Exception {
+    RequestHedger hedger = createHedger(0);
+
+    assertEquals("first", hedger.call(slowFirst(100, false)));
+    assertEquals(1, attempts.get());
+    assertEquals(0, hedger.getStats().getHedges());
+    assertEquals(1, hedger.getStats().getDenied());
+  }
+
+  /**
+   * A failure of the only request should be reported as is.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test(expected = IOException.class)
+  public void shouldReportFailure() throws Exception {
+    createHedger(0).call(slowFirst(0, true));
+  }
+
+  /**
+   * The requests which failed or lost should count in the latencies with the time they ran.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldRecordLatencyOfLosersAndFailures() throws Exception {
+    RequestHedger hedger = createHedger(100);
+    assertEquals("hedge", hedger.call(slowFirst(5000, false)));
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((hedger.getLatencies().getCount() < 22) && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    assertEquals(22, hedger.getLatencies().getCount());
+
+    hedger = createHedger(0);
+    attempts.set(0);
+    try {
+      hedger.call(slowFirst(0, true));
+      fail();
+    } catch (IOException e) {
+      // expected
+    }
+    assertEquals(21, hedger.getLatencies().getCount());
+  }
+
+  /**
+   * The request which lost should be aborted through the hook it registered, freeing its thread.
+   *
+   * @throws Exception if the request fails
+   */
+  @Test
+  public void shouldAbortLosingRequest() throws Exception {
+    RequestHedger hedger = createHedger(100);
+    final CountDownLatch aborted = new CountDownLatch(1);
+
+    assertEquals("hedge", hedger.call(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        if (attempts.incrementAndGet() == 1) {
+          Cancellation.onCancel(new Runnable() {
+            @Override
+            public void run() {
+              aborted.countDown();
+            }
+          });
+          // stands for a blocking HTTP call, which ignores interrupts
+          boolean done = false;
+          while (!done) {
+            try {
+              done = aborted.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              // ignored, like a socket read does
+            }
+          }
+          throw new IOException("aborted");
+        }
+        return "hedge";
+      }
+    }));
+    assertTrue(aborted.await(1, TimeUnit.SECONDS));
+  }
+}
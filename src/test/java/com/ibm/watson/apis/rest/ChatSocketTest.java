@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.websocket.CloseReason;
+import javax.websocket.CloseReason.CloseCodes;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ChatSocket}.
+ */
+public class ChatSocketTest {
+
+  /**
+   * Connections over the limit should be closed with "try again later".
+   */
+  @Test
+  public void shouldRefuseConnectionsOverTheLimit() {
+    int open = ChatSocket.getConnections();
+    FakeSession first = new FakeSession(new ChatSocket(open + 1, 1000, 4, 1024));
+    FakeSession second = new FakeSession(new ChatSocket(open + 1, 1000, 4, 1024));
+
+    assertNull(first.closeReason);
+    assertEquals(CloseCodes.TRY_AGAIN_LATER, second.closeReason.getCloseCode());
+    assertEquals(open + 1, ChatSocket.getConnections());
+    first.socket.onClose(first.session, new CloseReason(CloseCodes.NORMAL_CLOSURE, null));
+    assertEquals(open, ChatSocket.getConnections());
+  }
+
+  /**
+   * A message which cannot be read should be answered with an error event and end its turn.
+   */
+  @Test
+  public void shouldAnswerInvalidMessages() {
+    FakeSession client = new FakeSession(new ChatSocket(Integer.MAX_VALUE, 1000, 4, 1024));
+    client.socket.onMessage("not a message");
+    assertTrue(client.sent.get(0).startsWith("{\"event\":\"error\",\"data\":{\"error\":"));
+    client.acknowledge();
+
+    assertEquals("{\"event\":\"done\",\"data\":{}}", client.sent.get(1));
+    assertNull(client.closeReason);
+    client.close();
+  }
+
+  /**
+   * Events should be sent one frame at a time, the next one once the previous one was sent.
+   */
+  @Test
+  public void shouldSendOneFrameAtATime() {
+    FakeSession client = new FakeSession(new ChatSocket(Integer.MAX_VALUE, 1000, 4, 1024));
+    assertTrue(client.socket.send("message", new byte[] { '1' }));
+    assertTrue(client.socket.send("message", new byte[] { '2' }));
+    assertEquals(1, client.sent.size());
+
+    client.acknowledge();
+    assertEquals(2, client.sent.size());
+    assertEquals("{\"event\":\"message\",\"data\":2}", client.sent.get(1));
+    client.close();
+  }
+
+  /**
+   * A client which does not read its events should be closed once too many wait to be sent.
+   */
+  @Test
+  public void shouldCloseSlowClients() {
+    long slow = ChatSocket.getSlow();
+    FakeSession client = new FakeSession(new ChatSocket(Integer.MAX_VALUE, 1000, 4, 64));
+    assertTrue(client.socket.send("message", new byte[30]));
+    assertFalse(client.socket.send("message", new byte[30]));
+
+    assertEquals(CloseCodes.TRY_AGAIN_LATER, client.closeReason.getCloseCode());
+    assertEquals(slow + 1, ChatSocket.getSlow());
+    assertFalse(client.socket.send("message", new byte[] { '1' }));
+  }
+
+  /**
+   * A WebSocket session whose frames are only sent when the test says so.
+   */
+  private static class FakeSession implements InvocationHandler {
+    private final ChatSocket socket;
+    private final Session session;
+    private final List<String> sent = new ArrayList<String>();
+    private final List<SendHandler> handlers = new ArrayList<SendHandler>();
+    private CloseReason closeReason;
+
+    FakeSession(ChatSocket socket) {
+      this.socket = socket;
+      this.session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Session.class },
+          this);
+      socket.onOpen(session, null, "workspace");
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+      if ("getAsyncRemote".equals(method.getName())) {
+        return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RemoteEndpoint.Async.class },
+            new InvocationHandler() {
+              @Override
+              public Object invoke(Object proxy, Method method, Object[] args) {
+                sent.add((String) args[0]);
+                handlers.add((SendHandler) args[1]);
+                return null;
+              }
+            });
+      }
+      if ("close".equals(method.getName()) && (closeReason == null)) {
+        closeReason = (CloseReason) args[0];
+        socket.onClose(session, closeReason);
+      }
+      return null;
+    }
+
+    void acknowledge() {
+      handlers.get(handlers.size() - 1).onResult(new SendResult());
+    }
+
+    void close() {
+      socket.onClose(session, new CloseReason(CloseCodes.NORMAL_CLOSURE, null));
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletResponse;
+import javax.servlet.WriteListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link EventStream}.
+ */
+public class EventStreamTest {
+
+  private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+  private boolean ready = true;
+  private boolean completed;
+  private EventStream stream;
+
+  /**
+   * Set up a suspended request whose output is ready when the test says so.
+   *
+   * @throws Exception if the stream cannot be opened
+   */
+  @Before
+  public void setUp() throws Exception {
+    final ServletOutputStream output = new ServletOutputStream() {
+      @Override
+      public void write(int b) {
+        written.write(b);
+      }
+
+      @Override
+      public boolean isReady() {
+        return ready;
+      }
+
+      @Override
+      public void setWriteListener(WriteListener listener) {
+      }
+    };
+    final ServletResponse response = (ServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { ServletResponse.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            return "getOutputStream".equals(method.getName()) ? output : null;
+          }
+        });
+    AsyncContext asyncContext = (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { AsyncContext.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if ("complete".equals(method.getName())) {
+              completed = true;
+            }
+            return "getResponse".equals(method.getName()) ? response : null;
+          }
+        });
+    stream = new EventStream(asyncContext);
+  }
+
+  /**
+   * Events should be framed as Server-Sent Events and the request completed once the stream is closed.
+   *
+   * @throws Exception if the output cannot be read
+   */
+  @Test
+  public void shouldWriteEvents() throws Exception {
+    assertTrue(stream.send("message", "{\"a\":1}".getBytes("UTF-8")));
+    stream.send("done", "{}".getBytes("UTF-8"));
+    stream.close();
+
+    assertEquals("event: message\ndata: {\"a\":1}\n\nevent: done\ndata: {}\n\n", written.toString("UTF-8"));
+    assertTrue(completed);
+    assertFalse(stream.send("late", "{}".getBytes("UTF-8")));
+  }
+
+  /**
+   * Events sent while the output is not ready should be written when the container says it is.
+   *
+   * @throws Exception if the output cannot be read
+   */
+  @Test
+  public void shouldWaitUntilWritePossible() throws Exception {
+    ready = false;
+    stream.send("message", "{}".getBytes("UTF-8"));
+    stream.close();
+    assertEquals(0, written.size());
+    assertFalse(completed);
+
+    ready = true;
+    stream.onWritePossible();
+    assertEquals("event: message\ndata: {}\n\n", written.toString("UTF-8"));
+    assertTrue(completed);
+  }
+
+  /**
+   * A client which went away should end the stream.
+   */
+  @Test
+  public void shouldCompleteOnError() {
+    ready = false;
+    stream.send("message", new byte[] { '{', '}' });
+    stream.onError(new IOException("reset"));
+
+    assertTrue(completed);
+    assertTrue(stream.isClosed());
+    ready = true;
+    stream.onWritePossible();
+    assertEquals(0, written.size());
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.ibm.watson.apis.payload.DocumentPayload;
+import com.ibm.watson.developer_cloud.conversation.v1.model.Entity;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Unit tests for the {@link JsonStreamingOutput}.
+ */
+public class JsonStreamingOutputTest {
+
+  private static MessageResponse loadResponse() throws Exception {
+    Reader reader = new InputStreamReader(new FileInputStream("src/test/resources/conversation.json"), "UTF-8");
+    try {
+      MessageResponse response = new Gson().fromJson(reader, MessageResponse.class);
+      List<Entity> entities = new ArrayList<Entity>();
+      entities.add(new Entity("appliance", "lights", new Integer[] { 12, 18 }));
+      response.setEntities(entities);
+
+      List<Object> payload = new ArrayList<Object>();
+      DocumentPayload discovery = new DocumentPayload();
+      discovery.setId("1");
+      discovery.setTitle("Tire <Pressure> & Care");
+      discovery.setBody("<p>Check the tire pressure monthly.</p>");
+      discovery.setConfidence("0.9");
+      payload.add(discovery);
+      com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload rnr =
+          new com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload();
+      rnr.setId("2");
+      rnr.setTitle("Spare Tire");
+      rnr.setHighlight("The <em>spare</em> tire");
+      payload.add(rnr);
+      response.getOutput().put("CEPayload", payload);
+      return response;
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static byte[] write(Object value, Type type, boolean gzip) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new JsonStreamingOutput(value, type, gzip).write(out);
+    return out.toByteArray();
+  }
+
+  /**
+   * The streamed JSON should be exactly what the reflective Gson produced for the response and the error map.
+   *
+   * @throws Exception if the fixture cannot be read
+   */
+  @Test
+  public void shouldMatchReflectiveGson() throws Exception {
+    MessageResponse response = loadResponse();
+    assertEquals(new Gson().toJson(response, MessageResponse.class),
+        new String(write(response, MessageResponse.class, false), "UTF-8"));
+
+    Map<String, Object> error = new HashMap<String, Object>();
+    error.put("error", "The request took too long. Please try again.");
+    assertEquals(new Gson().toJson(error, HashMap.class), new String(write(error, Map.class, false), "UTF-8"));
+  }
+
+  /**
+   * The compressed JSON should decompress to the uncompressed JSON.
+   *
+   * @throws Exception if the fixture cannot be read
+   */
+  @Test
+  public void shouldCompress() throws Exception {
+    MessageResponse response = loadResponse();
+    byte[] compressed = write(response, MessageResponse.class, true);
+    byte[] json = IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed)));
+    assertEquals(new String(write(response, MessageResponse.class, false), "UTF-8"), new String(json, "UTF-8"));
+  }
+}
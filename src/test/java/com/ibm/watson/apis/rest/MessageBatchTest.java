@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageResponse;
+
+/**
+ * Unit tests for the {@link MessageBatch}.
+ */
+public class MessageBatchTest {
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Each NDJSON item should be answered with a line carrying its index, id and workspace.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test
+  public void shouldAnswerNdjsonItems() throws Exception {
+    List<JsonObject> lines = run("{\"id\": \"a\", \"workspaceId\": \"w1\", \"input\": {\"text\": \"hello\"}}\n"
+        + "{\"id\": \"b\", \"workspaceId\": \"w2\", \"input\": {\"text\": \"tire pressure\"}}\n", null, 2, 100);
+
+    assertEquals(2, lines.size());
+    Set<String> answers = new HashSet<String>();
+    for (JsonObject line : lines) {
+      String id = line.get("id").getAsString();
+      assertEquals("a".equals(id) ? 0 : 1, line.get("index").getAsInt());
+      answers.add(id + " " + line.get("workspaceId").getAsString() + " "
+          + line.getAsJsonObject("response").getAsJsonObject("output").get("workspace").getAsString());
+    }
+    assertEquals(new HashSet<String>(Arrays.asList("a w1 w1", "b w2 w2")), answers);
+  }
+
+  /**
+   * Items of a JSON array without a workspace should use the default one, or fail alone if there is none.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test
+  public void shouldUseDefaultWorkspace() throws Exception {
+    List<JsonObject> lines = run("[{\"input\": {\"text\": \"hello\"}}]", "w0", 2, 100);
+    assertEquals("w0", lines.get(0).getAsJsonObject("response").getAsJsonObject("output").get("workspace")
+        .getAsString());
+
+    lines = run("[{\"input\": {\"text\": \"hello\"}}, {\"workspaceId\": \"w1\", \"input\": {}}]", null, 2, 100);
+    assertEquals(2, lines.size());
+    for (JsonObject line : lines) {
+      assertEquals(line.get("index").getAsInt() == 0, line.has("error"));
+    }
+  }
+
+  /**
+   * No more than the configured number of items of a batch should be in progress at a time.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test
+  public void shouldBoundParallelism() throws Exception {
+    StringBuilder items = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      items.append("{\"workspaceId\": \"w\", \"input\": {\"text\": \"q").append(i).append("\"}}\n");
+    }
+    List<JsonObject> lines = run(items.toString(), null, 2, 100);
+
+    assertEquals(20, lines.size());
+    assertTrue(maxRunning.get() <= 2);
+  }
+
+  /**
+   * A stream which cannot be read or which has too many items should end with an error line.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test
+  public void shouldReportBadStreams() throws Exception {
+    List<JsonObject> lines = run("{\"workspaceId\": \"w\", \"input\": {}}\n{\"workspaceId\": ", null, 2, 100);
+    assertEquals(2, lines.size());
+    assertFalse(lines.get(0).has("error"));
+    assertTrue(lines.get(1).get("error").getAsString().endsWith(" 1"));
+
+    lines = run("[{\"workspaceId\": \"w\"}, {\"workspaceId\": \"w\"}, {\"workspaceId\": \"w\"}]", null, 2, 2);
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(2).get("error").getAsString().endsWith(" 2"));
+  }
+
+  /**
+   * An item whose response cannot be written should get an error line instead of leaving the batch waiting for it.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test(timeout = 5000)
+  public void shouldReportUnwritableResponses() throws Exception {
+    MessageBatch batch = new MessageBatch(new ByteArrayInputStream(
+        "{\"workspaceId\": \"w\", \"id\": \"a\"}".getBytes("UTF-8")), null, executor, 2, 100, 0, 20) {
+      @Override
+      MessageResponse answer(String workspace, byte[] item) throws Exception {
+        MessageResponse response = new MessageResponse();
+        response.setOutput(Collections.<String, Object>singletonMap("score", Double.NaN));
+        return response;
+      }
+    };
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    batch.write(output);
+    JsonObject line = new JsonParser().parse(output.toString("UTF-8").trim()).getAsJsonObject();
+    assertEquals(0, line.get("index").getAsInt());
+    assertEquals("a", line.get("id").getAsString());
+    assertTrue(line.has("error"));
+    assertFalse(line.has("response"));
+  }
+
+  /**
+   * Items should wait while too many chat requests are in progress.
+   *
+   * @throws Exception if the batch fails
+   */
+  @Test
+  public void shouldHoldBackForChatRequests() throws Exception {
+    final MessageBatch batch = newBatch("{\"workspaceId\": \"w\", \"input\": {}}", null, 2, 100, 1);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Metrics.getActiveRequests().incrementAndGet();
+    Thread thread;
+    try {
+      thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            batch.write(output);
+          } catch (Exception e) {
+            throw new IllegalStateException(e);
+          }
+        }
+      };
+      thread.start();
+      Thread.sleep(200);
+      assertEquals(0, output.size());
+    } finally {
+      Metrics.getActiveRequests().decrementAndGet();
+    }
+    thread.join(5000);
+    assertTrue(output.toString("UTF-8").contains("\"response\""));
+  }
+
+  private List<JsonObject> run(String items, String workspaceId, int maxParallel, int maxItems) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    newBatch(items, workspaceId, maxParallel, maxItems, 0).write(output);
+    List<JsonObject> lines = new ArrayList<JsonObject>();
+    for (String line : output.toString("UTF-8").split("\n")) {
+      lines.add(new JsonParser().parse(line).getAsJsonObject());
+    }
+    Collections.sort(lines, new Comparator<JsonObject>() {
+      @Override
+      public int compare(JsonObject a, JsonObject b) {
+        return index(a) - index(b);
+      }
+
+      private int index(JsonObject line) {
+        return line.has("index") ? line.get("index").getAsInt() : Integer.MAX_VALUE;
+      }
+    });
+    return lines;
+  }
+
+  private MessageBatch newBatch(String items, String workspaceId, int maxParallel, int maxItems, int yield)
+      throws Exception {
+    return new MessageBatch(new ByteArrayInputStream(items.getBytes("UTF-8")), workspaceId, executor, maxParallel,
+        maxItems, yield, 20) {
+      @Override
+      MessageResponse answer(String workspace, byte[] item) throws Exception {
+        int now = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), now));
+        }
+        try {
+          Thread.sleep(10);
+          MessageResponse response = new MessageResponse();
+          Map<String, Object> output = new HashMap<String, Object>();
+          output.put("workspace", workspace);
+          response.setOutput(output);
+          return response;
+        } finally {
+          running.decrementAndGet();
+        }
+      }
+    };
+  }
+}
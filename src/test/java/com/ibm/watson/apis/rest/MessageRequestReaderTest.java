@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.conversation.v1.model.MessageRequest;
+
+/**
+ * Unit tests for the {@link MessageRequestReader}.
+ */
+public class MessageRequestReaderTest {
+
+  private static MessageRequest read(MessageRequestReader reader, String json) throws Exception {
+    return reader.read(new ByteArrayInputStream(json.getBytes("UTF-8")));
+  }
+
+  private static void assertRejected(MessageRequestReader reader, String json, int status) throws Exception {
+    try {
+      read(reader, json);
+      fail("Expected the request to be rejected");
+    } catch (InvalidRequestException e) {
+      assertEquals(status, e.getStatus());
+    }
+  }
+
+  /**
+   * The input, the nested context and the other fields should be read the way Gson reads them.
+   *
+   * @throws Exception if the body cannot be read
+   */
+  @Test
+  public void shouldReadMessageRequest() throws Exception {
+    MessageRequest request = read(new MessageRequestReader(1024, 1024),
+        "{\"input\":{\"text\":\"turn on the lights\"},\"alternate_intents\":true,\"unknown\":[1,2],"
+            + "\"intents\":[{\"intent\":\"turn_on\",\"confidence\":0.9}],"
+            + "\"context\":{\"conversation_id\":\"abc\",\"default_counter\":2,\"reprompt\":null,"
+            + "\"system\":{\"dialog_stack\":[{\"dialog_node\":\"root\"}],\"dialog_turn_counter\":3}}}");
+
+    assertEquals("turn on the lights", request.inputText());
+    assertEquals(Boolean.TRUE, request.alternateIntents());
+    assertEquals("turn_on", request.intents().get(0).getIntent());
+    assertEquals("abc", request.context().get("conversation_id"));
+    assertEquals(2.0, request.context().get("default_counter"));
+    assertEquals(3.0, ((Map<?, ?>) request.context().get("system")).get("dialog_turn_counter"));
+  }
+
+  /**
+   * A body or a context over its limit should be rejected with 413.
+   *
+   * @throws Exception if the body cannot be read
+   */
+  @Test
+  public void shouldRejectLargeRequests() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("word ");
+    }
+    assertRejected(new MessageRequestReader(100, 1024), "{\"input\":{\"text\":\"" + text + "\"}}", 413);
+    assertRejected(new MessageRequestReader(4096, 100), "{\"context\":{\"history\":\"" + text + "\"}}", 413);
+    read(new MessageRequestReader(4096, 100), "{\"input\":{\"text\":\"" + text + "\"}}");
+  }
+
+  /**
+   * A body which is empty or not a message should be rejected with 400.
+   *
+   * @throws Exception if the body cannot be read
+   */
+  @Test
+  public void shouldRejectInvalidRequests() throws Exception {
+    MessageRequestReader reader = new MessageRequestReader(1024, 1024);
+    assertRejected(reader, "", 400);
+    assertRejected(reader, "[1,2]", 400);
+    assertRejected(reader, "{\"input\":{\"text\":", 400);
+    assertRejected(reader, "{\"input\":\"text\"}", 400);
+  }
+}
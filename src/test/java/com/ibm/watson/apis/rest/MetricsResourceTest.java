@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.rest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+
+import org.junit.Test;
+
+import com.cloudant.client.api.ClientBuilder;
+import com.ibm.watson.apis.metrics.PrometheusWriter;
+import com.ibm.watson.apis.retrieve_and_rank.requests.RetrieveAndRankConfigurationCache;
+import com.ibm.watson.apis.retrieve_and_rank.utils.Logging;
+
+/**
+ * Unit tests for the {@link MetricsResource}.
+ */
+public class MetricsResourceTest {
+
+  /**
+   * The Retrieve and Rank configuration lookups should be exported, failed ones included.
+   */
+  @Test
+  public void shouldExportConfigurationLookups() {
+    RetrieveAndRankConfigurationCache cache = RetrieveAndRankConfigurationCache.getInstance();
+    try {
+      // there are no service credentials in the tests
+      cache.refresh();
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    String page = MetricsResource.render();
+
+    assertTrue(page.contains("# TYPE chatbot_rnr_config_resolutions_total counter\n"));
+    assertTrue(page.contains("chatbot_rnr_config_resolutions_total{result=\"lookup\"} " + cache.getResolveCount()
+        + "\n"));
+    assertTrue(page.contains("chatbot_rnr_config_resolutions_total{result=\"failed\"} " + cache.getFailureCount()
+        + "\n"));
+    assertTrue(cache.getFailureCount() >= 1);
+  }
+
+  /**
+   * The conversation log should be exported when the application logs to Cloudant, and left out otherwise.
+   *
+   * @throws Exception if the journal cannot be created
+   */
+  @Test
+  public void shouldExportConversationLog() throws Exception {
+    // there are no Cloudant credentials in the tests
+    assertFalse(MetricsResource.render().contains("chatbot_cloudant_log"));
+
+    File journal = File.createTempFile("cloudant-log", ".journal");
+    journal.delete();
+    Logging logging = new Logging(ClientBuilder.url(new URL("http://127.0.0.1:1")).build(), "test_db", 10, 10, 100,
+        Logging.OverflowPolicy.DROP, journal);
+    try {
+      PrometheusWriter writer = new PrometheusWriter();
+      MetricsResource.writeConversationLog(writer, logging);
+      String page = writer.toString();
+
+      assertTrue(page.contains("# TYPE chatbot_cloudant_log_queue_depth gauge\n"));
+      assertTrue(page.contains("chatbot_cloudant_log_queue_depth 0\n"));
+      assertTrue(page.contains("# TYPE chatbot_cloudant_log_entries_total counter\n"));
+      assertTrue(page.contains("chatbot_cloudant_log_entries_total{result=\"dropped\"} 0\n"));
+      assertTrue(page.contains("chatbot_cloudant_log_flushes_total{result=\"failed\"} 0\n"));
+      assertTrue(page.contains("chatbot_cloudant_log_flush_seconds{stat=\"max\"} 0\n"));
+    } finally {
+      logging.shutdown(1000);
+      journal.delete();
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link AnswerCache} and the {@link QueryNormalizer}.
+ */
+public class AnswerCacheTest {
+
+  /**
+   * Questions which only differ in case, punctuation, whitespace or stopwords should be normalized the same way.
+   */
+  @Test
+  public void shouldNormalizeQuestions() {
+    assertEquals("check tire pressure", QueryNormalizer.normalize("How do I check the  tire pressure?"));
+    assertEquals("check tire pressure", QueryNormalizer.normalize("CHECK tire-pressure"));
+    assertEquals("how do i", QueryNormalizer.normalize("How do I?"));
+  }
+
+  /**
+   * A cached answer should be found with an equivalent question, but only in its own namespace.
+   */
+  @Test
+  public void shouldCacheByNamespaceAndNormalizedQuestion() {
+    AnswerCache cache = new AnswerCache(10, 60000);
+    List<String> answer = Arrays.asList("a");
+    cache.put("RNR", "How do I check the tire pressure?", answer);
+
+    assertEquals(answer, cache.get("RNR", "check tire pressure"));
+    assertNull(cache.get("DISCOVERY", "check tire pressure"));
+    assertEquals(1, cache.getStats().get("RNR").getHits());
+    assertEquals(1, cache.getStats().get("DISCOVERY").getMisses());
+  }
+
+  /**
+   * The least recently used entry should be evicted when the cache is full, and expired entries should be dropped.
+   */
+  @Test
+  public void shouldEvictBySizeAndAge() throws Exception {
+    AnswerCache cache = new AnswerCache(2, 60000);
+    cache.put("RNR", "one", Arrays.asList("1"));
+    cache.put("RNR", "two", Arrays.asList("2"));
+    cache.get("RNR", "one");
+    cache.put("RNR", "three", Arrays.asList("3"));
+
+    assertNull(cache.get("RNR", "two"));
+    assertEquals(Arrays.asList("1"), cache.get("RNR", "one"));
+    assertEquals(1, cache.getStats().get("RNR").getEvictions());
+
+    AnswerCache expiring = new AnswerCache(2, 10);
+    expiring.put("RNR", "one", Arrays.asList("1"));
+    Thread.sleep(50);
+    assertNull(expiring.get("RNR", "one"));
+    assertEquals(0, expiring.size());
+  }
+
+  /**
+   * Invalidating a namespace should only drop that namespace's answers.
+   */
+  @Test
+  public void shouldInvalidateNamespace() {
+    AnswerCache cache = new AnswerCache(10, 60000);
+    cache.put("RNR", "one", Arrays.asList("1"));
+    cache.put("DISCOVERY", "one", Arrays.asList("2"));
+    cache.put("DISCOVERY", "two", Arrays.asList("3"));
+
+    assertEquals(2, cache.invalidate("DISCOVERY"));
+    assertEquals(Arrays.asList("1"), cache.get("RNR", "one"));
+    assertEquals(1, cache.invalidate(null));
+    assertEquals(0, cache.size());
+  }
+}
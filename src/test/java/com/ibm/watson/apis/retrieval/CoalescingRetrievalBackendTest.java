@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CoalescingRetrievalBackend}.
+ */
+public class CoalescingRetrievalBackendTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private final CountDownLatch started = new CountDownLatch(1);
+  private final AtomicInteger calls = new AtomicInteger();
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    release.countDown();
+    executor.shutdownNow();
+  }
+
+  private RetrievalBackend createBackend(final boolean failing) {
+    return new RetrievalBackend() {
+      @Override
+      public String getName() {
+        return "TEST";
+      }
+
+      @Override
+      public List<?> getDocuments(String input) throws Exception {
+        calls.incrementAndGet();
+        started.countDown();
+        release.await();
+        if (failing) {
+          throw new IllegalStateException("backend down");
+        }
+        return Arrays.asList(input);
+      }
+    };
+  }
+
+  private Future<List<?>> submit(final RetrievalBackend backend, final String input) {
+    return executor.submit(new Callable<List<?>>() {
+      @Override
+      public List<?> call() throws Exception {
+        return backend.getDocuments(input);
+      }
+    });
+  }
+
+  private static void waitForWaiters(CoalescingRetrievalBackend backend, int waiters) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((backend.getWaiting() < waiters) && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    assertEquals(waiters, backend.getWaiting());
+  }
+
+  private static Throwable failureOf(Future<List<?>> future) throws InterruptedException {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+    return null;
+  }
+
+  /**
+   * Callers asking the same normalized question while a call is in flight should share its answer.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldShareCallInFlight() throws Exception {
+    CoalescingRetrievalBackend backend = new CoalescingRetrievalBackend(createBackend(false), 10, 5000);
+    Future<List<?>> first = submit(backend, "How do I check the tire pressure?");
+    started.await();
+    List<Future<List<?>>> others = new ArrayList<Future<List<?>>>();
+    for (int i = 0; i < 4; i++) {
+      others.add(submit(backend, "how do i check THE TIRE pressure"));
+    }
+    waitForWaiters(backend, 4);
+    release.countDown();
+
+    assertEquals(Arrays.asList("How do I check the tire pressure?"), first.get());
+    for (Future<List<?>> other : others) {
+      assertEquals(first.get(), other.get());
+    }
+    assertEquals(1, calls.get());
+    assertEquals(1, backend.getStats().getCalls());
+    assertEquals(4, backend.getStats().getCollapsed());
+    assertEquals(0, backend.getWaiting());
+  }
+
+  /**
+   * The failure of the shared call should be reported to every caller.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldShareFailure() throws Exception {
+    CoalescingRetrievalBackend backend = new CoalescingRetrievalBackend(createBackend(true), 10, 5000);
+    Future<List<?>> first = submit(backend, "jump start");
+    started.await();
+    Future<List<?>> second = submit(backend, "Jump start");
+    waitForWaiters(backend, 1);
+    release.countDown();
+
+    assertTrue(failureOf(first) instanceof IllegalStateException);
+    assertTrue(failureOf(second) instanceof IllegalStateException);
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * When the caller of the shared call cancels it, the waiters should not get its failure: one of them should make
+   * the call again.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldHandOverCancelledCall() throws Exception {
+    CoalescingRetrievalBackend backend = new CoalescingRetrievalBackend(createBackend(false), 10, 5000);
+    Future<List<?>> first = submit(backend, "jump start");
+    started.await();
+    Future<List<?>> second = submit(backend, "Jump start");
+    waitForWaiters(backend, 1);
+    first.cancel(true);
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((calls.get() < 2) && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    assertEquals(Arrays.asList("Jump start"), second.get());
+    assertEquals(2, calls.get());
+    assertEquals(0, backend.getStats().getCollapsed());
+  }
+
+  /**
+   * Callers beyond the waiter limit should be turned away and slow calls should time their waiters out.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldLimitWaiters() throws Exception {
+    CoalescingRetrievalBackend backend = new CoalescingRetrievalBackend(createBackend(false), 1, 200);
+    submit(backend, "oil change");
+    started.await();
+    Future<List<?>> waiting = submit(backend, "oil change");
+    waitForWaiters(backend, 1);
+    Future<List<?>> rejected = submit(backend, "oil change");
+
+    assertTrue(failureOf(rejected) instanceof RejectedExecutionException);
+    assertTrue(failureOf(waiting) instanceof TimeoutException);
+    assertEquals(1, backend.getStats().getRejected());
+    assertEquals(1, backend.getStats().getTimeouts());
+    assertEquals(1, calls.get());
+  }
+
+  /**
+   * Different questions should not share a call.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldNotShareDifferentQuestions() throws Exception {
+    release.countDown();
+    CoalescingRetrievalBackend backend = new CoalescingRetrievalBackend(createBackend(false), 10, 5000);
+
+    assertEquals(Arrays.asList("wipers"), backend.getDocuments("wipers"));
+    assertEquals(Arrays.asList("wipers"), backend.getDocuments("wipers"));
+    assertEquals(Arrays.asList("headlights"), backend.getDocuments("headlights"));
+    assertEquals(3, calls.get());
+    assertEquals(0, backend.getStats().getCollapsed());
+  }
+}
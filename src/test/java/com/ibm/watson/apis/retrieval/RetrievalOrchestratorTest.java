@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.ibm.watson.apis.metrics.Metrics;
+import com.ibm.watson.apis.resilience.Cancellation;
+import com.ibm.watson.apis.retrieval.RetrievalOrchestrator.Policy;
+
+/**
+ * Unit tests for the {@link RetrievalOrchestrator}.
+ */
+public class RetrievalOrchestratorTest {
+
+  private RetrievalOrchestrator orchestrator;
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    if (orchestrator != null) {
+      orchestrator.shutdown();
+    }
+  }
+
+  /**
+   * The first non-empty answer should win even if a preferred backend is slower.
+   */
+  @Test
+  public void shouldReturnFirstNonEmptyAnswer() throws Exception {
+    orchestrator = new RetrievalOrchestrator(Arrays.<RetrievalBackend>asList(new StubBackend("slow", 2000, "a"),
+        new StubBackend("fast", 0, "b")), Policy.FIRST, 4, 10);
+
+    long start = System.currentTimeMillis();
+    assertEquals(Arrays.asList("b"), orchestrator.getDocuments("query"));
+    assertEquals(true, System.currentTimeMillis() - start < 1500);
+  }
+
+  /**
+   * A backend which lost to another one should be aborted through the hook it registered, without counting as an
+   * error of its stage.
+   *
+   * @throws Exception if the test fails
+   */
+  @Test
+  public void shouldAbortLosingBackend() throws Exception {
+    final CountDownLatch registered = new CountDownLatch(1);
+    final CountDownLatch aborted = new CountDownLatch(1);
+    RetrievalBackend blocking = new RetrievalBackend() {
+      @Override
+      public String getName() {
+        return "blocking";
+      }
+
+      @Override
+      public List<?> getDocuments(String input) throws Exception {
+        Cancellation.onCancel(new Runnable() {
+          @Override
+          public void run() {
+            aborted.countDown();
+          }
+        });
+        registered.countDown();
+        // stands for a blocking HTTP call, which ignores interrupts and reports its abort wrapped
+        boolean done = false;
+        while (!done) {
+          try {
+            done = aborted.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            // ignored, like a socket read does
+          }
+        }
+        throw new RuntimeException(new IOException("Canceled"));
+      }
+    };
+    RetrievalBackend quick = new StubBackend("quick", 0, "b") {
+      @Override
+      public List<?> getDocuments(String input) throws Exception {
+        registered.await();
+        return super.getDocuments(input);
+      }
+    };
+    orchestrator = new RetrievalOrchestrator(Arrays.<RetrievalBackend>asList(blocking, quick), Policy.FIRST, 4, 10);
+
+    assertEquals(Arrays.asList("b"), orchestrator.getDocuments("query"));
+    assertTrue(aborted.await(1, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(0, Metrics.getBackend("blocking").getErrors());
+  }
+
+  /**
+   * An empty or failed backend should not hide the answer of another backend.
+   */
+  @Test
+  public void shouldIgnoreEmptyAndFailedBackends() throws Exception {
+    orchestrator = new RetrievalOrchestrator(Arrays.<RetrievalBackend>asList(new StubBackend("empty", 0),
+        new StubBackend("failing", 0, (String[]) null), new StubBackend("good", 100, "c")), Policy.FIRST, 4, 10);
+
+    assertEquals(Arrays.asList("c"), orchestrator.getDocuments("query"));
+  }
+
+  /**
+   * The merge policy should combine the answers in backend order.
+   */
+  @Test
+  public void shouldMergeAnswers() throws Exception {
+    orchestrator = new RetrievalOrchestrator(Arrays.<RetrievalBackend>asList(new StubBackend("one", 100, "a"),
+        new StubBackend("two", 0, "b")), Policy.MERGE, 4, 10);
+
+    assertEquals(Arrays.asList("a", "b"), orchestrator.getDocuments("query"));
+  }
+
+  /**
+   * When every backend fails the failure should be reported.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void shouldThrowWhenAllBackendsFail() throws Exception {
+    orchestrator = new RetrievalOrchestrator(Arrays.<RetrievalBackend>asList(
+        new StubBackend("failing", 0, (String[]) null)), Policy.FIRST, 4, 10);
+
+    orchestrator.getDocuments("query");
+  }
+
+  /**
+   * An unknown policy should fall back to the first answer instead of failing.
+   */
+  @Test
+  public void shouldDefaultUnknownPolicy() {
+    System.setProperty("RETRIEVAL_POLICY", "merged");
+    try {
+      assertEquals(Policy.FIRST, RetrievalOrchestrator.getConfiguredPolicy());
+      System.setProperty("RETRIEVAL_POLICY", " Merge ");
+      assertEquals(Policy.MERGE, RetrievalOrchestrator.getConfiguredPolicy());
+    } finally {
+      System.clearProperty("RETRIEVAL_POLICY");
+    }
+  }
+
+  /**
+   * A backend which answers after a delay. A null document list makes it fail.
+   */
+  private static class StubBackend implements RetrievalBackend {
+    private final String name;
+    private final long delay;
+    private final String[] documents;
+
+    StubBackend(String name, long delay, String... documents) {
+      this.name = name;
+      this.delay = delay;
+      this.documents = documents;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public List<?> getDocuments(String input) throws Exception {
+      Thread.sleep(delay);
+      if (documents == null) {
+        throw new IllegalStateException(name);
+      }
+      return documents.length == 0 ? Collections.emptyList() : Arrays.asList(documents);
+    }
+  }
+}
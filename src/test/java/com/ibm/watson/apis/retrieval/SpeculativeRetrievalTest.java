@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.retrieval;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SpeculativeRetrieval}.
+ */
+public class SpeculativeRetrievalTest {
+
+  private final SpeculativeRetrieval speculative = new SpeculativeRetrieval(true, 1, 4);
+  private final RetrievalOrchestrator orchestrator = new RetrievalOrchestrator(
+      Collections.<RetrievalBackend>singletonList(new SlowBackend()), RetrievalOrchestrator.Policy.FIRST, 2, 10);
+
+  /**
+   * Tear down.
+   */
+  @After
+  public void tearDown() {
+    speculative.shutdown();
+    orchestrator.shutdown();
+  }
+
+  /**
+   * Questions should be recognized by their mark, their first word or their length.
+   */
+  @Test
+  public void shouldRecognizeQuestions() {
+    assertTrue(speculative.isQuestion("tire pressure?"));
+    assertTrue(speculative.isQuestion("How do I check the oil"));
+    assertTrue(speculative.isQuestion("low tire pressure warning light"));
+    assertFalse(speculative.isQuestion("hello"));
+    assertFalse(speculative.isQuestion("thanks a lot"));
+    assertFalse(speculative.isQuestion("  "));
+    assertFalse(speculative.isQuestion(null));
+  }
+
+  /**
+   * A question should be answered by the orchestrator in the background.
+   *
+   * @throws Exception if the retrieval fails
+   */
+  @Test
+  public void shouldRetrieveInBackground() throws Exception {
+    Future<List<?>> answer = speculative.start(orchestrator, "what is the tire pressure?", null);
+    assertNotNull(answer);
+    speculative.onUsed();
+
+    assertEquals(Arrays.asList("doc"), answer.get());
+    assertEquals(1, speculative.getStats().getStarted());
+    assertEquals(1, speculative.getStats().getUsed());
+  }
+
+  /**
+   * When every thread is busy, the question should not be speculated on.
+   */
+  @Test
+  public void shouldSkipWhenBusy() {
+    Future<List<?>> first = speculative.start(orchestrator, "what is the tire pressure?", null);
+    assertNull(speculative.start(orchestrator, "how do I change a tire?", null));
+    speculative.discard(first);
+
+    assertEquals(1, speculative.getStats().getSkipped());
+    assertEquals(1, speculative.getStats().getWasted());
+  }
+
+  /**
+   * An answer which is not needed should not be interrupted, so that it still fills the answer cache.
+   *
+   * @throws Exception if the retrieval fails
+   */
+  @Test
+  public void shouldLetDiscardedAnswerFinish() throws Exception {
+    Future<List<?>> answer = speculative.start(orchestrator, "what is the tire pressure?", null);
+    speculative.discard(answer);
+
+    assertEquals(Arrays.asList("doc"), answer.get());
+    assertFalse(answer.isCancelled());
+    assertEquals(1, speculative.getStats().getWasted());
+  }
+
+  /**
+   * A disabled speculative retrieval should start nothing.
+   */
+  @Test
+  public void shouldDoNothingWhenDisabled() {
+    SpeculativeRetrieval disabled = new SpeculativeRetrieval(false, 1, 4);
+    assertNull(disabled.start(orchestrator, "what is the tire pressure?", null));
+    disabled.shutdown();
+  }
+
+  /**
+   * A backend which answers one document after a while.
+   */
+  private static class SlowBackend implements RetrievalBackend {
+    @Override
+    public String getName() {
+      return "SLOW";
+    }
+
+    @Override
+    public List<?> getDocuments(String input) throws Exception {
+      Thread.sleep(200);
+      return Arrays.asList("doc");
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.requests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.junit.Test;
+
+import com.ibm.watson.apis.retrieve_and_rank.payload.DocumentPayload;
+
+/**
+ * Unit tests for the {@link RetrieveAndRankClient} payload mapping.
+ */
+public class RetrieveAndRankClientTest {
+
+  /**
+   * Documents and highlighting should be mapped without quote stripping.
+   */
+  @Test
+  public void shouldMapDocumentsAndHighlighting() {
+    SolrDocument first = new SolrDocument();
+    first.addField("id", "1");
+    first.addField("title", "Tire \"pressure\"");
+    first.addField("body", "Check the tires");
+    first.addField("ranker.confidence", 0.75d);
+    SolrDocument second = new SolrDocument();
+    second.addField("id", "2");
+    second.addField("title", Arrays.asList("Bluetooth", "Phone"));
+    SolrDocumentList results = new SolrDocumentList();
+    results.add(first);
+    results.add(second);
+
+    Map<String, List<String>> fields = new HashMap<String, List<String>>();
+    fields.put("body", Arrays.asList("Check the <em>tires</em>"));
+    Map<String, Map<String, List<String>>> highlights = new HashMap<String, Map<String, List<String>>>();
+    highlights.put("1", fields);
+
+    List<DocumentPayload> payload = new RetrieveAndRankClient().createPayload("tires", results, highlights);
+
+    assertEquals(2, payload.size());
+    assertEquals("Tire \"pressure\"", payload.get(0).getTitle());
+    assertEquals("Check the tires", payload.get(0).getBody());
+    assertEquals("0.75", payload.get(0).getConfidence());
+    assertEquals("empty", payload.get(0).getSourceUrl());
+    assertEquals("Check the <em>tires</em>", payload.get(0).getHighlight());
+    assertEquals("Bluetooth", payload.get(1).getTitle());
+    assertEquals("empty", payload.get(1).getBody());
+    assertEquals("0.0", payload.get(1).getConfidence());
+    assertNull(payload.get(1).getHighlight());
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * (C) Copyright IBM Corp. 2016. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.apis.retrieve_and_rank.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.cloudant.client.api.ClientBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link Logging} pipeline, against a local stand-in for Cloudant.
+ */
+public class LoggingTest {
+  private static final String DATABASE = "test_db";
+
+  private MockWebServer server;
+  private File journal;
+  private Logging logging;
+  private final AtomicBoolean down = new AtomicBoolean();
+  private final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+
+  /**
+   * Starts the stand-in, which answers <code>_bulk_docs</code> with 500 while {@link #down} is set.
+   *
+   * @throws Exception if the server cannot start
+   */
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty("CLOUDANT_LOG_RETRY_MS", "100");
+    journal = File.createTempFile("cloudant-log", ".journal");
+    journal.delete();
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (!request.getPath().endsWith("/_bulk_docs")) {
+          return new MockResponse().setResponseCode(201).setBody("{\"ok\":true}");
+        }
+        if (down.get()) {
+          return new MockResponse().setResponseCode(500).setBody("{\"error\":\"unavailable\"}");
+        }
+        JsonArray docs = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject()
+            .getAsJsonArray("docs");
+        batchSizes.add(docs.size());
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < docs.size(); i++) {
+          JsonObject result = new JsonObject();
+          result.addProperty("id", "doc" + i);
+          result.addProperty("rev", "1-a");
+          results.add(result);
+        }
+        return new MockResponse().setResponseCode(201).setBody(results.toString());
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the logger and the stand-in.
+   *
+   * @throws Exception if the server cannot stop
+   */
+  @After
+  public void tearDown() throws Exception {
+    if (logging != null) {
+      logging.shutdown(1000);
+    }
+    server.shutdown();
+    journal.delete();
+    System.clearProperty("CLOUDANT_LOG_RETRY_MS");
+  }
+
+  private Logging createLogging(int batchSize, long flushMillis, Logging.OverflowPolicy policy) {
+    return new Logging(ClientBuilder.url(server.url("/").url()).build(), DATABASE, 100, batchSize, flushMillis,
+        policy, journal);
+  }
+
+  private static void log(Logging logging, int count) {
+    for (int i = 0; i < count; i++) {
+      assertTrue(logging.log("question " + i, "intent", "0.9", "entity", "output", "id", "documents"));
+    }
+  }
+
+  private static void waitFor(Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!condition.isMet() && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    assertTrue(condition.isMet());
+  }
+
+  /** A condition polled by {@link LoggingTest#waitFor}. */
+  private interface Condition {
+    boolean isMet();
+  }
+
+  /**
+   * Entries should be saved together with one _bulk_docs request once the batch is full.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldSaveInBatches() throws Exception {
+    logging = createLogging(5, 10000, Logging.OverflowPolicy.DROP);
+    log(logging, 5);
+
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return logging.getStats().getSaved() == 5;
+      }
+    });
+    assertEquals(1, batchSizes.size());
+    assertEquals(5, batchSizes.get(0).intValue());
+    assertEquals(1, logging.getStats().getFlushes());
+    assertEquals(0, logging.getQueueDepth());
+  }
+
+  /**
+   * Entries should be journaled while Cloudant fails and replayed when it is back.
+   *
+   * @throws Exception if the test is interrupted
+   */
+  @Test
+  public void shouldJournalAndReplay() throws Exception {
+    down.set(true);
+    logging = createLogging(3, 50, Logging.OverflowPolicy.SPILL);
+    log(logging, 3);
+
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return logging.getStats().getSpilled() == 3;
+      }
+    });
+    assertTrue(logging.getStats().getFailedFlushes() >= 1);
+    assertTrue(journal.length() > 0);
+
+    down.set(false);
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return logging.getStats().getReplayed() == 3;
+      }
+    });
+    assertEquals(0, journal.length());
+    assertEquals(0, logging.getStats().getDropped());
+  }
+
+  /**
+   * A journal line cut short by a crash should be skipped, and the other entries replayed.
+   *
+   * @throws Exception if the journal cannot be written
+   */
+  @Test
+  public void shouldSkipTruncatedJournalLine() throws Exception {
+    FileOutputStream out = new FileOutputStream(journal);
+    try {
+      out.write(("{\"Question\":\"one\"}\n[1, 2]\n{\"Question\":\"two\"}\n{\"Question\":\"thr").getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    logging = createLogging(5, 50, Logging.OverflowPolicy.SPILL);
+
+    waitFor(new Condition() {
+      @Override
+      public boolean isMet() {
+        return logging.getStats().getReplayed() == 2;
+      }
+    });
+    assertEquals(2, logging.getStats().getCorrupt());
+    assertEquals(0, journal.length());
+    assertFalse(new File(journal.getPath() + ".replay").exists());
+  }
+
+  /**
+   * An unknown overflow policy should fall back to spilling.
+   */
+  @Test
+  public void shouldDefaultUnknownOverflowPolicy() {
+    System.setProperty("CLOUDANT_LOG_OVERFLOW", "spil");
+    try {
+      assertEquals(Logging.OverflowPolicy.SPILL, Logging.getConfiguredOverflowPolicy());
+    } finally {
+      System.clearProperty("CLOUDANT_LOG_OVERFLOW");
+    }
+  }
+
+  /**
+   * Entries logged after the shutdown should be dropped with the drop policy.
+   */
+  @Test
+  public void shouldDropAfterShutdown() {
+    logging = createLogging(5, 50, Logging.OverflowPolicy.DROP);
+    logging.shutdown(1000);
+
+    assertFalse(logging.log("question", "intent", "0.9", "entity", "output", "id", "documents"));
+    assertEquals(1, logging.getStats().getDropped());
+    logging = null;
+  }
+}
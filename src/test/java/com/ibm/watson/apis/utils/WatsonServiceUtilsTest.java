@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.ibm.watson.apis.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.apis.resilience.RequestHedger;
+import com.ibm.watson.developer_cloud.discovery.v1.Discovery;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryRequest;
+import com.ibm.watson.developer_cloud.discovery.v1.model.query.QueryResponse;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+
+/**
+ * Unit tests for the {@link WatsonServiceUtils}.
+ */
+public class WatsonServiceUtilsTest {
+
+  private final ThreadPoolExecutor executor =
+      new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+  private final AtomicInteger queries = new AtomicInteger();
+  private MockWebServer server;
+
+  /**
+   * Starts a Discovery stand-in which never answers the first query.
+   *
+   * @throws Exception if the server cannot start
+   */
+  @Before
+  public void setUp() throws Exception {
+    server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if (queries.incrementAndGet() == 1) {
+          return new MockResponse().setSocketPolicy(SocketPolicy.NO_RESPONSE);
+        }
+        return new MockResponse().setBody("{\"matching_results\": 7, \"results\": []}");
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Tear down.
+   *
+   * @throws Exception if the server cannot stop
+   */
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    server.shutdown();
+  }
+
+  /**
+   * The OkHttp call of the hedged query which lost should be cancelled, freeing its thread.
+   *
+   * @throws Exception if the query fails
+   */
+  @Test
+  public void shouldCancelLosingCall() throws Exception {
+    final Discovery discovery = new Discovery(Constants.DISCOVERY_VERSION);
+    discovery.setEndPoint(server.url("/").toString());
+    discovery.setUsernameAndPassword("user", "password");
+    assertTrue(WatsonServiceUtils.abortWhenCancelled(discovery));
+
+    RequestHedger hedger = new RequestHedger("TEST", true, 95, 10, 100, 5, executor);
+    for (int i = 0; i < 20; i++) {
+      hedger.getLatencies().record(5);
+    }
+    final QueryRequest request = new QueryRequest.Builder("environment", "collection").query("tire").build();
+    QueryResponse response = hedger.call(new Callable<QueryResponse>() {
+      @Override
+      public QueryResponse call() {
+        return discovery.query(request).execute();
+      }
+    });
+    assertEquals(7, response.getMatchingResults().longValue());
+
+    long deadline = System.currentTimeMillis() + 2000;
+    while ((executor.getActiveCount() > 0) && (System.currentTimeMillis() < deadline)) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, executor.getActiveCount());
+  }
+}